@@ -0,0 +1,24 @@
+package org.conceptmanager.abstraction;
+
+import org.conceptmanager.modeling.Model;
+
+/**
+ * A {@link ProjectingAbstractor} is an {@link Abstractor} which only selects
+ * and renames attributes, as described by its {@link Projection}. Knowing the
+ * {@link Projection} allows to compose several {@link ProjectingAbstractor}s
+ * into a single one (see {@link Projection#then(Projection)}), so the
+ * {@link Abstraction}s do not need to be stacked.
+ * 
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ * 
+ * @param <Abstraction>
+ */
+public interface ProjectingAbstractor<Abstraction extends Model> extends
+		Abstractor<Abstraction> {
+
+	/**
+	 * 
+	 * @return the {@link Projection} applied by this {@link Abstractor}
+	 */
+	public Projection getProjection();
+}
@@ -0,0 +1,216 @@
+package org.conceptmanager.abstraction;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.conceptmanager.evaluation.Outcome;
+import org.conceptmanager.modeling.Model;
+
+/**
+ * A {@link Projection} describes an abstraction which only selects and renames
+ * attributes: each output {@link Attribute} is either taken from a source
+ * {@link Attribute} of the abstracted {@link Model} or is always unknown. It is
+ * immutable, thus it can be computed once and shared by all the abstractions
+ * through {@link #apply(Model)}.<br/>
+ * <br/>
+ * {@link Projection}s can be composed through {@link #then(Projection)}, which
+ * resolves each output {@link Attribute} directly to the source {@link Model}.
+ * Thus, stacking several {@link Projection}s still results in a single-level
+ * {@link Model} where each read goes directly to the source {@link Model}.
+ *
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ *
+ */
+public final class Projection {
+
+	/**
+	 * Source of the output {@link Attribute}s which are always unknown.
+	 */
+	private static final Object NONE = new Object();
+
+	private final Map<Object, Object> sources;
+
+	private Projection(Map<Object, Object> sources) {
+		this.sources = Collections.unmodifiableMap(sources);
+	}
+
+	/**
+	 *
+	 * @param attributes
+	 *            the {@link Attribute}s to retain
+	 * @return the {@link Projection} retaining these {@link Attribute}s
+	 *         without renaming them
+	 */
+	public static <Attribute> Projection filter(
+			Collection<Attribute> attributes) {
+		Map<Object, Object> sources = new LinkedHashMap<Object, Object>();
+		for (Attribute attribute : attributes) {
+			sources.put(attribute, attribute);
+		}
+		return new Projection(sources);
+	}
+
+	/**
+	 *
+	 * @param sources
+	 *            the source {@link Attribute} of each output {@link Attribute}
+	 * @return the {@link Projection} taking each output {@link Attribute}
+	 *         from its source {@link Attribute}
+	 */
+	public static <Output, Source> Projection rename(Map<Output, Source> sources) {
+		return new Projection(new LinkedHashMap<Object, Object>(sources));
+	}
+
+	/**
+	 * Compose this {@link Projection} with another one applied on its result.
+	 * The output {@link Attribute}s are the ones of the next
+	 * {@link Projection}, but they are resolved directly to the
+	 * {@link Attribute}s of the {@link Model} given to this {@link Projection}.
+	 *
+	 * @param next
+	 *            the {@link Projection} to apply on the output of this one
+	 * @return the {@link Projection} equivalent to applying both
+	 */
+	public Projection then(Projection next) {
+		Map<Object, Object> composed = new LinkedHashMap<Object, Object>();
+		for (Entry<Object, Object> entry : next.sources.entrySet()) {
+			Object middle = entry.getValue();
+			if (middle != NONE && sources.containsKey(middle)) {
+				composed.put(entry.getKey(), sources.get(middle));
+			} else {
+				composed.put(entry.getKey(), NONE);
+			}
+		}
+		return new Projection(composed);
+	}
+
+	/**
+	 *
+	 * @return the output {@link Attribute}s of this {@link Projection}
+	 */
+	@SuppressWarnings("unchecked")
+	public <Attribute> Collection<? extends Attribute> getAttributes() {
+		return (Collection<? extends Attribute>) sources.keySet();
+	}
+
+	/**
+	 *
+	 * @param attribute
+	 *            an output {@link Attribute}
+	 * @return <code>true</code> if the output {@link Attribute} is taken from
+	 *         a source {@link Attribute}, <code>false</code> if it is always
+	 *         unknown
+	 * @throws UnknownAttributeException
+	 *             if the {@link Attribute} is not an output of this
+	 *             {@link Projection}
+	 */
+	public <Attribute> boolean hasSource(Attribute attribute) {
+		return getSourceOrNone(attribute) != NONE;
+	}
+
+	/**
+	 *
+	 * @param attribute
+	 *            an output {@link Attribute}
+	 * @return the source {@link Attribute} providing its {@link Value}
+	 * @throws UnknownAttributeException
+	 *             if the {@link Attribute} is not an output of this
+	 *             {@link Projection}
+	 * @throws IllegalArgumentException
+	 *             if the {@link Attribute} has no source, see
+	 *             {@link #hasSource(Object)}
+	 */
+	@SuppressWarnings("unchecked")
+	public <Output, Source> Source getSource(Output attribute) {
+		Object source = getSourceOrNone(attribute);
+		if (source == NONE) {
+			throw new IllegalArgumentException("No source for " + attribute);
+		} else {
+			return (Source) source;
+		}
+	}
+
+	private Object getSourceOrNone(Object attribute) {
+		Object source = sources.get(attribute);
+		if (source == null && !sources.containsKey(attribute)) {
+			throw new Model.UnknownAttributeException(attribute);
+		} else {
+			return source;
+		}
+	}
+
+	/**
+	 *
+	 * @param model
+	 *            the source {@link Model}
+	 * @return a {@link Model} view providing the output {@link Attribute}s of
+	 *         this {@link Projection}, reading their {@link Value}s from the
+	 *         source {@link Model} when requested
+	 */
+	public Model apply(Model model) {
+		return new ProjectedModel(this, model);
+	}
+
+	@Override
+	public String toString() {
+		Map<Object, Object> readable = new HashMap<Object, Object>(sources);
+		for (Entry<Object, Object> entry : readable.entrySet()) {
+			if (entry.getValue() == NONE) {
+				entry.setValue("none");
+			} else {
+				// keep it
+			}
+		}
+		return readable.toString();
+	}
+
+	/**
+	 * A {@link ProjectedModel} is the view of a source {@link Model} through a
+	 * {@link Projection}. It only stores references to both of them.
+	 */
+	private static class ProjectedModel implements Model {
+		private final Projection projection;
+		private final Model source;
+
+		public ProjectedModel(Projection projection, Model source) {
+			this.projection = projection;
+			this.source = source;
+		}
+
+		@Override
+		public <Attribute> Collection<? extends Attribute> getAttributes() {
+			return projection.getAttributes();
+		}
+
+		@Override
+		public <Attribute, Value> Value getValueFor(Attribute attribute)
+				throws UnknownAttributeException {
+			Object sourceAttribute = projection.getSourceOrNone(attribute);
+			if (sourceAttribute == NONE) {
+				return null;
+			} else {
+				return source.<Object, Value> tryGetValueFor(sourceAttribute)
+						.getValue();
+			}
+		}
+
+		@Override
+		public <Attribute, Value> Outcome<Value> tryGetValueFor(
+				Attribute attribute) {
+			Object sourceAttribute = projection.sources.get(attribute);
+			if (sourceAttribute == null
+					&& !projection.sources.containsKey(attribute)) {
+				return Outcome.absent();
+			} else if (sourceAttribute == NONE) {
+				return Outcome.unknown();
+			} else {
+				Outcome<Value> outcome = source.tryGetValueFor(sourceAttribute);
+				return outcome.isValue() ? outcome : Outcome.<Value> unknown();
+			}
+		}
+	}
+}
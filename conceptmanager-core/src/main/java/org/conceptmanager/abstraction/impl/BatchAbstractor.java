@@ -0,0 +1,185 @@
+package org.conceptmanager.abstraction.impl;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.conceptmanager.abstraction.Abstractor;
+import org.conceptmanager.modeling.Model;
+import org.conceptmanager.modeling.impl.StaticModel;
+
+/**
+ * A {@link BatchAbstractor} applies an {@link Abstractor} on many
+ * {@link Model}s at once, like all the snapshots sensed during a time window.
+ * The {@link Abstraction}s can be produced lazily, from an {@link Iterable} or
+ * a {@link Stream}, or in parallel on a {@link ForkJoinPool} from a
+ * {@link List}.<br/>
+ * <br/>
+ * A {@link BatchAbstractor} built through {@link #materializing(Abstractor)}
+ * provides {@link StaticModel}s: each {@link Abstraction} is snapshot as soon
+ * as it is built, so the result does not keep any reference to the dynamic
+ * {@link Model}s used to compute it.
+ * 
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ * 
+ * @param <Abstraction>
+ */
+public class BatchAbstractor<Abstraction extends Model> {
+
+	/**
+	 * Number of {@link Model}s under which a parallel batch is not split
+	 * anymore.
+	 */
+	private static final int SEQUENTIAL_THRESHOLD = 256;
+
+	private final Abstractor<? extends Abstraction> abstractor;
+
+	/**
+	 * 
+	 * @param abstractor
+	 *            the {@link Abstractor} to apply on each {@link Model}
+	 */
+	public BatchAbstractor(Abstractor<? extends Abstraction> abstractor) {
+		if (abstractor == null) {
+			throw new NullPointerException("No abstractor has been provided.");
+		} else {
+			this.abstractor = abstractor;
+		}
+	}
+
+	/**
+	 * 
+	 * @param abstractor
+	 *            the {@link Abstractor} to apply on each {@link Model}
+	 * @return a {@link BatchAbstractor} providing a {@link StaticModel}
+	 *         snapshot of each {@link Abstraction}
+	 */
+	public static BatchAbstractor<StaticModel> materializing(
+			final Abstractor<?> abstractor) {
+		return new BatchAbstractor<StaticModel>(new Abstractor<StaticModel>() {
+
+			@Override
+			public StaticModel abstracts(Model model) {
+				return new StaticModel(abstractor.abstracts(model));
+			}
+		});
+	}
+
+	/**
+	 * 
+	 * @return the {@link Abstractor} applied on each {@link Model}
+	 */
+	public Abstractor<? extends Abstraction> getAbstractor() {
+		return abstractor;
+	}
+
+	/**
+	 * Abstract lazily the {@link Model}s: each {@link Abstraction} is built
+	 * when the corresponding element is reached by the {@link Iterator}.
+	 * 
+	 * @param models
+	 *            the {@link Model}s to abstract
+	 * @return the {@link Abstraction}s, in the same order than the
+	 *         {@link Model}s
+	 */
+	public Iterable<Abstraction> abstractsAll(
+			final Iterable<? extends Model> models) {
+		return new Iterable<Abstraction>() {
+
+			@Override
+			public Iterator<Abstraction> iterator() {
+				final Iterator<? extends Model> iterator = models.iterator();
+				return new Iterator<Abstraction>() {
+
+					@Override
+					public boolean hasNext() {
+						return iterator.hasNext();
+					}
+
+					@Override
+					public Abstraction next() {
+						return abstractor.abstracts(iterator.next());
+					}
+
+					@Override
+					public void remove() {
+						iterator.remove();
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * Abstract lazily the {@link Model}s of a {@link Stream}. If the
+	 * {@link Stream} is parallel, so are the abstractions.
+	 * 
+	 * @param models
+	 *            the {@link Model}s to abstract
+	 * @return the {@link Stream} of {@link Abstraction}s
+	 */
+	public Stream<Abstraction> abstractsAll(Stream<? extends Model> models) {
+		return models.map(new Function<Model, Abstraction>() {
+
+			@Override
+			public Abstraction apply(Model model) {
+				return abstractor.abstracts(model);
+			}
+		});
+	}
+
+	/**
+	 * Abstract the {@link Model}s in parallel: the {@link List} is split
+	 * recursively and the parts are abstracted by the {@link ForkJoinPool}.
+	 * The {@link List} should provide a fast random access.
+	 * 
+	 * @param models
+	 *            the {@link Model}s to abstract
+	 * @param pool
+	 *            the {@link ForkJoinPool} to run the abstractions on
+	 * @return the {@link Abstraction}s, in the same order than the
+	 *         {@link Model}s
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Abstraction> abstractsAll(List<? extends Model> models,
+			ForkJoinPool pool) {
+		Object[] abstractions = new Object[models.size()];
+		pool.invoke(new BatchTask(models, abstractions, 0, models.size()));
+		return Collections.unmodifiableList((List<Abstraction>) (List<?>) Arrays
+				.asList(abstractions));
+	}
+
+	@SuppressWarnings("serial")
+	private class BatchTask extends RecursiveAction {
+		private final List<? extends Model> models;
+		private final Object[] abstractions;
+		private final int start;
+		private final int end;
+
+		public BatchTask(List<? extends Model> models, Object[] abstractions,
+				int start, int end) {
+			this.models = models;
+			this.abstractions = abstractions;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - start <= SEQUENTIAL_THRESHOLD) {
+				for (int i = start; i < end; i++) {
+					abstractions[i] = abstractor.abstracts(models.get(i));
+				}
+			} else {
+				int middle = (start + end) >>> 1;
+				invokeAll(new BatchTask(models, abstractions, start, middle),
+						new BatchTask(models, abstractions, middle, end));
+			}
+		}
+	}
+}
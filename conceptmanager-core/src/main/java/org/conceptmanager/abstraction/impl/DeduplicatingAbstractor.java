@@ -0,0 +1,213 @@
+package org.conceptmanager.abstraction.impl;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.conceptmanager.abstraction.Abstractor;
+import org.conceptmanager.abstraction.ProjectingAbstractor;
+import org.conceptmanager.abstraction.Projection;
+import org.conceptmanager.modeling.Model;
+import org.conceptmanager.modeling.impl.AttributeSchema;
+import org.conceptmanager.modeling.impl.CompactModel;
+
+/**
+ * A {@link DeduplicatingAbstractor} wraps another {@link Abstractor} to provide
+ * a single instance for all the equal {@link Abstraction}s, like the
+ * abstractions of many {@link Model}s having the same values for the retained
+ * attributes. Each {@link Abstraction} is snapshot into an immutable
+ * {@link Model}, which is looked up in a concurrent table: if an equal one is
+ * already known, it is returned instead, otherwise the new one is added.<br/>
+ * <br/>
+ * Each instance counts how many {@link Model}s have been abstracted into it
+ * (see {@link #getCount(Model)}), so the table also groups the abstracted
+ * {@link Model}s by concept. The instances cache their hash code, so the
+ * lookups do not recompute it. If the wrapped {@link Abstractor} is a
+ * {@link ProjectingAbstractor}, its {@link Projection} is used to read the
+ * values directly from the abstracted {@link Model}.
+ * 
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ * 
+ */
+public class DeduplicatingAbstractor implements Abstractor<Model> {
+
+	private final Abstractor<?> abstractor;
+	private final Projection projection;
+	private final AttributeSchema schema;
+	private final ConcurrentMap<Concept, Concept> concepts = new ConcurrentHashMap<Concept, Concept>();
+
+	/**
+	 * 
+	 * @param abstractor
+	 *            the {@link Abstractor} providing the {@link Abstraction}s to
+	 *            deduplicate
+	 */
+	public DeduplicatingAbstractor(Abstractor<?> abstractor) {
+		if (abstractor == null) {
+			throw new NullPointerException("No abstractor has been provided.");
+		} else if (abstractor instanceof ProjectingAbstractor) {
+			this.abstractor = abstractor;
+			this.projection = ((ProjectingAbstractor<?>) abstractor)
+					.getProjection();
+			this.schema = AttributeSchema.intern(projection.getAttributes());
+		} else {
+			this.abstractor = abstractor;
+			this.projection = null;
+			this.schema = null;
+		}
+	}
+
+	/**
+	 * 
+	 * @return the {@link Abstractor} providing the {@link Abstraction}s to
+	 *         deduplicate
+	 */
+	public Abstractor<?> getAbstractor() {
+		return abstractor;
+	}
+
+	/**
+	 * @return the immutable {@link Model} shared by all the {@link Model}s
+	 *         having an equal {@link Abstraction}
+	 */
+	@Override
+	public Model abstracts(Model model) {
+		Concept candidate;
+		if (projection != null) {
+			candidate = new Concept(schema, projection.apply(model));
+		} else {
+			Model abstraction = abstractor.abstracts(model);
+			candidate = new Concept(AttributeSchema.intern(abstraction
+					.getAttributes()), abstraction);
+		}
+		Concept concept = concepts.putIfAbsent(candidate, candidate);
+		if (concept == null) {
+			concept = candidate;
+		} else {
+			// already known
+		}
+		concept.count.incrementAndGet();
+		return concept;
+	}
+
+	/**
+	 * 
+	 * @param abstraction
+	 *            an {@link Abstraction}
+	 * @return the number of {@link Model}s abstracted into an equal
+	 *         {@link Abstraction}, 0 if there is none
+	 */
+	public long getCount(Model abstraction) {
+		Concept concept = abstraction instanceof Concept ? concepts
+				.get(abstraction) : concepts.get(new Concept(AttributeSchema
+				.intern(abstraction.getAttributes()), abstraction));
+		return concept == null ? 0 : concept.count.get();
+	}
+
+	/**
+	 * 
+	 * @return the number of distinct {@link Abstraction}s known
+	 */
+	public int size() {
+		return concepts.size();
+	}
+
+	/**
+	 * 
+	 * @return a snapshot of the distinct {@link Abstraction}s known, with the
+	 *         number of {@link Model}s abstracted into each of them
+	 */
+	public Map<Model, Long> getCounts() {
+		Map<Model, Long> counts = new HashMap<Model, Long>();
+		for (Concept concept : concepts.keySet()) {
+			counts.put(concept, concept.count.get());
+		}
+		return Collections.unmodifiableMap(counts);
+	}
+
+	/**
+	 * Forget all the {@link Abstraction}s known. The instances already
+	 * returned remain valid, but they are not shared with the next
+	 * {@link Abstraction}s.
+	 */
+	public void clear() {
+		concepts.clear();
+	}
+
+	/**
+	 * An immutable {@link Model} comparable by value, with a cached hash code.
+	 */
+	private static class Concept extends CompactModel {
+		private final int hashCode;
+		private final AtomicLong count = new AtomicLong();
+
+		public Concept(AttributeSchema schema, Model model) {
+			super(schema, model);
+			int hash = 0;
+			for (int slot = 0; slot < schema.size(); slot++) {
+				Object value = getValueAt(slot);
+				hash += schema.getAttribute(slot).hashCode()
+						^ (value == null ? 0 : value.hashCode());
+			}
+			this.hashCode = hash;
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object object) {
+			if (object == this) {
+				return true;
+			} else if (object instanceof Concept) {
+				Concept concept = (Concept) object;
+				AttributeSchema schema = getSchema();
+				// interned schemas are usually the same instance
+				boolean sameSchema = concept.getSchema() == schema;
+				if (concept.hashCode != hashCode
+						|| concept.getSchema().size() != schema.size()
+						|| !sameSchema
+						&& !concept.getSchema().matches(schema.getAttributes())) {
+					return false;
+				} else {
+					for (int slot = 0; slot < schema.size(); slot++) {
+						Object value = getValueAt(slot);
+						Object other = sameSchema ? concept.getValueAt(slot)
+								: concept.getValueFor(schema.getAttribute(slot));
+						if (value == null ? other != null : !value
+								.equals(other)) {
+							return false;
+						} else {
+							// continue checking
+						}
+					}
+					return true;
+				}
+			} else {
+				return false;
+			}
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder builder = new StringBuilder("{");
+			AttributeSchema schema = getSchema();
+			for (int slot = 0; slot < schema.size(); slot++) {
+				if (slot > 0) {
+					builder.append(", ");
+				} else {
+					// first one
+				}
+				Object attribute = schema.getAttribute(slot);
+				Object value = getValueAt(slot);
+				builder.append(attribute).append("=").append(value);
+			}
+			return builder.append("}").toString();
+		}
+	}
+}
@@ -1,13 +1,18 @@
 package org.conceptmanager.abstraction.impl;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.Map;
 
 import org.conceptmanager.abstraction.Abstractor;
+import org.conceptmanager.abstraction.ProjectingAbstractor;
+import org.conceptmanager.abstraction.Projection;
+import org.conceptmanager.evaluation.DependentEvaluator;
 import org.conceptmanager.evaluation.Evaluator;
+import org.conceptmanager.evaluation.Outcome;
 import org.conceptmanager.modeling.Model;
-import org.conceptmanager.modeling.Model.UnknownAttributeException;
 import org.conceptmanager.modeling.impl.DynamicModel;
 
 /**
@@ -16,14 +21,30 @@ import org.conceptmanager.modeling.impl.DynamicModel;
  * among the ones available. The abstraction {@link Model} (output of
  * {@link #abstracts(Model)}) is a {@link DynamicModel} tied to the abstracted
  * {@link Model} (input of {@link #abstracts(Model)}). Thus, if the abstracted
- * {@link Model} changes, so do the abstraction {@link Model}.
+ * {@link Model} changes, so do the abstraction {@link Model}.<br/>
+ * <br/>
+ * The {@link Evaluator}s retaining the {@link Attribute}s are built once by the
+ * constructor and shared by all the abstraction {@link Model}s (see
+ * {@link DynamicModel#sharing(Object, Map)}), so {@link #abstracts(Model)}
+ * only instantiates the abstraction {@link Model} itself and can be called
+ * concurrently.<br/>
+ * <br/>
+ * Its {@link Projection} retains the same {@link Attribute}s, so several
+ * {@link FilteringAbstractor}s can be fused in a {@link PipelineAbstractor}.
+ * Each {@link Evaluator} only depends on the {@link Attribute} it retains, so
+ * when the abstracted {@link Model} is an
+ * {@link org.conceptmanager.modeling.ObservableModel}, the abstraction only
+ * notifies the changes of the retained {@link Attribute}s.
  * 
  * @author Matthieu Vergne <matthieu.vergne@gmail.com>
  * 
  */
-public class FilteringAbstractor implements Abstractor<DynamicModel> {
+public class FilteringAbstractor implements
+		ProjectingAbstractor<DynamicModel> {
 
-	private final Collection<Evaluator<? extends Object, ? extends Object>> evaluators;
+	private static final String NOT_A_MODEL = "not a model";
+	private final Map<Object, Evaluator<?, ?>> evaluators;
+	private final Projection projection;
 
 	/**
 	 * 
@@ -31,36 +52,59 @@ public class FilteringAbstractor implements Abstractor<DynamicModel> {
 	 *            the {@link Attribute}s to retain
 	 */
 	public <Attribute> FilteringAbstractor(Collection<Attribute> attributes) {
-		evaluators = new LinkedList<Evaluator<? extends Object, ? extends Object>>();
+		projection = Projection.filter(new HashSet<Attribute>(attributes));
+		Map<Object, Evaluator<?, ?>> evaluators = new HashMap<Object, Evaluator<?, ?>>();
 		for (final Attribute attribute : new HashSet<Attribute>(attributes)) {
-			evaluators.add(new Evaluator<Object, Object>() {
+			evaluators.put(attribute, new DependentEvaluator<Object, Object>() {
 
 				@Override
 				public Object getAttribute() {
 					return attribute;
 				}
 
+				@SuppressWarnings("unchecked")
+				@Override
+				public <Dependency> Collection<? extends Dependency> getDependencies() {
+					return (Collection<? extends Dependency>) Collections
+							.singleton(attribute);
+				}
+
 				@Override
 				public Object evaluates(Object object)
 						throws CannotEvaluateException {
+					Outcome<Object> outcome = tryEvaluates(object);
+					if (outcome.isFailed()) {
+						throw new CannotEvaluateException(attribute, object,
+								outcome.getReason());
+					} else {
+						return outcome.getValue();
+					}
+				}
+
+				@Override
+				public Outcome<Object> tryEvaluates(Object object) {
 					if (object instanceof Model) {
-						Model model = (Model) object;
-						try {
-							return model.getValueFor(attribute);
-						} catch (UnknownAttributeException e) {
-							return null;
-						}
+						Outcome<Object> outcome = ((Model) object)
+								.tryGetValueFor(attribute);
+						// an attribute not provided has an unknown value
+						return outcome.isValue() ? outcome : Outcome.unknown();
 					} else {
-						throw new CannotEvaluateException(attribute, object);
+						return Outcome.failed(NOT_A_MODEL);
 					}
 				}
 			});
 		}
+		this.evaluators = Collections.unmodifiableMap(evaluators);
+	}
+
+	@Override
+	public Projection getProjection() {
+		return projection;
 	}
 
 	@Override
 	public DynamicModel abstracts(Model model) {
-		return new DynamicModel(model, evaluators);
+		return DynamicModel.sharing(model, evaluators);
 	}
 
 }
@@ -0,0 +1,112 @@
+package org.conceptmanager.abstraction.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.conceptmanager.abstraction.Abstractor;
+import org.conceptmanager.abstraction.ProjectingAbstractor;
+import org.conceptmanager.abstraction.Projection;
+import org.conceptmanager.modeling.Model;
+
+/**
+ * A {@link PipelineAbstractor} is an {@link Abstractor} which applies several
+ * {@link Abstractor}s in sequence: each stage abstracts the abstraction
+ * provided by the previous one. Applied as is, each stage adds a level of
+ * indirection, so reading a value of the final abstraction goes through all
+ * the stages.<br/>
+ * <br/>
+ * {@link #compile()} provides an equivalent pipeline where each sequence of
+ * {@link ProjectingAbstractor}s (like {@link FilteringAbstractor}s) is fused
+ * into a single {@link ProjectionAbstractor}, which resolves each output
+ * attribute directly to the {@link Model} given to the sequence. If all the
+ * stages are {@link ProjectingAbstractor}s, the compiled pipeline provides
+ * single-level abstractions, whatever the number of stages. The other
+ * {@link Abstractor}s are kept as is.
+ * 
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ * 
+ */
+public class PipelineAbstractor implements Abstractor<Model> {
+
+	private final List<Abstractor<?>> stages;
+
+	/**
+	 * 
+	 * @param stages
+	 *            the {@link Abstractor}s to apply, in order
+	 */
+	public PipelineAbstractor(List<? extends Abstractor<?>> stages) {
+		if (stages.isEmpty()) {
+			throw new IllegalArgumentException("No stage has been provided.");
+		} else {
+			this.stages = Collections
+					.unmodifiableList(new ArrayList<Abstractor<?>>(stages));
+		}
+	}
+
+	/**
+	 * 
+	 * @param stages
+	 *            the {@link Abstractor}s to apply, in order
+	 */
+	public PipelineAbstractor(Abstractor<?>... stages) {
+		this(Arrays.asList(stages));
+	}
+
+	/**
+	 * 
+	 * @return the {@link Abstractor}s applied, in order
+	 */
+	public List<Abstractor<?>> getStages() {
+		return stages;
+	}
+
+	@Override
+	public Model abstracts(Model model) {
+		Model abstraction = model;
+		for (Abstractor<?> stage : stages) {
+			abstraction = stage.abstracts(abstraction);
+		}
+		return abstraction;
+	}
+
+	/**
+	 * Fuse the consecutive {@link ProjectingAbstractor}s of this pipeline. The
+	 * {@link Projection}s are composed once here, so the abstractions of the
+	 * compiled pipeline do not need to compose them again.
+	 * 
+	 * @return the compiled {@link PipelineAbstractor}, equivalent to this one
+	 */
+	public PipelineAbstractor compile() {
+		List<Abstractor<?>> compiled = new ArrayList<Abstractor<?>>();
+		Projection projection = null;
+		for (Abstractor<?> stage : stages) {
+			if (stage instanceof ProjectingAbstractor) {
+				Projection next = ((ProjectingAbstractor<?>) stage)
+						.getProjection();
+				projection = projection == null ? next : projection.then(next);
+			} else {
+				if (projection != null) {
+					compiled.add(new ProjectionAbstractor(projection));
+					projection = null;
+				} else {
+					// no projection to fuse
+				}
+				compiled.add(stage);
+			}
+		}
+		if (projection != null) {
+			compiled.add(new ProjectionAbstractor(projection));
+		} else {
+			// no projection to fuse
+		}
+		return new PipelineAbstractor(compiled);
+	}
+
+	@Override
+	public String toString() {
+		return "Pipeline" + stages;
+	}
+}
@@ -0,0 +1,48 @@
+package org.conceptmanager.abstraction.impl;
+
+import org.conceptmanager.abstraction.Abstractor;
+import org.conceptmanager.abstraction.ProjectingAbstractor;
+import org.conceptmanager.abstraction.Projection;
+import org.conceptmanager.modeling.Model;
+
+/**
+ * A {@link ProjectionAbstractor} is an {@link Abstractor} applying a given
+ * {@link Projection}. Each abstraction is a view on the abstracted
+ * {@link Model}, as provided by {@link Projection#apply(Model)}, so it changes
+ * with the abstracted {@link Model}.
+ * 
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ * 
+ */
+public class ProjectionAbstractor implements ProjectingAbstractor<Model> {
+
+	private final Projection projection;
+
+	/**
+	 * 
+	 * @param projection
+	 *            the {@link Projection} to apply
+	 */
+	public ProjectionAbstractor(Projection projection) {
+		if (projection == null) {
+			throw new NullPointerException("No projection has been provided.");
+		} else {
+			this.projection = projection;
+		}
+	}
+
+	@Override
+	public Projection getProjection() {
+		return projection;
+	}
+
+	@Override
+	public Model abstracts(Model model) {
+		return projection.apply(model);
+	}
+
+	@Override
+	public String toString() {
+		return "Projection" + projection;
+	}
+}
@@ -0,0 +1,429 @@
+package org.conceptmanager.action.impl;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.conceptmanager.action.Actuator;
+
+/**
+ * An {@link ActuationDispatcher} runs {@link Actuator}s asynchronously, so the
+ * component deciding to act is not blocked by slow {@link Actuator}s. Each
+ * trigger is queued with a priority and the queued triggers are run, highest
+ * priority first, on a {@link ScheduledExecutorService}, with at most a given
+ * number of {@link Actuator}s running at the same time.<br/>
+ * <br/>
+ * An {@link Actuator} already waiting in the queue is not queued twice: the
+ * new trigger is coalesced with the pending one, which keeps the highest
+ * priority. An {@link Actuator} never runs concurrently with itself and a
+ * minimal interval between two runs can be set for each {@link Actuator}
+ * through {@link #setRateLimit(Actuator, long, TimeUnit)}. The queue depth
+ * and the latencies are provided by {@link #getMetrics()}.
+ * 
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ * 
+ */
+public class ActuationDispatcher {
+
+	/**
+	 * A {@link DispatcherMetrics} is a snapshot of the metrics of an
+	 * {@link ActuationDispatcher}.
+	 * 
+	 * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+	 * 
+	 */
+	public static class DispatcherMetrics {
+		private final int queueDepth;
+		private final long executed;
+		private final long coalesced;
+		private final long failures;
+		private final long totalWait;
+		private final long maxWait;
+		private final long totalExecution;
+		private final long maxExecution;
+
+		private DispatcherMetrics(int queueDepth, long executed,
+				long coalesced, long failures, long totalWait, long maxWait,
+				long totalExecution, long maxExecution) {
+			this.queueDepth = queueDepth;
+			this.executed = executed;
+			this.coalesced = coalesced;
+			this.failures = failures;
+			this.totalWait = totalWait;
+			this.maxWait = maxWait;
+			this.totalExecution = totalExecution;
+			this.maxExecution = maxExecution;
+		}
+
+		/**
+		 * 
+		 * @return the number of triggers waiting in the queue
+		 */
+		public int getQueueDepth() {
+			return queueDepth;
+		}
+
+		/**
+		 * 
+		 * @return the number of {@link Actuator} runs finished, including the
+		 *         failed ones
+		 */
+		public long getExecuted() {
+			return executed;
+		}
+
+		/**
+		 * 
+		 * @return the number of triggers coalesced with a pending one
+		 */
+		public long getCoalesced() {
+			return coalesced;
+		}
+
+		/**
+		 * 
+		 * @return the number of {@link Actuator} runs which have thrown an
+		 *         exception or could not be started
+		 */
+		public long getFailures() {
+			return failures;
+		}
+
+		/**
+		 * 
+		 * @param unit
+		 *            the {@link TimeUnit} of the result
+		 * @return the mean time between a trigger and the start of its run
+		 */
+		public long getMeanWait(TimeUnit unit) {
+			return executed == 0 ? 0 : unit.convert(totalWait / executed,
+					TimeUnit.NANOSECONDS);
+		}
+
+		/**
+		 * 
+		 * @param unit
+		 *            the {@link TimeUnit} of the result
+		 * @return the maximum time between a trigger and the start of its run
+		 */
+		public long getMaxWait(TimeUnit unit) {
+			return unit.convert(maxWait, TimeUnit.NANOSECONDS);
+		}
+
+		/**
+		 * 
+		 * @param unit
+		 *            the {@link TimeUnit} of the result
+		 * @return the mean duration of the runs
+		 */
+		public long getMeanExecution(TimeUnit unit) {
+			return executed == 0 ? 0 : unit.convert(totalExecution / executed,
+					TimeUnit.NANOSECONDS);
+		}
+
+		/**
+		 * 
+		 * @param unit
+		 *            the {@link TimeUnit} of the result
+		 * @return the maximum duration of the runs
+		 */
+		public long getMaxExecution(TimeUnit unit) {
+			return unit.convert(maxExecution, TimeUnit.NANOSECONDS);
+		}
+
+		@Override
+		public String toString() {
+			return "queue=" + queueDepth + ", executed=" + executed
+					+ ", coalesced=" + coalesced + ", failures=" + failures
+					+ ", maxWait=" + maxWait + "ns, maxExecution="
+					+ maxExecution + "ns";
+		}
+	}
+
+	private final ScheduledExecutorService executor;
+	private final int parallelism;
+	private final Object lock = new Object();
+	private final TreeSet<Trigger> queue = new TreeSet<Trigger>();
+	private final Map<Actuator, Trigger> pending = new HashMap<Actuator, Trigger>();
+	private final Set<Actuator> running = new HashSet<Actuator>();
+	private final Map<Actuator, Long> intervals = new HashMap<Actuator, Long>();
+	private final Map<Actuator, Long> lastStarts = new HashMap<Actuator, Long>();
+	private int active = 0;
+	private long sequence = 0;
+	private ScheduledFuture<?> wakeUp = null;
+	private long wakeUpTime;
+	private long executed = 0;
+	private long coalesced = 0;
+	private long failures = 0;
+	private long totalWait = 0;
+	private long maxWait = 0;
+	private long totalExecution = 0;
+	private long maxExecution = 0;
+
+	/**
+	 * 
+	 * @param executor
+	 *            the {@link ScheduledExecutorService} running the
+	 *            {@link Actuator}s
+	 * @param parallelism
+	 *            the maximum number of {@link Actuator}s running at the same
+	 *            time
+	 */
+	public ActuationDispatcher(ScheduledExecutorService executor,
+			int parallelism) {
+		if (executor == null) {
+			throw new NullPointerException("No executor has been provided.");
+		} else if (parallelism < 1) {
+			throw new IllegalArgumentException("Invalid parallelism: "
+					+ parallelism);
+		} else {
+			this.executor = executor;
+			this.parallelism = parallelism;
+		}
+	}
+
+	/**
+	 * Queue a run of an {@link Actuator}. If the {@link Actuator} is already
+	 * waiting in the queue, no new run is queued, but the pending one takes
+	 * the highest of both priorities.
+	 * 
+	 * @param actuator
+	 *            the {@link Actuator} to run
+	 * @param priority
+	 *            the priority of the run, the highest running first
+	 * @return <code>true</code> if a new run has been queued,
+	 *         <code>false</code> if the trigger has been coalesced with a
+	 *         pending one
+	 */
+	public boolean trigger(Actuator actuator, int priority) {
+		synchronized (lock) {
+			Trigger trigger = pending.get(actuator);
+			boolean isNew;
+			if (trigger == null) {
+				trigger = new Trigger(actuator, priority, sequence++,
+						System.nanoTime());
+				pending.put(actuator, trigger);
+				queue.add(trigger);
+				isNew = true;
+			} else {
+				if (priority > trigger.priority) {
+					queue.remove(trigger);
+					trigger.priority = priority;
+					queue.add(trigger);
+				} else {
+					// keep the current priority
+				}
+				coalesced++;
+				isNew = false;
+			}
+			dispatch();
+			return isNew;
+		}
+	}
+
+	/**
+	 * Set the minimal time between the starts of two runs of an
+	 * {@link Actuator}. A zero interval removes the limit.
+	 * 
+	 * @param actuator
+	 *            the {@link Actuator} to limit
+	 * @param interval
+	 *            the minimal interval between two runs
+	 * @param unit
+	 *            the {@link TimeUnit} of the interval
+	 */
+	public void setRateLimit(Actuator actuator, long interval, TimeUnit unit) {
+		synchronized (lock) {
+			if (interval <= 0) {
+				intervals.remove(actuator);
+			} else {
+				intervals.put(actuator, unit.toNanos(interval));
+			}
+			dispatch();
+		}
+	}
+
+	/**
+	 * 
+	 * @return the number of triggers waiting in the queue
+	 */
+	public int getQueueDepth() {
+		synchronized (lock) {
+			return queue.size();
+		}
+	}
+
+	/**
+	 * 
+	 * @return a snapshot of the current metrics
+	 */
+	public DispatcherMetrics getMetrics() {
+		synchronized (lock) {
+			return new DispatcherMetrics(queue.size(), executed, coalesced,
+					failures, totalWait, maxWait, totalExecution, maxExecution);
+		}
+	}
+
+	/**
+	 * Start the runs of the eligible triggers, as long as the parallelism
+	 * allows it. If some triggers wait only for their rate limit, a new
+	 * dispatch is scheduled for the earliest one.
+	 */
+	private void dispatch() {
+		long now = System.nanoTime();
+		Long earliest = null;
+		Iterator<Trigger> iterator = queue.iterator();
+		while (iterator.hasNext()) {
+			Trigger trigger = iterator.next();
+			if (active >= parallelism) {
+				return;
+			} else if (running.contains(trigger.actuator)) {
+				// wait for the current run to finish
+			} else {
+				Long allowed = allowedStart(trigger.actuator);
+				if (allowed != null && allowed - now > 0) {
+					earliest = earliest == null || allowed - earliest < 0 ? allowed
+							: earliest;
+				} else {
+					iterator.remove();
+					start(trigger, now);
+				}
+			}
+		}
+		if (earliest != null) {
+			scheduleWakeUp(earliest, now);
+		} else {
+			// nothing waits for its rate limit
+		}
+	}
+
+	/**
+	 * 
+	 * @return the earliest start allowed by the rate limit,
+	 *         <code>null</code> if there is no constraint
+	 */
+	private Long allowedStart(Actuator actuator) {
+		Long interval = intervals.get(actuator);
+		Long lastStart = lastStarts.get(actuator);
+		if (interval == null || lastStart == null) {
+			return null;
+		} else {
+			return lastStart + interval;
+		}
+	}
+
+	private void scheduleWakeUp(long time, long now) {
+		if (wakeUp != null && !wakeUp.isDone() && wakeUpTime - time <= 0) {
+			// an earlier wake up is already scheduled
+		} else {
+			if (wakeUp != null) {
+				wakeUp.cancel(false);
+			} else {
+				// first wake up
+			}
+			wakeUpTime = time;
+			try {
+				wakeUp = executor.schedule(new Runnable() {
+
+					@Override
+					public void run() {
+						synchronized (lock) {
+							wakeUp = null;
+							dispatch();
+						}
+					}
+				}, time - now, TimeUnit.NANOSECONDS);
+			} catch (RejectedExecutionException e) {
+				wakeUp = null;
+			}
+		}
+	}
+
+	/**
+	 * Run a trigger already removed from the queue.
+	 */
+	private void start(final Trigger trigger, long now) {
+		pending.remove(trigger.actuator);
+		running.add(trigger.actuator);
+		lastStarts.put(trigger.actuator, now);
+		active++;
+		long wait = now - trigger.time;
+		totalWait += wait;
+		maxWait = Math.max(maxWait, wait);
+		try {
+			executor.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					long start = System.nanoTime();
+					boolean isFailed = false;
+					try {
+						trigger.actuator.acts();
+					} catch (RuntimeException e) {
+						isFailed = true;
+					} finally {
+						finish(trigger, System.nanoTime() - start, isFailed);
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			// still dispatching, so no new dispatch
+			release(trigger, 0, true);
+		}
+	}
+
+	private void finish(Trigger trigger, long duration, boolean isFailed) {
+		synchronized (lock) {
+			release(trigger, duration, isFailed);
+			dispatch();
+		}
+	}
+
+	private void release(Trigger trigger, long duration, boolean isFailed) {
+		active--;
+		running.remove(trigger.actuator);
+		executed++;
+		if (isFailed) {
+			failures++;
+		} else {
+			// success
+		}
+		totalExecution += duration;
+		maxExecution = Math.max(maxExecution, duration);
+	}
+
+	/**
+	 * A pending run, ordered by decreasing priority then by arrival.
+	 */
+	private static class Trigger implements Comparable<Trigger> {
+		private final Actuator actuator;
+		private int priority;
+		private final long sequence;
+		private final long time;
+
+		public Trigger(Actuator actuator, int priority, long sequence,
+				long time) {
+			this.actuator = actuator;
+			this.priority = priority;
+			this.sequence = sequence;
+			this.time = time;
+		}
+
+		@Override
+		public int compareTo(Trigger trigger) {
+			if (priority != trigger.priority) {
+				return priority > trigger.priority ? -1 : 1;
+			} else {
+				return sequence < trigger.sequence ? -1
+						: sequence > trigger.sequence ? 1 : 0;
+			}
+		}
+	}
+}
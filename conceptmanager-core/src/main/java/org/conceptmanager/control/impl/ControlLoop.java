@@ -0,0 +1,551 @@
+package org.conceptmanager.control.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.conceptmanager.abstraction.Abstractor;
+import org.conceptmanager.action.Actuator;
+import org.conceptmanager.action.impl.ActuationDispatcher;
+import org.conceptmanager.evaluation.Evaluator;
+import org.conceptmanager.modeling.Model;
+import org.conceptmanager.modeling.impl.ChangeBatcher;
+import org.conceptmanager.modeling.impl.DynamicModel;
+import org.conceptmanager.modeling.impl.StaticModel;
+import org.conceptmanager.sensing.Sensor;
+
+/**
+ * A {@link ControlLoop} connects {@link Sensor}s, {@link Model}s,
+ * {@link Abstractor}s and {@link Actuator}s in a loop running at a fixed rate.
+ * Each tick goes through the {@link Stage}s in order:
+ * <ol>
+ * <li>{@link Stage#SENSE}: each {@link Sensor} is sensed and its {@link Value}
+ * is assigned to its {@link Attribute}</li>
+ * <li>{@link Stage#MODEL}: the derived {@link Attribute}s are evaluated on the
+ * sensed {@link Model}, and all of them are snapshot in the tick
+ * {@link Model}</li>
+ * <li>{@link Stage#ABSTRACT}: each {@link Abstractor} abstracts the tick
+ * {@link Model}</li>
+ * <li>{@link Stage#ACT}: each {@link Policy} decides which {@link Actuator}s to
+ * trigger through the {@link ActuationDispatcher}, so slow {@link Actuator}s do
+ * not delay the loop</li>
+ * </ol>
+ * Each {@link Stage} can have a time budget: a {@link Stage} exceeding it is
+ * counted as an overrun. If a tick exceeds the period of the loop before all
+ * its {@link Stage}s are done, the remaining {@link Stage}s are abandoned, and
+ * the ticks which start more than a period late are skipped rather than run in
+ * a burst, so the loop keeps its frequency under load. These counts and the
+ * duration of each {@link Stage} are provided by {@link #getMetrics()}.<br/>
+ * <br/>
+ * A failing {@link Sensor}, {@link Evaluator}, {@link Abstractor} or
+ * {@link Policy} does not stop the loop: the failure is counted for its
+ * {@link Stage} and the {@link Stage} goes on with the next one, a failed
+ * {@link Sensor} or {@link Evaluator} providing a <code>null</code>
+ * {@link Value} and a failed {@link Abstractor} a <code>null</code>
+ * abstraction.<br/>
+ * <br/>
+ * The {@link ChangeBatcher}s added are flushed at the end of each tick, even
+ * an abandoned one, so the changes of the observed {@link Model}s are
+ * delivered once per tick.
+ * 
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ * 
+ */
+public class ControlLoop {
+
+	/**
+	 * The successive stages of a tick.
+	 * 
+	 * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+	 * 
+	 */
+	public static enum Stage {
+		SENSE, MODEL, ABSTRACT, ACT
+	}
+
+	/**
+	 * A {@link Policy} decides which {@link Actuator}s to trigger given the
+	 * {@link Model} of a tick and its abstractions.
+	 * 
+	 * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+	 * 
+	 */
+	public static interface Policy {
+		/**
+		 * 
+		 * @param model
+		 *            the {@link Model} of the tick
+		 * @param abstractions
+		 *            the abstractions of the {@link Model}, in the order of
+		 *            the {@link Abstractor}s
+		 * @param dispatcher
+		 *            the {@link ActuationDispatcher} to trigger the
+		 *            {@link Actuator}s with
+		 */
+		public void decide(Model model, List<Model> abstractions,
+				ActuationDispatcher dispatcher);
+	}
+
+	/**
+	 * A {@link LoopMetrics} is a snapshot of the metrics of a
+	 * {@link ControlLoop}.
+	 * 
+	 * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+	 * 
+	 */
+	public static class LoopMetrics {
+		private final long ticks;
+		private final long skipped;
+		private final long abandoned;
+		private final long flushFailures;
+		private final long[] runs;
+		private final long[] overruns;
+		private final long[] failures;
+		private final long[] lastDurations;
+		private final long[] maxDurations;
+		private final long[] totalDurations;
+
+		private LoopMetrics(long ticks, long skipped, long abandoned,
+				long flushFailures, long[] runs, long[] overruns,
+				long[] failures, long[] lastDurations, long[] maxDurations,
+				long[] totalDurations) {
+			this.ticks = ticks;
+			this.skipped = skipped;
+			this.abandoned = abandoned;
+			this.flushFailures = flushFailures;
+			this.runs = runs.clone();
+			this.overruns = overruns.clone();
+			this.failures = failures.clone();
+			this.lastDurations = lastDurations.clone();
+			this.maxDurations = maxDurations.clone();
+			this.totalDurations = totalDurations.clone();
+		}
+
+		/**
+		 * 
+		 * @return the number of ticks run
+		 */
+		public long getTicks() {
+			return ticks;
+		}
+
+		/**
+		 * 
+		 * @return the number of ticks skipped because they started more than
+		 *         a period late
+		 */
+		public long getSkipped() {
+			return skipped;
+		}
+
+		/**
+		 * 
+		 * @return the number of ticks which exceeded the period before
+		 *         running all their {@link Stage}s
+		 */
+		public long getAbandoned() {
+			return abandoned;
+		}
+
+		/**
+		 * 
+		 * @param stage
+		 *            a {@link Stage}
+		 * @return the number of times the {@link Stage} exceeded its budget
+		 */
+		public long getOverruns(Stage stage) {
+			return overruns[stage.ordinal()];
+		}
+
+		/**
+		 * 
+		 * @param stage
+		 *            a {@link Stage}
+		 * @return the number of {@link Sensor}s, {@link Evaluator}s,
+		 *         {@link Abstractor}s or {@link Policy}s which failed during
+		 *         the {@link Stage}
+		 */
+		public long getFailures(Stage stage) {
+			return failures[stage.ordinal()];
+		}
+
+		/**
+		 * 
+		 * @return the number of {@link ChangeBatcher}s which failed to flush
+		 */
+		public long getFlushFailures() {
+			return flushFailures;
+		}
+
+		/**
+		 * 
+		 * @param stage
+		 *            a {@link Stage}
+		 * @param unit
+		 *            the {@link TimeUnit} of the result
+		 * @return the duration of the last run of the {@link Stage}
+		 */
+		public long getLastDuration(Stage stage, TimeUnit unit) {
+			return unit.convert(lastDurations[stage.ordinal()],
+					TimeUnit.NANOSECONDS);
+		}
+
+		/**
+		 * 
+		 * @param stage
+		 *            a {@link Stage}
+		 * @param unit
+		 *            the {@link TimeUnit} of the result
+		 * @return the maximum duration of the {@link Stage}
+		 */
+		public long getMaxDuration(Stage stage, TimeUnit unit) {
+			return unit.convert(maxDurations[stage.ordinal()],
+					TimeUnit.NANOSECONDS);
+		}
+
+		/**
+		 * 
+		 * @param stage
+		 *            a {@link Stage}
+		 * @param unit
+		 *            the {@link TimeUnit} of the result
+		 * @return the mean duration of the {@link Stage}
+		 */
+		public long getMeanDuration(Stage stage, TimeUnit unit) {
+			int index = stage.ordinal();
+			return runs[index] == 0 ? 0 : unit.convert(totalDurations[index]
+					/ runs[index], TimeUnit.NANOSECONDS);
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder builder = new StringBuilder();
+			builder.append("ticks=" + ticks + ", skipped=" + skipped
+					+ ", abandoned=" + abandoned);
+			for (Stage stage : Stage.values()) {
+				builder.append(", " + stage + "=" + maxDurations[stage.ordinal()]
+						+ "ns max/" + overruns[stage.ordinal()] + " overruns/"
+						+ failures[stage.ordinal()] + " failures");
+			}
+			return builder.toString();
+		}
+	}
+
+	private final ScheduledExecutorService scheduler;
+	private final ActuationDispatcher dispatcher;
+	private final long period;
+	private final Map<Object, Sensor<?>> sensors = new LinkedHashMap<Object, Sensor<?>>();
+	private final List<Evaluator<?, ?>> evaluators = new ArrayList<Evaluator<?, ?>>();
+	private final List<Abstractor<?>> abstractors = new ArrayList<Abstractor<?>>();
+	private final List<Policy> policies = new ArrayList<Policy>();
+	private final List<ChangeBatcher> batchers = new ArrayList<ChangeBatcher>();
+	private final long[] budgets = new long[Stage.values().length];
+	private ScheduledFuture<?> future = null;
+	private long start;
+	private long tickIndex;
+	private Model model = null;
+	private List<Model> abstractions = Collections.emptyList();
+	private long ticks = 0;
+	private long skipped = 0;
+	private long abandoned = 0;
+	private long flushFailures = 0;
+	private final long[] runs = new long[Stage.values().length];
+	private final long[] overruns = new long[Stage.values().length];
+	private final long[] failures = new long[Stage.values().length];
+	private final long[] lastDurations = new long[Stage.values().length];
+	private final long[] maxDurations = new long[Stage.values().length];
+	private final long[] totalDurations = new long[Stage.values().length];
+
+	/**
+	 * 
+	 * @param scheduler
+	 *            the {@link ScheduledExecutorService} running the ticks
+	 * @param dispatcher
+	 *            the {@link ActuationDispatcher} running the {@link Actuator}s
+	 * @param period
+	 *            the time between two ticks
+	 * @param unit
+	 *            the {@link TimeUnit} of the period
+	 */
+	public ControlLoop(ScheduledExecutorService scheduler,
+			ActuationDispatcher dispatcher, long period, TimeUnit unit) {
+		if (scheduler == null) {
+			throw new NullPointerException("No scheduler has been provided.");
+		} else if (dispatcher == null) {
+			throw new NullPointerException("No dispatcher has been provided.");
+		} else if (period <= 0) {
+			throw new IllegalArgumentException("Invalid period: " + period);
+		} else {
+			this.scheduler = scheduler;
+			this.dispatcher = dispatcher;
+			this.period = unit.toNanos(period);
+		}
+	}
+
+	/**
+	 * 
+	 * @param attribute
+	 *            the {@link Attribute} providing the {@link Value} of the
+	 *            {@link Sensor} in the tick {@link Model}
+	 * @param sensor
+	 *            the {@link Sensor} to sense at each tick
+	 */
+	public synchronized <Attribute> void addSensor(Attribute attribute,
+			Sensor<?> sensor) {
+		sensors.put(attribute, sensor);
+	}
+
+	/**
+	 * Add a derived {@link Attribute}. The {@link Evaluator} is applied on the
+	 * {@link Model} of the sensed {@link Value}s.
+	 * 
+	 * @param evaluator
+	 *            the {@link Evaluator} providing the derived {@link Attribute}
+	 */
+	public synchronized void addEvaluator(Evaluator<?, ?> evaluator) {
+		evaluators.add(evaluator);
+	}
+
+	/**
+	 * 
+	 * @param abstractor
+	 *            the {@link Abstractor} to apply on the tick {@link Model}
+	 */
+	public synchronized void addAbstractor(Abstractor<?> abstractor) {
+		abstractors.add(abstractor);
+	}
+
+	/**
+	 * 
+	 * @param policy
+	 *            the {@link Policy} deciding the {@link Actuator}s to trigger
+	 */
+	public synchronized void addPolicy(Policy policy) {
+		policies.add(policy);
+	}
+
+	/**
+	 * 
+	 * @param batcher
+	 *            the {@link ChangeBatcher} to flush at the end of each tick
+	 */
+	public synchronized void addBatcher(ChangeBatcher batcher) {
+		batchers.add(batcher);
+	}
+
+	/**
+	 * 
+	 * @param stage
+	 *            the {@link Stage} to budget
+	 * @param budget
+	 *            the time allowed to the {@link Stage}, 0 for no budget
+	 * @param unit
+	 *            the {@link TimeUnit} of the budget
+	 */
+	public synchronized void setBudget(Stage stage, long budget, TimeUnit unit) {
+		budgets[stage.ordinal()] = unit.toNanos(budget);
+	}
+
+	/**
+	 * Start running the ticks at a fixed rate, the first one immediately.
+	 */
+	public synchronized void start() {
+		if (future != null) {
+			throw new IllegalStateException("The loop is already started.");
+		} else {
+			start = System.nanoTime();
+			tickIndex = 0;
+			future = scheduler.scheduleAtFixedRate(new Runnable() {
+
+				@Override
+				public void run() {
+					scheduledTick();
+				}
+			}, 0, period, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	/**
+	 * Stop running the ticks. The tick currently running, if any, is
+	 * finished.
+	 */
+	public synchronized void stop() {
+		if (future != null) {
+			future.cancel(false);
+			future = null;
+		} else {
+			// not started
+		}
+	}
+
+	private synchronized void scheduledTick() {
+		long due = start + tickIndex * period;
+		tickIndex++;
+		if (System.nanoTime() - due >= period) {
+			skipped++;
+		} else {
+			tick(due);
+		}
+	}
+
+	/**
+	 * Run a single tick immediately, independently of the scheduled ones.
+	 */
+	public synchronized void tick() {
+		tick(System.nanoTime());
+	}
+
+	private void tick(long due) {
+		ticks++;
+		try {
+			runStages(due + period);
+		} finally {
+			for (ChangeBatcher batcher : batchers) {
+				try {
+					batcher.flush();
+				} catch (RuntimeException e) {
+					flushFailures++;
+				}
+			}
+		}
+	}
+
+	private void runStages(long deadline) {
+		long stageStart = System.nanoTime();
+		Map<Object, Object> sensed = new LinkedHashMap<Object, Object>();
+		for (Entry<Object, Sensor<?>> entry : sensors.entrySet()) {
+			Object value;
+			try {
+				value = entry.getValue().sense();
+			} catch (RuntimeException e) {
+				failures[Stage.SENSE.ordinal()]++;
+				value = null;
+			}
+			sensed.put(entry.getKey(), value);
+		}
+		stageStart = measure(Stage.SENSE, stageStart);
+		if (isLate(deadline, stageStart)) {
+			return;
+		} else {
+			// continue
+		}
+
+		StaticModel sensedModel = new StaticModel(sensed);
+		if (evaluators.isEmpty()) {
+			model = sensedModel;
+		} else {
+			DynamicModel derived = new DynamicModel(sensedModel, evaluators);
+			Map<Object, Object> values = new LinkedHashMap<Object, Object>(
+					sensed);
+			for (Evaluator<?, ?> evaluator : evaluators) {
+				Object attribute = evaluator.getAttribute();
+				Object value;
+				try {
+					value = derived.getValueFor(attribute);
+				} catch (RuntimeException e) {
+					failures[Stage.MODEL.ordinal()]++;
+					value = null;
+				}
+				values.put(attribute, value);
+			}
+			model = new StaticModel(values);
+		}
+		stageStart = measure(Stage.MODEL, stageStart);
+		if (isLate(deadline, stageStart)) {
+			return;
+		} else {
+			// continue
+		}
+
+		List<Model> abstractions = new ArrayList<Model>(abstractors.size());
+		for (Abstractor<?> abstractor : abstractors) {
+			Model abstraction;
+			try {
+				abstraction = abstractor.abstracts(model);
+			} catch (RuntimeException e) {
+				failures[Stage.ABSTRACT.ordinal()]++;
+				abstraction = null;
+			}
+			abstractions.add(abstraction);
+		}
+		this.abstractions = Collections.unmodifiableList(abstractions);
+		stageStart = measure(Stage.ABSTRACT, stageStart);
+		if (isLate(deadline, stageStart)) {
+			return;
+		} else {
+			// continue
+		}
+
+		for (Policy policy : policies) {
+			try {
+				policy.decide(model, this.abstractions, dispatcher);
+			} catch (RuntimeException e) {
+				failures[Stage.ACT.ordinal()]++;
+			}
+		}
+		measure(Stage.ACT, stageStart);
+	}
+
+	/**
+	 * Record the duration of a {@link Stage}.
+	 * 
+	 * @return the end of the {@link Stage}
+	 */
+	private long measure(Stage stage, long stageStart) {
+		long end = System.nanoTime();
+		long duration = end - stageStart;
+		int index = stage.ordinal();
+		runs[index]++;
+		lastDurations[index] = duration;
+		maxDurations[index] = Math.max(maxDurations[index], duration);
+		totalDurations[index] += duration;
+		if (budgets[index] > 0 && duration > budgets[index]) {
+			overruns[index]++;
+		} else {
+			// within budget
+		}
+		return end;
+	}
+
+	private boolean isLate(long deadline, long now) {
+		if (now - deadline > 0) {
+			abandoned++;
+			return true;
+		} else {
+			return false;
+		}
+	}
+
+	/**
+	 * 
+	 * @return the {@link Model} built by the last tick, <code>null</code> if
+	 *         no tick has been run
+	 */
+	public synchronized Model getModel() {
+		return model;
+	}
+
+	/**
+	 * 
+	 * @return the abstractions built by the last tick, in the order of the
+	 *         {@link Abstractor}s
+	 */
+	public synchronized List<Model> getAbstractions() {
+		return abstractions;
+	}
+
+	/**
+	 * 
+	 * @return a snapshot of the current metrics
+	 */
+	public synchronized LoopMetrics getMetrics() {
+		return new LoopMetrics(ticks, skipped, abandoned, flushFailures, runs,
+				overruns, failures, lastDurations, maxDurations, totalDurations);
+	}
+}
@@ -0,0 +1,29 @@
+package org.conceptmanager.evaluation;
+
+import java.util.Collection;
+
+import org.conceptmanager.modeling.Model;
+
+/**
+ * A {@link DependentEvaluator} is an {@link Evaluator} of {@link Model}s
+ * which tells which {@link Attribute}s of the evaluated {@link Model} it
+ * reads. Thus, when the evaluated {@link Model} changes, only the
+ * {@link Attribute}s depending on the changed ones need to be updated. An
+ * {@link Evaluator} which does not implement this interface is assumed to
+ * depend on all the {@link Attribute}s of the evaluated object.
+ * 
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ * 
+ * @param <Attribute>
+ * @param <Value>
+ */
+public interface DependentEvaluator<Attribute, Value> extends
+		Evaluator<Attribute, Value> {
+
+	/**
+	 * 
+	 * @return the {@link Attribute}s of the evaluated {@link Model} read by
+	 *         this {@link Evaluator}
+	 */
+	public <Dependency> Collection<? extends Dependency> getDependencies();
+}
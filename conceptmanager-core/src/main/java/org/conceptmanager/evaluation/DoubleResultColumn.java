@@ -0,0 +1,149 @@
+package org.conceptmanager.evaluation;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A {@link DoubleResultColumn} is the primitive counterpart of a
+ * {@link ResultColumn} for numeric {@link Attribute}s, as provided by
+ * {@link Evaluator#evaluatesAllAsDoubles(java.util.List, DoubleResultColumn)}. The
+ * {@link Value}s are stored in a <code>double</code> array, while the unknown
+ * {@link Value}s and the failures are flagged in {@link BitSet}s. An unknown
+ * or failed row has the {@link Value} Double.NaN.
+ * 
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ * 
+ */
+public class DoubleResultColumn {
+
+	private final double[] values;
+	private final BitSet unknown = new BitSet();
+	private final BitSet failures = new BitSet();
+
+	/**
+	 * 
+	 * @param size
+	 *            the number of rows
+	 */
+	public DoubleResultColumn(int size) {
+		this.values = new double[size];
+	}
+
+	/**
+	 * 
+	 * @return the number of rows
+	 */
+	public int size() {
+		return values.length;
+	}
+
+	/**
+	 * 
+	 * @param row
+	 *            the row to set
+	 * @param value
+	 *            the {@link Value} evaluated
+	 */
+	public void setDouble(int row, double value) {
+		values[row] = value;
+		unknown.clear(row);
+		failures.clear(row);
+	}
+
+	/**
+	 * 
+	 * @param row
+	 *            the row which {@link Value} is unknown
+	 */
+	public void setUnknown(int row) {
+		values[row] = Double.NaN;
+		unknown.set(row);
+		failures.clear(row);
+	}
+
+	/**
+	 * 
+	 * @param row
+	 *            the row which evaluation failed
+	 */
+	public void setFailed(int row) {
+		values[row] = Double.NaN;
+		unknown.clear(row);
+		failures.set(row);
+	}
+
+	/**
+	 * 
+	 * @param row
+	 *            the row to set
+	 * @param outcome
+	 *            the {@link Outcome} of the evaluation, a non-{@link Value}
+	 *            {@link Outcome} or a non-{@link Number} {@link Value} being a
+	 *            failure
+	 */
+	public void set(int row, Outcome<?> outcome) {
+		Object value = outcome.getValue();
+		if (!outcome.isValue()) {
+			setFailed(row);
+		} else if (value == null) {
+			setUnknown(row);
+		} else if (value instanceof Number) {
+			setDouble(row, ((Number) value).doubleValue());
+		} else {
+			setFailed(row);
+		}
+	}
+
+	/**
+	 * 
+	 * @param row
+	 *            the row to read
+	 * @return the {@link Value} of the row, Double.NaN if it is unknown or if the
+	 *         evaluation failed
+	 */
+	public double getDouble(int row) {
+		return values[row];
+	}
+
+	/**
+	 * 
+	 * @param row
+	 *            the row to read
+	 * @return <code>true</code> if the {@link Value} of the row is unknown
+	 */
+	public boolean isUnknown(int row) {
+		return unknown.get(row);
+	}
+
+	/**
+	 * 
+	 * @param row
+	 *            the row to read
+	 * @return <code>true</code> if the evaluation of the row failed
+	 */
+	public boolean isFailed(int row) {
+		return failures.get(row);
+	}
+
+	/**
+	 * 
+	 * @return the rows which evaluation failed
+	 */
+	public BitSet getFailures() {
+		return (BitSet) failures.clone();
+	}
+
+	/**
+	 * 
+	 * @return a copy of the {@link Value}s of all the rows
+	 */
+	public double[] toDoubleArray() {
+		return values.clone();
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(values) + " unknown " + unknown + " failed "
+				+ failures;
+	}
+}
@@ -1,5 +1,7 @@
 package org.conceptmanager.evaluation;
 
+import java.util.List;
+
 /**
  * An {@link Evaluator} allows to valuate an object on a specific
  * {@link Attribute}. This valuation can be quantitative, such as evaluating the
@@ -39,8 +41,103 @@ public interface Evaluator<Attribute, Value> {
 	 */
 	public Value evaluates(Object object) throws CannotEvaluateException;
 
+	/**
+	 * This method evaluates the object like {@link #evaluates(Object)}, but
+	 * notifies a failure through a failed {@link Outcome} rather than through
+	 * a {@link CannotEvaluateException}. By default, it relies on
+	 * {@link #evaluates(Object)}, but {@link Evaluator}s which often fail
+	 * should override it to avoid building exceptions, and implement
+	 * {@link #evaluates(Object)} on top of it instead. The default failure
+	 * has a generic reason, so no message is built.
+	 * 
+	 * @param object
+	 *            the object we want to evaluate the {@link Attribute} of
+	 * @return the {@link Outcome} of the evaluation
+	 */
+	public default Outcome<Value> tryEvaluates(Object object) {
+		try {
+			return Outcome.of(evaluates(object));
+		} catch (CannotEvaluateException e) {
+			return Outcome.failed();
+		}
+	}
+
+	/**
+	 * This method evaluates many objects at once and stores the results in a
+	 * {@link ResultColumn}, the row i corresponding to the object i. By
+	 * default, it calls {@link #tryEvaluates(Object)} on each object, but
+	 * {@link Evaluator}s able to process a batch more efficiently (e.g.
+	 * through a single request or a vectorized computation) should override
+	 * it.
+	 * 
+	 * @param objects
+	 *            the objects we want to evaluate the {@link Attribute} of
+	 * @param column
+	 *            the {@link ResultColumn} to fill, having at least as many
+	 *            rows as objects
+	 */
+	public default void evaluatesAll(List<?> objects,
+			ResultColumn<? super Value> column) {
+		int row = 0;
+		for (Object object : objects) {
+			column.set(row++, tryEvaluates(object));
+		}
+	}
+
+	/**
+	 * This method is the <code>double</code> counterpart of
+	 * {@link #evaluatesAll(List, ResultColumn)} for numeric {@link Value}s. A
+	 * {@link Value} which is not a {@link Number} is a failure.
+	 * 
+	 * @param objects
+	 *            the objects we want to evaluate the {@link Attribute} of
+	 * @param column
+	 *            the {@link DoubleResultColumn} to fill, having at least as
+	 *            many rows as objects
+	 */
+	public default void evaluatesAllAsDoubles(List<?> objects,
+			DoubleResultColumn column) {
+		int row = 0;
+		for (Object object : objects) {
+			column.set(row++, tryEvaluates(object));
+		}
+	}
+
+	/**
+	 * This method is the <code>long</code> counterpart of
+	 * {@link #evaluatesAll(List, ResultColumn)} for integral {@link Value}s. A
+	 * {@link Value} which is not an integral {@link Number} is a failure.
+	 * 
+	 * @param objects
+	 *            the objects we want to evaluate the {@link Attribute} of
+	 * @param column
+	 *            the {@link LongResultColumn} to fill, having at least as many
+	 *            rows as objects
+	 */
+	public default void evaluatesAllAsLongs(List<?> objects,
+			LongResultColumn column) {
+		int row = 0;
+		for (Object object : objects) {
+			column.set(row++, tryEvaluates(object));
+		}
+	}
+
+	/**
+	 * A {@link CannotEvaluateException} is thrown when an {@link Evaluator}
+	 * cannot evaluate an object. Failing evaluations being common, it is
+	 * cheap to build: it has no stack trace, its message is built only when
+	 * requested, and it keeps only the type of the object evaluated, so the
+	 * object itself is not retained.
+	 * 
+	 * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+	 * 
+	 */
 	@SuppressWarnings("serial")
 	public static class CannotEvaluateException extends Exception {
+		private final Object attribute;
+		private final Class<?> type;
+		private final String message;
+
 		public <Attribute> CannotEvaluateException(Attribute attribute,
 				Object object) {
 			this(attribute, object, null, null);
@@ -58,8 +155,17 @@ public interface Evaluator<Attribute, Value> {
 
 		public <Attribute> CannotEvaluateException(Attribute attribute,
 				Object object, String message, Throwable cause) {
-			super("We cannot evaluate " + attribute + " on " + object
-					+ (message == null ? "" : ": " + message), cause);
+			super(null, cause, false, false);
+			this.attribute = attribute;
+			this.type = object == null ? null : object.getClass();
+			this.message = message;
+		}
+
+		@Override
+		public String getMessage() {
+			return "We cannot evaluate " + attribute + " on "
+					+ (type == null ? "null" : "a " + type.getName())
+					+ (message == null ? "" : ": " + message);
 		}
 	}
 }
@@ -0,0 +1,226 @@
+package org.conceptmanager.evaluation;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.conceptmanager.modeling.Model;
+
+/**
+ * An {@link Expression} is a small formula computing a {@link Value} from the
+ * {@link Attribute}s of a {@link Model}, like a ratio, a threshold or a
+ * boolean combination. It is an immutable tree built through the static
+ * factories of this class, and two {@link Expression}s built the same way are
+ * equal, so the subexpressions shared by several formulas can be recognized.
+ * An {@link Expression} does not evaluate anything by itself: it is compiled
+ * into {@link Evaluator}s by
+ * {@link org.conceptmanager.evaluation.impl.ExpressionSet}.<br/>
+ * <br/>
+ * The {@link Value}s follow simple rules: an unknown ( <code>null</code>)
+ * operand gives an unknown result, arithmetic on integral {@link Number}s
+ * gives a {@link Long}, otherwise a {@link Double}, and the division always
+ * gives a {@link Double}.
+ *
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ *
+ */
+public final class Expression {
+
+	/**
+	 * The kind of node of an {@link Expression}.
+	 *
+	 * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+	 *
+	 */
+	public static enum Operator {
+		ATTRIBUTE(0), CONSTANT(0), ADD(2), SUBTRACT(2), MULTIPLY(2), DIVIDE(2), NEGATE(
+				1), LESS_THAN(2), GREATER_THAN(2), EQUAL(2), AND(2), OR(2), NOT(
+				1);
+
+		private final int arity;
+
+		private Operator(int arity) {
+			this.arity = arity;
+		}
+
+		/**
+		 *
+		 * @return the number of operands of this {@link Operator}
+		 */
+		public int getArity() {
+			return arity;
+		}
+	}
+
+	private final Operator operator;
+	private final Object value;
+	private final Expression[] operands;
+	private final int hash;
+
+	private Expression(Operator operator, Object value, Expression... operands) {
+		for (Expression operand : operands) {
+			if (operand == null) {
+				throw new NullPointerException(
+						"No operand has been provided for " + operator);
+			} else {
+				// valid operand
+			}
+		}
+		this.operator = operator;
+		this.value = value;
+		this.operands = operands;
+		this.hash = 31 * (31 * operator.hashCode() + (value == null ? 0
+				: value.hashCode())) + Arrays.hashCode(operands);
+	}
+
+	/**
+	 *
+	 * @param attribute
+	 *            the {@link Attribute} to read
+	 * @return the {@link Expression} providing the {@link Value} of this
+	 *         {@link Attribute}
+	 */
+	public static <Attribute> Expression attribute(Attribute attribute) {
+		if (attribute == null) {
+			throw new NullPointerException("No attribute has been provided.");
+		} else {
+			return new Expression(Operator.ATTRIBUTE, attribute);
+		}
+	}
+
+	/**
+	 *
+	 * @param value
+	 *            the constant {@link Value}, <code>null</code> for an unknown
+	 *            one
+	 * @return the {@link Expression} always providing this {@link Value}
+	 */
+	public static <Value> Expression constant(Value value) {
+		return new Expression(Operator.CONSTANT, value);
+	}
+
+	public static Expression add(Expression left, Expression right) {
+		return new Expression(Operator.ADD, null, left, right);
+	}
+
+	public static Expression subtract(Expression left, Expression right) {
+		return new Expression(Operator.SUBTRACT, null, left, right);
+	}
+
+	public static Expression multiply(Expression left, Expression right) {
+		return new Expression(Operator.MULTIPLY, null, left, right);
+	}
+
+	public static Expression divide(Expression left, Expression right) {
+		return new Expression(Operator.DIVIDE, null, left, right);
+	}
+
+	public static Expression negate(Expression operand) {
+		return new Expression(Operator.NEGATE, null, operand);
+	}
+
+	public static Expression lessThan(Expression left, Expression right) {
+		return new Expression(Operator.LESS_THAN, null, left, right);
+	}
+
+	public static Expression greaterThan(Expression left, Expression right) {
+		return new Expression(Operator.GREATER_THAN, null, left, right);
+	}
+
+	public static Expression equal(Expression left, Expression right) {
+		return new Expression(Operator.EQUAL, null, left, right);
+	}
+
+	public static Expression and(Expression left, Expression right) {
+		return new Expression(Operator.AND, null, left, right);
+	}
+
+	public static Expression or(Expression left, Expression right) {
+		return new Expression(Operator.OR, null, left, right);
+	}
+
+	public static Expression not(Expression operand) {
+		return new Expression(Operator.NOT, null, operand);
+	}
+
+	/**
+	 *
+	 * @return the {@link Operator} of this {@link Expression}
+	 */
+	public Operator getOperator() {
+		return operator;
+	}
+
+	/**
+	 *
+	 * @return the {@link Attribute} read by an {@link Operator#ATTRIBUTE}
+	 *         {@link Expression}
+	 * @throws IllegalStateException
+	 *             if this {@link Expression} does not read an {@link Attribute}
+	 */
+	@SuppressWarnings("unchecked")
+	public <Attribute> Attribute getAttribute() {
+		if (operator != Operator.ATTRIBUTE) {
+			throw new IllegalStateException(this + " is not an attribute.");
+		} else {
+			return (Attribute) value;
+		}
+	}
+
+	/**
+	 *
+	 * @return the {@link Value} of an {@link Operator#CONSTANT}
+	 *         {@link Expression}
+	 * @throws IllegalStateException
+	 *             if this {@link Expression} is not a constant
+	 */
+	@SuppressWarnings("unchecked")
+	public <Value> Value getConstant() {
+		if (operator != Operator.CONSTANT) {
+			throw new IllegalStateException(this + " is not a constant.");
+		} else {
+			return (Value) value;
+		}
+	}
+
+	/**
+	 *
+	 * @return the operands of this {@link Expression}, empty for an
+	 *         {@link Attribute} or a constant
+	 */
+	public List<Expression> getOperands() {
+		return Collections.unmodifiableList(Arrays.asList(operands));
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) {
+			return true;
+		} else if (obj instanceof Expression) {
+			Expression other = (Expression) obj;
+			return hash == other.hash
+					&& operator == other.operator
+					&& (value == null ? other.value == null : value
+							.equals(other.value))
+					&& Arrays.equals(operands, other.operands);
+		} else {
+			return false;
+		}
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public String toString() {
+		if (operator == Operator.ATTRIBUTE) {
+			return "" + value;
+		} else if (operator == Operator.CONSTANT) {
+			return "'" + value + "'";
+		} else {
+			return operator + Arrays.toString(operands);
+		}
+	}
+}
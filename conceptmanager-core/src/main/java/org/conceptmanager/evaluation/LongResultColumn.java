@@ -0,0 +1,161 @@
+package org.conceptmanager.evaluation;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A {@link LongResultColumn} is the primitive counterpart of a
+ * {@link ResultColumn} for numeric {@link Attribute}s, as provided by
+ * {@link Evaluator#evaluatesAllAsLongs(java.util.List, LongResultColumn)}. The
+ * {@link Value}s are stored in a <code>long</code> array, while the unknown
+ * {@link Value}s and the failures are flagged in {@link BitSet}s. An unknown
+ * or failed row has the {@link Value} 0.
+ * 
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ * 
+ */
+public class LongResultColumn {
+
+	private final long[] values;
+	private final BitSet unknown = new BitSet();
+	private final BitSet failures = new BitSet();
+
+	/**
+	 * 
+	 * @param size
+	 *            the number of rows
+	 */
+	public LongResultColumn(int size) {
+		this.values = new long[size];
+	}
+
+	/**
+	 * 
+	 * @return the number of rows
+	 */
+	public int size() {
+		return values.length;
+	}
+
+	/**
+	 * 
+	 * @param row
+	 *            the row to set
+	 * @param value
+	 *            the {@link Value} evaluated
+	 */
+	public void setLong(int row, long value) {
+		values[row] = value;
+		unknown.clear(row);
+		failures.clear(row);
+	}
+
+	/**
+	 * 
+	 * @param row
+	 *            the row which {@link Value} is unknown
+	 */
+	public void setUnknown(int row) {
+		values[row] = 0;
+		unknown.set(row);
+		failures.clear(row);
+	}
+
+	/**
+	 * 
+	 * @param row
+	 *            the row which evaluation failed
+	 */
+	public void setFailed(int row) {
+		values[row] = 0;
+		unknown.clear(row);
+		failures.set(row);
+	}
+
+	/**
+	 * 
+	 * @param row
+	 *            the row to set
+	 * @param outcome
+	 *            the {@link Outcome} of the evaluation, a non-{@link Value}
+	 *            {@link Outcome} or a {@link Value} which is not an integral
+	 *            {@link Number} being a failure
+	 */
+	public void set(int row, Outcome<?> outcome) {
+		Object value = outcome.getValue();
+		if (!outcome.isValue()) {
+			setFailed(row);
+		} else if (value == null) {
+			setUnknown(row);
+		} else if (value instanceof Number && isIntegral((Number) value)) {
+			setLong(row, ((Number) value).longValue());
+		} else {
+			setFailed(row);
+		}
+	}
+
+	private static boolean isIntegral(Number number) {
+		return number instanceof Long || number instanceof Integer
+				|| number instanceof Short || number instanceof Byte
+				|| isIntegral(number.doubleValue());
+	}
+
+	private static boolean isIntegral(double value) {
+		// 2^63 would be saturated to Long.MAX_VALUE
+		return value >= -0x1p63 && value < 0x1p63
+				&& value == Math.rint(value);
+	}
+
+	/**
+	 * 
+	 * @param row
+	 *            the row to read
+	 * @return the {@link Value} of the row, 0 if it is unknown or if the
+	 *         evaluation failed
+	 */
+	public long getLong(int row) {
+		return values[row];
+	}
+
+	/**
+	 * 
+	 * @param row
+	 *            the row to read
+	 * @return <code>true</code> if the {@link Value} of the row is unknown
+	 */
+	public boolean isUnknown(int row) {
+		return unknown.get(row);
+	}
+
+	/**
+	 * 
+	 * @param row
+	 *            the row to read
+	 * @return <code>true</code> if the evaluation of the row failed
+	 */
+	public boolean isFailed(int row) {
+		return failures.get(row);
+	}
+
+	/**
+	 * 
+	 * @return the rows which evaluation failed
+	 */
+	public BitSet getFailures() {
+		return (BitSet) failures.clone();
+	}
+
+	/**
+	 * 
+	 * @return a copy of the {@link Value}s of all the rows
+	 */
+	public long[] toLongArray() {
+		return values.clone();
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(values) + " unknown " + unknown + " failed "
+				+ failures;
+	}
+}
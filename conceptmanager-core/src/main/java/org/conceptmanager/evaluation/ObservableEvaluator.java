@@ -0,0 +1,37 @@
+package org.conceptmanager.evaluation;
+
+/**
+ * An {@link ObservableEvaluator} is an {@link Evaluator} which tells when its
+ * {@link Value}s may have changed, like a {@link Value} set manually. Thus,
+ * the {@link org.conceptmanager.modeling.Model}s using it can propagate the
+ * change rather than being polled.
+ * 
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ * 
+ * @param <Attribute>
+ * @param <Value>
+ */
+public interface ObservableEvaluator<Attribute, Value> extends
+		Evaluator<Attribute, Value> {
+
+	/**
+	 * A {@link Listener} is notified of the changes of the
+	 * {@link ObservableEvaluator}s it is added to.
+	 * 
+	 * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+	 * 
+	 */
+	public static interface Listener {
+		/**
+		 * 
+		 * @param evaluator
+		 *            the {@link Evaluator} which may now provide different
+		 *            {@link Value}s
+		 */
+		public void evaluatorChanged(Evaluator<?, ?> evaluator);
+	}
+
+	public void addListener(Listener listener);
+
+	public void removeListener(Listener listener);
+}
@@ -0,0 +1,160 @@
+package org.conceptmanager.evaluation;
+
+import org.conceptmanager.modeling.Model;
+
+/**
+ * An {@link Outcome} is the result of an evaluation which does not rely on
+ * exceptions to notify a failure, like {@link Evaluator#tryEvaluates(Object)}
+ * or {@link Model#tryGetValueFor(Object)}. It can be:
+ * <ul>
+ * <li>a {@link Value}, possibly <code>null</code> if the {@link Value} is
+ * unknown</li>
+ * <li>absent, when there is nothing to evaluate (e.g. the attribute is not
+ * provided)</li>
+ * <li>failed, with a reason explaining why the evaluation was impossible</li>
+ * </ul>
+ * {@link Outcome}s are immutable, so the absent, failed and unknown ones are
+ * shared instances rather than new objects at each evaluation.
+ *
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ *
+ * @param <Value>
+ */
+public final class Outcome<Value> {
+
+	/**
+	 * The kind of {@link Outcome} obtained.
+	 *
+	 * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+	 *
+	 */
+	public static enum Status {
+		VALUE, ABSENT, FAILED
+	}
+
+	private static final Outcome<Object> UNKNOWN = new Outcome<Object>(
+			Status.VALUE, null, null);
+	private static final Outcome<Object> ABSENT = new Outcome<Object>(
+			Status.ABSENT, null, null);
+	private static final Outcome<Object> FAILED = new Outcome<Object>(
+			Status.FAILED, null, "evaluation impossible");
+
+	private final Status status;
+	private final Value value;
+	private final String reason;
+
+	private Outcome(Status status, Value value, String reason) {
+		this.status = status;
+		this.value = value;
+		this.reason = reason;
+	}
+
+	/**
+	 *
+	 * @param value
+	 *            the {@link Value} evaluated, <code>null</code> if unknown
+	 * @return the {@link Outcome} providing this {@link Value}
+	 */
+	@SuppressWarnings("unchecked")
+	public static <Value> Outcome<Value> of(Value value) {
+		return value == null ? (Outcome<Value>) UNKNOWN : new Outcome<Value>(
+				Status.VALUE, value, null);
+	}
+
+	/**
+	 *
+	 * @return the shared {@link Outcome} of an unknown {@link Value}
+	 */
+	@SuppressWarnings("unchecked")
+	public static <Value> Outcome<Value> unknown() {
+		return (Outcome<Value>) UNKNOWN;
+	}
+
+	/**
+	 *
+	 * @return the shared {@link Outcome} telling there is nothing to evaluate
+	 */
+	@SuppressWarnings("unchecked")
+	public static <Value> Outcome<Value> absent() {
+		return (Outcome<Value>) ABSENT;
+	}
+
+	/**
+	 *
+	 * @return the shared {@link Outcome} of a failed evaluation, with a
+	 *         generic reason
+	 */
+	@SuppressWarnings("unchecked")
+	public static <Value> Outcome<Value> failed() {
+		return (Outcome<Value>) FAILED;
+	}
+
+	/**
+	 * For the {@link Outcome} to be shared, the reason should be a constant
+	 * rather than a message built for each failure.
+	 *
+	 * @param reason
+	 *            the reason of the failure
+	 * @return the {@link Outcome} of a failed evaluation
+	 */
+	public static <Value> Outcome<Value> failed(String reason) {
+		return new Outcome<Value>(Status.FAILED, null, reason);
+	}
+
+	/**
+	 *
+	 * @return the {@link Status} of this {@link Outcome}
+	 */
+	public Status getStatus() {
+		return status;
+	}
+
+	/**
+	 *
+	 * @return <code>true</code> if this {@link Outcome} provides a
+	 *         {@link Value}, even an unknown one
+	 */
+	public boolean isValue() {
+		return status == Status.VALUE;
+	}
+
+	/**
+	 *
+	 * @return <code>true</code> if there was nothing to evaluate
+	 */
+	public boolean isAbsent() {
+		return status == Status.ABSENT;
+	}
+
+	/**
+	 *
+	 * @return <code>true</code> if the evaluation failed
+	 */
+	public boolean isFailed() {
+		return status == Status.FAILED;
+	}
+
+	/**
+	 *
+	 * @return the {@link Value} evaluated, <code>null</code> if it is unknown
+	 *         or if this {@link Outcome} does not provide a {@link Value}
+	 */
+	public Value getValue() {
+		return value;
+	}
+
+	/**
+	 *
+	 * @return the reason of the failure, <code>null</code> if the evaluation
+	 *         did not fail
+	 */
+	public String getReason() {
+		return reason;
+	}
+
+	@Override
+	public String toString() {
+		return status == Status.VALUE ? "" + value
+				: status == Status.ABSENT ? "absent" : "failed: " + reason;
+	}
+}
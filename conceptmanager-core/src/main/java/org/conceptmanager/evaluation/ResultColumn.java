@@ -0,0 +1,112 @@
+package org.conceptmanager.evaluation;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A {@link ResultColumn} stores the results of the evaluation of a single
+ * {@link Attribute} over many objects, as provided by
+ * {@link Evaluator#evaluatesAll(java.util.List, ResultColumn)}. Each row
+ * corresponds to an object and provides either a {@link Value}, possibly
+ * unknown (<code>null</code>), or a failure flag. The failures are stored in a
+ * {@link BitSet}, so no exception nor {@link Outcome} is built for them.
+ * 
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ * 
+ * @param <Value>
+ */
+public class ResultColumn<Value> {
+
+	private final Object[] values;
+	private final BitSet failures = new BitSet();
+
+	/**
+	 * 
+	 * @param size
+	 *            the number of rows
+	 */
+	public ResultColumn(int size) {
+		this.values = new Object[size];
+	}
+
+	/**
+	 * 
+	 * @return the number of rows
+	 */
+	public int size() {
+		return values.length;
+	}
+
+	/**
+	 * 
+	 * @param row
+	 *            the row to set
+	 * @param value
+	 *            the {@link Value} evaluated, <code>null</code> if unknown
+	 */
+	public void setValue(int row, Value value) {
+		values[row] = value;
+		failures.clear(row);
+	}
+
+	/**
+	 * 
+	 * @param row
+	 *            the row which evaluation failed
+	 */
+	public void setFailed(int row) {
+		values[row] = null;
+		failures.set(row);
+	}
+
+	/**
+	 * 
+	 * @param row
+	 *            the row to set
+	 * @param outcome
+	 *            the {@link Outcome} of the evaluation, a non-{@link Value}
+	 *            {@link Outcome} being a failure
+	 */
+	public void set(int row, Outcome<? extends Value> outcome) {
+		if (outcome.isValue()) {
+			setValue(row, outcome.getValue());
+		} else {
+			setFailed(row);
+		}
+	}
+
+	/**
+	 * 
+	 * @param row
+	 *            the row to read
+	 * @return the {@link Value} of the row, <code>null</code> if it is
+	 *         unknown or if the evaluation failed
+	 */
+	@SuppressWarnings("unchecked")
+	public Value getValue(int row) {
+		return (Value) values[row];
+	}
+
+	/**
+	 * 
+	 * @param row
+	 *            the row to read
+	 * @return <code>true</code> if the evaluation of the row failed
+	 */
+	public boolean isFailed(int row) {
+		return failures.get(row);
+	}
+
+	/**
+	 * 
+	 * @return the rows which evaluation failed
+	 */
+	public BitSet getFailures() {
+		return (BitSet) failures.clone();
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(values) + " failed " + failures;
+	}
+}
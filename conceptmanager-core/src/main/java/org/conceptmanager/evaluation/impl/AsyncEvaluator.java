@@ -0,0 +1,217 @@
+package org.conceptmanager.evaluation.impl;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import org.conceptmanager.evaluation.Evaluator;
+import org.conceptmanager.evaluation.Outcome;
+
+/**
+ * An {@link AsyncEvaluator} wraps another {@link Evaluator} to run its
+ * evaluations on a given {@link Executor} with a deadline.
+ * {@link #evaluatesAsync(Object)} returns immediately a
+ * {@link CompletableFuture}, which completes with the {@link Value} or
+ * exceptionally with a {@link CannotEvaluateException} if the evaluation fails
+ * or does not finish before its deadline. {@link #evaluates(Object)} waits for
+ * this result, so a slow {@link Evaluator} cannot block its caller longer than
+ * the deadline.<br/>
+ * <br/>
+ * Any {@link Executor} can be used, like a thread pool or, on a Java runtime
+ * supporting them, an executor creating a virtual thread per task. An
+ * evaluation which misses its deadline is not interrupted: its result is
+ * simply ignored.
+ *
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ *
+ * @param <Attribute>
+ * @param <Value>
+ */
+public class AsyncEvaluator<Attribute, Value> implements
+		Evaluator<Attribute, Value> {
+
+	private static final ScheduledExecutorService deadlines;
+	static {
+		ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(
+				1, new ThreadFactory() {
+
+					@Override
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable,
+								"AsyncEvaluator-deadlines");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		executor.setRemoveOnCancelPolicy(true);
+		deadlines = executor;
+	}
+
+	private final Evaluator<Attribute, ? extends Value> evaluator;
+	private final Executor executor;
+	private final long timeout;
+	private final TimeUnit unit;
+
+	/**
+	 *
+	 * @param evaluator
+	 *            the {@link Evaluator} to run asynchronously
+	 * @param executor
+	 *            the {@link Executor} running the evaluations
+	 * @param timeout
+	 *            the default time allowed to each evaluation
+	 * @param unit
+	 *            the {@link TimeUnit} of the timeout
+	 */
+	public AsyncEvaluator(Evaluator<Attribute, ? extends Value> evaluator,
+			Executor executor, long timeout, TimeUnit unit) {
+		if (evaluator == null) {
+			throw new NullPointerException("No evaluator has been provided.");
+		} else if (executor == null) {
+			throw new NullPointerException("No executor has been provided.");
+		} else if (unit == null) {
+			throw new NullPointerException("No time unit has been provided.");
+		} else {
+			this.evaluator = evaluator;
+			this.executor = executor;
+			this.timeout = timeout;
+			this.unit = unit;
+		}
+	}
+
+	@Override
+	public Attribute getAttribute() {
+		return evaluator.getAttribute();
+	}
+
+	/**
+	 * Evaluate the object and wait for the result, at most until the default
+	 * deadline of this {@link AsyncEvaluator}.
+	 */
+	@Override
+	public Value evaluates(Object object) throws CannotEvaluateException {
+		try {
+			return evaluatesAsync(object).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CannotEvaluateException(getAttribute(), object, e);
+		} catch (ExecutionException e) {
+			throw toCannotEvaluateException(object, e.getCause());
+		}
+	}
+
+	/**
+	 * Evaluate the object and wait for the result like
+	 * {@link #evaluates(Object)}, a failure or a missed deadline giving a
+	 * failed {@link Outcome} rather than an exception.
+	 */
+	@Override
+	public Outcome<Value> tryEvaluates(Object object) {
+		try {
+			return Outcome.of(evaluatesAsync(object).get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return Outcome.failed();
+		} catch (ExecutionException e) {
+			return Outcome.failed();
+		}
+	}
+
+	/**
+	 * Evaluate the object asynchronously with the default deadline of this
+	 * {@link AsyncEvaluator}.
+	 *
+	 * @param object
+	 *            the object we want to evaluate the {@link Attribute} of
+	 * @return the {@link CompletableFuture} of the {@link Value}
+	 */
+	public CompletableFuture<Value> evaluatesAsync(Object object) {
+		return evaluatesAsync(object, timeout, unit);
+	}
+
+	/**
+	 * Evaluate the object asynchronously with a specific deadline.
+	 *
+	 * @param object
+	 *            the object we want to evaluate the {@link Attribute} of
+	 * @param timeout
+	 *            the time allowed to this evaluation
+	 * @param unit
+	 *            the {@link TimeUnit} of the timeout
+	 * @return the {@link CompletableFuture} of the {@link Value}, which
+	 *         completes exceptionally with a {@link CannotEvaluateException}
+	 *         if the evaluation fails or misses its deadline
+	 */
+	public CompletableFuture<Value> evaluatesAsync(final Object object,
+			long timeout, TimeUnit unit) {
+		final CompletableFuture<Value> future = new CompletableFuture<Value>();
+		try {
+			executor.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					if (future.isDone()) {
+						// deadline already missed
+					} else {
+						try {
+							future.complete(evaluator.evaluates(object));
+						} catch (Throwable e) {
+							future.completeExceptionally(toCannotEvaluateException(
+									object, e));
+						}
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			future.completeExceptionally(new CannotEvaluateException(
+					getAttribute(), object, e));
+			return future;
+		}
+		final ScheduledFuture<?> deadline = deadlines.schedule(new Runnable() {
+
+			@Override
+			public void run() {
+				future.completeExceptionally(new CannotEvaluateException(
+						getAttribute(), object, "deadline exceeded"));
+			}
+		}, timeout, unit);
+		future.whenComplete(new BiConsumer<Value, Throwable>() {
+
+			@Override
+			public void accept(Value value, Throwable error) {
+				deadline.cancel(false);
+			}
+		});
+		return future;
+	}
+
+	/**
+	 *
+	 * @return the {@link Evaluator} run by this {@link AsyncEvaluator}
+	 */
+	public Evaluator<Attribute, ? extends Value> getEvaluator() {
+		return evaluator;
+	}
+
+	private CannotEvaluateException toCannotEvaluateException(Object object,
+			Throwable error) {
+		if (error instanceof CompletionException && error.getCause() != null) {
+			error = error.getCause();
+		} else {
+			// not wrapped
+		}
+		if (error instanceof CannotEvaluateException) {
+			return (CannotEvaluateException) error;
+		} else {
+			return new CannotEvaluateException(getAttribute(), object, error);
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package org.conceptmanager.evaluation.impl;
+
+import org.conceptmanager.evaluation.Evaluator;
+import org.conceptmanager.evaluation.Outcome;
+import org.conceptmanager.util.Versioned;
+
+/**
+ * A {@link CachingEvaluator} wraps another {@link Evaluator} which depends on
+ * a {@link Versioned} source, like a sensor. The {@link Outcome} of the last
+ * evaluation is kept with the version of the source: as long as the same
+ * object is evaluated and the version does not move, the cached
+ * {@link Outcome} is returned without calling the wrapped {@link Evaluator}.
+ * 
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ * 
+ * @param <Attribute>
+ * @param <Value>
+ */
+public class CachingEvaluator<Attribute, Value> implements
+		Evaluator<Attribute, Value> {
+
+	private final Evaluator<Attribute, ? extends Value> evaluator;
+	private final Versioned source;
+	private volatile Cache<Value> cache = null;
+
+	/**
+	 * 
+	 * @param evaluator
+	 *            the {@link Evaluator} to cache
+	 * @param source
+	 *            the {@link Versioned} source the {@link Evaluator} depends on
+	 */
+	public CachingEvaluator(Evaluator<Attribute, ? extends Value> evaluator,
+			Versioned source) {
+		if (evaluator == null) {
+			throw new NullPointerException("No evaluator has been provided.");
+		} else if (source == null) {
+			throw new NullPointerException("No source has been provided.");
+		} else {
+			this.evaluator = evaluator;
+			this.source = source;
+		}
+	}
+
+	@Override
+	public Attribute getAttribute() {
+		return evaluator.getAttribute();
+	}
+
+	@Override
+	public Value evaluates(Object object) throws CannotEvaluateException {
+		Outcome<Value> outcome = tryEvaluates(object);
+		if (outcome.isFailed()) {
+			throw new CannotEvaluateException(getAttribute(), object,
+					outcome.getReason());
+		} else {
+			return outcome.getValue();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public Outcome<Value> tryEvaluates(Object object) {
+		// read the version first, so a change during the evaluation is seen
+		long version = source.getVersion();
+		Cache<Value> cache = this.cache;
+		if (cache != null && cache.object == object
+				&& cache.version == version) {
+			return cache.outcome;
+		} else {
+			Outcome<Value> outcome = (Outcome<Value>) evaluator
+					.tryEvaluates(object);
+			this.cache = new Cache<Value>(object, version, outcome);
+			return outcome;
+		}
+	}
+
+	/**
+	 * 
+	 * @return the {@link Evaluator} cached by this {@link CachingEvaluator}
+	 */
+	public Evaluator<Attribute, ? extends Value> getEvaluator() {
+		return evaluator;
+	}
+
+	private static class Cache<Value> {
+		private final Object object;
+		private final long version;
+		private final Outcome<Value> outcome;
+
+		public Cache(Object object, long version, Outcome<Value> outcome) {
+			this.object = object;
+			this.version = version;
+			this.outcome = outcome;
+		}
+	}
+}
@@ -0,0 +1,622 @@
+package org.conceptmanager.evaluation.impl;
+
+import java.io.Closeable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.conceptmanager.evaluation.Evaluator;
+import org.conceptmanager.evaluation.Expression;
+import org.conceptmanager.evaluation.Expression.Operator;
+import org.conceptmanager.evaluation.Outcome;
+import org.conceptmanager.modeling.Model;
+import org.conceptmanager.util.Versioned;
+
+/**
+ * An {@link ExpressionSet} compiles a set of {@link Expression}s, each
+ * defining a derived {@link Attribute}, into {@link Evaluator}s. These
+ * {@link Evaluator}s evaluate a {@link Model}, so they are typically given to
+ * a {@link org.conceptmanager.modeling.impl.DynamicModel} built on the
+ * {@link Model} of the raw {@link Attribute}s. An {@link Expression} may also
+ * read another {@link Attribute} of the set, in which case its definition is
+ * used directly.<br/>
+ * <br/>
+ * The subexpressions appearing several times, in the same {@link Expression}
+ * or in different ones, are computed only once per read cycle: the first
+ * {@link Evaluator} needing it stores its {@link Value}, and the next ones
+ * reuse it. By default, a read cycle covers a single evaluation, including the
+ * evaluations it triggers on the same object, so the subexpressions are only
+ * shared within an {@link Expression}. To share them between
+ * {@link Expression}s, a {@link Cycle} can be opened with
+ * {@link #openCycle()}: until it is closed, all the evaluations of the same
+ * object by the same thread are in the same read cycle, unless the version of
+ * the object changes if it is {@link Versioned}.<br/>
+ * <br/>
+ * Each {@link Expression} is compiled once into a tree of
+ * {@link MethodHandle}s, so evaluating it does not interpret the
+ * {@link Expression}.
+ *
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ *
+ */
+public class ExpressionSet {
+
+	private static final MethodType NODE_TYPE = MethodType.methodType(
+			Object.class, Frame.class);
+	private static final MethodHandle READ;
+	private static final MethodHandle IS_COMPUTED;
+	private static final MethodHandle LOAD;
+	private static final MethodHandle STORE;
+	private static final Map<Operator, MethodHandle> OPERATORS = new HashMap<Operator, MethodHandle>();
+	static {
+		MethodHandles.Lookup lookup = MethodHandles.lookup();
+		try {
+			READ = lookup.findStatic(ExpressionSet.class, "read",
+					MethodType.methodType(Object.class, Frame.class,
+							Object.class));
+			IS_COMPUTED = lookup.findStatic(ExpressionSet.class, "isComputed",
+					MethodType.methodType(boolean.class, Frame.class,
+							int.class));
+			LOAD = lookup.findStatic(ExpressionSet.class, "load", MethodType
+					.methodType(Object.class, Frame.class, int.class));
+			STORE = lookup.findStatic(ExpressionSet.class, "store", MethodType
+					.methodType(Object.class, Object.class, Frame.class,
+							int.class));
+			OPERATORS.put(Operator.ADD, findOperator(lookup, "add", 2));
+			OPERATORS.put(Operator.SUBTRACT,
+					findOperator(lookup, "subtract", 2));
+			OPERATORS.put(Operator.MULTIPLY,
+					findOperator(lookup, "multiply", 2));
+			OPERATORS.put(Operator.DIVIDE, findOperator(lookup, "divide", 2));
+			OPERATORS.put(Operator.NEGATE, findOperator(lookup, "negate", 1));
+			OPERATORS.put(Operator.LESS_THAN,
+					findOperator(lookup, "lessThan", 2));
+			OPERATORS.put(Operator.GREATER_THAN,
+					findOperator(lookup, "greaterThan", 2));
+			OPERATORS.put(Operator.EQUAL, findOperator(lookup, "equal", 2));
+			OPERATORS.put(Operator.AND, findOperator(lookup, "and", 2));
+			OPERATORS.put(Operator.OR, findOperator(lookup, "or", 2));
+			OPERATORS.put(Operator.NOT, findOperator(lookup, "not", 1));
+		} catch (NoSuchMethodException | IllegalAccessException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private static MethodHandle findOperator(MethodHandles.Lookup lookup,
+			String name, int arity) throws NoSuchMethodException,
+			IllegalAccessException {
+		Class<?>[] parameters = new Class<?>[arity];
+		Arrays.fill(parameters, Object.class);
+		return lookup.findStatic(ExpressionSet.class, name,
+				MethodType.methodType(Object.class, parameters));
+	}
+
+	private final Map<Object, Expression> definitions;
+	private final Map<Object, CompiledEvaluator> evaluators = new LinkedHashMap<Object, CompiledEvaluator>();
+	private final Map<Expression, Integer> slots = new LinkedHashMap<Expression, Integer>();
+	private final ThreadLocal<Frame> frames = new ThreadLocal<Frame>() {
+		@Override
+		protected Frame initialValue() {
+			return new Frame(slots.size());
+		}
+	};
+
+	/**
+	 *
+	 * @param definitions
+	 *            the {@link Expression} of each derived {@link Attribute}
+	 * @throws IllegalArgumentException
+	 *             if a derived {@link Attribute} depends on itself
+	 */
+	public <Attribute> ExpressionSet(
+			Map<? extends Attribute, Expression> definitions) {
+		this.definitions = Collections
+				.unmodifiableMap(new LinkedHashMap<Object, Expression>(
+						definitions));
+
+		Map<Expression, Integer> uses = new HashMap<Expression, Integer>();
+		for (Expression definition : this.definitions.values()) {
+			countUses(resolve(definition, new HashSet<Object>()), uses);
+		}
+		for (Entry<Expression, Integer> entry : uses.entrySet()) {
+			Expression expression = entry.getKey();
+			if (entry.getValue() > 1
+					&& expression.getOperator() != Operator.CONSTANT) {
+				slots.put(expression, slots.size());
+			} else {
+				// computed once anyway
+			}
+		}
+
+		Map<Expression, MethodHandle> handles = new HashMap<Expression, MethodHandle>();
+		for (Entry<Object, Expression> entry : this.definitions.entrySet()) {
+			Object attribute = entry.getKey();
+			evaluators.put(attribute, new CompiledEvaluator(attribute,
+					compile(entry.getValue(), handles)));
+		}
+	}
+
+	/**
+	 * Replace the {@link Expression} by the definition of its
+	 * {@link Attribute} if it reads a derived {@link Attribute} of this
+	 * {@link ExpressionSet}.
+	 */
+	private Expression resolve(Expression expression, Set<Object> visiting) {
+		while (expression.getOperator() == Operator.ATTRIBUTE
+				&& definitions.containsKey(expression.getAttribute())) {
+			Object attribute = expression.getAttribute();
+			if (!visiting.add(attribute)) {
+				throw new IllegalArgumentException("The attribute " + attribute
+						+ " depends on itself.");
+			} else {
+				expression = definitions.get(attribute);
+			}
+		}
+		for (Expression operand : expression.getOperands()) {
+			resolve(operand, new HashSet<Object>(visiting));
+		}
+		return expression;
+	}
+
+	private Expression resolve(Expression expression) {
+		while (expression.getOperator() == Operator.ATTRIBUTE
+				&& definitions.containsKey(expression.getAttribute())) {
+			expression = definitions.get(expression.getAttribute());
+		}
+		return expression;
+	}
+
+	private void countUses(Expression expression, Map<Expression, Integer> uses) {
+		Integer count = uses.get(expression);
+		if (count == null) {
+			uses.put(expression, 1);
+			for (Expression operand : expression.getOperands()) {
+				countUses(resolve(operand), uses);
+			}
+		} else {
+			uses.put(expression, count + 1);
+		}
+	}
+
+	private MethodHandle compile(Expression expression,
+			Map<Expression, MethodHandle> handles) {
+		expression = resolve(expression);
+		MethodHandle handle = handles.get(expression);
+		if (handle != null) {
+			return handle;
+		} else {
+			Operator operator = expression.getOperator();
+			if (operator == Operator.CONSTANT) {
+				handle = MethodHandles.dropArguments(MethodHandles.constant(
+						Object.class, expression.getConstant()), 0,
+						Frame.class);
+			} else if (operator == Operator.ATTRIBUTE) {
+				handle = MethodHandles.insertArguments(READ, 1,
+						expression.<Object> getAttribute());
+			} else {
+				List<Expression> operands = expression.getOperands();
+				MethodHandle[] filters = new MethodHandle[operands.size()];
+				for (int i = 0; i < filters.length; i++) {
+					filters[i] = compile(operands.get(i), handles);
+				}
+				handle = MethodHandles.filterArguments(
+						OPERATORS.get(operator), 0, filters);
+				// all the operands read the same frame
+				handle = MethodHandles.permuteArguments(handle, NODE_TYPE,
+						new int[filters.length]);
+			}
+
+			Integer slot = slots.get(expression);
+			if (slot != null) {
+				handle = MethodHandles.guardWithTest(
+						MethodHandles.insertArguments(IS_COMPUTED, 1, slot),
+						MethodHandles.insertArguments(LOAD, 1, slot),
+						MethodHandles.foldArguments(
+								MethodHandles.insertArguments(STORE, 2, slot),
+								handle));
+			} else {
+				// not shared
+			}
+			handles.put(expression, handle);
+			return handle;
+		}
+	}
+
+	/**
+	 *
+	 * @return the {@link Expression} of each derived {@link Attribute}
+	 */
+	public <Attribute> Map<Attribute, Expression> getDefinitions() {
+		@SuppressWarnings("unchecked")
+		Map<Attribute, Expression> definitions = (Map<Attribute, Expression>) this.definitions;
+		return definitions;
+	}
+
+	/**
+	 *
+	 * @return the {@link Evaluator}s of the derived {@link Attribute}s
+	 */
+	public Collection<Evaluator<Object, Object>> getEvaluators() {
+		return Collections
+				.<Evaluator<Object, Object>> unmodifiableCollection(evaluators
+						.values());
+	}
+
+	/**
+	 *
+	 * @param attribute
+	 *            a derived {@link Attribute}
+	 * @return its {@link Evaluator}, <code>null</code> if it is not defined
+	 *         in this {@link ExpressionSet}
+	 */
+	@SuppressWarnings("unchecked")
+	public <Attribute, Value> Evaluator<Attribute, Value> getEvaluatorFor(
+			Attribute attribute) {
+		return (Evaluator<Attribute, Value>) evaluators.get(attribute);
+	}
+
+	/**
+	 *
+	 * @return the subexpressions computed once per read cycle because they
+	 *         are used several times
+	 */
+	public Collection<Expression> getSharedExpressions() {
+		return Collections.unmodifiableSet(slots.keySet());
+	}
+
+	/**
+	 * Open a read cycle for the current thread: until the {@link Cycle} is
+	 * closed, the {@link Value}s of the shared subexpressions computed by the
+	 * evaluations of this thread are reused by the next evaluations of the
+	 * same object. The objects evaluated should not change meanwhile, unless
+	 * they are {@link Versioned}.
+	 *
+	 * @return the {@link Cycle} to close, on the same thread, once the
+	 *         evaluations are done
+	 */
+	public Cycle openCycle() {
+		frames.get().scopes++;
+		return new Cycle();
+	}
+
+	/**
+	 * A {@link Cycle} is a read cycle opened by {@link #openCycle()}.
+	 *
+	 * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+	 *
+	 */
+	public class Cycle implements Closeable {
+		private final Thread thread = Thread.currentThread();
+		private boolean isClosed = false;
+
+		private Cycle() {
+		}
+
+		/**
+		 * Close this read cycle, so the next evaluations compute the shared
+		 * subexpressions again.
+		 *
+		 * @throws IllegalStateException
+		 *             if it is not closed by the thread which opened it
+		 */
+		@Override
+		public void close() {
+			if (Thread.currentThread() != thread) {
+				throw new IllegalStateException(
+						"The cycle should be closed by " + thread);
+			} else if (isClosed) {
+				// already closed
+			} else {
+				isClosed = true;
+				Frame frame = frames.get();
+				frame.scopes--;
+				if (frame.scopes == 0 && frame.depth == 0) {
+					frame.clear();
+				} else {
+					// still in use
+				}
+			}
+		}
+	}
+
+	/**
+	 * Enter an evaluation of the object, starting a new read cycle unless
+	 * the current thread is in one for this object.
+	 */
+	private Frame enter(Object object) {
+		Frame frame = frames.get();
+		long version = object instanceof Versioned ? ((Versioned) object)
+				.getVersion() : 0;
+		if (frame.depth == 0 && frame.scopes == 0) {
+			frame.reset(object, version);
+		} else if (frame.object == object && frame.version == version) {
+			// same read cycle
+		} else if (frame.depth == 0) {
+			frame.reset(object, version);
+		} else {
+			// nested evaluation of another object, which has its own frame
+			Frame nested = new Frame(slots.size());
+			nested.outer = frame;
+			nested.reset(object, version);
+			frames.set(nested);
+			frame = nested;
+		}
+		frame.depth++;
+		return frame;
+	}
+
+	/**
+	 * Exit an evaluation, releasing the object once the read cycle is done.
+	 */
+	private void exit(Frame frame) {
+		frame.depth--;
+		if (frame.depth > 0 || frame.scopes > 0) {
+			// still in the read cycle
+		} else if (frame.outer != null) {
+			frames.set(frame.outer);
+		} else {
+			frame.clear();
+		}
+	}
+
+	private static final Outcome<Object> EXPRESSION_FAILED = Outcome
+			.failed("expression failed");
+	private static final Outcome<Object> NOT_A_MODEL = Outcome
+			.failed("not a model");
+
+	private class CompiledEvaluator implements Evaluator<Object, Object> {
+		private final Object attribute;
+		private final MethodHandle handle;
+
+		public CompiledEvaluator(Object attribute, MethodHandle handle) {
+			this.attribute = attribute;
+			this.handle = handle;
+		}
+
+		@Override
+		public Object getAttribute() {
+			return attribute;
+		}
+
+		@Override
+		public Object evaluates(Object object) throws CannotEvaluateException {
+			if (object instanceof Model) {
+				Frame frame = enter(object);
+				try {
+					return (Object) handle.invokeExact(frame);
+				} catch (RuntimeException e) {
+					throw new CannotEvaluateException(attribute, object, e);
+				} catch (Error e) {
+					throw e;
+				} catch (Throwable e) {
+					throw new CannotEvaluateException(attribute, object, e);
+				} finally {
+					exit(frame);
+				}
+			} else {
+				throw new CannotEvaluateException(attribute, object,
+						"not a model");
+			}
+		}
+
+		@Override
+		public Outcome<Object> tryEvaluates(Object object) {
+			if (object instanceof Model) {
+				Frame frame = enter(object);
+				try {
+					return Outcome.of((Object) handle.invokeExact(frame));
+				} catch (Error e) {
+					throw e;
+				} catch (Throwable e) {
+					return EXPRESSION_FAILED;
+				} finally {
+					exit(frame);
+				}
+			} else {
+				return NOT_A_MODEL;
+			}
+		}
+
+		@Override
+		public String toString() {
+			return attribute + " = " + definitions.get(attribute);
+		}
+	}
+
+	/**
+	 * The {@link Value}s of the shared subexpressions for the current read
+	 * cycle of a thread.
+	 */
+	private static class Frame {
+		private Object object;
+		private long version;
+		/**
+		 * The number of evaluations in progress.
+		 */
+		private int depth = 0;
+		/**
+		 * The number of {@link Cycle}s open.
+		 */
+		private int scopes = 0;
+		/**
+		 * The {@link Frame} of the evaluation in which this one is nested.
+		 */
+		private Frame outer = null;
+		private final Object[] values;
+		private final boolean[] computed;
+
+		public Frame(int slots) {
+			values = new Object[slots];
+			computed = new boolean[slots];
+		}
+
+		public void reset(Object object, long version) {
+			this.object = object;
+			this.version = version;
+			Arrays.fill(values, null);
+			Arrays.fill(computed, false);
+		}
+
+		public void clear() {
+			object = null;
+			Arrays.fill(values, null);
+		}
+	}
+
+	private static Object read(Frame frame, Object attribute) {
+		return ((Model) frame.object).getValueFor(attribute);
+	}
+
+	private static boolean isComputed(Frame frame, int slot) {
+		return frame.computed[slot];
+	}
+
+	private static Object load(Frame frame, int slot) {
+		return frame.values[slot];
+	}
+
+	private static Object store(Object value, Frame frame, int slot) {
+		frame.values[slot] = value;
+		frame.computed[slot] = true;
+		return value;
+	}
+
+	private static Object add(Object left, Object right) {
+		if (left == null || right == null) {
+			return null;
+		} else if (isIntegral(left) && isIntegral(right)) {
+			return toNumber(left).longValue() + toNumber(right).longValue();
+		} else {
+			return toNumber(left).doubleValue() + toNumber(right).doubleValue();
+		}
+	}
+
+	private static Object subtract(Object left, Object right) {
+		if (left == null || right == null) {
+			return null;
+		} else if (isIntegral(left) && isIntegral(right)) {
+			return toNumber(left).longValue() - toNumber(right).longValue();
+		} else {
+			return toNumber(left).doubleValue() - toNumber(right).doubleValue();
+		}
+	}
+
+	private static Object multiply(Object left, Object right) {
+		if (left == null || right == null) {
+			return null;
+		} else if (isIntegral(left) && isIntegral(right)) {
+			return toNumber(left).longValue() * toNumber(right).longValue();
+		} else {
+			return toNumber(left).doubleValue() * toNumber(right).doubleValue();
+		}
+	}
+
+	private static Object divide(Object left, Object right) {
+		if (left == null || right == null) {
+			return null;
+		} else {
+			return toNumber(left).doubleValue() / toNumber(right).doubleValue();
+		}
+	}
+
+	private static Object negate(Object operand) {
+		if (operand == null) {
+			return null;
+		} else if (isIntegral(operand)) {
+			return -toNumber(operand).longValue();
+		} else {
+			return -toNumber(operand).doubleValue();
+		}
+	}
+
+	private static Object lessThan(Object left, Object right) {
+		if (left == null || right == null) {
+			return null;
+		} else {
+			return compare(left, right) < 0;
+		}
+	}
+
+	private static Object greaterThan(Object left, Object right) {
+		if (left == null || right == null) {
+			return null;
+		} else {
+			return compare(left, right) > 0;
+		}
+	}
+
+	private static Object equal(Object left, Object right) {
+		if (left == null || right == null) {
+			return null;
+		} else if (left instanceof Number && right instanceof Number) {
+			return compare(left, right) == 0;
+		} else {
+			return left.equals(right);
+		}
+	}
+
+	private static Object and(Object left, Object right) {
+		if (left == null || right == null) {
+			return null;
+		} else {
+			return toBoolean(left) && toBoolean(right);
+		}
+	}
+
+	private static Object or(Object left, Object right) {
+		if (left == null || right == null) {
+			return null;
+		} else {
+			return toBoolean(left) || toBoolean(right);
+		}
+	}
+
+	private static Object not(Object operand) {
+		if (operand == null) {
+			return null;
+		} else {
+			return !toBoolean(operand);
+		}
+	}
+
+	private static int compare(Object left, Object right) {
+		if (isIntegral(left) && isIntegral(right)) {
+			return Long.compare(toNumber(left).longValue(), toNumber(right)
+					.longValue());
+		} else {
+			return Double.compare(toNumber(left).doubleValue(),
+					toNumber(right).doubleValue());
+		}
+	}
+
+	private static boolean isIntegral(Object value) {
+		return value instanceof Long || value instanceof Integer
+				|| value instanceof Short || value instanceof Byte;
+	}
+
+	private static Number toNumber(Object value) {
+		if (value instanceof Number) {
+			return (Number) value;
+		} else {
+			throw new IllegalArgumentException("Not a number: " + value);
+		}
+	}
+
+	private static boolean toBoolean(Object value) {
+		if (value instanceof Boolean) {
+			return (Boolean) value;
+		} else {
+			throw new IllegalArgumentException("Not a boolean: " + value);
+		}
+	}
+}
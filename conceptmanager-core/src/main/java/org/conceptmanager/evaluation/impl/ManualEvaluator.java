@@ -1,13 +1,23 @@
 package org.conceptmanager.evaluation.impl;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.conceptmanager.evaluation.DependentEvaluator;
 import org.conceptmanager.evaluation.Evaluator;
+import org.conceptmanager.evaluation.ObservableEvaluator;
+import org.conceptmanager.evaluation.Outcome;
 
 /**
  * A {@link ManualEvaluator} aims at providing an {@link Evaluator} which has a
  * completely manual valuation, thus allowing to set the value on the fly. It is
  * also possible to request throwing the {@link CannotEvaluateException}
  * exception. See {@link #setValue(Object)} and
- * {@link #setEvaluationImpossible(boolean)} for more details.
+ * {@link #setEvaluationImpossible(boolean)} for more details. The
+ * {@link Listener}s are notified each time the evaluation actually changes.
+ * As the evaluated object is ignored, it has no dependency.
  * 
  * @author Matthieu Vergne <matthieu.vergne@gmail.com>
  * 
@@ -15,11 +25,13 @@ import org.conceptmanager.evaluation.Evaluator;
  * @param <Value>
  */
 public class ManualEvaluator<Attribute, Value> implements
-		Evaluator<Attribute, Value> {
+		ObservableEvaluator<Attribute, Value>,
+		DependentEvaluator<Attribute, Value> {
 
 	private final Attribute attribute;
-	private Value value = null;
-	private boolean isEvaluationImpossible = false;
+	private volatile Outcome<Value> outcome = Outcome.unknown();
+	private volatile boolean isEvaluationImpossible = false;
+	private final Collection<Listener> listeners = new CopyOnWriteArrayList<Listener>();
 
 	public ManualEvaluator(Attribute attribute) {
 		this.attribute = attribute;
@@ -32,10 +44,20 @@ public class ManualEvaluator<Attribute, Value> implements
 
 	@Override
 	public Value evaluates(Object object) throws CannotEvaluateException {
-		if (isEvaluationImpossible) {
+		Outcome<Value> outcome = tryEvaluates(object);
+		if (outcome.isFailed()) {
 			throw new CannotEvaluateException(getAttribute(), object);
 		} else {
-			return value;
+			return outcome.getValue();
+		}
+	}
+
+	@Override
+	public Outcome<Value> tryEvaluates(Object object) {
+		if (isEvaluationImpossible) {
+			return Outcome.failed();
+		} else {
+			return outcome;
 		}
 	}
 
@@ -47,7 +69,13 @@ public class ManualEvaluator<Attribute, Value> implements
 	 *            <code>null</code> by default
 	 */
 	public void setValue(Value value) {
-		this.value = value;
+		if (Objects.equals(outcome.getValue(), value)) {
+			// nothing changes
+		} else {
+			// built once, so the evaluations do not allocate
+			outcome = Outcome.of(value);
+			notifyListeners();
+		}
 	}
 
 	/**
@@ -59,7 +87,12 @@ public class ManualEvaluator<Attribute, Value> implements
 	 *            to {@link #setValue(Object)}, <code>false</code> by default
 	 */
 	public void setEvaluationImpossible(boolean isEvaluationImpossible) {
-		this.isEvaluationImpossible = isEvaluationImpossible;
+		if (this.isEvaluationImpossible == isEvaluationImpossible) {
+			// nothing changes
+		} else {
+			this.isEvaluationImpossible = isEvaluationImpossible;
+			notifyListeners();
+		}
 	}
 
 	/**
@@ -70,4 +103,29 @@ public class ManualEvaluator<Attribute, Value> implements
 		return isEvaluationImpossible;
 	}
 
+	@Override
+	public <Dependency> Collection<? extends Dependency> getDependencies() {
+		return Collections.emptySet();
+	}
+
+	@Override
+	public void addListener(Listener listener) {
+		if (listener == null) {
+			throw new NullPointerException("No listener has been provided.");
+		} else {
+			listeners.add(listener);
+		}
+	}
+
+	@Override
+	public void removeListener(Listener listener) {
+		listeners.remove(listener);
+	}
+
+	private void notifyListeners() {
+		for (Listener listener : listeners) {
+			listener.evaluatorChanged(this);
+		}
+	}
+
 }
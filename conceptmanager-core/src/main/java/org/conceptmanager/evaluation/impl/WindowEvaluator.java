@@ -0,0 +1,441 @@
+package org.conceptmanager.evaluation.impl;
+
+import java.util.Arrays;
+
+import org.conceptmanager.evaluation.Evaluator;
+import org.conceptmanager.evaluation.Outcome;
+import org.conceptmanager.sensing.impl.SensorHistory;
+
+/**
+ * A {@link WindowEvaluator} provides an aggregate of the {@link Value}s in the
+ * window of a {@link SensorHistory}, like their mean or maximum. The aggregate
+ * is maintained incrementally: the {@link WindowEvaluator} listens to the
+ * {@link SensorHistory} and updates its state for each {@link Value} entering
+ * or leaving the window, in constant amortized time, so
+ * {@link #evaluates(Object)} does not go through the whole window. The object
+ * evaluated is ignored, the aggregate depending only on the
+ * {@link SensorHistory}, and an empty window gives an unknown (
+ * <code>null</code>) {@link Value}.<br/>
+ * <br/>
+ * The {@link WindowEvaluator}s are provided by the static methods
+ * {@link #sum(Object, SensorHistory)}, {@link #mean(Object, SensorHistory)},
+ * {@link #min(Object, SensorHistory)}, {@link #max(Object, SensorHistory)}
+ * and {@link #percentile(Object, SensorHistory, double, double)}. They remain
+ * attached to their {@link SensorHistory} until {@link #detach()} is called.
+ * 
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ * 
+ * @param <Attribute>
+ */
+public abstract class WindowEvaluator<Attribute> implements
+		Evaluator<Attribute, Double>, SensorHistory.Listener {
+
+	private final Attribute attribute;
+	private final SensorHistory history;
+	private int count = 0;
+
+	private WindowEvaluator(Attribute attribute, SensorHistory history) {
+		this.attribute = attribute;
+		this.history = history;
+	}
+
+	private static <Attribute, Aggregate extends WindowEvaluator<Attribute>> Aggregate attach(
+			Aggregate evaluator) {
+		evaluator.getHistory().addListener(evaluator);
+		return evaluator;
+	}
+
+	/**
+	 * 
+	 * @param attribute
+	 *            the {@link Attribute} evaluated
+	 * @param history
+	 *            the {@link SensorHistory} to aggregate
+	 * @return the {@link WindowEvaluator} providing the sum of the window
+	 */
+	public static <Attribute> WindowEvaluator<Attribute> sum(
+			Attribute attribute, SensorHistory history) {
+		return attach(new Sum<Attribute>(attribute, history, false));
+	}
+
+	/**
+	 * 
+	 * @param attribute
+	 *            the {@link Attribute} evaluated
+	 * @param history
+	 *            the {@link SensorHistory} to aggregate
+	 * @return the {@link WindowEvaluator} providing the mean of the window
+	 */
+	public static <Attribute> WindowEvaluator<Attribute> mean(
+			Attribute attribute, SensorHistory history) {
+		return attach(new Sum<Attribute>(attribute, history, true));
+	}
+
+	/**
+	 * 
+	 * @param attribute
+	 *            the {@link Attribute} evaluated
+	 * @param history
+	 *            the {@link SensorHistory} to aggregate
+	 * @return the {@link WindowEvaluator} providing the minimum of the window
+	 */
+	public static <Attribute> WindowEvaluator<Attribute> min(
+			Attribute attribute, SensorHistory history) {
+		return attach(new Extremum<Attribute>(attribute, history, false));
+	}
+
+	/**
+	 * 
+	 * @param attribute
+	 *            the {@link Attribute} evaluated
+	 * @param history
+	 *            the {@link SensorHistory} to aggregate
+	 * @return the {@link WindowEvaluator} providing the maximum of the window
+	 */
+	public static <Attribute> WindowEvaluator<Attribute> max(
+			Attribute attribute, SensorHistory history) {
+		return attach(new Extremum<Attribute>(attribute, history, true));
+	}
+
+	/**
+	 * The percentile is estimated through a sketch which counts the
+	 * {@link Value}s in logarithmic buckets, so its memory does not depend on
+	 * the size of the window. The estimate has a relative error bounded by the
+	 * given accuracy, for instance 0.01 for 1%.
+	 * 
+	 * @param attribute
+	 *            the {@link Attribute} evaluated
+	 * @param history
+	 *            the {@link SensorHistory} to aggregate
+	 * @param quantile
+	 *            the quantile to estimate, in [0;1] (e.g. 0.5 for the median)
+	 * @param accuracy
+	 *            the relative accuracy of the estimate, in ]0;1[
+	 * @return the {@link WindowEvaluator} providing the percentile of the
+	 *         window
+	 */
+	public static <Attribute> WindowEvaluator<Attribute> percentile(
+			Attribute attribute, SensorHistory history, double quantile,
+			double accuracy) {
+		if (quantile < 0 || quantile > 1) {
+			throw new IllegalArgumentException("Invalid quantile: " + quantile);
+		} else if (accuracy <= 0 || accuracy >= 1) {
+			throw new IllegalArgumentException("Invalid accuracy: " + accuracy);
+		} else {
+			return attach(new Percentile<Attribute>(attribute, history,
+					quantile, accuracy));
+		}
+	}
+
+	@Override
+	public Attribute getAttribute() {
+		return attribute;
+	}
+
+	/**
+	 * 
+	 * @return the {@link SensorHistory} aggregated
+	 */
+	public SensorHistory getHistory() {
+		return history;
+	}
+
+	/**
+	 * Stop listening to the {@link SensorHistory}. The {@link Value} evaluated
+	 * does not change anymore.
+	 */
+	public void detach() {
+		history.removeListener(this);
+	}
+
+	/**
+	 * @return the aggregate of the window, <code>null</code> if the window is
+	 *         empty
+	 */
+	@Override
+	public Double evaluates(Object object) {
+		synchronized (history) {
+			history.expire();
+			return count == 0 ? null : aggregate();
+		}
+	}
+
+	/**
+	 * An aggregate never fails, so the {@link Outcome} is built directly, an
+	 * empty window giving the shared unknown {@link Outcome}.
+	 */
+	@Override
+	public Outcome<Double> tryEvaluates(Object object) {
+		return Outcome.of(evaluates(object));
+	}
+
+	@Override
+	public void added(long sequence, double value) {
+		count++;
+		add(sequence, value);
+	}
+
+	@Override
+	public void removed(long sequence, double value) {
+		count--;
+		remove(sequence, value);
+	}
+
+	/**
+	 * 
+	 * @return the number of {@link Value}s aggregated
+	 */
+	protected int count() {
+		return count;
+	}
+
+	protected abstract void add(long sequence, double value);
+
+	protected abstract void remove(long sequence, double value);
+
+	/**
+	 * 
+	 * @return the aggregate of a non-empty window
+	 */
+	protected abstract double aggregate();
+
+	/**
+	 * Sum with a compensation of the rounding errors, so adding and removing
+	 * many {@link Value}s does not make the sum drift. The infinities and NaNs
+	 * are only counted, rather than summed, so the sum is finite again once
+	 * they leave the window.
+	 */
+	private static class Sum<Attribute> extends WindowEvaluator<Attribute> {
+		private final boolean isMean;
+		private double sum = 0;
+		private double compensation = 0;
+		private long positiveInfinities = 0;
+		private long negativeInfinities = 0;
+		private long nans = 0;
+
+		public Sum(Attribute attribute, SensorHistory history, boolean isMean) {
+			super(attribute, history);
+			this.isMean = isMean;
+		}
+
+		@Override
+		protected void add(long sequence, double value) {
+			count(value, 1);
+		}
+
+		@Override
+		protected void remove(long sequence, double value) {
+			count(value, -1);
+		}
+
+		private void count(double value, int delta) {
+			if (Double.isNaN(value)) {
+				nans += delta;
+			} else if (value == Double.POSITIVE_INFINITY) {
+				positiveInfinities += delta;
+			} else if (value == Double.NEGATIVE_INFINITY) {
+				negativeInfinities += delta;
+			} else {
+				accumulate(delta > 0 ? value : -value);
+			}
+		}
+
+		private void accumulate(double value) {
+			double total = sum + value;
+			if (Math.abs(sum) >= Math.abs(value)) {
+				compensation += (sum - total) + value;
+			} else {
+				compensation += (value - total) + sum;
+			}
+			sum = total;
+		}
+
+		@Override
+		protected double aggregate() {
+			if (nans > 0 || positiveInfinities > 0 && negativeInfinities > 0) {
+				return Double.NaN;
+			} else if (positiveInfinities > 0) {
+				return Double.POSITIVE_INFINITY;
+			} else if (negativeInfinities > 0) {
+				return Double.NEGATIVE_INFINITY;
+			} else {
+				double total = sum + compensation;
+				return isMean ? total / count() : total;
+			}
+		}
+	}
+
+	/**
+	 * Minimum or maximum through a monotonic queue: the {@link Value}s which
+	 * cannot be the extremum anymore, because a better one arrived after them,
+	 * are discarded, so the extremum is always the head of the queue.
+	 */
+	private static class Extremum<Attribute> extends WindowEvaluator<Attribute> {
+		private final boolean isMax;
+		private final long[] sequences;
+		private final double[] values;
+		private int head = 0;
+		private int size = 0;
+
+		public Extremum(Attribute attribute, SensorHistory history,
+				boolean isMax) {
+			super(attribute, history);
+			this.isMax = isMax;
+			this.sequences = new long[history.capacity()];
+			this.values = new double[history.capacity()];
+		}
+
+		@Override
+		protected void add(long sequence, double value) {
+			while (size > 0) {
+				double last = values[(head + size - 1) % values.length];
+				if (isMax ? last <= value : last >= value) {
+					size--;
+				} else {
+					break;
+				}
+			}
+			int index = (head + size) % values.length;
+			sequences[index] = sequence;
+			values[index] = value;
+			size++;
+		}
+
+		@Override
+		protected void remove(long sequence, double value) {
+			if (size > 0 && sequences[head] == sequence) {
+				head = (head + 1) % values.length;
+				size--;
+			} else {
+				// already discarded
+			}
+		}
+
+		@Override
+		protected double aggregate() {
+			return values[head];
+		}
+	}
+
+	/**
+	 * Percentile estimated by counting the {@link Value}s in logarithmic
+	 * buckets: a bucket i covers ]gamma^(i-1);gamma^i], so any {@link Value}
+	 * of the bucket is represented with a bounded relative error. Negative
+	 * {@link Value}s are counted separately on their absolute value. The
+	 * infinities are counted with the largest finite {@link Value}s, while
+	 * NaNs are counted apart and ranked above all the other {@link Value}s,
+	 * like in {@link Double#compare(double, double)}. As buckets only hold
+	 * counts, {@link Value}s leaving the window are simply discounted.
+	 */
+	private static class Percentile<Attribute> extends
+			WindowEvaluator<Attribute> {
+		private final double quantile;
+		private final double gamma;
+		private final double logGamma;
+		private final Buckets positives = new Buckets();
+		private final Buckets negatives = new Buckets();
+		private long zeros = 0;
+		private long nans = 0;
+
+		public Percentile(Attribute attribute, SensorHistory history,
+				double quantile, double accuracy) {
+			super(attribute, history);
+			this.quantile = quantile;
+			this.gamma = (1 + accuracy) / (1 - accuracy);
+			this.logGamma = Math.log(gamma);
+		}
+
+		@Override
+		protected void add(long sequence, double value) {
+			count(value, 1);
+		}
+
+		@Override
+		protected void remove(long sequence, double value) {
+			count(value, -1);
+		}
+
+		private void count(double value, int delta) {
+			if (Double.isNaN(value)) {
+				nans += delta;
+			} else if (value > Double.MIN_NORMAL) {
+				positives.add(bucket(value), delta);
+			} else if (value < -Double.MIN_NORMAL) {
+				negatives.add(bucket(-value), delta);
+			} else {
+				zeros += delta;
+			}
+		}
+
+		private int bucket(double value) {
+			// an infinity would give the bucket Integer.MAX_VALUE
+			double finite = Math.min(value, Double.MAX_VALUE);
+			return (int) Math.ceil(Math.log(finite) / logGamma);
+		}
+
+		private double representative(int bucket) {
+			return 2 * Math.pow(gamma, bucket) / (gamma + 1);
+		}
+
+		@Override
+		protected double aggregate() {
+			long rank = (long) Math.floor(quantile * (count() - 1));
+			// negatives from the highest absolute value
+			for (int i = negatives.counts.length - 1; i >= 0; i--) {
+				rank -= negatives.counts[i];
+				if (rank < 0) {
+					return -representative(i + negatives.offset);
+				} else {
+					// continue searching
+				}
+			}
+			rank -= zeros;
+			if (rank < 0) {
+				return 0;
+			} else {
+				// continue searching
+			}
+			for (int i = 0; i < positives.counts.length; i++) {
+				rank -= positives.counts[i];
+				if (rank < 0) {
+					return representative(i + positives.offset);
+				} else {
+					// continue searching
+				}
+			}
+			rank -= nans;
+			if (rank < 0) {
+				return Double.NaN;
+			} else {
+				throw new IllegalStateException(
+						"Inconsistent counts for rank " + rank);
+			}
+		}
+	}
+
+	/**
+	 * Counts indexed by bucket, in a primitive array extended on demand.
+	 */
+	private static class Buckets {
+		private int offset = 0;
+		private long[] counts = new long[0];
+
+		public void add(int bucket, int delta) {
+			if (counts.length == 0) {
+				offset = bucket;
+				counts = new long[1];
+			} else if (bucket < offset) {
+				long[] extended = new long[counts.length + offset - bucket];
+				System.arraycopy(counts, 0, extended, offset - bucket,
+						counts.length);
+				counts = extended;
+				offset = bucket;
+			} else if (bucket >= offset + counts.length) {
+				counts = Arrays.copyOf(counts, bucket - offset + 1);
+			} else {
+				// already covered
+			}
+			counts[bucket - offset] += delta;
+		}
+	}
+}
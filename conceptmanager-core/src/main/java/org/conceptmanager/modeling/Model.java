@@ -2,6 +2,7 @@ package org.conceptmanager.modeling;
 
 import java.util.Collection;
 
+import org.conceptmanager.evaluation.Outcome;
 import org.conceptmanager.modeling.impl.DynamicModel;
 import org.conceptmanager.modeling.impl.StaticModel;
 
@@ -45,6 +46,26 @@ public interface Model {
 	public <Attribute, Value> Value getValueFor(Attribute attribute)
 			throws UnknownAttributeException;
 
+	/**
+	 * This method provides the {@link Value} of an {@link Attribute} like
+	 * {@link #getValueFor(Object)}, but without throwing an
+	 * {@link UnknownAttributeException} when the {@link Attribute} is not
+	 * provided: an absent {@link Outcome} is returned instead.
+	 * 
+	 * @param attribute
+	 *            the {@link Attribute} we want the {@link Value} for
+	 * @return the {@link Outcome} providing the {@link Value} of the
+	 *         {@link Attribute}
+	 */
+	public default <Attribute, Value> Outcome<Value> tryGetValueFor(
+			Attribute attribute) {
+		if (getAttributes().contains(attribute)) {
+			return Outcome.of(this.<Attribute, Value> getValueFor(attribute));
+		} else {
+			return Outcome.absent();
+		}
+	}
+
 	@SuppressWarnings("serial")
 	public static class UnknownAttributeException extends RuntimeException {
 		public <Attribute> UnknownAttributeException(Attribute attribute) {
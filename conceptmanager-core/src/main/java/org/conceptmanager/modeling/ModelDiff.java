@@ -0,0 +1,264 @@
+package org.conceptmanager.modeling;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Set;
+
+import org.conceptmanager.evaluation.Outcome;
+import org.conceptmanager.modeling.impl.StaticModel;
+
+/**
+ * A {@link ModelDiff} describes the differences between two {@link Model}s,
+ * typically two successive snapshots of the same object: the
+ * {@link Attribute}s which have changed, the ones which have been added and
+ * the ones which have been removed. It only stores these differences, so it
+ * is much smaller than a snapshot when only a few {@link Attribute}s change,
+ * and it can be applied to the first {@link Model} to obtain the second one
+ * (see {@link #applyTo(Model)}), or directly to a cache of {@link Value}s
+ * (see {@link #applyTo(Map)}).<br/>
+ * <br/>
+ * {@link ModelDiff}s are immutable.
+ *
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ *
+ */
+public final class ModelDiff {
+
+	private static final ModelDiff EMPTY = new ModelDiff(
+			Collections.<Object, Object> emptyMap(),
+			Collections.<Object, Object> emptyMap(),
+			Collections.<Object> emptySet());
+
+	private final Map<Object, Object> changed;
+	private final Map<Object, Object> added;
+	private final Set<Object> removed;
+
+	private ModelDiff(Map<Object, Object> changed, Map<Object, Object> added,
+			Set<Object> removed) {
+		this.changed = Collections.unmodifiableMap(changed);
+		this.added = Collections.unmodifiableMap(added);
+		this.removed = Collections.unmodifiableSet(removed);
+	}
+
+	/**
+	 * Compute the differences between two {@link Model}s. Two {@link Value}s
+	 * are considered the same if they are equal. Since a {@link ModelDiff}
+	 * only stores {@link Value}s, the {@link Model}s should not have failing
+	 * {@link Attribute}s, like the snapshots ({@link StaticModel}s).
+	 *
+	 * @param from
+	 *            the original {@link Model}, <code>null</code> for a
+	 *            {@link Model} without {@link Attribute}
+	 * @param to
+	 *            the new {@link Model}
+	 * @return the {@link ModelDiff} transforming the original {@link Model}
+	 *         into the new one
+	 * @throws IllegalArgumentException
+	 *             if an {@link Attribute} of a {@link Model} fails to be
+	 *             evaluated
+	 */
+	public static ModelDiff between(Model from, Model to) {
+		Map<Object, Object> changed = new LinkedHashMap<Object, Object>();
+		Map<Object, Object> added = new LinkedHashMap<Object, Object>();
+		Set<Object> removed = new LinkedHashSet<Object>();
+		Collection<?> fromAttributes = from == null ? Collections.emptySet()
+				: from.getAttributes();
+		for (Object attribute : fromAttributes) {
+			Outcome<Object> outcome = to.tryGetValueFor(attribute);
+			if (outcome.isAbsent()) {
+				removed.add(attribute);
+			} else {
+				Object value = getValue(to, attribute, outcome);
+				if (!Objects.equals(value, getValue(from, attribute,
+						from.tryGetValueFor(attribute)))) {
+					changed.put(attribute, value);
+				} else {
+					// same value
+				}
+			}
+		}
+		if (to.getAttributes().size() > fromAttributes.size()
+				- removed.size()) {
+			for (Object attribute : to.getAttributes()) {
+				if (from == null || from.tryGetValueFor(attribute).isAbsent()) {
+					added.put(attribute, getValue(to, attribute,
+							to.tryGetValueFor(attribute)));
+				} else {
+					// already compared
+				}
+			}
+		} else {
+			// same number of attributes, so no new one
+		}
+		if (changed.isEmpty() && added.isEmpty() && removed.isEmpty()) {
+			return EMPTY;
+		} else {
+			return new ModelDiff(changed, added, removed);
+		}
+	}
+
+	private static Object getValue(Model model, Object attribute,
+			Outcome<Object> outcome) {
+		if (outcome.isFailed()) {
+			throw new IllegalArgumentException("The attribute " + attribute
+					+ " of " + model + " cannot be evaluated: "
+					+ outcome.getReason());
+		} else {
+			return outcome.getValue();
+		}
+	}
+
+	/**
+	 *
+	 * @return the new {@link Value} of each {@link Attribute} which has
+	 *         changed
+	 */
+	public <Attribute, Value> Map<Attribute, Value> getChanged() {
+		return cast(changed);
+	}
+
+	/**
+	 *
+	 * @return the {@link Value} of each {@link Attribute} which has been added
+	 */
+	public <Attribute, Value> Map<Attribute, Value> getAdded() {
+		return cast(added);
+	}
+
+	/**
+	 *
+	 * @return the {@link Attribute}s which have been removed
+	 */
+	@SuppressWarnings("unchecked")
+	public <Attribute> Set<Attribute> getRemoved() {
+		return (Set<Attribute>) removed;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <Attribute, Value> Map<Attribute, Value> cast(
+			Map<Object, Object> map) {
+		return (Map<Attribute, Value>) map;
+	}
+
+	/**
+	 *
+	 * @return <code>true</code> if both {@link Model}s are the same
+	 */
+	public boolean isEmpty() {
+		return changed.isEmpty() && added.isEmpty() && removed.isEmpty();
+	}
+
+	/**
+	 *
+	 * @return the number of {@link Attribute}s which differ
+	 */
+	public int size() {
+		return changed.size() + added.size() + removed.size();
+	}
+
+	/**
+	 * Update a cache of {@link Value}s, so it provides the {@link Value}s of
+	 * the new {@link Model} if it provided the ones of the original
+	 * {@link Model}. Only the {@link Attribute}s which differ are updated.
+	 *
+	 * @param values
+	 *            the {@link Value} of each {@link Attribute}, modified by this
+	 *            method
+	 */
+	@SuppressWarnings("unchecked")
+	public <Attribute, Value> void applyTo(Map<Attribute, Value> values) {
+		Map<Object, Object> map = (Map<Object, Object>) (Map<?, ?>) values;
+		map.keySet().removeAll(removed);
+		map.putAll(changed);
+		map.putAll(added);
+	}
+
+	/**
+	 *
+	 * @param model
+	 *            the original {@link Model}, <code>null</code> for a
+	 *            {@link Model} without {@link Attribute}
+	 * @return a snapshot of the new {@link Model}
+	 */
+	public StaticModel applyTo(Model model) {
+		Map<Object, Object> values = new HashMap<Object, Object>();
+		if (model == null) {
+			// nothing to copy
+		} else {
+			for (Object attribute : model.getAttributes()) {
+				values.put(attribute, model.getValueFor(attribute));
+			}
+		}
+		applyTo(values);
+		return new StaticModel(values);
+	}
+
+	/**
+	 *
+	 * @param next
+	 *            the {@link ModelDiff} to apply after this one
+	 * @return the {@link ModelDiff} equivalent to applying both
+	 */
+	public ModelDiff then(ModelDiff next) {
+		Map<Object, Object> changed = new LinkedHashMap<Object, Object>(
+				this.changed);
+		Map<Object, Object> added = new LinkedHashMap<Object, Object>(
+				this.added);
+		Set<Object> removed = new LinkedHashSet<Object>(this.removed);
+		for (Object attribute : next.removed) {
+			if (added.containsKey(attribute)) {
+				// added then removed, as if nothing happened
+				added.remove(attribute);
+			} else {
+				changed.remove(attribute);
+				removed.add(attribute);
+			}
+		}
+		for (Entry<Object, Object> entry : next.changed.entrySet()) {
+			if (added.containsKey(entry.getKey())) {
+				added.put(entry.getKey(), entry.getValue());
+			} else {
+				changed.put(entry.getKey(), entry.getValue());
+			}
+		}
+		for (Entry<Object, Object> entry : next.added.entrySet()) {
+			if (removed.remove(entry.getKey())) {
+				// removed then added again
+				changed.put(entry.getKey(), entry.getValue());
+			} else {
+				added.put(entry.getKey(), entry.getValue());
+			}
+		}
+		return new ModelDiff(changed, added, removed);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) {
+			return true;
+		} else if (obj instanceof ModelDiff) {
+			ModelDiff other = (ModelDiff) obj;
+			return changed.equals(other.changed) && added.equals(other.added)
+					&& removed.equals(other.removed);
+		} else {
+			return false;
+		}
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(changed, added, removed);
+	}
+
+	@Override
+	public String toString() {
+		return "changed=" + changed + ", added=" + added + ", removed="
+				+ removed;
+	}
+}
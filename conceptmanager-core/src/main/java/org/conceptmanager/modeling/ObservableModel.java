@@ -0,0 +1,43 @@
+package org.conceptmanager.modeling;
+
+import java.util.Collection;
+
+/**
+ * An {@link ObservableModel} is a {@link Model} which tells which of its
+ * {@link Attribute}s may have changed, so the components relying on it, like
+ * abstractions or caches, can update only these {@link Attribute}s rather
+ * than polling or recomputing all of them.<br/>
+ * <br/>
+ * The {@link Listener}s are notified synchronously, in the thread doing the
+ * change. To deliver them at a given pace, for instance once per tick with
+ * the changes coalesced, the {@link Listener} can be a
+ * {@link org.conceptmanager.modeling.impl.ChangeBatcher}.
+ * 
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ * 
+ */
+public interface ObservableModel extends Model {
+
+	/**
+	 * A {@link Listener} is notified of the changes of the
+	 * {@link ObservableModel}s it is added to.
+	 * 
+	 * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+	 * 
+	 */
+	public static interface Listener {
+		/**
+		 * 
+		 * @param model
+		 *            the {@link Model} which has changed
+		 * @param attributes
+		 *            the {@link Attribute}s which may have a different
+		 *            {@link Value}, or which have been added or removed
+		 */
+		public void modelChanged(Model model, Collection<?> attributes);
+	}
+
+	public void addListener(Listener listener);
+
+	public void removeListener(Listener listener);
+}
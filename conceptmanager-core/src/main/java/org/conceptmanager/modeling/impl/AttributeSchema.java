@@ -0,0 +1,183 @@
+package org.conceptmanager.modeling.impl;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.conceptmanager.modeling.Model;
+
+/**
+ * An {@link AttributeSchema} is a fixed set of {@link Attribute}s, each of
+ * them being assigned a slot index in [0;{@link #size()}[. It allows several
+ * {@link Model}s having the same {@link Attribute}s to share this information
+ * rather than each of them storing its own copy. {@link AttributeSchema}s
+ * obtained through {@link #intern(Collection)} are shared: the same set of
+ * {@link Attribute}s always leads to the same {@link AttributeSchema}
+ * instance, as long as this instance is used somewhere. Only weak references
+ * are kept on the shared {@link AttributeSchema}s, so the ones which are not
+ * used anymore are garbage collected rather than accumulated.
+ *
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ *
+ */
+public class AttributeSchema {
+
+	private static final ConcurrentMap<Set<Object>, SchemaReference> interned = new ConcurrentHashMap<Set<Object>, SchemaReference>();
+	private static final ReferenceQueue<AttributeSchema> collected = new ReferenceQueue<AttributeSchema>();
+
+	private final Object[] attributes;
+	private final Map<Object, Integer> slots;
+
+	/**
+	 * Instantiate a new {@link AttributeSchema}, which is not shared. Use
+	 * {@link #intern(Collection)} to retrieve a shared one.
+	 *
+	 * @param attributes
+	 *            the {@link Attribute}s of the schema, the slots following
+	 *            their iteration order (duplicates are ignored)
+	 */
+	public <Attribute> AttributeSchema(Collection<Attribute> attributes) {
+		Map<Object, Integer> slots = new LinkedHashMap<Object, Integer>();
+		for (Attribute attribute : attributes) {
+			if (!slots.containsKey(attribute)) {
+				slots.put(attribute, slots.size());
+			} else {
+				// already assigned
+			}
+		}
+		this.attributes = slots.keySet().toArray();
+		this.slots = slots;
+	}
+
+	/**
+	 *
+	 * @param attributes
+	 *            the {@link Attribute}s of the schema, a {@link Set} being
+	 *            searched for without being copied
+	 * @return the shared {@link AttributeSchema} for this set of
+	 *         {@link Attribute}s
+	 */
+	public static <Attribute> AttributeSchema intern(
+			Collection<Attribute> attributes) {
+		purge();
+		Set<?> key = attributes instanceof Set ? (Set<?>) attributes
+				: new HashSet<Object>(attributes);
+		while (true) {
+			SchemaReference reference = interned.get(key);
+			AttributeSchema schema = reference == null ? null : reference
+					.get();
+			if (schema != null) {
+				return schema;
+			} else {
+				schema = new AttributeSchema(attributes);
+				SchemaReference created = new SchemaReference(schema);
+				if (reference == null ? interned.putIfAbsent(created.key,
+						created) == null : interned.replace(created.key,
+						reference, created)) {
+					return schema;
+				} else {
+					// interned concurrently, retrieve it
+				}
+			}
+		}
+	}
+
+	/**
+	 * Remove the {@link SchemaReference}s of the {@link AttributeSchema}s
+	 * which have been garbage collected.
+	 */
+	private static void purge() {
+		Reference<? extends AttributeSchema> reference;
+		while ((reference = collected.poll()) != null) {
+			SchemaReference schema = (SchemaReference) reference;
+			interned.remove(schema.key, schema);
+		}
+	}
+
+	/**
+	 * A {@link SchemaReference} is the weak reference stored for a shared
+	 * {@link AttributeSchema}, keeping its key to be removed once the
+	 * {@link AttributeSchema} is garbage collected.
+	 */
+	private static class SchemaReference extends
+			WeakReference<AttributeSchema> {
+		private final Set<Object> key;
+
+		public SchemaReference(AttributeSchema schema) {
+			super(schema, collected);
+			this.key = schema.slots.keySet();
+		}
+	}
+
+	/**
+	 *
+	 * @return the number of {@link Attribute}s of this {@link AttributeSchema}
+	 */
+	public int size() {
+		return attributes.length;
+	}
+
+	/**
+	 *
+	 * @param attribute
+	 *            the {@link Attribute} to search for
+	 * @return the slot of the {@link Attribute}, -1 if it is not part of this
+	 *         {@link AttributeSchema}
+	 */
+	public <Attribute> int getSlot(Attribute attribute) {
+		Integer slot = slots.get(attribute);
+		return slot == null ? -1 : slot;
+	}
+
+	/**
+	 *
+	 * @param slot
+	 *            the slot of the {@link Attribute}
+	 * @return the {@link Attribute} assigned to this slot
+	 */
+	@SuppressWarnings("unchecked")
+	public <Attribute> Attribute getAttribute(int slot) {
+		return (Attribute) attributes[slot];
+	}
+
+	/**
+	 *
+	 * @return the {@link Attribute}s of this {@link AttributeSchema}, in slot
+	 *         order
+	 */
+	@SuppressWarnings("unchecked")
+	public <Attribute> Collection<? extends Attribute> getAttributes() {
+		return (Collection<? extends Attribute>) Collections
+				.unmodifiableSet(slots.keySet());
+	}
+
+	/**
+	 *
+	 * @param attributes
+	 *            the {@link Attribute}s to compare to
+	 * @return <code>true</code> if this {@link AttributeSchema} has exactly
+	 *         these {@link Attribute}s, whatever their order
+	 */
+	public <Attribute> boolean matches(Collection<Attribute> attributes) {
+		if (attributes.size() < this.attributes.length) {
+			return false;
+		} else {
+			Set<Object> set = new HashSet<Object>(attributes);
+			return set.size() == this.attributes.length
+					&& slots.keySet().containsAll(set);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return slots.keySet().toString();
+	}
+}
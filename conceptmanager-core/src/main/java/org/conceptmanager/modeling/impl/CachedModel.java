@@ -0,0 +1,157 @@
+package org.conceptmanager.modeling.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.conceptmanager.evaluation.Outcome;
+import org.conceptmanager.modeling.Model;
+import org.conceptmanager.modeling.ObservableModel;
+
+/**
+ * A {@link CachedModel} keeps the {@link Value}s of another {@link Model}, so
+ * reading it does not evaluate anything. Rather than being rebuilt, it is
+ * updated through {@link #modelChanged(Model, Collection)}: only the
+ * {@link Attribute}s notified are read again from the source {@link Model}.
+ * It can listen directly to an {@link ObservableModel}, or to a
+ * {@link ChangeBatcher} to be updated once per tick:
+ * 
+ * <pre>
+ * CachedModel cache = new CachedModel(model);
+ * batcher.addListener(cache);
+ * model.addListener(batcher);
+ * </pre>
+ * 
+ * The {@link Outcome}s read are cached as they are, so an {@link Attribute}
+ * which failed to be evaluated remains failed in {@link #tryGetValueFor(Object)}
+ * until it is refreshed, and has a <code>null</code> {@link Value} in
+ * {@link #getValueFor(Object)}, like in a {@link DynamicModel}.<br/>
+ * <br/>
+ * The changes of other {@link Model}s are ignored. A {@link CachedModel} is
+ * itself an {@link ObservableModel}, notifying the {@link Attribute}s
+ * refreshed, so caches can be chained.
+ * 
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ * 
+ */
+public class CachedModel implements ObservableModel, ObservableModel.Listener {
+
+	private final Model source;
+	private final Map<Object, Outcome<?>> values = new HashMap<Object, Outcome<?>>();
+	private final Collection<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+	private long refreshed = 0;
+
+	/**
+	 * 
+	 * @param source
+	 *            the {@link Model} to cache, read completely once
+	 */
+	public CachedModel(Model source) {
+		if (source == null) {
+			throw new NullPointerException("No model has been provided.");
+		} else {
+			this.source = source;
+			for (Object attribute : source.getAttributes()) {
+				read(attribute);
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @return the {@link Model} cached
+	 */
+	public Model getSource() {
+		return source;
+	}
+
+	@Override
+	public void modelChanged(Model model, Collection<?> attributes) {
+		if (model != source) {
+			// not cached here
+		} else {
+			synchronized (this) {
+				for (Object attribute : attributes) {
+					read(attribute);
+					refreshed++;
+				}
+			}
+			if (attributes.isEmpty()) {
+				// nothing refreshed
+			} else {
+				for (Listener listener : listeners) {
+					listener.modelChanged(this, attributes);
+				}
+			}
+		}
+	}
+
+	private void read(Object attribute) {
+		Outcome<Object> outcome = source.tryGetValueFor(attribute);
+		if (outcome.isAbsent()) {
+			values.remove(attribute);
+		} else {
+			values.put(attribute, outcome);
+		}
+	}
+
+	/**
+	 * 
+	 * @return the number of {@link Attribute}s read again from the source
+	 *         since the creation
+	 */
+	public synchronized long getRefreshCount() {
+		return refreshed;
+	}
+
+	@Override
+	public void addListener(Listener listener) {
+		if (listener == null) {
+			throw new NullPointerException("No listener has been provided.");
+		} else {
+			listeners.add(listener);
+		}
+	}
+
+	@Override
+	public void removeListener(Listener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * @return a snapshot of the {@link Attribute}s currently cached
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public synchronized <Attribute> Collection<? extends Attribute> getAttributes() {
+		return (Collection<? extends Attribute>) Collections
+				.unmodifiableList(new ArrayList<Object>(values.keySet()));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public synchronized <Attribute, Value> Value getValueFor(Attribute attribute) {
+		Outcome<Value> outcome = (Outcome<Value>) values.get(attribute);
+		if (outcome == null) {
+			throw new UnknownAttributeException(attribute);
+		} else {
+			return outcome.getValue();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public synchronized <Attribute, Value> Outcome<Value> tryGetValueFor(
+			Attribute attribute) {
+		Outcome<Value> outcome = (Outcome<Value>) values.get(attribute);
+		return outcome == null ? Outcome.<Value> absent() : outcome;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return values.toString();
+	}
+}
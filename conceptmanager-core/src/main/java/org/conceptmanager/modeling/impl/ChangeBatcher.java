@@ -0,0 +1,127 @@
+package org.conceptmanager.modeling.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.conceptmanager.modeling.Model;
+import org.conceptmanager.modeling.ObservableModel;
+import org.conceptmanager.modeling.ObservableModel.Listener;
+
+/**
+ * A {@link ChangeBatcher} is a {@link Listener} which accumulates the changes
+ * of the {@link ObservableModel}s it listens to, and delivers them to its own
+ * {@link Listener}s only when {@link #flush()} is called, typically once per
+ * tick of a {@link org.conceptmanager.control.impl.ControlLoop}. The changes
+ * are coalesced: a {@link Model} changing several times between two flushes
+ * is delivered once, with all the {@link Attribute}s which changed meanwhile,
+ * so a burst of changes costs a single update downstream.<br/>
+ * <br/>
+ * Changes can be received from any thread. They are delivered in the thread
+ * calling {@link #flush()}, in the order the {@link Model}s first changed.
+ * The {@link Model}s are identified by identity, so two equal {@link Model}s
+ * are delivered separately and a {@link Model} which hash code changes is not
+ * lost.
+ * 
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ * 
+ */
+public class ChangeBatcher implements Listener {
+
+	private final Collection<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+	private Map<Model, Set<Object>> pending = new IdentityHashMap<Model, Set<Object>>();
+	/**
+	 * The pending {@link Model}s, in the order they first changed.
+	 */
+	private List<Model> order = new ArrayList<Model>();
+	private long received = 0;
+	private long delivered = 0;
+
+	public void addListener(Listener listener) {
+		if (listener == null) {
+			throw new NullPointerException("No listener has been provided.");
+		} else {
+			listeners.add(listener);
+		}
+	}
+
+	public void removeListener(Listener listener) {
+		listeners.remove(listener);
+	}
+
+	@Override
+	public synchronized void modelChanged(Model model,
+			Collection<?> attributes) {
+		received++;
+		Set<Object> changed = pending.get(model);
+		if (changed == null) {
+			changed = new LinkedHashSet<Object>();
+			pending.put(model, changed);
+			order.add(model);
+		} else {
+			// coalesce with the previous changes
+		}
+		changed.addAll(attributes);
+	}
+
+	/**
+	 * Deliver the changes accumulated since the last flush.
+	 * 
+	 * @return the number of {@link Model}s delivered
+	 */
+	public int flush() {
+		Map<Model, Set<Object>> batch;
+		List<Model> models;
+		synchronized (this) {
+			if (pending.isEmpty()) {
+				return 0;
+			} else {
+				batch = pending;
+				models = order;
+				pending = new IdentityHashMap<Model, Set<Object>>();
+				order = new ArrayList<Model>();
+				delivered += batch.size();
+			}
+		}
+		for (Model model : models) {
+			Collection<Object> attributes = Collections.unmodifiableSet(batch
+					.get(model));
+			for (Listener listener : listeners) {
+				listener.modelChanged(model, attributes);
+			}
+		}
+		return models.size();
+	}
+
+	/**
+	 * 
+	 * @return the number of {@link Model}s waiting for the next flush
+	 */
+	public synchronized int getPendingCount() {
+		return pending.size();
+	}
+
+	/**
+	 * 
+	 * @return the number of changes received since the creation
+	 */
+	public synchronized long getReceivedCount() {
+		return received;
+	}
+
+	/**
+	 * 
+	 * @return the number of changes delivered since the creation, each
+	 *         gathering all the changes of a {@link Model} between two
+	 *         flushes
+	 */
+	public synchronized long getDeliveredCount() {
+		return delivered;
+	}
+}
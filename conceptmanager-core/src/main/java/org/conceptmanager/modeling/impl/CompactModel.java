@@ -0,0 +1,145 @@
+package org.conceptmanager.modeling.impl;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.conceptmanager.evaluation.Outcome;
+import org.conceptmanager.modeling.Model;
+
+/**
+ * A {@link CompactModel} is a static {@link Model}, like a {@link StaticModel}
+ * , but which stores only its values. The {@link Attribute}s are provided by an
+ * {@link AttributeSchema}, which can be shared by many {@link CompactModel}s,
+ * while the values are stored in a simple array following the slots of the
+ * {@link AttributeSchema}. This is relevant when a lot of snapshots having the
+ * same {@link Attribute}s have to be kept in memory.
+ *
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ *
+ */
+public class CompactModel implements Model {
+
+	private final AttributeSchema schema;
+	private final Object[] values;
+
+	/**
+	 * Instantiate a new model on the fly by providing its {@link Value}s,
+	 * ordered by slot.
+	 *
+	 * @param schema
+	 *            the {@link AttributeSchema} providing the {@link Attribute}s
+	 * @param values
+	 *            the {@link Value}s of the {@link Attribute}s, ordered by slot
+	 */
+	public CompactModel(AttributeSchema schema, Object... values) {
+		if (values.length != schema.size()) {
+			throw new IllegalArgumentException("The schema " + schema
+					+ " requires " + schema.size() + " values, not "
+					+ values.length);
+		} else {
+			this.schema = schema;
+			this.values = Arrays.copyOf(values, values.length);
+		}
+	}
+
+	/**
+	 * Instantiate a new model on the fly by providing the specific
+	 * {@link Attribute}s and their {@link Value}s. The {@link AttributeSchema}
+	 * is the shared one, as provided by
+	 * {@link AttributeSchema#intern(Collection)}.
+	 *
+	 * @param attributes
+	 *            the {@link Attribute}s and {@link Value}s to consider
+	 */
+	public <Attribute, Value> CompactModel(Map<Attribute, Value> attributes) {
+		this.schema = AttributeSchema.intern(attributes.keySet());
+		this.values = new Object[schema.size()];
+		for (Entry<Attribute, Value> entry : attributes.entrySet()) {
+			values[schema.getSlot(entry.getKey())] = entry.getValue();
+		}
+	}
+
+	/**
+	 * Instantiate a snapshot of another {@link Model}, the same way than
+	 * {@link StaticModel#StaticModel(Model)}. The {@link AttributeSchema} is
+	 * the shared one, as provided by {@link AttributeSchema#intern(Collection)}
+	 * .
+	 *
+	 * @param model
+	 *            the {@link Model} from which to take a snapshot
+	 */
+	public CompactModel(Model model) {
+		this(AttributeSchema.intern(model.getAttributes()), model);
+	}
+
+	/**
+	 * Instantiate a snapshot of another {@link Model} with a specific
+	 * {@link AttributeSchema}. All the {@link Attribute}s of the schema are
+	 * requested to the {@link Model}, so they should all be provided by it.
+	 *
+	 * @param schema
+	 *            the {@link AttributeSchema} providing the {@link Attribute}s
+	 * @param model
+	 *            the {@link Model} from which to take a snapshot
+	 * @throws UnknownAttributeException
+	 *             if an {@link Attribute} of the schema is not provided by the
+	 *             {@link Model}
+	 */
+	public CompactModel(AttributeSchema schema, Model model)
+			throws UnknownAttributeException {
+		this.schema = schema;
+		this.values = new Object[schema.size()];
+		for (int slot = 0; slot < values.length; slot++) {
+			values[slot] = model.getValueFor(schema.getAttribute(slot));
+		}
+	}
+
+	/**
+	 *
+	 * @return the {@link AttributeSchema} of this {@link CompactModel}
+	 */
+	public AttributeSchema getSchema() {
+		return schema;
+	}
+
+	@Override
+	public <Attribute> Collection<? extends Attribute> getAttributes() {
+		return schema.getAttributes();
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <Attribute, Value> Value getValueFor(Attribute attribute) {
+		int slot = schema.getSlot(attribute);
+		if (slot < 0) {
+			throw new UnknownAttributeException(attribute);
+		} else {
+			return (Value) values[slot];
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <Attribute, Value> Outcome<Value> tryGetValueFor(Attribute attribute) {
+		int slot = schema.getSlot(attribute);
+		if (slot < 0) {
+			return Outcome.absent();
+		} else {
+			return Outcome.of((Value) values[slot]);
+		}
+	}
+
+	/**
+	 *
+	 * @param slot
+	 *            the slot of the {@link Attribute}, as provided by
+	 *            {@link AttributeSchema#getSlot(Object)}
+	 * @return the {@link Value} of the {@link Attribute} assigned to this slot
+	 */
+	@SuppressWarnings("unchecked")
+	public <Value> Value getValueAt(int slot) {
+		return (Value) values[slot];
+	}
+}
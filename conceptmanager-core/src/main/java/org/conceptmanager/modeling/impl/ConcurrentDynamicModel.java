@@ -0,0 +1,184 @@
+package org.conceptmanager.modeling.impl;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.conceptmanager.evaluation.Evaluator;
+
+/**
+ * A {@link ConcurrentDynamicModel} is a {@link DynamicModel} which can be
+ * modified while other threads read it. The {@link Evaluator}s are stored in
+ * an immutable registry: reading ({@link #getValueFor(Object)},
+ * {@link #getAttributes()}, {@link #getEvaluatorFor(Object)}) only consults the
+ * current registry without locking, while each modification builds a new
+ * registry and swaps it atomically. Thus, {@link #getAttributes()} provides a
+ * consistent snapshot which can be iterated safely, even if the model is
+ * modified meanwhile.<br/>
+ * <br/>
+ * Modifications have a cost proportional to the number of {@link Attribute}s,
+ * which makes this model relevant when it is read much more often than it is
+ * modified. The registry also maps each {@link Evaluator} to its
+ * {@link Attribute}s, so {@link #removeEvaluator(Evaluator)} does not need to
+ * check all the {@link Evaluator}s. The {@link Listener}s are notified once
+ * the new registry is in place.
+ *
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ *
+ */
+public class ConcurrentDynamicModel extends DynamicModel {
+
+	private final AtomicReference<Registry> registry = new AtomicReference<Registry>(
+			new Registry(new HashMap<Object, Evaluator<?, ?>>()));
+
+	public ConcurrentDynamicModel(Object object) {
+		super(object);
+	}
+
+	public <Attribute, Value> ConcurrentDynamicModel(
+			Object object,
+			Collection<? extends Evaluator<? extends Attribute, ? extends Value>> evaluators) {
+		super(object);
+		Map<Object, Evaluator<?, ?>> map = new HashMap<Object, Evaluator<?, ?>>();
+		for (Evaluator<? extends Attribute, ? extends Value> evaluator : evaluators) {
+			Object attribute = evaluator.getAttribute();
+			Evaluator<?, ?> current = map.get(attribute);
+			if (current != null && !current.equals(evaluator)) {
+				throw new IllegalArgumentException(
+						"Another evaluator is currently used for the attribute "
+								+ attribute + ": " + current);
+			} else {
+				map.put(attribute, evaluator);
+			}
+		}
+		registry.set(new Registry(map));
+	}
+
+	@Override
+	public <Attribute, Value> void setEvaluatorFor(Attribute attribute,
+			Evaluator<? extends Object, ? extends Value> evaluator) {
+		if (evaluator == null) {
+			throw new NullPointerException("No evaluator has been provided.");
+		} else {
+			Registry current;
+			Registry next;
+			do {
+				current = registry.get();
+				Map<Object, Evaluator<?, ?>> map = current.copy();
+				map.put(attribute, evaluator);
+				next = new Registry(map);
+			} while (!registry.compareAndSet(current, next));
+			evaluatorsChanged(Collections.singleton(attribute));
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <Attribute, Value> Evaluator<Attribute, Value> getEvaluatorFor(
+			Attribute attribute) {
+		return (Evaluator<Attribute, Value>) registry.get().evaluators
+				.get(attribute);
+	}
+
+	@Override
+	public <Attribute> void removeEvaluatorFor(Attribute attribute) {
+		Registry current;
+		Registry next;
+		do {
+			current = registry.get();
+			if (!current.evaluators.containsKey(attribute)) {
+				return;
+			} else {
+				Map<Object, Evaluator<?, ?>> map = current.copy();
+				map.remove(attribute);
+				next = new Registry(map);
+			}
+		} while (!registry.compareAndSet(current, next));
+		evaluatorsChanged(Collections.singleton(attribute));
+	}
+
+	@Override
+	public <Attribute, Value> void addEvaluator(
+			Evaluator<Attribute, ? extends Value> evaluator) {
+		Attribute attribute = evaluator.getAttribute();
+		Registry current;
+		Registry next;
+		do {
+			current = registry.get();
+			Evaluator<?, ?> assigned = current.evaluators.get(attribute);
+			if (assigned != null && !assigned.equals(evaluator)) {
+				throw new IllegalArgumentException(
+						"Another evaluator is currently used for the attribute "
+								+ attribute + ": " + assigned);
+			} else if (assigned == evaluator) {
+				return;
+			} else {
+				Map<Object, Evaluator<?, ?>> map = current.copy();
+				map.put(attribute, evaluator);
+				next = new Registry(map);
+			}
+		} while (!registry.compareAndSet(current, next));
+		evaluatorsChanged(Collections.singleton(attribute));
+	}
+
+	@Override
+	public <Attribute, Value> void removeEvaluator(
+			Evaluator<Attribute, ? extends Value> evaluator) {
+		Registry current;
+		Registry next;
+		Set<Object> attributes;
+		do {
+			current = registry.get();
+			attributes = current.attributes.get(evaluator);
+			if (attributes == null) {
+				return;
+			} else {
+				Map<Object, Evaluator<?, ?>> map = current.copy();
+				map.keySet().removeAll(attributes);
+				next = new Registry(map);
+			}
+		} while (!registry.compareAndSet(current, next));
+		evaluatorsChanged(attributes);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <Attribute> Collection<? extends Attribute> getAttributes() {
+		return (Collection<? extends Attribute>) registry.get().evaluators
+				.keySet();
+	}
+
+	/**
+	 * An immutable state of the {@link Evaluator}s assigned, with the reverse
+	 * mapping from each {@link Evaluator} to its {@link Attribute}s.
+	 */
+	private static class Registry {
+		private final Map<Object, Evaluator<?, ?>> evaluators;
+		private final Map<Evaluator<?, ?>, Set<Object>> attributes;
+
+		public Registry(Map<Object, Evaluator<?, ?>> evaluators) {
+			Map<Evaluator<?, ?>, Set<Object>> attributes = new HashMap<Evaluator<?, ?>, Set<Object>>();
+			for (Entry<Object, Evaluator<?, ?>> entry : evaluators.entrySet()) {
+				Set<Object> set = attributes.get(entry.getValue());
+				if (set == null) {
+					set = new LinkedHashSet<Object>();
+					attributes.put(entry.getValue(), set);
+				} else {
+					// already known evaluator
+				}
+				set.add(entry.getKey());
+			}
+			this.evaluators = Collections.unmodifiableMap(evaluators);
+			this.attributes = attributes;
+		}
+
+		public Map<Object, Evaluator<?, ?>> copy() {
+			return new HashMap<Object, Evaluator<?, ?>>(evaluators);
+		}
+	}
+}
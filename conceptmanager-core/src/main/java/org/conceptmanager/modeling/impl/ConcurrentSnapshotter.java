@@ -0,0 +1,265 @@
+package org.conceptmanager.modeling.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.conceptmanager.modeling.Model;
+
+/**
+ * A {@link ConcurrentSnapshotter} builds {@link StaticModel}s like
+ * {@link StaticModel#StaticModel(Model)} does, but the attribute values are
+ * requested concurrently through a provided {@link ExecutorService} rather than
+ * one after the other. This is relevant when the {@link Model} is costly to
+ * evaluate, like a {@link DynamicModel} relying on slow evaluators.<br/>
+ * <br/>
+ * Each attribute has to be evaluated within a given timeout, counted from the
+ * moment its evaluation starts, so the evaluations waiting for a thread of the
+ * {@link ExecutorService} in a large batch are not counted late. This wait is
+ * not bounded, so the {@link ExecutorService} should not be blocked by
+ * evaluations ignoring interruptions. If the evaluation fails or takes too
+ * long, the {@link FailurePolicy} tells what to do with the attribute.
+ *
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ *
+ */
+public class ConcurrentSnapshotter {
+
+	/**
+	 * A {@link FailurePolicy} tells what a {@link ConcurrentSnapshotter} should
+	 * do with an attribute which fails to be evaluated or takes too long.
+	 *
+	 * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+	 *
+	 */
+	public static enum FailurePolicy {
+		/**
+		 * The attribute is kept in the snapshot, with a <code>null</code>
+		 * value (unknown value).
+		 */
+		UNKNOWN_VALUE,
+		/**
+		 * The attribute is not part of the snapshot.
+		 */
+		IGNORE_ATTRIBUTE,
+		/**
+		 * The snapshot is aborted by throwing a {@link CannotSnapshotException}.
+		 */
+		ABORT
+	}
+
+	private final ExecutorService executor;
+	private final long timeout;
+	private final TimeUnit unit;
+	private final FailurePolicy policy;
+
+	/**
+	 *
+	 * @param executor
+	 *            the {@link ExecutorService} to use for evaluating the
+	 *            attributes
+	 * @param timeout
+	 *            the maximum time allowed for each attribute
+	 * @param unit
+	 *            the {@link TimeUnit} of the timeout
+	 * @param policy
+	 *            the {@link FailurePolicy} to apply to failed or slow
+	 *            attributes
+	 */
+	public ConcurrentSnapshotter(ExecutorService executor, long timeout,
+			TimeUnit unit, FailurePolicy policy) {
+		if (executor == null) {
+			throw new NullPointerException("No executor has been provided.");
+		} else if (unit == null) {
+			throw new NullPointerException("No time unit has been provided.");
+		} else if (policy == null) {
+			throw new NullPointerException("No policy has been provided.");
+		} else {
+			this.executor = executor;
+			this.timeout = timeout;
+			this.unit = unit;
+			this.policy = policy;
+		}
+	}
+
+	/**
+	 *
+	 * @param model
+	 *            the {@link Model} from which to take a snapshot
+	 * @return the snapshot of the {@link Model}
+	 * @throws CannotSnapshotException
+	 *             if an attribute fails while the {@link FailurePolicy} is
+	 *             {@link FailurePolicy#ABORT}, or if the current thread is
+	 *             interrupted
+	 */
+	public StaticModel snapshot(Model model) throws CannotSnapshotException {
+		return snapshots(Collections.singletonList(model)).get(0);
+	}
+
+	/**
+	 * This method takes the snapshots of several {@link Model}s at once. All
+	 * the attributes of all the {@link Model}s are submitted before to wait
+	 * for any of them, so a single batch can use the whole
+	 * {@link ExecutorService}.
+	 *
+	 * @param models
+	 *            the {@link Model}s from which to take a snapshot
+	 * @return the snapshots, in the same order than the {@link Model}s
+	 * @throws CannotSnapshotException
+	 *             if an attribute fails while the {@link FailurePolicy} is
+	 *             {@link FailurePolicy#ABORT}, or if the current thread is
+	 *             interrupted
+	 */
+	public List<StaticModel> snapshots(Collection<? extends Model> models)
+			throws CannotSnapshotException {
+		List<Map<Object, Evaluation>> submissions = new ArrayList<Map<Object, Evaluation>>(
+				models.size());
+		for (Model model : models) {
+			Map<Object, Evaluation> evaluations = new LinkedHashMap<Object, Evaluation>();
+			for (Object attribute : model.getAttributes()) {
+				Evaluation evaluation = new Evaluation(model, attribute);
+				evaluation.future = executor.submit(evaluation);
+				evaluations.put(attribute, evaluation);
+			}
+			submissions.add(evaluations);
+		}
+
+		List<StaticModel> snapshots = new ArrayList<StaticModel>(models.size());
+		Iterator<? extends Model> modelIterator = models.iterator();
+		try {
+			for (int i = 0; i < submissions.size(); i++) {
+				snapshots.add(collect(modelIterator.next(), submissions.get(i)));
+			}
+		} finally {
+			if (snapshots.size() < submissions.size()) {
+				for (Map<Object, Evaluation> evaluations : submissions) {
+					for (Evaluation evaluation : evaluations.values()) {
+						evaluation.future.cancel(true);
+					}
+				}
+			} else {
+				// all done
+			}
+		}
+		return snapshots;
+	}
+
+	private StaticModel collect(Model model,
+			Map<Object, Evaluation> evaluations) {
+		Map<Object, Object> values = new HashMap<Object, Object>();
+		for (Entry<Object, Evaluation> entry : evaluations.entrySet()) {
+			Object attribute = entry.getKey();
+			Future<Object> future = entry.getValue().future;
+			try {
+				values.put(attribute, future.get(entry.getValue()
+						.awaitStart(), TimeUnit.NANOSECONDS));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new CannotSnapshotException(model, attribute, e);
+			} catch (ExecutionException e) {
+				fail(model, attribute, e.getCause(), values);
+			} catch (CancellationException e) {
+				fail(model, attribute, e, values);
+			} catch (TimeoutException e) {
+				future.cancel(true);
+				fail(model, attribute, e, values);
+			}
+		}
+		return new StaticModel(values);
+	}
+
+	private void fail(Model model, Object attribute, Throwable cause,
+			Map<Object, Object> values) {
+		if (policy == FailurePolicy.UNKNOWN_VALUE) {
+			values.put(attribute, null);
+		} else if (policy == FailurePolicy.IGNORE_ATTRIBUTE) {
+			// do not add it
+		} else if (policy == FailurePolicy.ABORT) {
+			throw new CannotSnapshotException(model, attribute, cause);
+		} else {
+			throw new IllegalStateException("Unmanaged policy: " + policy);
+		}
+	}
+
+	/**
+	 * The evaluation of an attribute, which tells when it starts.
+	 */
+	private class Evaluation implements Callable<Object> {
+		private final Model model;
+		private final Object attribute;
+		private final CountDownLatch started = new CountDownLatch(1);
+		private volatile long deadline;
+		private Future<Object> future;
+
+		public Evaluation(Model model, Object attribute) {
+			this.model = model;
+			this.attribute = attribute;
+		}
+
+		@Override
+		public Object call() throws Exception {
+			deadline = System.nanoTime() + unit.toNanos(timeout);
+			started.countDown();
+			return model.getValueFor(attribute);
+		}
+
+		/**
+		 * Wait for the evaluation to start. If the {@link ExecutorService}
+		 * terminates without having started it, like after
+		 * {@link ExecutorService#shutdownNow()}, the evaluation has been
+		 * dropped, so it is cancelled.
+		 * 
+		 * @return the time remaining before its deadline, in nanoseconds, 0
+		 *         if it is done without having started
+		 */
+		public long awaitStart() throws InterruptedException {
+			long poll = Math.min(Math.max(unit.toNanos(timeout),
+					TimeUnit.MILLISECONDS.toNanos(1)),
+					TimeUnit.MILLISECONDS.toNanos(100));
+			while (!started.await(poll, TimeUnit.NANOSECONDS)) {
+				if (future.isDone()) {
+					// cancelled before starting
+					return 0;
+				} else if (executor.isTerminated()) {
+					// dropped, it will never start
+					future.cancel(false);
+					return 0;
+				} else {
+					// still waiting for a thread
+				}
+			}
+			return Math.max(0, deadline - System.nanoTime());
+		}
+	}
+
+	/**
+	 *
+	 * @return the {@link FailurePolicy} applied by this
+	 *         {@link ConcurrentSnapshotter}
+	 */
+	public FailurePolicy getFailurePolicy() {
+		return policy;
+	}
+
+	@SuppressWarnings("serial")
+	public static class CannotSnapshotException extends RuntimeException {
+		public <Attribute> CannotSnapshotException(Model model,
+				Attribute attribute, Throwable cause) {
+			super("We cannot snapshot " + attribute + " of " + model, cause);
+		}
+	}
+}
@@ -0,0 +1,157 @@
+package org.conceptmanager.modeling.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.conceptmanager.modeling.Model;
+import org.conceptmanager.modeling.ModelDiff;
+
+/**
+ * A {@link DeltaChain} stores successive snapshots of the same object as a
+ * chain of {@link ModelDiff}s, each snapshot being stored as its differences
+ * with the previous one. To avoid applying the whole chain to rebuild a
+ * snapshot, a full snapshot (keyframe) is also kept at regular intervals:
+ * {@link #get(int)} starts from the closest keyframe and applies at most
+ * {@link #getKeyframeInterval()} - 1 {@link ModelDiff}s.<br/>
+ * <br/>
+ * The {@link ModelDiff}s themselves are available through
+ * {@link #getDelta(int)}, so a downstream cache which already has a snapshot
+ * can be updated incrementally with {@link #applyDeltas(int, int, Map)}
+ * rather than receiving each snapshot in full.
+ *
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ *
+ */
+public class DeltaChain {
+
+	private final int keyframeInterval;
+	private final List<ModelDiff> deltas = new ArrayList<ModelDiff>();
+	private final List<StaticModel> keyframes = new ArrayList<StaticModel>();
+	private StaticModel last = null;
+
+	/**
+	 *
+	 * @param keyframeInterval
+	 *            the number of snapshots between two keyframes, 1 to store
+	 *            each snapshot in full
+	 */
+	public DeltaChain(int keyframeInterval) {
+		if (keyframeInterval < 1) {
+			throw new IllegalArgumentException("Invalid keyframe interval: "
+					+ keyframeInterval);
+		} else {
+			this.keyframeInterval = keyframeInterval;
+		}
+	}
+
+	/**
+	 *
+	 * @return the number of snapshots between two keyframes
+	 */
+	public int getKeyframeInterval() {
+		return keyframeInterval;
+	}
+
+	/**
+	 * Add a snapshot at the end of the chain.
+	 *
+	 * @param model
+	 *            the {@link Model} to take a snapshot of
+	 * @return the {@link ModelDiff} with the previous snapshot
+	 */
+	public ModelDiff append(Model model) {
+		StaticModel snapshot = model instanceof StaticModel ? (StaticModel) model
+				: new StaticModel(model);
+		ModelDiff delta = ModelDiff.between(last, snapshot);
+		if (deltas.size() % keyframeInterval == 0) {
+			keyframes.add(snapshot);
+		} else {
+			// delta is enough
+		}
+		deltas.add(delta);
+		last = snapshot;
+		return delta;
+	}
+
+	/**
+	 *
+	 * @return the number of snapshots stored
+	 */
+	public int size() {
+		return deltas.size();
+	}
+
+	/**
+	 *
+	 * @return the number of keyframes stored
+	 */
+	public int getKeyframeCount() {
+		return keyframes.size();
+	}
+
+	/**
+	 *
+	 * @param index
+	 *            the index of the snapshot, in the order they were appended
+	 * @return the {@link ModelDiff} from the previous snapshot to this one,
+	 *         from an empty {@link Model} for the first one
+	 */
+	public ModelDiff getDelta(int index) {
+		return deltas.get(index);
+	}
+
+	/**
+	 *
+	 * @param index
+	 *            the index of the snapshot, in the order they were appended
+	 * @return the snapshot, rebuilt from the closest keyframe
+	 */
+	public StaticModel get(int index) {
+		if (index < 0 || index >= deltas.size()) {
+			throw new IndexOutOfBoundsException("Index " + index + " out of "
+					+ deltas.size());
+		} else if (index == deltas.size() - 1) {
+			return last;
+		} else {
+			int keyframe = index / keyframeInterval;
+			int start = keyframe * keyframeInterval;
+			if (start == index) {
+				return keyframes.get(keyframe);
+			} else {
+				StaticModel base = keyframes.get(keyframe);
+				Map<Object, Object> values = new HashMap<Object, Object>();
+				for (Object attribute : base.getAttributes()) {
+					values.put(attribute, base.getValueFor(attribute));
+				}
+				applyDeltas(start, index, values);
+				return new StaticModel(values);
+			}
+		}
+	}
+
+	/**
+	 * Update a cache of {@link Value}s, which provides the {@link Value}s of
+	 * a snapshot, so it provides the {@link Value}s of a later one.
+	 *
+	 * @param from
+	 *            the index of the snapshot currently in the cache, -1 for an
+	 *            empty cache
+	 * @param to
+	 *            the index of the snapshot to obtain
+	 * @param values
+	 *            the cache to update
+	 */
+	public <Attribute, Value> void applyDeltas(int from, int to,
+			Map<Attribute, Value> values) {
+		if (from < -1 || from > to || to >= deltas.size()) {
+			throw new IndexOutOfBoundsException("Invalid range ]" + from + ";"
+					+ to + "] for " + deltas.size() + " snapshots");
+		} else {
+			for (int i = from + 1; i <= to; i++) {
+				deltas.get(i).applyTo(values);
+			}
+		}
+	}
+}
@@ -0,0 +1,363 @@
+package org.conceptmanager.modeling.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+import org.conceptmanager.evaluation.Evaluator;
+import org.conceptmanager.evaluation.Outcome;
+import org.conceptmanager.modeling.Model;
+
+/**
+ * A {@link DependencyModel} is a {@link Model} where some {@link Attribute}s
+ * are derived from others. A source {@link Attribute} is evaluated on the
+ * object of the model, like in a {@link DynamicModel}, while a derived
+ * {@link Attribute} is evaluated on a {@link Model} providing the other
+ * {@link Attribute}s, among which its declared dependencies. The dependencies
+ * should be added before the {@link Attribute}s depending on them, so the
+ * {@link Attribute}s form an acyclic graph and the order of addition is a
+ * valid evaluation order.<br/>
+ * <br/>
+ * The {@link Value}s are cached: each {@link Attribute} is evaluated once,
+ * even if several derived {@link Attribute}s depend on it, and remains valid
+ * until it is invalidated. Invalidating an {@link Attribute}, typically when
+ * its source changes, invalidates also all the {@link Attribute}s depending on
+ * it, directly or not, so only them are evaluated again. An evaluation round
+ * can be run in parallel through {@link #refresh(Executor)}, which evaluates
+ * the invalid {@link Attribute}s as soon as their dependencies are evaluated.
+ * <br/>
+ * <br/>
+ * An {@link Attribute} requested concurrently is evaluated only once, the
+ * other requests waiting for its {@link Value}. If it is invalidated while
+ * being evaluated, the {@link Value} obtained is returned to the requests
+ * already waiting but it remains invalid, so the next request evaluates it
+ * again.
+ * 
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ * 
+ */
+public class DependencyModel implements Model {
+
+	private final Object object;
+	private final Map<Object, Evaluator<?, ?>> evaluators = new LinkedHashMap<Object, Evaluator<?, ?>>();
+	private final Map<Object, Set<Object>> dependencies = new ConcurrentHashMap<Object, Set<Object>>();
+	private final Map<Object, Set<Object>> dependents = new ConcurrentHashMap<Object, Set<Object>>();
+	private final Map<Object, Outcome<?>> values = new ConcurrentHashMap<Object, Outcome<?>>();
+	private final Set<Object> invalid = Collections
+			.newSetFromMap(new ConcurrentHashMap<Object, Boolean>());
+	/**
+	 * The number of invalidations of each {@link Attribute}, to detect the
+	 * ones happening during its evaluation. Also locks the invalidations.
+	 */
+	private final Map<Object, Long> versions = new HashMap<Object, Long>();
+	/**
+	 * The lock of each {@link Attribute}, held while evaluating it. They are
+	 * taken from the dependents to their dependencies, so without cycle.
+	 */
+	private final Map<Object, Object> locks = new ConcurrentHashMap<Object, Object>();
+	/**
+	 * The {@link Model} given to the derived {@link Evaluator}s.
+	 */
+	private final Model inputs = new Model() {
+
+		@Override
+		public <Attribute> Collection<? extends Attribute> getAttributes() {
+			return DependencyModel.this.getAttributes();
+		}
+
+		@Override
+		public <Attribute, Value> Value getValueFor(Attribute attribute) {
+			return DependencyModel.this.getValueFor(attribute);
+		}
+
+		@Override
+		public <Attribute, Value> Outcome<Value> tryGetValueFor(
+				Attribute attribute) {
+			return DependencyModel.this.tryGetValueFor(attribute);
+		}
+	};
+
+	/**
+	 * 
+	 * @param object
+	 *            the object evaluated by the source {@link Attribute}s
+	 */
+	public DependencyModel(Object object) {
+		this.object = object;
+	}
+
+	/**
+	 * 
+	 * @return the object evaluated by the source {@link Attribute}s
+	 */
+	public Object getObject() {
+		return object;
+	}
+
+	/**
+	 * Add a source {@link Attribute}, evaluated on the object of this
+	 * {@link DependencyModel}.
+	 * 
+	 * @param evaluator
+	 *            the {@link Evaluator} of the {@link Attribute}
+	 * @throws IllegalArgumentException
+	 *             if the {@link Attribute} is already provided
+	 */
+	public synchronized <Attribute> void addEvaluator(
+			Evaluator<Attribute, ?> evaluator) {
+		addEvaluator(evaluator, Collections.<Object> emptySet());
+	}
+
+	/**
+	 * Add a derived {@link Attribute}. Its {@link Evaluator} evaluates a
+	 * {@link Model} providing the {@link Attribute}s of this
+	 * {@link DependencyModel}, and should only read the declared dependencies.
+	 * 
+	 * @param evaluator
+	 *            the {@link Evaluator} of the {@link Attribute}
+	 * @param dependencies
+	 *            the {@link Attribute}s read by the {@link Evaluator}
+	 * @throws IllegalArgumentException
+	 *             if the {@link Attribute} is already provided or if a
+	 *             dependency is not
+	 */
+	public synchronized <Attribute> void addDerivedEvaluator(
+			Evaluator<Attribute, ?> evaluator,
+			Collection<? extends Object> dependencies) {
+		if (dependencies.isEmpty()) {
+			throw new IllegalArgumentException(
+					"A derived attribute needs dependencies.");
+		} else {
+			addEvaluator(evaluator, dependencies);
+		}
+	}
+
+	private void addEvaluator(Evaluator<?, ?> evaluator,
+			Collection<? extends Object> dependencies) {
+		Object attribute = evaluator.getAttribute();
+		if (evaluators.containsKey(attribute)) {
+			throw new IllegalArgumentException("The attribute " + attribute
+					+ " is already provided.");
+		} else {
+			for (Object dependency : dependencies) {
+				if (!evaluators.containsKey(dependency)) {
+					throw new IllegalArgumentException("The dependency "
+							+ dependency + " of " + attribute
+							+ " is not provided.");
+				} else {
+					// valid dependency
+				}
+			}
+			for (Object dependency : dependencies) {
+				dependents.get(dependency).add(attribute);
+			}
+			this.dependencies.put(attribute,
+					Collections.unmodifiableSet(new LinkedHashSet<Object>(
+							dependencies)));
+			this.dependents.put(attribute, Collections
+					.newSetFromMap(new ConcurrentHashMap<Object, Boolean>()));
+			evaluators.put(attribute, evaluator);
+			locks.put(attribute, new Object());
+			synchronized (versions) {
+				versions.put(attribute, 0L);
+				invalid.add(attribute);
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @param attribute
+	 *            an {@link Attribute} of this {@link DependencyModel}
+	 * @return the {@link Attribute}s it depends on, empty for a source
+	 *         {@link Attribute}
+	 */
+	public <Attribute> Set<Object> getDependencies(Attribute attribute) {
+		Set<Object> set = dependencies.get(attribute);
+		if (set == null) {
+			throw new UnknownAttributeException(attribute);
+		} else {
+			return set;
+		}
+	}
+
+	/**
+	 * Invalidate an {@link Attribute} and all the {@link Attribute}s depending
+	 * on it, directly or not, so they are evaluated again when requested.
+	 * 
+	 * @param attribute
+	 *            the {@link Attribute} which changed
+	 */
+	public <Attribute> void invalidate(Attribute attribute) {
+		if (!dependents.containsKey(attribute)) {
+			throw new UnknownAttributeException(attribute);
+		} else {
+			// also through the invalid ones, which may be under evaluation
+			Set<Object> visited = new HashSet<Object>();
+			LinkedList<Object> remaining = new LinkedList<Object>();
+			remaining.add(attribute);
+			synchronized (versions) {
+				while (!remaining.isEmpty()) {
+					Object next = remaining.removeFirst();
+					if (visited.add(next)) {
+						markInvalid(next);
+						remaining.addAll(dependents.get(next));
+					} else {
+						// already reached through another dependency
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Invalidate all the {@link Attribute}s, to start a new evaluation round.
+	 */
+	public void invalidateAll() {
+		synchronized (versions) {
+			for (Object attribute : versions.keySet()) {
+				markInvalid(attribute);
+			}
+		}
+	}
+
+	private void markInvalid(Object attribute) {
+		versions.put(attribute, versions.get(attribute) + 1);
+		invalid.add(attribute);
+	}
+
+	/**
+	 * 
+	 * @param attribute
+	 *            an {@link Attribute} of this {@link DependencyModel}
+	 * @return <code>true</code> if the {@link Attribute} will be evaluated at
+	 *         its next request
+	 */
+	public <Attribute> boolean isInvalid(Attribute attribute) {
+		return invalid.contains(attribute);
+	}
+
+	/**
+	 * Evaluate all the invalid {@link Attribute}s in parallel: each one is
+	 * evaluated on the {@link Executor} as soon as its invalid dependencies
+	 * are evaluated, so independent {@link Attribute}s are evaluated
+	 * concurrently. This method returns once all of them are evaluated.
+	 * 
+	 * @param executor
+	 *            the {@link Executor} running the evaluations
+	 */
+	public void refresh(final Executor executor) {
+		List<Object> order;
+		synchronized (this) {
+			order = new ArrayList<Object>(evaluators.keySet());
+		}
+		Map<Object, CompletableFuture<Void>> futures = new LinkedHashMap<Object, CompletableFuture<Void>>();
+		for (final Object attribute : order) {
+			if (invalid.contains(attribute)) {
+				List<CompletableFuture<Void>> inputs = new LinkedList<CompletableFuture<Void>>();
+				for (Object dependency : dependencies.get(attribute)) {
+					CompletableFuture<Void> input = futures.get(dependency);
+					if (input != null) {
+						inputs.add(input);
+					} else {
+						// already valid
+					}
+				}
+				Runnable evaluation = new Runnable() {
+
+					@Override
+					public void run() {
+						evaluate(attribute);
+					}
+				};
+				futures.put(attribute, CompletableFuture.allOf(
+						inputs.toArray(new CompletableFuture<?>[0]))
+						.thenRunAsync(evaluation, executor));
+			} else {
+				// still valid
+			}
+		}
+		CompletableFuture.allOf(
+				futures.values().toArray(new CompletableFuture<?>[0])).join();
+	}
+
+	@Override
+	public synchronized <Attribute> Collection<? extends Attribute> getAttributes() {
+		@SuppressWarnings("unchecked")
+		Collection<? extends Attribute> attributes = (Collection<? extends Attribute>) new ArrayList<Object>(
+				evaluators.keySet());
+		return attributes;
+	}
+
+	/**
+	 * @return the {@link Value} of the given {@link Attribute},
+	 *         <code>null</code> if this {@link Value} cannot be computed
+	 */
+	@Override
+	public <Attribute, Value> Value getValueFor(Attribute attribute) {
+		if (!dependencies.containsKey(attribute)) {
+			throw new UnknownAttributeException(attribute);
+		} else {
+			return this.<Attribute, Value> tryGetValueFor(attribute).getValue();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <Attribute, Value> Outcome<Value> tryGetValueFor(Attribute attribute) {
+		if (!dependencies.containsKey(attribute)) {
+			return Outcome.absent();
+		} else if (invalid.contains(attribute)) {
+			for (Object dependency : dependencies.get(attribute)) {
+				tryGetValueFor(dependency);
+			}
+			return (Outcome<Value>) evaluate(attribute);
+		} else {
+			return (Outcome<Value>) values.get(attribute);
+		}
+	}
+
+	/**
+	 * Evaluate an {@link Attribute} which dependencies are valid, unless it
+	 * has been evaluated by a concurrent request meanwhile.
+	 */
+	private Outcome<?> evaluate(Object attribute) {
+		synchronized (locks.get(attribute)) {
+			if (!invalid.contains(attribute)) {
+				return values.get(attribute);
+			} else {
+				Evaluator<?, ?> evaluator;
+				synchronized (this) {
+					evaluator = evaluators.get(attribute);
+				}
+				long version;
+				synchronized (versions) {
+					version = versions.get(attribute);
+				}
+				Set<Object> inputs = dependencies.get(attribute);
+				Outcome<?> outcome = evaluator
+						.tryEvaluates(inputs.isEmpty() ? object : this.inputs);
+				synchronized (versions) {
+					values.put(attribute, outcome);
+					if (versions.get(attribute) == version) {
+						invalid.remove(attribute);
+					} else {
+						// invalidated meanwhile, so evaluated again next time
+					}
+				}
+				return outcome;
+			}
+		}
+	}
+}
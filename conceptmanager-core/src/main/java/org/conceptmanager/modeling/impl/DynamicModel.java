@@ -1,13 +1,39 @@
 package org.conceptmanager.modeling.impl;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
 
+import org.conceptmanager.evaluation.DependentEvaluator;
+import org.conceptmanager.evaluation.DoubleResultColumn;
 import org.conceptmanager.evaluation.Evaluator;
 import org.conceptmanager.evaluation.Evaluator.CannotEvaluateException;
+import org.conceptmanager.evaluation.LongResultColumn;
+import org.conceptmanager.evaluation.ObservableEvaluator;
+import org.conceptmanager.evaluation.Outcome;
+import org.conceptmanager.evaluation.ResultColumn;
+import org.conceptmanager.evaluation.impl.AsyncEvaluator;
 import org.conceptmanager.modeling.Model;
+import org.conceptmanager.modeling.ObservableModel;
 
 /**
  * A {@link DynamicModel} is a {@link Model} which computes the attribute values
@@ -18,18 +44,50 @@ import org.conceptmanager.modeling.Model;
  * <br/>
  * Each {@link DynamicModel} is assigned to a unique object, provided by
  * {@link #getObject()}, and all the {@link Evaluator}s are applied on this
- * object to compute the attribute values.
+ * object to compute the attribute values.<br/>
+ * <br/>
+ * Several {@link Attribute}s can be evaluated at once, possibly concurrently,
+ * through {@link #getValuesFor(Collection, Executor, long, TimeUnit)}, so a
+ * slow {@link Evaluator} does not delay the others.<br/>
+ * <br/>
+ * A {@link DynamicModel} is an {@link ObservableModel}: once a
+ * {@link Listener} is added, it listens to its {@link ObservableEvaluator}s
+ * and, if its object is itself an {@link ObservableModel}, to its object. A
+ * change of an {@link Evaluator} is notified for the {@link Attribute}s it
+ * evaluates, and a change of the object for the {@link Attribute}s depending
+ * on the changed ones (see {@link DependentEvaluator}), so an abstraction only
+ * propagates what it actually abstracts. The subscriptions are removed with
+ * the last {@link Listener}, so a {@link DynamicModel} without
+ * {@link Listener} is not referenced by its {@link Evaluator}s.
  * 
  * @author Matthieu Vergne <matthieu.vergne@gmail.com>
  * 
  */
-public class DynamicModel implements Model {
+public class DynamicModel implements ObservableModel {
 
 	private final Object object;
-	private final Map<Object, Evaluator<?, ?>> evaluators = new HashMap<Object, Evaluator<?, ?>>();
+	private Map<Object, Evaluator<?, ?>> evaluators;
+	/**
+	 * Tells whether {@link #evaluators} is shared with other
+	 * {@link DynamicModel}s, in which case it should be copied before any
+	 * modification.
+	 */
+	private boolean shared;
+	/**
+	 * The {@link Listener}s and the subscriptions they require,
+	 * <code>null</code> as long as there is no {@link Listener}.
+	 */
+	private Observation observation = null;
 
 	public DynamicModel(Object object) {
+		this(object, new HashMap<Object, Evaluator<?, ?>>(), false);
+	}
+
+	private DynamicModel(Object object, Map<Object, Evaluator<?, ?>> evaluators,
+			boolean shared) {
 		this.object = object;
+		this.evaluators = evaluators;
+		this.shared = shared;
 	}
 
 	public <Attribute, Value> DynamicModel(
@@ -41,6 +99,29 @@ public class DynamicModel implements Model {
 		}
 	}
 
+	/**
+	 * Instantiate a {@link DynamicModel} which uses a shared assignment of
+	 * {@link Evaluator}s, like many {@link DynamicModel}s evaluating the same
+	 * {@link Attribute}s for different objects. No check is performed and
+	 * nothing is copied, so the instantiation does not depend on the number of
+	 * {@link Evaluator}s. The assignment is copied only if the
+	 * {@link DynamicModel} is modified, so the other {@link DynamicModel}s are
+	 * not impacted.
+	 * 
+	 * @param object
+	 *            the object represented by the {@link DynamicModel}
+	 * @param evaluators
+	 *            the {@link Evaluator} assigned to each {@link Attribute},
+	 *            which should not change anymore
+	 * @return the {@link DynamicModel} using this assignment
+	 */
+	@SuppressWarnings("unchecked")
+	public static <Attribute> DynamicModel sharing(Object object,
+			Map<? extends Attribute, ? extends Evaluator<?, ?>> evaluators) {
+		return new DynamicModel(object,
+				(Map<Object, Evaluator<?, ?>>) evaluators, true);
+	}
+
 	/**
 	 * 
 	 * @return the object represented by this {@link DynamicModel}
@@ -67,7 +148,8 @@ public class DynamicModel implements Model {
 		if (evaluator == null) {
 			throw new NullPointerException("No evaluator has been provided.");
 		} else {
-			evaluators.put(attribute, evaluator);
+			writableEvaluators().put(attribute, evaluator);
+			evaluatorsChanged(Collections.singleton(attribute));
 		}
 	}
 
@@ -91,7 +173,12 @@ public class DynamicModel implements Model {
 	 *            the {@link Attribute} to forget
 	 */
 	public <Attribute> void removeEvaluatorFor(Attribute attribute) {
-		evaluators.remove(attribute);
+		if (evaluators.containsKey(attribute)) {
+			writableEvaluators().remove(attribute);
+			evaluatorsChanged(Collections.singleton(attribute));
+		} else {
+			// nothing to remove
+		}
 	}
 
 	/**
@@ -116,8 +203,11 @@ public class DynamicModel implements Model {
 			throw new IllegalArgumentException(
 					"Another evaluator is currently used for the attribute "
 							+ attribute + ": " + evaluators.get(attribute));
+		} else if (evaluators.get(attribute) == evaluator) {
+			// already assigned
 		} else {
-			evaluators.put(attribute, evaluator);
+			writableEvaluators().put(attribute, evaluator);
+			evaluatorsChanged(Collections.singleton(attribute));
 		}
 	}
 
@@ -133,15 +223,98 @@ public class DynamicModel implements Model {
 	 */
 	public <Attribute, Value> void removeEvaluator(
 			Evaluator<Attribute, ? extends Value> evaluator) {
-		Iterator<Evaluator<?, ?>> iterator = evaluators.values().iterator();
+		if (!evaluators.containsValue(evaluator)) {
+			return;
+		} else {
+			// remove it
+		}
+		Collection<Object> removed = new ArrayList<Object>();
+		Iterator<Entry<Object, Evaluator<?, ?>>> iterator = writableEvaluators()
+				.entrySet().iterator();
 		while (iterator.hasNext()) {
-			Evaluator<?, ?> evaluator2 = iterator.next();
-			if (evaluator.equals(evaluator2)) {
+			Entry<Object, Evaluator<?, ?>> entry = iterator.next();
+			if (evaluator.equals(entry.getValue())) {
+				removed.add(entry.getKey());
 				iterator.remove();
 			} else {
 				// continue searching
 			}
 		}
+		evaluatorsChanged(removed);
+	}
+
+	private Map<Object, Evaluator<?, ?>> writableEvaluators() {
+		if (shared) {
+			evaluators = new HashMap<Object, Evaluator<?, ?>>(evaluators);
+			shared = false;
+		} else {
+			// already owned
+		}
+		return evaluators;
+	}
+
+	/**
+	 * Adding the first {@link Listener} subscribes this {@link DynamicModel}
+	 * to its {@link ObservableEvaluator}s and to its object if it is an
+	 * {@link ObservableModel}.
+	 */
+	@Override
+	public synchronized void addListener(Listener listener) {
+		if (listener == null) {
+			throw new NullPointerException("No listener has been provided.");
+		} else {
+			if (observation == null) {
+				observation = new Observation();
+				observation.subscribe();
+			} else {
+				// already observed
+			}
+			observation.listeners.add(listener);
+		}
+	}
+
+	/**
+	 * Removing the last {@link Listener} unsubscribes this
+	 * {@link DynamicModel} from its {@link ObservableEvaluator}s and its
+	 * object.
+	 */
+	@Override
+	public synchronized void removeListener(Listener listener) {
+		if (observation != null && observation.listeners.remove(listener)
+				&& observation.listeners.isEmpty()) {
+			observation.unsubscribe();
+			observation = null;
+		} else {
+			// still observed
+		}
+	}
+
+	/**
+	 * This method should be called after each modification of the
+	 * {@link Evaluator}s assigned, so the subscriptions are updated and the
+	 * {@link Listener}s notified. It is already called by the methods of
+	 * {@link DynamicModel}, a subclass only needs to call it if it manages the
+	 * {@link Evaluator}s differently.
+	 * 
+	 * @param attributes
+	 *            the {@link Attribute}s which have been assigned another
+	 *            {@link Evaluator}, added or removed
+	 */
+	protected void evaluatorsChanged(Collection<?> attributes) {
+		Observation observation;
+		synchronized (this) {
+			observation = this.observation;
+			if (observation == null) {
+				// nobody to notify
+			} else {
+				observation.subscribe();
+			}
+		}
+		if (observation == null) {
+			// nobody to notify
+		} else {
+			observation.notifyListeners(attributes);
+		}
 	}
 
 	@SuppressWarnings("unchecked")
@@ -154,18 +327,472 @@ public class DynamicModel implements Model {
 	 * @return the {@link Value} of the given {@link Attribute},
 	 *         <code>null</code> if this {@link Value} cannot be computed
 	 */
-	@SuppressWarnings("unchecked")
 	@Override
 	public <Attribute, Value> Value getValueFor(Attribute attribute) {
-		Evaluator<Attribute, Value> evaluator = (Evaluator<Attribute, Value>) evaluators
-				.get(attribute);
+		Evaluator<Attribute, Value> evaluator = getEvaluatorFor(attribute);
 		if (evaluator == null) {
 			throw new UnknownAttributeException(attribute);
 		} else {
-			try {
-				return evaluator.evaluates(object);
-			} catch (CannotEvaluateException e) {
-				return null;
+			return evaluator.tryEvaluates(object).getValue();
+		}
+	}
+
+	/**
+	 * @return the {@link Outcome} of the {@link Evaluator} assigned to the
+	 *         {@link Attribute}, absent if there is none
+	 */
+	@Override
+	public <Attribute, Value> Outcome<Value> tryGetValueFor(Attribute attribute) {
+		Evaluator<Attribute, Value> evaluator = getEvaluatorFor(attribute);
+		if (evaluator == null) {
+			return Outcome.absent();
+		} else {
+			return evaluator.tryEvaluates(object);
+		}
+	}
+
+	/**
+	 * This method evaluates several {@link Attribute}s, one after the other.
+	 *
+	 * @param attributes
+	 *            the {@link Attribute}s to evaluate
+	 * @return the {@link Value} of each {@link Attribute}, <code>null</code>
+	 *         if it cannot be computed
+	 * @throws UnknownAttributeException
+	 *             if one of the {@link Attribute}s is not provided by this
+	 *             {@link DynamicModel}
+	 */
+	public <Attribute, Value> Map<Attribute, Value> getValuesFor(
+			Collection<? extends Attribute> attributes) {
+		Map<Attribute, Value> values = new LinkedHashMap<Attribute, Value>();
+		for (Attribute attribute : attributes) {
+			values.put(attribute, this.<Attribute, Value> getValueFor(attribute));
+		}
+		return values;
+	}
+
+	/**
+	 * This method evaluates an {@link Attribute} on many {@link DynamicModel}s
+	 * at once. If all the {@link DynamicModel}s use the same {@link Evaluator}
+	 * for this {@link Attribute}, like the abstractions of a
+	 * {@link org.conceptmanager.abstraction.impl.FilteringAbstractor}, their
+	 * objects are evaluated as a single batch through
+	 * {@link Evaluator#evaluatesAll(List, ResultColumn)}. Otherwise, each
+	 * {@link DynamicModel} is evaluated separately.
+	 * 
+	 * @param models
+	 *            the {@link DynamicModel}s to evaluate
+	 * @param attribute
+	 *            the {@link Attribute} to evaluate
+	 * @return the {@link ResultColumn} of the {@link Value}s, the row i
+	 *         corresponding to the {@link DynamicModel} i
+	 * @throws UnknownAttributeException
+	 *             if one of the {@link DynamicModel}s does not provide the
+	 *             {@link Attribute}
+	 */
+	public static <Attribute, Value> ResultColumn<Value> getColumnFor(
+			List<? extends DynamicModel> models, Attribute attribute) {
+		ResultColumn<Value> column = new ResultColumn<Value>(models.size());
+		Evaluator<Attribute, Value> evaluator = getSharedEvaluator(models,
+				attribute);
+		if (evaluator != null) {
+			evaluator.evaluatesAll(getObjects(models), column);
+		} else {
+			int row = 0;
+			for (DynamicModel model : models) {
+				column.set(row++, model.<Attribute, Value> tryGetValueFor(attribute));
+			}
+		}
+		return column;
+	}
+
+	/**
+	 * This method is the <code>double</code> counterpart of
+	 * {@link #getColumnFor(List, Object)}, relying on
+	 * {@link Evaluator#evaluatesAllAsDoubles(List, DoubleResultColumn)}.
+	 * 
+	 * @param models
+	 *            the {@link DynamicModel}s to evaluate
+	 * @param attribute
+	 *            the numeric {@link Attribute} to evaluate
+	 * @return the {@link DoubleResultColumn} of the {@link Value}s, the row i
+	 *         corresponding to the {@link DynamicModel} i
+	 * @throws UnknownAttributeException
+	 *             if one of the {@link DynamicModel}s does not provide the
+	 *             {@link Attribute}
+	 */
+	public static <Attribute> DoubleResultColumn getDoubleColumnFor(
+			List<? extends DynamicModel> models, Attribute attribute) {
+		DoubleResultColumn column = new DoubleResultColumn(models.size());
+		Evaluator<Attribute, Object> evaluator = getSharedEvaluator(models,
+				attribute);
+		if (evaluator != null) {
+			evaluator.evaluatesAllAsDoubles(getObjects(models), column);
+		} else {
+			int row = 0;
+			for (DynamicModel model : models) {
+				column.set(row++, model.tryGetValueFor(attribute));
+			}
+		}
+		return column;
+	}
+
+	/**
+	 * This method is the <code>long</code> counterpart of
+	 * {@link #getColumnFor(List, Object)}, relying on
+	 * {@link Evaluator#evaluatesAllAsLongs(List, LongResultColumn)}.
+	 * 
+	 * @param models
+	 *            the {@link DynamicModel}s to evaluate
+	 * @param attribute
+	 *            the integral {@link Attribute} to evaluate
+	 * @return the {@link LongResultColumn} of the {@link Value}s, the row i
+	 *         corresponding to the {@link DynamicModel} i
+	 * @throws UnknownAttributeException
+	 *             if one of the {@link DynamicModel}s does not provide the
+	 *             {@link Attribute}
+	 */
+	public static <Attribute> LongResultColumn getLongColumnFor(
+			List<? extends DynamicModel> models, Attribute attribute) {
+		LongResultColumn column = new LongResultColumn(models.size());
+		Evaluator<Attribute, Object> evaluator = getSharedEvaluator(models,
+				attribute);
+		if (evaluator != null) {
+			evaluator.evaluatesAllAsLongs(getObjects(models), column);
+		} else {
+			int row = 0;
+			for (DynamicModel model : models) {
+				column.set(row++, model.tryGetValueFor(attribute));
+			}
+		}
+		return column;
+	}
+
+	/**
+	 * 
+	 * @return the {@link Evaluator} used by all the {@link DynamicModel}s for
+	 *         the {@link Attribute}, <code>null</code> if they do not share
+	 *         the same one
+	 * @throws UnknownAttributeException
+	 *             if one of the {@link DynamicModel}s does not provide the
+	 *             {@link Attribute}
+	 */
+	private static <Attribute, Value> Evaluator<Attribute, Value> getSharedEvaluator(
+			List<? extends DynamicModel> models, Attribute attribute) {
+		Evaluator<Attribute, Value> shared = null;
+		boolean isShared = true;
+		for (DynamicModel model : models) {
+			Evaluator<Attribute, Value> evaluator = model
+					.getEvaluatorFor(attribute);
+			if (evaluator == null) {
+				throw new UnknownAttributeException(attribute);
+			} else if (shared == null) {
+				shared = evaluator;
+			} else if (shared != evaluator) {
+				isShared = false;
+			} else {
+				// same evaluator
+			}
+		}
+		return isShared ? shared : null;
+	}
+
+	/**
+	 * Copy the objects once, since the {@link DynamicModel}s may be in a
+	 * {@link List} without random access, like a {@link java.util.LinkedList}.
+	 */
+	private static List<Object> getObjects(List<? extends DynamicModel> models) {
+		List<Object> objects = new ArrayList<Object>(models.size());
+		for (DynamicModel model : models) {
+			objects.add(model.getObject());
+		}
+		return objects;
+	}
+
+	/**
+	 * This method evaluates asynchronously an {@link Attribute}. If its
+	 * {@link Evaluator} is an {@link AsyncEvaluator}, it is used as is,
+	 * otherwise the evaluation is run on the given {@link Executor}.
+	 *
+	 * @param attribute
+	 *            the {@link Attribute} to evaluate
+	 * @param executor
+	 *            the {@link Executor} to run the evaluation on
+	 * @return the {@link CompletableFuture} of the {@link Value}, which
+	 *         completes with <code>null</code> if the {@link Value} cannot be
+	 *         computed, and exceptionally if the {@link Evaluator} fails
+	 *         unexpectedly. Cancelling it cancels the evaluation, interrupting
+	 *         it if it runs on the given {@link Executor}.
+	 * @throws UnknownAttributeException
+	 *             if the {@link Attribute} is not provided by this
+	 *             {@link DynamicModel}
+	 */
+	@SuppressWarnings("unchecked")
+	public <Attribute, Value> CompletableFuture<Value> getValueForAsync(
+			Attribute attribute, Executor executor) {
+		final Evaluator<Attribute, Value> evaluator = getEvaluatorFor(attribute);
+		if (evaluator == null) {
+			throw new UnknownAttributeException(attribute);
+		} else {
+			final CompletableFuture<Value> result = new CompletableFuture<Value>();
+			final Future<Value> evaluation;
+			if (evaluator instanceof AsyncEvaluator) {
+				CompletableFuture<Value> future = ((AsyncEvaluator<Attribute, Value>) evaluator)
+						.evaluatesAsync(object);
+				future.whenComplete(new BiConsumer<Value, Throwable>() {
+
+					@Override
+					public void accept(Value value, Throwable error) {
+						complete(result, value, error);
+					}
+				});
+				evaluation = future;
+			} else {
+				FutureTask<Value> task = new FutureTask<Value>(
+						new Callable<Value>() {
+
+							@Override
+							public Value call() {
+								Outcome<Value> outcome = evaluator
+										.tryEvaluates(object);
+								return outcome.isFailed() ? null : outcome
+										.getValue();
+							}
+						}) {
+
+					@Override
+					protected void done() {
+						if (isCancelled()) {
+							// cancelled through the result
+						} else {
+							try {
+								result.complete(get());
+							} catch (ExecutionException e) {
+								complete(result, null, e.getCause());
+							} catch (InterruptedException e) {
+								// cannot happen, the task being done
+								Thread.currentThread().interrupt();
+							}
+						}
+					}
+				};
+				evaluation = task;
+				executor.execute(task);
+			}
+			result.whenComplete(new BiConsumer<Value, Throwable>() {
+
+				@Override
+				public void accept(Value value, Throwable error) {
+					if (result.isCancelled()) {
+						evaluation.cancel(true);
+					} else {
+						// evaluation already done
+					}
+				}
+			});
+			return result;
+		}
+	}
+
+	/**
+	 * Complete the {@link CompletableFuture} with the result of an
+	 * evaluation, a {@link CannotEvaluateException} leading to a
+	 * <code>null</code> {@link Value}.
+	 */
+	private static <Value> void complete(CompletableFuture<Value> future,
+			Value value, Throwable error) {
+		if (error instanceof CompletionException && error.getCause() != null) {
+			error = error.getCause();
+		} else {
+			// not wrapped
+		}
+		if (error == null) {
+			future.complete(value);
+		} else if (error instanceof CannotEvaluateException) {
+			future.complete(null);
+		} else {
+			future.completeExceptionally(error);
+		}
+	}
+
+	/**
+	 * This method evaluates several {@link Attribute}s concurrently: all the
+	 * evaluations are started at once on the given {@link Executor}, then
+	 * their results are collected until a single deadline. The
+	 * {@link Attribute}s which are not evaluated before the deadline have a
+	 * <code>null</code> {@link Value}, like the ones which cannot be computed.
+	 *
+	 * @param attributes
+	 *            the {@link Attribute}s to evaluate
+	 * @param executor
+	 *            the {@link Executor} to run the evaluations on
+	 * @param timeout
+	 *            the time allowed to evaluate all the {@link Attribute}s
+	 * @param unit
+	 *            the {@link TimeUnit} of the timeout
+	 * @return the {@link Value} of each {@link Attribute}, <code>null</code>
+	 *         if it cannot be computed in time
+	 * @throws UnknownAttributeException
+	 *             if one of the {@link Attribute}s is not provided by this
+	 *             {@link DynamicModel}
+	 * @throws CompletionException
+	 *             if an {@link Evaluator} fails unexpectedly, the exception
+	 *             thrown by the {@link Evaluator} being its cause
+	 */
+	public <Attribute, Value> Map<Attribute, Value> getValuesFor(
+			Collection<? extends Attribute> attributes, Executor executor,
+			long timeout, TimeUnit unit) {
+		for (Attribute attribute : attributes) {
+			if (getEvaluatorFor(attribute) == null) {
+				throw new UnknownAttributeException(attribute);
+			} else {
+				// evaluable
+			}
+		}
+
+		Map<Attribute, CompletableFuture<Value>> futures = new LinkedHashMap<Attribute, CompletableFuture<Value>>();
+		for (Attribute attribute : attributes) {
+			futures.put(attribute,
+					this.<Attribute, Value> getValueForAsync(attribute, executor));
+		}
+		try {
+			CompletableFuture.allOf(
+					futures.values().toArray(new CompletableFuture<?>[0])).get(
+					timeout, unit);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			// unexpected failures, thrown below
+		} catch (TimeoutException e) {
+			// late values are unknown
+		}
+
+		for (CompletableFuture<Value> future : futures.values()) {
+			if (future.isDone()) {
+				// result available
+			} else {
+				future.cancel(true);
+			}
+		}
+		Map<Attribute, Value> values = new LinkedHashMap<Attribute, Value>();
+		for (Entry<Attribute, CompletableFuture<Value>> entry : futures
+				.entrySet()) {
+			CompletableFuture<Value> future = entry.getValue();
+			if (future.isCancelled()) {
+				values.put(entry.getKey(), null);
+			} else {
+				values.put(entry.getKey(), future.join());
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * The {@link Listener}s of a {@link DynamicModel}, which listens to the
+	 * sources of changes on their behalf.
+	 */
+	private class Observation implements ObservableEvaluator.Listener,
+			ObservableModel.Listener {
+		private final Collection<ObservableModel.Listener> listeners = new CopyOnWriteArrayList<ObservableModel.Listener>();
+		private final Set<ObservableEvaluator<?, ?>> evaluators = new HashSet<ObservableEvaluator<?, ?>>();
+		private ObservableModel model = null;
+
+		/**
+		 * Subscribe to the current sources of changes, and unsubscribe from
+		 * the ones which are not used anymore.
+		 */
+		public void subscribe() {
+			Set<ObservableEvaluator<?, ?>> current = new HashSet<ObservableEvaluator<?, ?>>();
+			for (Object attribute : getAttributes()) {
+				Evaluator<?, ?> evaluator = getEvaluatorFor(attribute);
+				if (evaluator instanceof ObservableEvaluator) {
+					current.add((ObservableEvaluator<?, ?>) evaluator);
+				} else {
+					// cannot be listened
+				}
+			}
+			for (ObservableEvaluator<?, ?> evaluator : evaluators) {
+				if (current.contains(evaluator)) {
+					// still used
+				} else {
+					evaluator.removeListener(this);
+				}
+			}
+			for (ObservableEvaluator<?, ?> evaluator : current) {
+				if (evaluators.contains(evaluator)) {
+					// already listened
+				} else {
+					evaluator.addListener(this);
+				}
+			}
+			evaluators.clear();
+			evaluators.addAll(current);
+
+			if (model == null && object instanceof ObservableModel
+					&& object != DynamicModel.this) {
+				model = (ObservableModel) object;
+				model.addListener(this);
+			} else {
+				// already listened or cannot be listened
+			}
+		}
+
+		public void unsubscribe() {
+			for (ObservableEvaluator<?, ?> evaluator : evaluators) {
+				evaluator.removeListener(this);
+			}
+			evaluators.clear();
+			if (model == null) {
+				// no object listened
+			} else {
+				model.removeListener(this);
+				model = null;
+			}
+		}
+
+		@Override
+		public void evaluatorChanged(Evaluator<?, ?> evaluator) {
+			Collection<Object> changed = new ArrayList<Object>();
+			for (Object attribute : getAttributes()) {
+				if (getEvaluatorFor(attribute) == evaluator) {
+					changed.add(attribute);
+				} else {
+					// not impacted
+				}
+			}
+			notifyListeners(changed);
+		}
+
+		@Override
+		public void modelChanged(Model model, Collection<?> attributes) {
+			Collection<Object> changed = new ArrayList<Object>();
+			for (Object attribute : getAttributes()) {
+				Evaluator<?, ?> evaluator = getEvaluatorFor(attribute);
+				if (evaluator instanceof DependentEvaluator) {
+					Collection<?> dependencies = ((DependentEvaluator<?, ?>) evaluator)
+							.getDependencies();
+					if (Collections.disjoint(dependencies, attributes)) {
+						// not impacted
+					} else {
+						changed.add(attribute);
+					}
+				} else {
+					// may read anything, so assume it changed
+					changed.add(attribute);
+				}
+			}
+			notifyListeners(changed);
+		}
+
+		public void notifyListeners(Collection<?> attributes) {
+			if (attributes.isEmpty()) {
+				// nothing changed
+			} else {
+				Collection<?> changed = Collections
+						.unmodifiableCollection(attributes);
+				for (ObservableModel.Listener listener : listeners) {
+					listener.modelChanged(DynamicModel.this, changed);
+				}
 			}
 		}
 	}
@@ -0,0 +1,512 @@
+package org.conceptmanager.modeling.impl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.conceptmanager.evaluation.Outcome;
+import org.conceptmanager.modeling.Model;
+import org.conceptmanager.util.IntBitmap;
+
+/**
+ * A {@link ModelIndex} is a secondary index over a collection of {@link Model}
+ * s, allowing to retrieve the {@link Model}s having a given {@link Value} for
+ * an {@link Attribute} without evaluating all of them. Each {@link Model}
+ * inserted receives an identifier, and each indexed {@link Attribute} maps its
+ * {@link Value}s to the {@link IntBitmap} of the identifiers having this
+ * {@link Value}. Conjunctive queries, like
+ * {@link #selectAll(Map)}, are then resolved by intersecting these
+ * {@link IntBitmap}s.<br/>
+ * <br/>
+ * An index is created for an {@link Attribute} through
+ * {@link #createIndex(Object, IndexType)}, and is maintained each time a
+ * {@link Model} is inserted or removed. The {@link Value}s indexed are the ones
+ * at insertion time: if a {@link Model} changes, like a {@link DynamicModel},
+ * {@link #update(Model)} should be called to reindex it. {@link Model}s are
+ * identified by identity, not equality. A {@link ModelIndex} can be used
+ * concurrently.
+ *
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ *
+ */
+public class ModelIndex {
+
+	/**
+	 * An {@link IndexType} tells which queries are efficiently supported by
+	 * the index of an {@link Attribute}.
+	 *
+	 * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+	 *
+	 */
+	public static enum IndexType {
+		/**
+		 * The {@link Value}s are hashed, which is the most efficient for
+		 * equality queries.
+		 */
+		HASH,
+		/**
+		 * The {@link Value}s are sorted, which allows range queries. The
+		 * {@link Value}s should be mutually {@link Comparable}, and the
+		 * <code>null</code> ones (unknown values) are not indexed.
+		 */
+		SORTED
+	}
+
+	/**
+	 * Placeholder for the {@link Value} of a {@link Model} which does not
+	 * provide the indexed {@link Attribute}.
+	 */
+	private static final Object ABSENT = new Object();
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private final List<Model> models = new ArrayList<Model>();
+	private final Map<Model, Integer> ids = new IdentityHashMap<Model, Integer>();
+	private final Deque<Integer> freeIds = new ArrayDeque<Integer>();
+	private final Map<Object, AttributeIndex> indexes = new LinkedHashMap<Object, AttributeIndex>();
+
+	/**
+	 * Create the index of an {@link Attribute}, which is immediately filled
+	 * with the {@link Model}s already inserted.
+	 *
+	 * @param attribute
+	 *            the {@link Attribute} to index
+	 * @param type
+	 *            the {@link IndexType} to use
+	 * @throws IllegalArgumentException
+	 *             if the {@link Attribute} is already indexed
+	 */
+	public <Attribute> void createIndex(Attribute attribute, IndexType type) {
+		lock.writeLock().lock();
+		try {
+			if (indexes.containsKey(attribute)) {
+				throw new IllegalArgumentException("Attribute already indexed: "
+						+ attribute);
+			} else {
+				AttributeIndex index;
+				if (type == IndexType.HASH) {
+					index = new AttributeIndex(new HashMap<Object, IntBitmap>());
+				} else if (type == IndexType.SORTED) {
+					index = new AttributeIndex(new TreeMap<Object, IntBitmap>());
+				} else {
+					throw new IllegalArgumentException("Unmanaged type: "
+							+ type);
+				}
+				for (int id = 0; id < models.size(); id++) {
+					Model model = models.get(id);
+					if (model != null) {
+						index.add(id, valueOf(model, attribute));
+					} else {
+						index.values.add(ABSENT);
+					}
+				}
+				indexes.put(attribute, index);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Remove the index of an {@link Attribute}. If the {@link Attribute} is
+	 * not indexed, this method has no effect.
+	 *
+	 * @param attribute
+	 *            the {@link Attribute} to forget
+	 */
+	public <Attribute> void removeIndex(Attribute attribute) {
+		lock.writeLock().lock();
+		try {
+			indexes.remove(attribute);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Insert a {@link Model} in all the indexes. If the {@link Model} is
+	 * already inserted, it is reindexed as with {@link #update(Model)}.
+	 *
+	 * @param model
+	 *            the {@link Model} to insert
+	 * @return the identifier of the {@link Model}
+	 */
+	public int insert(Model model) {
+		lock.writeLock().lock();
+		try {
+			Integer id = ids.get(model);
+			if (id == null) {
+				if (freeIds.isEmpty()) {
+					id = models.size();
+					models.add(model);
+					for (AttributeIndex index : indexes.values()) {
+						index.values.add(ABSENT);
+					}
+				} else {
+					id = freeIds.pop();
+					models.set(id, model);
+				}
+				ids.put(model, id);
+			} else {
+				unindex(id);
+			}
+			for (Entry<Object, AttributeIndex> entry : indexes.entrySet()) {
+				entry.getValue().add(id, valueOf(model, entry.getKey()));
+			}
+			return id;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Reindex a {@link Model} already inserted, so the indexes consider its
+	 * current {@link Value}s. If the {@link Model} is not inserted yet, it is
+	 * inserted.
+	 *
+	 * @param model
+	 *            the {@link Model} to reindex
+	 * @return the identifier of the {@link Model}
+	 */
+	public int update(Model model) {
+		return insert(model);
+	}
+
+	/**
+	 * Remove a {@link Model} from all the indexes. Its identifier may be
+	 * reused for another {@link Model} inserted later.
+	 *
+	 * @param model
+	 *            the {@link Model} to remove
+	 * @return <code>true</code> if the {@link Model} was inserted
+	 */
+	public boolean remove(Model model) {
+		lock.writeLock().lock();
+		try {
+			Integer id = ids.remove(model);
+			if (id == null) {
+				return false;
+			} else {
+				unindex(id);
+				models.set(id, null);
+				freeIds.push(id);
+				return true;
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 *
+	 * @return the number of {@link Model}s inserted
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return ids.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 *
+	 * @param id
+	 *            the identifier of a {@link Model}
+	 * @return the {@link Model} having this identifier, <code>null</code> if
+	 *         there is none
+	 */
+	public Model getModel(int id) {
+		lock.readLock().lock();
+		try {
+			return id >= 0 && id < models.size() ? models.get(id) : null;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 *
+	 * @param selection
+	 *            the identifiers of the {@link Model}s
+	 * @return the {@link Model}s selected, in increasing identifier order
+	 */
+	public List<Model> getModels(IntBitmap selection) {
+		lock.readLock().lock();
+		try {
+			List<Model> selected = new ArrayList<Model>(selection.cardinality());
+			for (int id : selection.toArray()) {
+				Model model = id < models.size() ? models.get(id) : null;
+				if (model != null) {
+					selected.add(model);
+				} else {
+					// removed in the meantime
+				}
+			}
+			return selected;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 *
+	 * @param attribute
+	 *            the indexed {@link Attribute}
+	 * @param value
+	 *            the {@link Value} to search for
+	 * @return the identifiers of the {@link Model}s having this {@link Value}
+	 * @throws IllegalArgumentException
+	 *             if the {@link Attribute} is not indexed
+	 */
+	public <Attribute> IntBitmap selectEqual(Attribute attribute, Object value) {
+		lock.readLock().lock();
+		try {
+			IntBitmap ids = getIndex(attribute).get(value);
+			return ids == null ? new IntBitmap() : ids.copy();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Select the {@link Model}s having a {@link Value} in a given range. With
+	 * a {@link IndexType#HASH} index, all the distinct {@link Value}s are
+	 * checked, so a {@link IndexType#SORTED} index is preferable for such
+	 * queries. The unknown {@link Value}s are never selected.
+	 *
+	 * @param attribute
+	 *            the indexed {@link Attribute}
+	 * @param from
+	 *            the lower bound, <code>null</code> for no lower bound
+	 * @param fromInclusive
+	 *            <code>true</code> if the lower bound is accepted
+	 * @param to
+	 *            the upper bound, <code>null</code> for no upper bound
+	 * @param toInclusive
+	 *            <code>true</code> if the upper bound is accepted
+	 * @return the identifiers of the {@link Model}s having a {@link Value} in
+	 *         the range
+	 * @throws IllegalArgumentException
+	 *             if the {@link Attribute} is not indexed
+	 */
+	public <Attribute, Value extends Comparable<? super Value>> IntBitmap selectBetween(
+			Attribute attribute, Value from, boolean fromInclusive, Value to,
+			boolean toInclusive) {
+		lock.readLock().lock();
+		try {
+			return getIndex(attribute).between(from, fromInclusive, to,
+					toInclusive);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Select the {@link Model}s satisfying all the given equalities at once.
+	 * The {@link IntBitmap}s are intersected starting from the smallest one,
+	 * so the query stops as soon as no {@link Model} remains.
+	 *
+	 * @param equalities
+	 *            the {@link Value} required for each indexed {@link Attribute}
+	 * @return the identifiers of the {@link Model}s satisfying all the
+	 *         equalities
+	 * @throws IllegalArgumentException
+	 *             if one of the {@link Attribute}s is not indexed
+	 */
+	public <Attribute> IntBitmap selectAll(Map<Attribute, ?> equalities) {
+		lock.readLock().lock();
+		try {
+			IntBitmap[] candidates = new IntBitmap[equalities.size()];
+			int count = 0;
+			for (Entry<Attribute, ?> entry : equalities.entrySet()) {
+				IntBitmap selected = getIndex(entry.getKey()).get(
+						entry.getValue());
+				if (selected == null) {
+					return new IntBitmap();
+				} else {
+					candidates[count++] = selected;
+				}
+			}
+			if (count == 0) {
+				IntBitmap all = new IntBitmap();
+				for (int id : ids.values()) {
+					all.add(id);
+				}
+				return all;
+			} else {
+				return intersect(candidates);
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private static IntBitmap intersect(IntBitmap... bitmaps) {
+		Arrays.sort(bitmaps, new Comparator<IntBitmap>() {
+
+			@Override
+			public int compare(IntBitmap a, IntBitmap b) {
+				return Integer.compare(a.cardinality(), b.cardinality());
+			}
+		});
+		IntBitmap result = bitmaps[0].copy();
+		for (int i = 1; i < bitmaps.length && !result.isEmpty(); i++) {
+			result = IntBitmap.and(result, bitmaps[i]);
+		}
+		return result;
+	}
+
+	private AttributeIndex getIndex(Object attribute) {
+		AttributeIndex index = indexes.get(attribute);
+		if (index == null) {
+			throw new IllegalArgumentException("Attribute not indexed: "
+					+ attribute);
+		} else {
+			return index;
+		}
+	}
+
+	private void unindex(int id) {
+		for (AttributeIndex index : indexes.values()) {
+			index.remove(id);
+		}
+	}
+
+	private static Object valueOf(Model model, Object attribute) {
+		Outcome<Object> outcome = model.tryGetValueFor(attribute);
+		return outcome.isAbsent() ? ABSENT : outcome.getValue();
+	}
+
+	/**
+	 * The index of a single {@link Attribute}, which maps each {@link Value}
+	 * to the identifiers having it, and remembers the {@link Value} indexed
+	 * for each identifier to be able to remove it.
+	 */
+	private static class AttributeIndex {
+		private final Map<Object, IntBitmap> ids;
+		private final List<Object> values = new ArrayList<Object>();
+
+		public AttributeIndex(Map<Object, IntBitmap> ids) {
+			this.ids = ids;
+		}
+
+		private boolean isSorted() {
+			return ids instanceof NavigableMap;
+		}
+
+		public void add(int id, Object value) {
+			if (id == values.size()) {
+				values.add(ABSENT);
+			} else {
+				// already allocated
+			}
+			if (value == ABSENT || value == null && isSorted()) {
+				values.set(id, value);
+			} else {
+				try {
+					IntBitmap bitmap = ids.get(value);
+					if (bitmap == null) {
+						bitmap = new IntBitmap();
+						ids.put(value, bitmap);
+					} else {
+						// already known value
+					}
+					bitmap.add(id);
+				} catch (ClassCastException e) {
+					throw new IllegalArgumentException("Value not comparable: "
+							+ value, e);
+				}
+				values.set(id, value);
+			}
+		}
+
+		public void remove(int id) {
+			Object value = values.get(id);
+			values.set(id, ABSENT);
+			if (value == ABSENT || value == null && isSorted()) {
+				// not indexed
+			} else {
+				IntBitmap bitmap = ids.get(value);
+				bitmap.remove(id);
+				if (bitmap.isEmpty()) {
+					ids.remove(value);
+				} else {
+					// other models still have this value
+				}
+			}
+		}
+
+		public IntBitmap get(Object value) {
+			if (value == null && isSorted()) {
+				return null;
+			} else {
+				try {
+					return ids.get(value);
+				} catch (ClassCastException e) {
+					return null;
+				}
+			}
+		}
+
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		public IntBitmap between(Comparable from, boolean fromInclusive,
+				Comparable to, boolean toInclusive) {
+			Map<Object, IntBitmap> range;
+			if (isSorted()) {
+				NavigableMap<Object, IntBitmap> sorted = (NavigableMap<Object, IntBitmap>) ids;
+				if (from == null && to == null) {
+					range = sorted;
+				} else if (from == null) {
+					range = sorted.headMap(to, toInclusive);
+				} else if (to == null) {
+					range = sorted.tailMap(from, fromInclusive);
+				} else if (from.compareTo(to) > 0) {
+					range = new HashMap<Object, IntBitmap>();
+				} else {
+					range = sorted.subMap(from, fromInclusive, to, toInclusive);
+				}
+			} else {
+				range = new HashMap<Object, IntBitmap>();
+				for (Entry<Object, IntBitmap> entry : ids.entrySet()) {
+					Object value = entry.getKey();
+					if (value instanceof Comparable) {
+						try {
+							if ((from == null || (fromInclusive ? from
+									.compareTo(value) <= 0 : from
+									.compareTo(value) < 0))
+									&& (to == null || (toInclusive ? to
+											.compareTo(value) >= 0 : to
+											.compareTo(value) > 0))) {
+								range.put(value, entry.getValue());
+							} else {
+								// out of range
+							}
+						} catch (ClassCastException e) {
+							// not comparable with the bounds
+						}
+					} else {
+						// not comparable at all
+					}
+				}
+			}
+			IntBitmap result = new IntBitmap();
+			for (IntBitmap bitmap : range.values()) {
+				result.addAll(bitmap);
+			}
+			return result;
+		}
+	}
+}
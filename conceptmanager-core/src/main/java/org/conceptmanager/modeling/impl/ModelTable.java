@@ -0,0 +1,735 @@
+package org.conceptmanager.modeling.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.conceptmanager.evaluation.DoubleResultColumn;
+import org.conceptmanager.evaluation.LongResultColumn;
+import org.conceptmanager.evaluation.ResultColumn;
+import org.conceptmanager.modeling.Model;
+
+/**
+ * A {@link ModelTable} stores many {@link Model}s sharing the same
+ * {@link AttributeSchema} in a columnar way: each {@link Attribute} has its own
+ * column, which stores the {@link Value}s of all the rows (one row per
+ * {@link Model}). This is relevant to scan a whole population of
+ * {@link Model}s on one or two {@link Attribute}s, like "all the models where
+ * color = red", which then requires to browse a single array rather than
+ * calling {@link Model#getValueFor(Object)} on each {@link Model}.<br/>
+ * <br/>
+ * Each column has a {@link ColumnType}, which tells how the {@link Value}s are
+ * stored. By default, a column is {@link ColumnType#CATEGORICAL}, which means
+ * each distinct {@link Value} is stored once in a dictionary while the rows
+ * only store their dictionary codes. Numeric columns store their
+ * {@link Value}s in primitive arrays instead.<br/>
+ * <br/>
+ * The rows are provided as lightweight {@link Model} views through
+ * {@link #getRow(int)}, while the selections (e.g.
+ * {@link #select(Object, ValueFilter)}) provide the rows matching a given
+ * criterion as a {@link BitSet}. Selections can be run in parallel by providing
+ * an {@link ExecutorService}. A {@link ModelTable} can be read concurrently,
+ * but adding rows should not be done concurrently with other operations.
+ *
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ *
+ */
+public class ModelTable {
+
+	/**
+	 * Number of rows processed by each task during a parallel selection. It is
+	 * a multiple of 64 so that each task fills its own words of the resulting
+	 * {@link BitSet}.
+	 */
+	private static final int CHUNK_SIZE = 64 * 1024;
+	private static final int INITIAL_CAPACITY = 16;
+
+	/**
+	 * A {@link ColumnType} tells how the {@link Value}s of a column are
+	 * stored.
+	 *
+	 * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+	 *
+	 */
+	public static enum ColumnType {
+		/**
+		 * Any {@link Value}, stored through a dictionary.
+		 */
+		CATEGORICAL,
+		/**
+		 * Integral {@link Number}s, stored in a <code>long</code> array and
+		 * returned as {@link Long}s. Decimal {@link Number}s are accepted only
+		 * if they have no fractional part, so no value is truncated.
+		 */
+		LONG,
+		/**
+		 * Decimal {@link Number}s, stored in a <code>double</code> array and
+		 * returned as {@link Double}s.
+		 */
+		DOUBLE
+	}
+
+	/**
+	 * A {@link ValueFilter} tells which {@link Value}s should be selected.
+	 *
+	 * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+	 *
+	 */
+	public static interface ValueFilter {
+		/**
+		 *
+		 * @param value
+		 *            the {@link Value} to check
+		 * @return <code>true</code> if the {@link Value} should be selected
+		 */
+		public boolean accepts(Object value);
+	}
+
+	private final AttributeSchema schema;
+	private final Column[] columns;
+	private int size = 0;
+	private int capacity = INITIAL_CAPACITY;
+
+	/**
+	 * Instantiate a {@link ModelTable} where all the columns are
+	 * {@link ColumnType#CATEGORICAL}.
+	 *
+	 * @param schema
+	 *            the {@link AttributeSchema} of the rows
+	 */
+	public ModelTable(AttributeSchema schema) {
+		this(schema, Collections.<Object, ColumnType> emptyMap());
+	}
+
+	/**
+	 *
+	 * @param schema
+	 *            the {@link AttributeSchema} of the rows
+	 * @param types
+	 *            the {@link ColumnType} of each {@link Attribute}, the
+	 *            {@link Attribute}s which are not provided have a
+	 *            {@link ColumnType#CATEGORICAL} column
+	 */
+	public <Attribute> ModelTable(AttributeSchema schema,
+			Map<Attribute, ColumnType> types) {
+		this.schema = schema;
+		this.columns = new Column[schema.size()];
+		for (int slot = 0; slot < columns.length; slot++) {
+			ColumnType type = types.get(schema.getAttribute(slot));
+			if (type == null || type == ColumnType.CATEGORICAL) {
+				columns[slot] = new CategoricalColumn(capacity);
+			} else if (type == ColumnType.LONG) {
+				columns[slot] = new LongColumn(capacity);
+			} else if (type == ColumnType.DOUBLE) {
+				columns[slot] = new DoubleColumn(capacity);
+			} else {
+				throw new IllegalArgumentException("Unmanaged type: " + type);
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @return the {@link AttributeSchema} of the rows
+	 */
+	public AttributeSchema getSchema() {
+		return schema;
+	}
+
+	/**
+	 *
+	 * @return the number of rows
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Add a new row which copies the current {@link Value}s of a {@link Model}
+	 * .
+	 *
+	 * @param model
+	 *            the {@link Model} to add
+	 * @return the index of the new row
+	 * @throws UnknownAttributeException
+	 *             if an {@link Attribute} of the {@link AttributeSchema} is not
+	 *             provided by the {@link Model}
+	 * @throws IllegalArgumentException
+	 *             if a numeric column receives a non-numeric {@link Value}
+	 */
+	public int add(Model model) {
+		if (size == capacity) {
+			capacity *= 2;
+			for (Column column : columns) {
+				column.grow(capacity);
+			}
+		} else {
+			// enough space
+		}
+		int row = size;
+		for (int slot = 0; slot < columns.length; slot++) {
+			// the row is counted only once complete, so a failure leaves it
+			// free to be overwritten by the next addition
+			Object attribute = schema.getAttribute(slot);
+			columns[slot].set(row, model.getValueFor(attribute));
+		}
+		size++;
+		return row;
+	}
+
+	/**
+	 * Add several rows at once, as {@link #add(Model)} does. The
+	 * {@link Model}s are iterated only once, the successive
+	 * {@link DynamicModel}s being added column by column.
+	 *
+	 * @param models
+	 *            the {@link Model}s to add
+	 */
+	public void addAll(Iterable<? extends Model> models) {
+		List<DynamicModel> dynamicModels = new ArrayList<DynamicModel>();
+		for (Model model : models) {
+			if (model instanceof DynamicModel) {
+				dynamicModels.add((DynamicModel) model);
+			} else {
+				addDynamic(dynamicModels);
+				add(model);
+			}
+		}
+		addDynamic(dynamicModels);
+	}
+
+	/**
+	 * Add the {@link DynamicModel}s accumulated, then clear them.
+	 */
+	private void addDynamic(List<DynamicModel> models) {
+		if (models.isEmpty()) {
+			// nothing to add
+		} else if (models.size() == 1) {
+			add(models.get(0));
+		} else {
+			addAllDynamic(models);
+		}
+		models.clear();
+	}
+
+	/**
+	 * Add the {@link DynamicModel}s column by column, so each column is
+	 * evaluated as a batch (see {@link DynamicModel#getColumnFor(List, Object)}
+	 * ).
+	 */
+	private void addAllDynamic(List<DynamicModel> models) {
+		int count = models.size();
+		if (size + count > capacity) {
+			while (size + count > capacity) {
+				capacity *= 2;
+			}
+			for (Column column : columns) {
+				column.grow(capacity);
+			}
+		} else {
+			// enough space
+		}
+		for (int slot = 0; slot < columns.length; slot++) {
+			// the rows are counted only once complete, as in add(Model)
+			columns[slot].setAll(size, models, schema.getAttribute(slot));
+		}
+		size += count;
+	}
+
+	/**
+	 *
+	 * @param row
+	 *            the index of the row
+	 * @return a {@link Model} view of the row
+	 */
+	public Model getRow(int row) {
+		if (row < 0 || row >= size) {
+			throw new IndexOutOfBoundsException("Row " + row + " not in [0;"
+					+ size + "[");
+		} else {
+			return new Row(row);
+		}
+	}
+
+	/**
+	 *
+	 * @param selection
+	 *            the rows to retrieve, as returned by the selection methods
+	 * @return the {@link Model} views of the rows selected
+	 */
+	public List<Model> getRows(BitSet selection) {
+		List<Model> rows = new ArrayList<Model>(selection.cardinality());
+		for (int row = selection.nextSetBit(0); row >= 0 && row < size; row = selection
+				.nextSetBit(row + 1)) {
+			rows.add(new Row(row));
+		}
+		return rows;
+	}
+
+	/**
+	 *
+	 * @param row
+	 *            the index of the row
+	 * @param attribute
+	 *            the {@link Attribute} to retrieve
+	 * @return the {@link Value} of the {@link Attribute} for this row
+	 */
+	@SuppressWarnings("unchecked")
+	public <Attribute, Value> Value getValueFor(int row, Attribute attribute) {
+		return (Value) getColumn(attribute).get(row);
+	}
+
+	/**
+	 * Select the rows for which the given {@link Attribute} has a specific
+	 * {@link Value}.
+	 *
+	 * @param attribute
+	 *            the {@link Attribute} to check
+	 * @param value
+	 *            the {@link Value} to search for
+	 * @return the rows selected
+	 */
+	public <Attribute> BitSet selectEqual(Attribute attribute, Object value) {
+		return selectEqual(attribute, value, null);
+	}
+
+	/**
+	 * Parallel version of {@link #selectEqual(Object, Object)}.
+	 *
+	 * @param executor
+	 *            the {@link ExecutorService} to use, <code>null</code> to
+	 *            select sequentially
+	 */
+	public <Attribute> BitSet selectEqual(Attribute attribute,
+			final Object value, ExecutorService executor) {
+		return select(attribute, new ValueFilter() {
+
+			@Override
+			public boolean accepts(Object candidate) {
+				return value == null ? candidate == null : value
+						.equals(candidate);
+			}
+		}, executor);
+	}
+
+	/**
+	 * Select the rows for which the given {@link Attribute} has a
+	 * {@link Value} accepted by a {@link ValueFilter}. For a categorical
+	 * column, the {@link ValueFilter} is called once per distinct
+	 * {@link Value} rather than once per row.
+	 *
+	 * @param attribute
+	 *            the {@link Attribute} to check
+	 * @param filter
+	 *            the {@link ValueFilter} to apply
+	 * @return the rows selected
+	 */
+	public <Attribute> BitSet select(Attribute attribute, ValueFilter filter) {
+		return select(attribute, filter, null);
+	}
+
+	/**
+	 * Parallel version of {@link #select(Object, ValueFilter)}.
+	 *
+	 * @param executor
+	 *            the {@link ExecutorService} to use, <code>null</code> to
+	 *            select sequentially
+	 */
+	public <Attribute> BitSet select(Attribute attribute, ValueFilter filter,
+			ExecutorService executor) {
+		return scan(getColumn(attribute).prepare(filter), executor);
+	}
+
+	/**
+	 * Select the rows for which the given {@link Attribute} has a numeric
+	 * {@link Value} in [min;max]. Rows with unknown or non-numeric
+	 * {@link Value}s are not selected.
+	 *
+	 * @param attribute
+	 *            the {@link Attribute} to check
+	 * @param min
+	 *            the minimal {@link Value} accepted
+	 * @param max
+	 *            the maximal {@link Value} accepted
+	 * @return the rows selected
+	 */
+	public <Attribute> BitSet selectBetween(Attribute attribute, double min,
+			double max) {
+		return selectBetween(attribute, min, max, null);
+	}
+
+	/**
+	 * Parallel version of {@link #selectBetween(Object, double, double)}.
+	 *
+	 * @param executor
+	 *            the {@link ExecutorService} to use, <code>null</code> to
+	 *            select sequentially
+	 */
+	public <Attribute> BitSet selectBetween(Attribute attribute, double min,
+			double max, ExecutorService executor) {
+		return scan(getColumn(attribute).prepareRange(min, max), executor);
+	}
+
+	private Column getColumn(Object attribute) {
+		int slot = schema.getSlot(attribute);
+		if (slot < 0) {
+			throw new Model.UnknownAttributeException(attribute);
+		} else {
+			return columns[slot];
+		}
+	}
+
+	private BitSet scan(final Scanner scanner, ExecutorService executor) {
+		final int size = this.size;
+		final long[] words = new long[(size + 63) / 64];
+		if (executor == null || size <= CHUNK_SIZE) {
+			scanner.scan(0, size, words);
+		} else {
+			List<Future<Void>> futures = new LinkedList<Future<Void>>();
+			for (int start = 0; start < size; start += CHUNK_SIZE) {
+				final int from = start;
+				final int to = Math.min(size, start + CHUNK_SIZE);
+				futures.add(executor.submit(new Callable<Void>() {
+
+					@Override
+					public Void call() throws Exception {
+						scanner.scan(from, to, words);
+						return null;
+					}
+				}));
+			}
+			try {
+				for (Future<Void> future : futures) {
+					future.get();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			} catch (ExecutionException e) {
+				throw new RuntimeException(e.getCause());
+			} finally {
+				for (Future<Void> future : futures) {
+					future.cancel(true);
+				}
+			}
+		}
+		return BitSet.valueOf(words);
+	}
+
+	/**
+	 * Fill the words of a {@link BitSet} for a range of rows. Concurrent calls
+	 * on different ranges are safe as long as the ranges do not share words.
+	 */
+	private static interface Scanner {
+		public void scan(int from, int to, long[] words);
+	}
+
+	private static abstract class Column {
+		public abstract Object get(int row);
+
+		public abstract void set(int row, Object value);
+
+		public void setAll(int from, List<DynamicModel> models,
+				Object attribute) {
+			ResultColumn<Object> values = DynamicModel.getColumnFor(models,
+					attribute);
+			for (int i = 0; i < models.size(); i++) {
+				set(from + i, values.getValue(i));
+			}
+		}
+
+		public abstract void grow(int capacity);
+
+		public abstract Scanner prepare(ValueFilter filter);
+
+		public abstract Scanner prepareRange(double min, double max);
+	}
+
+	private static class CategoricalColumn extends Column {
+		private final List<Object> dictionary = new ArrayList<Object>();
+		private final Map<Object, Integer> codes = new HashMap<Object, Integer>();
+		private int[] rows;
+
+		public CategoricalColumn(int capacity) {
+			rows = new int[capacity];
+			encode(null);
+		}
+
+		private int encode(Object value) {
+			Integer code = codes.get(value);
+			if (code == null) {
+				code = dictionary.size();
+				dictionary.add(value);
+				codes.put(value, code);
+			} else {
+				// already known
+			}
+			return code;
+		}
+
+		@Override
+		public Object get(int row) {
+			return dictionary.get(rows[row]);
+		}
+
+		@Override
+		public void set(int row, Object value) {
+			rows[row] = encode(value);
+		}
+
+		@Override
+		public void grow(int capacity) {
+			rows = Arrays.copyOf(rows, capacity);
+		}
+
+		@Override
+		public Scanner prepare(ValueFilter filter) {
+			final boolean[] accepted = new boolean[dictionary.size()];
+			for (int code = 0; code < accepted.length; code++) {
+				accepted[code] = filter.accepts(dictionary.get(code));
+			}
+			final int[] rows = this.rows;
+			return new Scanner() {
+
+				@Override
+				public void scan(int from, int to, long[] words) {
+					for (int row = from; row < to; row++) {
+						if (accepted[rows[row]]) {
+							words[row >>> 6] |= 1L << row;
+						} else {
+							// not selected
+						}
+					}
+				}
+			};
+		}
+
+		@Override
+		public Scanner prepareRange(final double min, final double max) {
+			return prepare(new ValueFilter() {
+
+				@Override
+				public boolean accepts(Object value) {
+					if (value instanceof Number) {
+						double number = ((Number) value).doubleValue();
+						return number >= min && number <= max;
+					} else {
+						return false;
+					}
+				}
+			});
+		}
+	}
+
+	private static abstract class NumericColumn extends Column {
+		protected final BitSet unknown = new BitSet();
+
+		protected Number check(int row, Object value) {
+			if (value == null) {
+				unknown.set(row);
+				return null;
+			} else if (value instanceof Number) {
+				unknown.clear(row);
+				return (Number) value;
+			} else {
+				throw new IllegalArgumentException("Not a number: " + value);
+			}
+		}
+
+		@Override
+		public Scanner prepare(final ValueFilter filter) {
+			return new Scanner() {
+
+				@Override
+				public void scan(int from, int to, long[] words) {
+					for (int row = from; row < to; row++) {
+						if (filter.accepts(get(row))) {
+							words[row >>> 6] |= 1L << row;
+						} else {
+							// not selected
+						}
+					}
+				}
+			};
+		}
+	}
+
+	private static class LongColumn extends NumericColumn {
+		private long[] rows;
+
+		public LongColumn(int capacity) {
+			rows = new long[capacity];
+		}
+
+		@Override
+		public Object get(int row) {
+			return unknown.get(row) ? null : rows[row];
+		}
+
+		@Override
+		public void set(int row, Object value) {
+			Number number = check(row, value);
+			if (number == null) {
+				rows[row] = 0;
+			} else if (isIntegral(number)) {
+				rows[row] = number.longValue();
+			} else {
+				throw new IllegalArgumentException("Not an integral number: "
+						+ value);
+			}
+		}
+
+		@Override
+		public void setAll(int from, List<DynamicModel> models,
+				Object attribute) {
+			LongResultColumn values = DynamicModel.getLongColumnFor(models,
+					attribute);
+			for (int i = 0; i < models.size(); i++) {
+				int row = from + i;
+				if (values.isFailed(i)) {
+					// not a long, checked as a single row would be
+					set(row, models.get(i).getValueFor(attribute));
+				} else if (values.isUnknown(i)) {
+					unknown.set(row);
+					rows[row] = 0;
+				} else {
+					unknown.clear(row);
+					rows[row] = values.getLong(i);
+				}
+			}
+		}
+
+		private static boolean isIntegral(Number number) {
+			return number instanceof Long || number instanceof Integer
+					|| number instanceof Short || number instanceof Byte
+					|| isIntegral(number.doubleValue());
+		}
+
+		private static boolean isIntegral(double value) {
+			// 2^63 would be saturated to Long.MAX_VALUE
+			return value >= -0x1p63 && value < 0x1p63
+					&& value == Math.rint(value);
+		}
+
+		@Override
+		public void grow(int capacity) {
+			rows = Arrays.copyOf(rows, capacity);
+		}
+
+		@Override
+		public Scanner prepareRange(final double min, final double max) {
+			final long[] rows = this.rows;
+			return new Scanner() {
+
+				@Override
+				public void scan(int from, int to, long[] words) {
+					for (int row = from; row < to; row++) {
+						long value = rows[row];
+						if (value >= min && value <= max && !unknown.get(row)) {
+							words[row >>> 6] |= 1L << row;
+						} else {
+							// not selected
+						}
+					}
+				}
+			};
+		}
+	}
+
+	private static class DoubleColumn extends NumericColumn {
+		private double[] rows;
+
+		public DoubleColumn(int capacity) {
+			rows = new double[capacity];
+		}
+
+		@Override
+		public Object get(int row) {
+			return unknown.get(row) ? null : rows[row];
+		}
+
+		@Override
+		public void set(int row, Object value) {
+			Number number = check(row, value);
+			rows[row] = number == null ? Double.NaN : number.doubleValue();
+		}
+
+		@Override
+		public void setAll(int from, List<DynamicModel> models,
+				Object attribute) {
+			DoubleResultColumn values = DynamicModel.getDoubleColumnFor(models,
+					attribute);
+			for (int i = 0; i < models.size(); i++) {
+				int row = from + i;
+				if (values.isFailed(i)) {
+					// not a double, checked as a single row would be
+					set(row, models.get(i).getValueFor(attribute));
+				} else if (values.isUnknown(i)) {
+					unknown.set(row);
+					rows[row] = Double.NaN;
+				} else {
+					unknown.clear(row);
+					rows[row] = values.getDouble(i);
+				}
+			}
+		}
+
+		@Override
+		public void grow(int capacity) {
+			rows = Arrays.copyOf(rows, capacity);
+		}
+
+		@Override
+		public Scanner prepareRange(final double min, final double max) {
+			final double[] rows = this.rows;
+			return new Scanner() {
+
+				@Override
+				public void scan(int from, int to, long[] words) {
+					for (int row = from; row < to; row++) {
+						double value = rows[row];
+						// unknown values are NaN, thus never in range
+						if (value >= min && value <= max) {
+							words[row >>> 6] |= 1L << row;
+						} else {
+							// not selected
+						}
+					}
+				}
+			};
+		}
+	}
+
+	/**
+	 * A {@link Row} is a {@link Model} view of a specific row of its
+	 * {@link ModelTable}.
+	 */
+	private class Row implements Model {
+		private final int row;
+
+		public Row(int row) {
+			this.row = row;
+		}
+
+		@Override
+		public <Attribute> Collection<? extends Attribute> getAttributes() {
+			return schema.getAttributes();
+		}
+
+		@Override
+		public <Attribute, Value> Value getValueFor(Attribute attribute)
+				throws UnknownAttributeException {
+			return ModelTable.this.getValueFor(row, attribute);
+		}
+	}
+}
@@ -5,6 +5,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.conceptmanager.evaluation.Outcome;
 import org.conceptmanager.modeling.Model;
 
 /**
@@ -56,11 +57,25 @@ public class StaticModel implements Model {
 	@SuppressWarnings("unchecked")
 	@Override
 	public <Attribute, Value> Value getValueFor(Attribute attribute) {
-		if (attributes.containsKey(attribute)) {
-			return (Value) attributes.get(attribute);
+		Value value = (Value) attributes.get(attribute);
+		if (value != null || attributes.containsKey(attribute)) {
+			return value;
 		} else {
 			throw new UnknownAttributeException(attribute);
 		}
 	}
 
+	@SuppressWarnings("unchecked")
+	@Override
+	public <Attribute, Value> Outcome<Value> tryGetValueFor(Attribute attribute) {
+		Value value = (Value) attributes.get(attribute);
+		if (value != null) {
+			return Outcome.of(value);
+		} else if (attributes.containsKey(attribute)) {
+			return Outcome.unknown();
+		} else {
+			return Outcome.absent();
+		}
+	}
+
 }
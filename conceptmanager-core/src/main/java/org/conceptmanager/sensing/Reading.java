@@ -0,0 +1,62 @@
+package org.conceptmanager.sensing;
+
+/**
+ * A {@link Reading} is a {@link Value} sensed by a {@link Sensor} at a given
+ * time. The time is provided by {@link System#nanoTime()}, so it is only
+ * relevant to compare {@link Reading}s made by the same Java virtual machine.
+ * 
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ * 
+ * @param <Value>
+ */
+public final class Reading<Value> {
+
+	private final Sensor<? extends Value> sensor;
+	private final Value value;
+	private final long time;
+
+	/**
+	 * 
+	 * @param sensor
+	 *            the {@link Sensor} providing the {@link Value}
+	 * @param value
+	 *            the {@link Value} sensed
+	 * @param time
+	 *            the time of the sensing, as provided by
+	 *            {@link System#nanoTime()}
+	 */
+	public Reading(Sensor<? extends Value> sensor, Value value, long time) {
+		this.sensor = sensor;
+		this.value = value;
+		this.time = time;
+	}
+
+	/**
+	 * 
+	 * @return the {@link Sensor} providing the {@link Value}
+	 */
+	public Sensor<? extends Value> getSensor() {
+		return sensor;
+	}
+
+	/**
+	 * 
+	 * @return the {@link Value} sensed
+	 */
+	public Value getValue() {
+		return value;
+	}
+
+	/**
+	 * 
+	 * @return the time of the sensing, as provided by {@link System#nanoTime()}
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	@Override
+	public String toString() {
+		return value + "@" + time;
+	}
+}
@@ -0,0 +1,228 @@
+package org.conceptmanager.sensing.impl;
+
+import java.util.concurrent.TimeUnit;
+
+import org.conceptmanager.sensing.Sensor;
+import org.conceptmanager.util.Versioned;
+
+/**
+ * A {@link ChangeDetectingSensor} wraps another {@link Sensor} to publish only
+ * the significant changes of its {@link Value}s: {@link #sense()} senses the
+ * wrapped {@link Sensor}, but returns the last published {@link Value} unless
+ * the {@link ChangeDetector} considers the new one as a change. An optional
+ * debounce window requires a change to last for some time before being
+ * published, so short glitches are ignored.<br/>
+ * <br/>
+ * Each publication increments the version of the {@link Sensor} (see
+ * {@link #getVersion()}), so the components relying on it can skip their
+ * computations when the version did not move, like a
+ * {@link org.conceptmanager.evaluation.impl.CachingEvaluator}.
+ * 
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ * 
+ * @param <Value>
+ */
+public class ChangeDetectingSensor<Value> implements Sensor<Value>, Versioned {
+
+	/**
+	 * A {@link ChangeDetector} tells whether a new {@link Value} is
+	 * significantly different from the last published one.
+	 * 
+	 * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+	 * 
+	 * @param <Value>
+	 */
+	public static interface ChangeDetector<Value> {
+		/**
+		 * 
+		 * @param published
+		 *            the last {@link Value} published
+		 * @param sensed
+		 *            the {@link Value} just sensed
+		 * @return <code>true</code> if the sensed {@link Value} should be
+		 *         published
+		 */
+		public boolean isChange(Value published, Value sensed);
+	}
+
+	private static final ChangeDetector<Object> EQUALITY = new ChangeDetector<Object>() {
+
+		@Override
+		public boolean isChange(Object published, Object sensed) {
+			return published == null ? sensed != null : !published
+					.equals(sensed);
+		}
+	};
+
+	/**
+	 * 
+	 * @return the {@link ChangeDetector} considering any different
+	 *         {@link Value} as a change
+	 */
+	@SuppressWarnings("unchecked")
+	public static <Value> ChangeDetector<Value> equality() {
+		return (ChangeDetector<Value>) EQUALITY;
+	}
+
+	/**
+	 * 
+	 * @param band
+	 *            the maximum difference which is not considered as a change
+	 * @return the {@link ChangeDetector} considering as a change only the
+	 *         numbers differing by more than the band, or a change from or to
+	 *         <code>null</code>
+	 */
+	public static ChangeDetector<Number> deadBand(final double band) {
+		if (band < 0) {
+			throw new IllegalArgumentException("Negative band: " + band);
+		} else {
+			return new ChangeDetector<Number>() {
+
+				@Override
+				public boolean isChange(Number published, Number sensed) {
+					if (published == null || sensed == null) {
+						return published != sensed;
+					} else {
+						return Math.abs(sensed.doubleValue()
+								- published.doubleValue()) > band;
+					}
+				}
+			};
+		}
+	}
+
+	private final Sensor<? extends Value> sensor;
+	private final ChangeDetector<? super Value> detector;
+	private final long debounce;
+	private Value published;
+	private volatile long version = 0;
+	private boolean isChangePending = false;
+	private long changeStart;
+
+	/**
+	 * Publish any different {@link Value}, without debounce window.
+	 * 
+	 * @param sensor
+	 *            the {@link Sensor} to wrap
+	 */
+	public ChangeDetectingSensor(Sensor<? extends Value> sensor) {
+		this(sensor, ChangeDetectingSensor.<Value> equality());
+	}
+
+	/**
+	 * Publish the changes detected, without debounce window.
+	 * 
+	 * @param sensor
+	 *            the {@link Sensor} to wrap
+	 * @param detector
+	 *            the {@link ChangeDetector} identifying the changes
+	 */
+	public ChangeDetectingSensor(Sensor<? extends Value> sensor,
+			ChangeDetector<? super Value> detector) {
+		this(sensor, detector, 0, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * 
+	 * @param sensor
+	 *            the {@link Sensor} to wrap
+	 * @param detector
+	 *            the {@link ChangeDetector} identifying the changes
+	 * @param debounce
+	 *            the time during which a change should be sensed before being
+	 *            published
+	 * @param unit
+	 *            the {@link TimeUnit} of the debounce window
+	 */
+	public ChangeDetectingSensor(Sensor<? extends Value> sensor,
+			ChangeDetector<? super Value> detector, long debounce,
+			TimeUnit unit) {
+		if (sensor == null) {
+			throw new NullPointerException("No sensor has been provided.");
+		} else if (detector == null) {
+			throw new NullPointerException("No detector has been provided.");
+		} else if (debounce < 0) {
+			throw new IllegalArgumentException("Negative debounce: "
+					+ debounce);
+		} else {
+			this.sensor = sensor;
+			this.detector = detector;
+			this.debounce = unit.toNanos(debounce);
+		}
+	}
+
+	/**
+	 * Sense the wrapped {@link Sensor} and publish its {@link Value} if it is
+	 * a change. The first {@link Value} sensed is always published.
+	 * 
+	 * @return the last {@link Value} published
+	 */
+	@Override
+	public synchronized Value sense() {
+		Value sensed = sensor.sense();
+		if (version == 0) {
+			publish(sensed);
+		} else if (!detector.isChange(published, sensed)) {
+			isChangePending = false;
+		} else if (debounce == 0) {
+			publish(sensed);
+		} else {
+			long now = System.nanoTime();
+			if (!isChangePending) {
+				isChangePending = true;
+				changeStart = now;
+			} else {
+				// change already pending
+			}
+			if (now - changeStart >= debounce) {
+				publish(sensed);
+			} else {
+				// wait for the change to last
+			}
+		}
+		return published;
+	}
+
+	private void publish(Value value) {
+		published = value;
+		isChangePending = false;
+		version++;
+	}
+
+	/**
+	 * 
+	 * @return the last {@link Value} published, without sensing the wrapped
+	 *         {@link Sensor}
+	 */
+	public synchronized Value getPublished() {
+		return published;
+	}
+
+	/**
+	 * 
+	 * @return the number of {@link Value}s published so far
+	 */
+	@Override
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * 
+	 * @param version
+	 *            a version previously provided by {@link #getVersion()}
+	 * @return <code>true</code> if a {@link Value} has been published since
+	 *         this version
+	 */
+	public boolean hasChangedSince(long version) {
+		return this.version != version;
+	}
+
+	/**
+	 * 
+	 * @return the {@link Sensor} wrapped by this {@link ChangeDetectingSensor}
+	 */
+	public Sensor<? extends Value> getSensor() {
+		return sensor;
+	}
+}
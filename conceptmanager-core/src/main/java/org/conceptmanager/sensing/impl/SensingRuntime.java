@@ -0,0 +1,361 @@
+package org.conceptmanager.sensing.impl;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.conceptmanager.sensing.Reading;
+import org.conceptmanager.sensing.Sensor;
+import org.conceptmanager.util.RingBuffer;
+
+/**
+ * A {@link SensingRuntime} polls many {@link Sensor}s, each at its own period,
+ * and stores their {@link Reading}s in a bounded {@link RingBuffer} for the
+ * consumers. A {@link ScheduledExecutorService} triggers the pollings, while
+ * the {@link Sensor}s are sensed on another {@link Executor}, like a thread
+ * pool or, on a Java runtime supporting them, an executor creating a virtual
+ * thread per task. Thus, a slow {@link Sensor} does not delay the others.<br/>
+ * <br/>
+ * A {@link Sensor} is never sensed concurrently with itself: if its previous
+ * sensing is not finished when the next one is due, the next one is skipped
+ * and counted as an overrun. The delay between the moment a sensing is due and
+ * the moment it starts is measured as a lag. These metrics, like the number of
+ * {@link Reading}s rejected because the {@link RingBuffer} is full, are
+ * provided for each {@link Sensor} by {@link #getMetrics(Sensor)}.
+ * 
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ * 
+ */
+public class SensingRuntime {
+
+	/**
+	 * A {@link SensorMetrics} is a snapshot of the metrics of a {@link Sensor}
+	 * polled by a {@link SensingRuntime}.
+	 * 
+	 * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+	 * 
+	 */
+	public static class SensorMetrics {
+		private final long readings;
+		private final long failures;
+		private final long overruns;
+		private final long rejected;
+		private final long lastLag;
+		private final long maxLag;
+
+		private SensorMetrics(long readings, long failures, long overruns,
+				long rejected, long lastLag, long maxLag) {
+			this.readings = readings;
+			this.failures = failures;
+			this.overruns = overruns;
+			this.rejected = rejected;
+			this.lastLag = lastLag;
+			this.maxLag = maxLag;
+		}
+
+		/**
+		 * 
+		 * @return the number of {@link Reading}s stored in the
+		 *         {@link RingBuffer}
+		 */
+		public long getReadings() {
+			return readings;
+		}
+
+		/**
+		 * 
+		 * @return the number of sensings which have thrown an exception or
+		 *         could not be started
+		 */
+		public long getFailures() {
+			return failures;
+		}
+
+		/**
+		 * 
+		 * @return the number of sensings skipped because the previous one was
+		 *         not finished
+		 */
+		public long getOverruns() {
+			return overruns;
+		}
+
+		/**
+		 * 
+		 * @return the number of {@link Reading}s lost because the
+		 *         {@link RingBuffer} was full
+		 */
+		public long getRejected() {
+			return rejected;
+		}
+
+		/**
+		 * 
+		 * @param unit
+		 *            the {@link TimeUnit} of the result
+		 * @return the lag of the last sensing started
+		 */
+		public long getLastLag(TimeUnit unit) {
+			return unit.convert(lastLag, TimeUnit.NANOSECONDS);
+		}
+
+		/**
+		 * 
+		 * @param unit
+		 *            the {@link TimeUnit} of the result
+		 * @return the maximum lag observed
+		 */
+		public long getMaxLag(TimeUnit unit) {
+			return unit.convert(maxLag, TimeUnit.NANOSECONDS);
+		}
+
+		@Override
+		public String toString() {
+			return "readings=" + readings + ", failures=" + failures
+					+ ", overruns=" + overruns + ", rejected=" + rejected
+					+ ", lastLag=" + lastLag + "ns, maxLag=" + maxLag + "ns";
+		}
+	}
+
+	private final ScheduledExecutorService scheduler;
+	private final Executor executor;
+	private final RingBuffer<Reading<?>> buffer;
+	private final ConcurrentMap<Sensor<?>, Polling> pollings = new ConcurrentHashMap<Sensor<?>, Polling>();
+
+	/**
+	 * 
+	 * @param scheduler
+	 *            the {@link ScheduledExecutorService} triggering the pollings
+	 * @param executor
+	 *            the {@link Executor} running the sensings
+	 * @param capacity
+	 *            the minimum capacity of the {@link RingBuffer} storing the
+	 *            {@link Reading}s
+	 */
+	public SensingRuntime(ScheduledExecutorService scheduler,
+			Executor executor, int capacity) {
+		if (scheduler == null) {
+			throw new NullPointerException("No scheduler has been provided.");
+		} else if (executor == null) {
+			throw new NullPointerException("No executor has been provided.");
+		} else {
+			this.scheduler = scheduler;
+			this.executor = executor;
+			this.buffer = new RingBuffer<Reading<?>>(capacity);
+		}
+	}
+
+	/**
+	 * 
+	 * @return the {@link RingBuffer} storing the {@link Reading}s
+	 */
+	public RingBuffer<Reading<?>> getBuffer() {
+		return buffer;
+	}
+
+	/**
+	 * Move the available {@link Reading}s to a {@link Collection}, so they can
+	 * be processed as a batch.
+	 * 
+	 * @param readings
+	 *            the {@link Collection} to fill
+	 * @param max
+	 *            the maximum number of {@link Reading}s to move
+	 * @return the number of {@link Reading}s moved
+	 */
+	public int drainTo(Collection<? super Reading<?>> readings, int max) {
+		return buffer.drainTo(readings, max);
+	}
+
+	/**
+	 * Start polling a {@link Sensor}. The first sensing is due immediately.
+	 * 
+	 * @param sensor
+	 *            the {@link Sensor} to poll
+	 * @param period
+	 *            the time between two sensings
+	 * @param unit
+	 *            the {@link TimeUnit} of the period
+	 * @throws IllegalArgumentException
+	 *             if the {@link Sensor} is already polled
+	 */
+	public <Value> void register(Sensor<Value> sensor, long period,
+			TimeUnit unit) {
+		long nanos = unit.toNanos(period);
+		if (nanos <= 0) {
+			throw new IllegalArgumentException("Invalid period: " + period
+					+ " " + unit);
+		} else {
+			Polling polling = new Polling(sensor, nanos);
+			if (pollings.putIfAbsent(sensor, polling) != null) {
+				throw new IllegalArgumentException("The sensor " + sensor
+						+ " is already polled.");
+			} else {
+				polling.start();
+			}
+		}
+	}
+
+	/**
+	 * Stop polling a {@link Sensor}. A sensing already started can still
+	 * provide a {@link Reading}. If the {@link Sensor} is not polled, this
+	 * method has no effect.
+	 * 
+	 * @param sensor
+	 *            the {@link Sensor} to stop polling
+	 */
+	public void unregister(Sensor<?> sensor) {
+		Polling polling = pollings.remove(sensor);
+		if (polling != null) {
+			polling.stop();
+		} else {
+			// not polled
+		}
+	}
+
+	/**
+	 * Stop polling all the {@link Sensor}s. The executors are not shut down.
+	 */
+	public void stop() {
+		for (Sensor<?> sensor : pollings.keySet()) {
+			unregister(sensor);
+		}
+	}
+
+	/**
+	 * 
+	 * @return the {@link Sensor}s currently polled
+	 */
+	public Collection<Sensor<?>> getSensors() {
+		return pollings.keySet();
+	}
+
+	/**
+	 * 
+	 * @param sensor
+	 *            a {@link Sensor} polled
+	 * @return the current metrics of the {@link Sensor}
+	 * @throws IllegalArgumentException
+	 *             if the {@link Sensor} is not polled
+	 */
+	public SensorMetrics getMetrics(Sensor<?> sensor) {
+		Polling polling = pollings.get(sensor);
+		if (polling == null) {
+			throw new IllegalArgumentException("The sensor " + sensor
+					+ " is not polled.");
+		} else {
+			return new SensorMetrics(polling.readings.get(),
+					polling.failures.get(), polling.overruns.get(),
+					polling.rejected.get(), polling.lastLag,
+					polling.maxLag.get());
+		}
+	}
+
+	/**
+	 * The periodic polling of a {@link Sensor}, triggered by the scheduler.
+	 */
+	private class Polling implements Runnable {
+		private final Sensor<?> sensor;
+		private final long period;
+		private final AtomicBoolean busy = new AtomicBoolean();
+		private final AtomicLong readings = new AtomicLong();
+		private final AtomicLong failures = new AtomicLong();
+		private final AtomicLong overruns = new AtomicLong();
+		private final AtomicLong rejected = new AtomicLong();
+		private final AtomicLong maxLag = new AtomicLong();
+		private volatile long lastLag;
+		private long nextDue;
+		private ScheduledFuture<?> future = null;
+		private boolean isStopped = false;
+
+		public Polling(Sensor<?> sensor, long period) {
+			this.sensor = sensor;
+			this.period = period;
+		}
+
+		/**
+		 * Schedule the sensings, unless this {@link Polling} has already been
+		 * stopped by a concurrent unregistration.
+		 */
+		public synchronized void start() {
+			if (isStopped) {
+				// unregistered before being started
+			} else {
+				nextDue = System.nanoTime();
+				future = scheduler.scheduleAtFixedRate(this, 0, period,
+						TimeUnit.NANOSECONDS);
+			}
+		}
+
+		public synchronized void stop() {
+			isStopped = true;
+			if (future != null) {
+				future.cancel(false);
+			} else {
+				// not started yet
+			}
+		}
+
+		@Override
+		public void run() {
+			final long due;
+			synchronized (this) {
+				due = nextDue;
+				nextDue += period;
+			}
+			if (!busy.compareAndSet(false, true)) {
+				overruns.incrementAndGet();
+			} else {
+				try {
+					executor.execute(new Runnable() {
+
+						@Override
+						public void run() {
+							sense(due);
+						}
+					});
+				} catch (RejectedExecutionException e) {
+					failures.incrementAndGet();
+					busy.set(false);
+				}
+			}
+		}
+
+		private void sense(long due) {
+			try {
+				long lag = Math.max(0, System.nanoTime() - due);
+				lastLag = lag;
+				long max;
+				do {
+					max = maxLag.get();
+				} while (lag > max && !maxLag.compareAndSet(max, lag));
+
+				if (buffer.offer(read(sensor))) {
+					readings.incrementAndGet();
+				} else {
+					rejected.incrementAndGet();
+				}
+			} catch (Error e) {
+				failures.incrementAndGet();
+				throw e;
+			} catch (Throwable e) {
+				// including checked exceptions thrown sneakily
+				failures.incrementAndGet();
+			} finally {
+				busy.set(false);
+			}
+		}
+
+		private <Value> Reading<Value> read(Sensor<Value> sensor) {
+			Value value = sensor.sense();
+			return new Reading<Value>(sensor, value, System.nanoTime());
+		}
+	}
+}
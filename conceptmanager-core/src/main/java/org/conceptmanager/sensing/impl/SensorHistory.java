@@ -0,0 +1,277 @@
+package org.conceptmanager.sensing.impl;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.conceptmanager.sensing.Sensor;
+
+/**
+ * A {@link SensorHistory} keeps the last numeric {@link Value}s sensed by a
+ * {@link Sensor} in a fixed amount of memory: the {@link Value}s and their
+ * times are stored in primitive circular arrays, so recording a new
+ * {@link Value} does not allocate anything. The window is bounded by a
+ * capacity and, optionally, by a maximum age: when the window is full, the
+ * oldest {@link Value} is evicted, and the {@link Value}s older than the
+ * maximum age are evicted by {@link #expire()}.<br/>
+ * <br/>
+ * {@link Listener}s are notified of each {@link Value} entering or leaving the
+ * window, so aggregates over the window can be maintained incrementally rather
+ * than recomputed. The {@link SensorHistory} is thread-safe: its methods, as
+ * well as the notifications, are synchronized on the {@link SensorHistory}
+ * itself, so a {@link Listener} can be read consistently by synchronizing on
+ * it too.
+ * 
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ * 
+ */
+public class SensorHistory {
+
+	/**
+	 * A {@link Listener} is notified of the {@link Value}s entering and
+	 * leaving the window of a {@link SensorHistory}. Each {@link Value} is
+	 * identified by its sequence number, which increases with each
+	 * {@link Value} recorded.
+	 * 
+	 * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+	 * 
+	 */
+	public static interface Listener {
+		/**
+		 * 
+		 * @param sequence
+		 *            the sequence number of the {@link Value}
+		 * @param value
+		 *            the {@link Value} entering the window
+		 */
+		public void added(long sequence, double value);
+
+		/**
+		 * 
+		 * @param sequence
+		 *            the sequence number of the {@link Value}
+		 * @param value
+		 *            the {@link Value} leaving the window
+		 */
+		public void removed(long sequence, double value);
+	}
+
+	private final Sensor<? extends Number> sensor;
+	private final double[] values;
+	private final long[] times;
+	private final long maxAge;
+	private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+	/**
+	 * Sequence number of the oldest {@link Value} of the window.
+	 */
+	private long first = 0;
+	/**
+	 * Sequence number of the next {@link Value} to record.
+	 */
+	private long next = 0;
+
+	/**
+	 * Instantiate a {@link SensorHistory} bounded only by its capacity.
+	 * 
+	 * @param sensor
+	 *            the {@link Sensor} to record
+	 * @param capacity
+	 *            the maximum number of {@link Value}s kept
+	 */
+	public SensorHistory(Sensor<? extends Number> sensor, int capacity) {
+		this(sensor, capacity, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * 
+	 * @param sensor
+	 *            the {@link Sensor} to record
+	 * @param capacity
+	 *            the maximum number of {@link Value}s kept
+	 * @param maxAge
+	 *            the maximum age of the {@link Value}s kept
+	 * @param unit
+	 *            the {@link TimeUnit} of the maximum age
+	 */
+	public SensorHistory(Sensor<? extends Number> sensor, int capacity,
+			long maxAge, TimeUnit unit) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Invalid capacity: " + capacity);
+		} else if (maxAge <= 0) {
+			throw new IllegalArgumentException("Invalid maximum age: "
+					+ maxAge);
+		} else {
+			this.sensor = sensor;
+			this.values = new double[capacity];
+			this.times = new long[capacity];
+			this.maxAge = unit.toNanos(maxAge);
+		}
+	}
+
+	/**
+	 * 
+	 * @return the {@link Sensor} recorded
+	 */
+	public Sensor<? extends Number> getSensor() {
+		return sensor;
+	}
+
+	/**
+	 * Sense the {@link Sensor} and record its {@link Value}, if it is known.
+	 * 
+	 * @return <code>true</code> if a {@link Value} has been recorded,
+	 *         <code>false</code> if the {@link Value} sensed is
+	 *         <code>null</code>
+	 */
+	public boolean record() {
+		Number value = sensor.sense();
+		if (value == null) {
+			return false;
+		} else {
+			add(value.doubleValue(), System.nanoTime());
+			return true;
+		}
+	}
+
+	/**
+	 * Record a {@link Value} sensed independently of this
+	 * {@link SensorHistory}. The {@link Value}s older than the maximum age are
+	 * evicted.
+	 * 
+	 * @param value
+	 *            the {@link Value} to record
+	 * @param time
+	 *            the time of the sensing, as provided by
+	 *            {@link System#nanoTime()}
+	 */
+	public synchronized void add(double value, long time) {
+		if (next - first == values.length) {
+			evictFirst();
+		} else {
+			// still some room
+		}
+		int index = (int) (next % values.length);
+		values[index] = value;
+		times[index] = time;
+		long sequence = next++;
+		for (Listener listener : listeners) {
+			listener.added(sequence, value);
+		}
+		expire(time);
+	}
+
+	/**
+	 * Evict the {@link Value}s older than the maximum age.
+	 */
+	public void expire() {
+		expire(System.nanoTime());
+	}
+
+	/**
+	 * 
+	 * @param now
+	 *            the current time, as provided by {@link System#nanoTime()}
+	 */
+	public synchronized void expire(long now) {
+		while (first < next
+				&& now - times[(int) (first % values.length)] > maxAge) {
+			evictFirst();
+		}
+	}
+
+	private void evictFirst() {
+		int index = (int) (first % values.length);
+		long sequence = first++;
+		for (Listener listener : listeners) {
+			listener.removed(sequence, values[index]);
+		}
+	}
+
+	/**
+	 * Add a {@link Listener}. It is immediately notified of all the
+	 * {@link Value}s currently in the window.
+	 * 
+	 * @param listener
+	 *            the {@link Listener} to notify
+	 */
+	public synchronized void addListener(Listener listener) {
+		listeners.add(listener);
+		for (long sequence = first; sequence < next; sequence++) {
+			listener.added(sequence, values[(int) (sequence % values.length)]);
+		}
+	}
+
+	/**
+	 * 
+	 * @param listener
+	 *            the {@link Listener} to stop notifying
+	 */
+	public void removeListener(Listener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * 
+	 * @return the maximum number of {@link Value}s kept
+	 */
+	public int capacity() {
+		return values.length;
+	}
+
+	/**
+	 * 
+	 * @return the number of {@link Value}s in the window
+	 */
+	public synchronized int size() {
+		return (int) (next - first);
+	}
+
+	/**
+	 * 
+	 * @param position
+	 *            the position in the window, 0 being the oldest
+	 *            {@link Value}
+	 * @return the {@link Value} at this position
+	 */
+	public synchronized double getValue(int position) {
+		return values[index(position)];
+	}
+
+	/**
+	 * 
+	 * @param position
+	 *            the position in the window, 0 being the oldest
+	 *            {@link Value}
+	 * @return the time of the {@link Value} at this position
+	 */
+	public synchronized long getTime(int position) {
+		return times[index(position)];
+	}
+
+	private int index(int position) {
+		if (position < 0 || position >= next - first) {
+			throw new IndexOutOfBoundsException("Position " + position
+					+ " not in [0," + (next - first) + "[");
+		} else {
+			return (int) ((first + position) % values.length);
+		}
+	}
+
+	/**
+	 * 
+	 * @return the {@link Value}s of the window, from the oldest to the newest
+	 */
+	public synchronized double[] toArray() {
+		double[] array = new double[(int) (next - first)];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = values[(int) ((first + i) % values.length)];
+		}
+		return array;
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(toArray());
+	}
+}
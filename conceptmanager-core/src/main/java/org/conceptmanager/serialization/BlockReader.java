@@ -0,0 +1,273 @@
+package org.conceptmanager.serialization;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * A {@link BlockReader} reads the records written by a {@link BlockWriter}.
+ * The blocks are read one at a time and their checksum is verified before any
+ * of their records is decoded, so only the current block and the dictionary
+ * are kept in memory.
+ *
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ *
+ */
+public abstract class BlockReader implements Closeable {
+
+	private final InputStream input;
+	private final List<Object> terms = new ArrayList<Object>();
+	private final CRC32 checksum = new CRC32();
+	private byte[] block = new byte[1024];
+	private int length = 0;
+	private int position = 0;
+	private boolean isEnded = false;
+
+	/**
+	 *
+	 * @param input
+	 *            the {@link InputStream} to read from
+	 * @param kind
+	 *            the kind of records expected
+	 * @throws IOException
+	 *             if the header cannot be read or does not match
+	 */
+	protected BlockReader(InputStream input, byte kind) throws IOException {
+		if (input == null) {
+			throw new NullPointerException("No input has been provided.");
+		} else {
+			this.input = input;
+			byte[] magic = new byte[Format.MAGIC.length];
+			readFully(magic, magic.length);
+			if (!Arrays.equals(magic, Format.MAGIC)) {
+				throw new CorruptedStreamException("Not a binary stream");
+			} else {
+				int version = readByteFromInput();
+				int actual = readByteFromInput();
+				if (version != Format.VERSION) {
+					throw new CorruptedStreamException("Unsupported version "
+							+ version);
+				} else if (actual != kind) {
+					throw new CorruptedStreamException("Expected records "
+							+ (char) kind + " but found " + (char) actual);
+				} else {
+					// valid header
+				}
+			}
+		}
+	}
+
+	/**
+	 * Prepare the reading of the next record, reading the next block if the
+	 * current one is finished.
+	 *
+	 * @return <code>true</code> if there is a record to read,
+	 *         <code>false</code> if the end of the stream is reached
+	 * @throws IOException
+	 *             if the next block cannot be read or is corrupted
+	 */
+	protected boolean nextRecord() throws IOException {
+		if (position < length) {
+			return true;
+		} else if (isEnded) {
+			return false;
+		} else {
+			readBlock();
+			return position < length;
+		}
+	}
+
+	private void readBlock() throws IOException {
+		int size = readVarintFromInput();
+		if (size < 0 || size > Format.MAX_BLOCK_SIZE) {
+			throw new CorruptedStreamException("Invalid block length " + size);
+		} else if (size > block.length) {
+			block = new byte[Math.max(size, block.length * 2)];
+		} else {
+			// enough space
+		}
+		readFully(block, size);
+		byte[] crc = new byte[4];
+		readFully(crc, 4);
+		checksum.reset();
+		checksum.update(block, 0, size);
+		int expected = (crc[0] & 0xFF) << 24 | (crc[1] & 0xFF) << 16
+				| (crc[2] & 0xFF) << 8 | (crc[3] & 0xFF);
+		if ((int) checksum.getValue() != expected) {
+			throw new CorruptedStreamException("Invalid checksum");
+		} else {
+			length = size;
+			position = 0;
+			isEnded = size == 0;
+		}
+	}
+
+	private void readFully(byte[] bytes, int size) throws IOException {
+		int read = 0;
+		while (read < size) {
+			int count = input.read(bytes, read, size - read);
+			if (count < 0) {
+				throw new CorruptedStreamException("Truncated stream");
+			} else {
+				read += count;
+			}
+		}
+	}
+
+	private int readByteFromInput() throws IOException {
+		int value = input.read();
+		if (value < 0) {
+			throw new CorruptedStreamException("Truncated stream");
+		} else {
+			return value;
+		}
+	}
+
+	private int readVarintFromInput() throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int current = readByteFromInput();
+			value |= (current & 0x7F) << shift;
+			if ((current & 0x80) == 0) {
+				return value;
+			} else {
+				// continue
+			}
+		}
+		throw new CorruptedStreamException("Invalid varint");
+	}
+
+	protected int readByte() throws CorruptedStreamException {
+		if (position >= length) {
+			throw new CorruptedStreamException("Record exceeding its block");
+		} else {
+			return block[position++] & 0xFF;
+		}
+	}
+
+	protected int readVarint() throws CorruptedStreamException {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int current = readByte();
+			value |= (current & 0x7F) << shift;
+			if ((current & 0x80) == 0) {
+				return value;
+			} else {
+				// continue
+			}
+		}
+		throw new CorruptedStreamException("Invalid varint");
+	}
+
+	protected long readZigZag() throws CorruptedStreamException {
+		long zigzag = 0;
+		for (int shift = 0; shift < 70; shift += 7) {
+			int current = readByte();
+			zigzag |= (long) (current & 0x7F) << shift;
+			if ((current & 0x80) == 0) {
+				return (zigzag >>> 1) ^ -(zigzag & 1);
+			} else {
+				// continue
+			}
+		}
+		throw new CorruptedStreamException("Invalid varint");
+	}
+
+	protected long readFixed(int bytes) throws CorruptedStreamException {
+		long value = 0;
+		for (int i = 0; i < bytes; i++) {
+			value = (value << 8) | readByte();
+		}
+		return value;
+	}
+
+	protected double readDouble() throws CorruptedStreamException {
+		return Double.longBitsToDouble(readFixed(8));
+	}
+
+	protected String readString() throws CorruptedStreamException {
+		int size = readVarint();
+		if (size > length - position) {
+			throw new CorruptedStreamException("Record exceeding its block");
+		} else {
+			String value = new String(block, position, size,
+					StandardCharsets.UTF_8);
+			position += size;
+			return value;
+		}
+	}
+
+	/**
+	 * Read a value written by {@link BlockWriter#writeValue(Object)}.
+	 */
+	protected Object readValue() throws CorruptedStreamException {
+		int type = readByte();
+		switch (type) {
+		case Format.NULL:
+			return null;
+		case Format.FALSE:
+			return false;
+		case Format.TRUE:
+			return true;
+		case Format.INT:
+			return (int) readZigZag();
+		case Format.LONG:
+			return readZigZag();
+		case Format.FLOAT:
+			return Float.intBitsToFloat((int) readFixed(4));
+		case Format.DOUBLE:
+			return readDouble();
+		case Format.STRING:
+			return readString();
+		default:
+			throw new CorruptedStreamException("Unknown type " + type);
+		}
+	}
+
+	/**
+	 * Read a term written by {@link BlockWriter#writeTerm(Object)}.
+	 */
+	protected Object readTerm() throws CorruptedStreamException {
+		int id = readVarint();
+		if (id < terms.size()) {
+			return terms.get(id);
+		} else if (id == terms.size()) {
+			Object term = readValue();
+			terms.add(term);
+			return term;
+		} else {
+			throw new CorruptedStreamException("Unknown term " + id);
+		}
+	}
+
+	/**
+	 *
+	 * @return the number of terms in the dictionary
+	 */
+	public int getDictionarySize() {
+		return terms.size();
+	}
+
+	@Override
+	public void close() throws IOException {
+		input.close();
+	}
+
+	/**
+	 * Exception thrown when the data read does not follow the binary format.
+	 *
+	 * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+	 *
+	 */
+	@SuppressWarnings("serial")
+	public static class CorruptedStreamException extends IOException {
+		public CorruptedStreamException(String message) {
+			super(message);
+		}
+	}
+}
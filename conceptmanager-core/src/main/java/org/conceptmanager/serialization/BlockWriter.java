@@ -0,0 +1,303 @@
+package org.conceptmanager.serialization;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * A {@link BlockWriter} writes records in the binary format read by a
+ * {@link BlockReader}. The stream starts with a header telling the format
+ * version and the kind of records, followed by blocks of records. Each block
+ * is written with its length and a CRC32 checksum, so a corrupted or
+ * truncated stream is detected when reading it. An empty block marks the end
+ * of the stream.<br/>
+ * <br/>
+ * The records are encoded with compact primitives: integers are written as
+ * variable-length integers (varints), and values are preceded by a tag giving
+ * their type. The terms which are repeated from one record to another, like
+ * attributes or symbols, are written through a dictionary: the first
+ * occurrence of a term writes it fully and assigns it an id, the next ones
+ * only write this id. Only the current block and the dictionary are kept in
+ * memory, so any number of records can be written.<br/>
+ * <br/>
+ * A record is written between {@link #startRecord()} and {@link #endRecord()}.
+ * If it fails in between, {@link #abortRecord()} removes what it wrote, so a
+ * rejected record does not corrupt the stream.
+ *
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ *
+ */
+public abstract class BlockWriter implements Closeable, Flushable {
+
+	/**
+	 * Default size from which a block is written.
+	 */
+	public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+	private final OutputStream output;
+	private final int blockSize;
+	private final Map<Object, Integer> terms = new HashMap<Object, Integer>();
+	private final CRC32 checksum = new CRC32();
+	private byte[] block;
+	private int length = 0;
+	private int recordStart = 0;
+	private final List<Object> recordTerms = new ArrayList<Object>();
+	private boolean isClosed = false;
+
+	/**
+	 *
+	 * @param output
+	 *            the {@link OutputStream} to write to
+	 * @param kind
+	 *            the kind of records written, checked by the
+	 *            {@link BlockReader}
+	 * @param blockSize
+	 *            the size from which a block is written
+	 * @throws IOException
+	 *             if the header cannot be written
+	 */
+	protected BlockWriter(OutputStream output, byte kind, int blockSize)
+			throws IOException {
+		if (output == null) {
+			throw new NullPointerException("No output has been provided.");
+		} else if (blockSize < 1 || blockSize > Format.MAX_BLOCK_SIZE / 2) {
+			throw new IllegalArgumentException("Invalid block size: "
+					+ blockSize);
+		} else {
+			this.output = output;
+			this.blockSize = blockSize;
+			this.block = new byte[blockSize + 1024];
+			output.write(Format.MAGIC);
+			output.write(Format.VERSION);
+			output.write(kind);
+		}
+	}
+
+	/**
+	 * Tell that a record starts, so it can be removed by
+	 * {@link #abortRecord()}.
+	 */
+	protected void startRecord() {
+		recordStart = length;
+		recordTerms.clear();
+	}
+
+	/**
+	 * Remove what has been written since {@link #startRecord()}, including
+	 * the terms added to the dictionary.
+	 */
+	protected void abortRecord() {
+		length = recordStart;
+		for (Object term : recordTerms) {
+			terms.remove(term);
+		}
+		recordTerms.clear();
+	}
+
+	/**
+	 * Tell that a record is complete. If the current block is large enough, it
+	 * is written.
+	 *
+	 * @throws IOException
+	 *             if the block cannot be written
+	 * @throws IllegalArgumentException
+	 *             if the record is too large to be read back, in which case
+	 *             it is removed
+	 */
+	protected void endRecord() throws IOException {
+		if (length - recordStart > Format.MAX_BLOCK_SIZE / 2) {
+			abortRecord();
+			throw new IllegalArgumentException("Record too large: "
+					+ (length - recordStart) + " bytes");
+		} else if (length >= blockSize) {
+			writeBlock();
+		} else {
+			// wait for more records
+		}
+	}
+
+	private void writeBlock() throws IOException {
+		checksum.reset();
+		checksum.update(block, 0, length);
+		byte[] header = new byte[5];
+		output.write(header, 0, encodeVarint(length, header, 0));
+		output.write(block, 0, length);
+		int crc = (int) checksum.getValue();
+		output.write(crc >>> 24);
+		output.write(crc >>> 16);
+		output.write(crc >>> 8);
+		output.write(crc);
+		length = 0;
+		recordStart = 0;
+	}
+
+	private void ensureCapacity(int bytes) {
+		if (length + bytes > block.length) {
+			block = Arrays.copyOf(block, Math.max(block.length * 2, length
+					+ bytes));
+		} else {
+			// enough space
+		}
+	}
+
+	private static int encodeVarint(int value, byte[] bytes, int offset) {
+		while ((value & ~0x7F) != 0) {
+			bytes[offset++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		bytes[offset++] = (byte) value;
+		return offset;
+	}
+
+	/**
+	 * Write a non-negative <code>int</code> in 1 to 5 bytes, the smallest
+	 * values taking the least bytes.
+	 */
+	protected void writeVarint(int value) {
+		ensureCapacity(5);
+		length = encodeVarint(value, block, length);
+	}
+
+	/**
+	 * Write a <code>long</code> in 1 to 10 bytes, the values closest to 0,
+	 * either positive or negative, taking the least bytes.
+	 */
+	protected void writeZigZag(long value) {
+		ensureCapacity(10);
+		long zigzag = (value << 1) ^ (value >> 63);
+		while ((zigzag & ~0x7FL) != 0) {
+			block[length++] = (byte) ((zigzag & 0x7F) | 0x80);
+			zigzag >>>= 7;
+		}
+		block[length++] = (byte) zigzag;
+	}
+
+	protected void writeByte(int value) {
+		ensureCapacity(1);
+		block[length++] = (byte) value;
+	}
+
+	protected void writeFixed(long value, int bytes) {
+		ensureCapacity(bytes);
+		for (int shift = (bytes - 1) * 8; shift >= 0; shift -= 8) {
+			block[length++] = (byte) (value >>> shift);
+		}
+	}
+
+	protected void writeDouble(double value) {
+		writeFixed(Double.doubleToLongBits(value), 8);
+	}
+
+	protected void writeString(String value) {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeVarint(bytes.length);
+		ensureCapacity(bytes.length);
+		System.arraycopy(bytes, 0, block, length, bytes.length);
+		length += bytes.length;
+	}
+
+	/**
+	 * Write a value preceded by its type. The supported types are
+	 * {@link Boolean}, {@link Integer}, {@link Long}, {@link Float},
+	 * {@link Double}, {@link String} and <code>null</code>.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the value has another type
+	 */
+	protected void writeValue(Object value) {
+		if (value == null) {
+			writeByte(Format.NULL);
+		} else if (value instanceof Boolean) {
+			writeByte((Boolean) value ? Format.TRUE : Format.FALSE);
+		} else if (value instanceof Integer) {
+			writeByte(Format.INT);
+			writeZigZag((Integer) value);
+		} else if (value instanceof Long) {
+			writeByte(Format.LONG);
+			writeZigZag((Long) value);
+		} else if (value instanceof Float) {
+			writeByte(Format.FLOAT);
+			writeFixed(Float.floatToIntBits((Float) value), 4);
+		} else if (value instanceof Double) {
+			writeByte(Format.DOUBLE);
+			writeDouble((Double) value);
+		} else if (value instanceof String) {
+			writeByte(Format.STRING);
+			writeString((String) value);
+		} else {
+			throw new IllegalArgumentException("Unsupported type "
+					+ value.getClass().getName() + " for " + value);
+		}
+	}
+
+	/**
+	 * Write a term through the dictionary: its id if it has already been
+	 * written, otherwise the next id followed by the term itself, written with
+	 * {@link #writeValue(Object)}.
+	 */
+	protected void writeTerm(Object term) {
+		Integer id = terms.get(term);
+		if (id != null) {
+			writeVarint(id);
+		} else {
+			id = terms.size();
+			writeVarint(id);
+			writeValue(term);
+			terms.put(term, id);
+			recordTerms.add(term);
+		}
+	}
+
+	/**
+	 *
+	 * @return the number of terms in the dictionary
+	 */
+	public int getDictionarySize() {
+		return terms.size();
+	}
+
+	/**
+	 * Write the current block, even if it is not full, and flush the
+	 * {@link OutputStream}.
+	 */
+	@Override
+	public void flush() throws IOException {
+		if (length > 0) {
+			writeBlock();
+		} else {
+			// nothing to write
+		}
+		output.flush();
+	}
+
+	/**
+	 * Write the remaining records and the end of the stream, then close the
+	 * {@link OutputStream}.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (isClosed) {
+			// already closed
+		} else {
+			isClosed = true;
+			try {
+				if (length > 0) {
+					writeBlock();
+				} else {
+					// nothing to write
+				}
+				writeBlock();
+			} finally {
+				output.close();
+			}
+		}
+	}
+}
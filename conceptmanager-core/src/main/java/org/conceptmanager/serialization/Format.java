@@ -0,0 +1,39 @@
+package org.conceptmanager.serialization;
+
+/**
+ * Constants shared by the {@link BlockWriter}s and {@link BlockReader}s.
+ *
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ *
+ */
+final class Format {
+
+	static final byte[] MAGIC = { 'C', 'M', 'B', 'F' };
+	/**
+	 * Version of the format, to increase at each incompatible change.
+	 */
+	static final int VERSION = 1;
+	/**
+	 * Maximal length of a block, so a corrupted length is detected before
+	 * allocating it. A {@link BlockWriter} fills at most half of it with its
+	 * block size, and the other half with its last record.
+	 */
+	static final int MAX_BLOCK_SIZE = 1 << 26;
+
+	static final byte MODELS = 'M';
+	static final byte WEIGHTS = 'W';
+	static final byte ARCHIVE = 'A';
+	static final byte MESSAGES = 'S';
+
+	static final byte NULL = 0;
+	static final byte FALSE = 1;
+	static final byte TRUE = 2;
+	static final byte INT = 3;
+	static final byte LONG = 4;
+	static final byte FLOAT = 5;
+	static final byte DOUBLE = 6;
+	static final byte STRING = 7;
+
+	private Format() {
+	}
+}
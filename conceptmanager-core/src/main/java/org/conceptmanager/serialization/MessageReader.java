@@ -0,0 +1,74 @@
+package org.conceptmanager.serialization;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A {@link MessageReader} reads the messages written by a
+ * {@link MessageWriter}, waiting for each of them.
+ *
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ *
+ */
+public class MessageReader extends BlockReader {
+
+	/**
+	 * Read the header of the stream, waiting for it if needed.
+	 */
+	public MessageReader(InputStream input) throws IOException {
+		super(input, Format.MESSAGES);
+	}
+
+	/**
+	 *
+	 * @return the next {@link Message}, <code>null</code> if the other end
+	 *         has closed the stream
+	 * @throws IOException
+	 *             if the stream cannot be read or is corrupted
+	 */
+	public Message read() throws IOException {
+		if (nextRecord()) {
+			int operation = readByte();
+			int size = readVarint();
+			List<Object> values = new ArrayList<Object>(Math.min(size, 1024));
+			for (int i = 0; i < size; i++) {
+				values.add(readValue());
+			}
+			return new Message(operation, values);
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * A {@link Message} written by a {@link MessageWriter}.
+	 *
+	 * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+	 *
+	 */
+	public static class Message {
+		private final int operation;
+		private final List<Object> values;
+
+		private Message(int operation, List<Object> values) {
+			this.operation = operation;
+			this.values = Collections.unmodifiableList(values);
+		}
+
+		public int getOperation() {
+			return operation;
+		}
+
+		public List<Object> getValues() {
+			return values;
+		}
+
+		@Override
+		public String toString() {
+			return operation + " " + values;
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package org.conceptmanager.serialization;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * A {@link MessageWriter} writes messages, read by a {@link MessageReader} at
+ * the other end of a connection, like a socket between the processes of a
+ * {@link org.conceptmanager.symbol.impl.ShardedSymbolManager}. Each message is
+ * an operation code followed by a list of values, and is sent in its own
+ * block, so it is checked by its checksum and delivered as soon as it is
+ * written.<br/>
+ * <br/>
+ * The values are written without dictionary, so a long connection does not
+ * accumulate all the values ever sent. They should be of one of the types
+ * supported by {@link BlockWriter#writeValue(Object)}.
+ *
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ *
+ */
+public class MessageWriter extends BlockWriter {
+
+	/**
+	 * Write the header of the stream and flush it, so the
+	 * {@link MessageReader} at the other end can be instantiated.
+	 */
+	public MessageWriter(OutputStream output) throws IOException {
+		super(output, Format.MESSAGES, DEFAULT_BLOCK_SIZE);
+		output.flush();
+	}
+
+	/**
+	 *
+	 * @param operation
+	 *            the code of the operation, between 0 and 255
+	 * @param values
+	 *            the values of the message
+	 * @throws IOException
+	 *             if the message cannot be written
+	 * @throws IllegalArgumentException
+	 *             if a value has an unsupported type
+	 */
+	public void write(int operation, List<?> values) throws IOException {
+		startRecord();
+		try {
+			writeByte(operation);
+			writeVarint(values.size());
+			for (Object value : values) {
+				writeValue(value);
+			}
+		} catch (RuntimeException e) {
+			abortRecord();
+			throw e;
+		}
+		endRecord();
+		flush();
+	}
+}
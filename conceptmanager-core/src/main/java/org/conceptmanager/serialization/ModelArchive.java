@@ -0,0 +1,316 @@
+package org.conceptmanager.serialization;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.conceptmanager.evaluation.Outcome;
+import org.conceptmanager.modeling.Model;
+import org.conceptmanager.serialization.BlockReader.CorruptedStreamException;
+
+/**
+ * A {@link ModelArchive} provides a read-only access to an archive written by
+ * a {@link ModelArchiveWriter}. The file is mapped in memory, so opening it
+ * only reads its trailer and its dictionary of {@link Attribute}s, whatever
+ * the number of {@link Model}s archived. Each {@link Model} obtained through
+ * {@link #get(int)} is a view on the mapping: its {@link Attribute}s are
+ * found through its offset table, and only the {@link Value} requested is
+ * decoded, directly from the mapping.<br/>
+ * <br/>
+ * The views can be read concurrently, since they only use absolute reads of
+ * the mapping. A single mapping is used, so the archive is limited to 2 GiB.
+ *
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ *
+ */
+public class ModelArchive implements Closeable {
+
+	private final RandomAccessFile file;
+	private final ByteBuffer buffer;
+	private final Object[] terms;
+	private final Map<Object, Integer> ids;
+	private final int indexOffset;
+	private final int count;
+
+	/**
+	 *
+	 * @param file
+	 *            the archive to open
+	 * @throws IOException
+	 *             if the file cannot be read or is not a valid archive
+	 */
+	public ModelArchive(File file) throws IOException {
+		this.file = new RandomAccessFile(file, "r");
+		try {
+			long length = this.file.length();
+			if (length > Integer.MAX_VALUE) {
+				throw new IOException("Archive too large to be mapped: "
+						+ length + " bytes");
+			} else if (length < Format.MAGIC.length + 2
+					+ ModelArchiveWriter.TRAILER_SIZE) {
+				throw new CorruptedStreamException("Truncated archive");
+			} else {
+				buffer = this.file.getChannel().map(MapMode.READ_ONLY, 0,
+						length);
+			}
+
+			checkMagic(0);
+			if (buffer.get(4) != Format.VERSION) {
+				throw new CorruptedStreamException("Unsupported version "
+						+ buffer.get(4));
+			} else if (buffer.get(5) != Format.ARCHIVE) {
+				throw new CorruptedStreamException("Not an archive");
+			} else {
+				// valid header
+			}
+
+			int trailer = (int) length - ModelArchiveWriter.TRAILER_SIZE;
+			checkMagic(trailer + 20);
+			long dictionaryOffset = buffer.getLong(trailer);
+			long indexOffset = buffer.getLong(trailer + 8);
+			this.count = buffer.getInt(trailer + 16);
+			if (dictionaryOffset < 6 || dictionaryOffset > indexOffset
+					|| count < 0 || indexOffset + 8L * count != trailer) {
+				throw new CorruptedStreamException("Invalid trailer");
+			} else {
+				this.indexOffset = (int) indexOffset;
+			}
+
+			int position = (int) dictionaryOffset;
+			int size = buffer.getInt(position);
+			position += 4;
+			terms = new Object[size];
+			ids = new HashMap<Object, Integer>(size * 4 / 3 + 1);
+			for (int id = 0; id < size; id++) {
+				terms[id] = decode(position);
+				ids.put(terms[id], id);
+				position = skip(position);
+			}
+		} catch (IOException | RuntimeException e) {
+			this.file.close();
+			throw e;
+		}
+	}
+
+	private void checkMagic(int position) throws CorruptedStreamException {
+		for (int i = 0; i < Format.MAGIC.length; i++) {
+			if (buffer.get(position + i) != Format.MAGIC[i]) {
+				throw new CorruptedStreamException("Not an archive");
+			} else {
+				// valid byte
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @return the number of {@link Model}s archived
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 *
+	 * @return all the {@link Attribute}s used by the {@link Model}s archived
+	 */
+	@SuppressWarnings("unchecked")
+	public <Attribute> Collection<? extends Attribute> getAttributes() {
+		return (Collection<? extends Attribute>) Collections
+				.unmodifiableList(Arrays.asList(terms));
+	}
+
+	/**
+	 *
+	 * @param index
+	 *            the index of the {@link Model}, in the order they were
+	 *            written
+	 * @return a view of the {@link Model} archived
+	 */
+	public Model get(int index) {
+		if (index < 0 || index >= count) {
+			throw new IndexOutOfBoundsException("Index " + index + " out of "
+					+ count);
+		} else {
+			return new ArchivedModel((int) buffer.getLong(indexOffset + index
+					* 8));
+		}
+	}
+
+	/**
+	 * Read a {@link Value} written by the {@link ModelArchiveWriter}.
+	 */
+	private Object decode(int position) {
+		byte type = buffer.get(position);
+		switch (type) {
+		case Format.NULL:
+			return null;
+		case Format.FALSE:
+			return false;
+		case Format.TRUE:
+			return true;
+		case Format.INT:
+			return buffer.getInt(position + 1);
+		case Format.LONG:
+			return buffer.getLong(position + 1);
+		case Format.FLOAT:
+			return buffer.getFloat(position + 1);
+		case Format.DOUBLE:
+			return buffer.getDouble(position + 1);
+		case Format.STRING:
+			int length = buffer.getInt(position + 1);
+			ByteBuffer bytes = buffer.duplicate();
+			// through Buffer to stay compatible with the Java 8 API
+			((Buffer) bytes).position(position + 5);
+			((Buffer) bytes).limit(position + 5 + length);
+			return StandardCharsets.UTF_8.decode(bytes).toString();
+		default:
+			throw new IllegalStateException("Unknown type " + type
+					+ " at offset " + position);
+		}
+	}
+
+	/**
+	 *
+	 * @return the position following the {@link Value} at this position
+	 */
+	private int skip(int position) {
+		byte type = buffer.get(position);
+		switch (type) {
+		case Format.INT:
+		case Format.FLOAT:
+			return position + 5;
+		case Format.LONG:
+		case Format.DOUBLE:
+			return position + 9;
+		case Format.STRING:
+			return position + 5 + buffer.getInt(position + 1);
+		default:
+			return position + 1;
+		}
+	}
+
+	/**
+	 * The mapping is released by the garbage collector once this
+	 * {@link ModelArchive} and its {@link Model}s are not used anymore.
+	 */
+	@Override
+	public void close() throws IOException {
+		file.close();
+	}
+
+	/**
+	 * The view of a {@link Model} in the mapping. It only stores the offset of
+	 * the {@link Model}.
+	 */
+	private class ArchivedModel implements Model {
+		private final int offset;
+
+		public ArchivedModel(int offset) {
+			this.offset = offset;
+		}
+
+		/**
+		 *
+		 * @return the position of the {@link Value} of the {@link Attribute},
+		 *         -1 if this {@link Model} does not have it
+		 */
+		private int find(Object attribute) {
+			Integer id = ids.get(attribute);
+			if (id == null) {
+				return -1;
+			} else {
+				int low = 0;
+				int high = buffer.getInt(offset) - 1;
+				while (low <= high) {
+					int middle = (low + high) >>> 1;
+					int entry = offset + 4 + middle * 8;
+					int current = buffer.getInt(entry);
+					if (current < id) {
+						low = middle + 1;
+					} else if (current > id) {
+						high = middle - 1;
+					} else {
+						return offset + buffer.getInt(entry + 4);
+					}
+				}
+				return -1;
+			}
+		}
+
+		@Override
+		public <Attribute> Collection<? extends Attribute> getAttributes() {
+			final int size = buffer.getInt(offset);
+			List<Attribute> attributes = new AbstractList<Attribute>() {
+
+				@SuppressWarnings("unchecked")
+				@Override
+				public Attribute get(int index) {
+					if (index < 0 || index >= size) {
+						throw new IndexOutOfBoundsException("Index " + index
+								+ " out of " + size);
+					} else {
+						return (Attribute) terms[buffer.getInt(offset + 4
+								+ index * 8)];
+					}
+				}
+
+				@Override
+				public int size() {
+					return size;
+				}
+			};
+			return attributes;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public <Attribute, Value> Value getValueFor(Attribute attribute) {
+			int position = find(attribute);
+			if (position < 0) {
+				throw new UnknownAttributeException(attribute);
+			} else {
+				return (Value) decode(position);
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public <Attribute, Value> Outcome<Value> tryGetValueFor(
+				Attribute attribute) {
+			int position = find(attribute);
+			if (position < 0) {
+				return Outcome.absent();
+			} else {
+				return Outcome.of((Value) decode(position));
+			}
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder builder = new StringBuilder("{");
+			for (Object attribute : getAttributes()) {
+				if (builder.length() > 1) {
+					builder.append(", ");
+				} else {
+					// first attribute
+				}
+				Object value = getValueFor(attribute);
+				builder.append(attribute).append("=").append(value);
+			}
+			return builder.append("}").toString();
+		}
+	}
+}
@@ -0,0 +1,271 @@
+package org.conceptmanager.serialization;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.conceptmanager.modeling.Model;
+
+/**
+ * A {@link ModelArchiveWriter} writes {@link Model} snapshots in an archive
+ * file, which can be read by a {@link ModelArchive}. Unlike the stream of a
+ * {@link ModelWriter}, the archive is designed for random access:
+ * <ul>
+ * <li>each {@link Model} starts with a table giving, for each of its
+ * {@link Attribute}s, the id of the {@link Attribute} and the offset of its
+ * {@link Value}, sorted by id</li>
+ * <li>the {@link Value}s are written with fixed-size encodings, preceded by
+ * their type like in {@link BlockWriter#writeValue(Object)}</li>
+ * <li>the dictionary of the {@link Attribute}s and the offset of each
+ * {@link Model} are written at the end of the file, followed by a trailer
+ * locating them</li>
+ * </ul>
+ * The {@link Model}s are written as they come, so only the dictionary and
+ * the offsets (8 bytes per {@link Model}) are kept in memory. As a
+ * {@link ModelArchive} maps the whole file, the archive cannot exceed
+ * {@link Integer#MAX_VALUE} bytes: a {@link Model} which would make it larger
+ * is rejected.
+ *
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ *
+ */
+public class ModelArchiveWriter implements Closeable {
+
+	/**
+	 * Size of the trailer: dictionary offset, index offset, number of
+	 * {@link Model}s and magic.
+	 */
+	static final int TRAILER_SIZE = 8 + 8 + 4 + 4;
+
+	private final long maxLength;
+	private final DataOutputStream output;
+	private final Map<Object, Integer> terms = new HashMap<Object, Integer>();
+	private final List<Object> termList = new ArrayList<Object>();
+	private long[] offsets = new long[1024];
+	private int count = 0;
+	private long position = 0;
+	private long dictionaryLength = 4;
+	private final Record record = new Record();
+	private boolean isClosed = false;
+
+	/**
+	 *
+	 * @param file
+	 *            the archive to create, replaced if it already exists
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public ModelArchiveWriter(File file) throws IOException {
+		this(file, Integer.MAX_VALUE);
+	}
+
+	ModelArchiveWriter(File file, long maxLength) throws IOException {
+		this.maxLength = maxLength;
+		this.output = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(file), 64 * 1024));
+		output.write(Format.MAGIC);
+		output.write(Format.VERSION);
+		output.write(Format.ARCHIVE);
+		position = output.size();
+	}
+
+	/**
+	 *
+	 * @param model
+	 *            the {@link Model} to archive
+	 * @throws IOException
+	 *             if the {@link Model} cannot be written, like when the
+	 *             archive would become too large to be mapped
+	 * @throws IllegalArgumentException
+	 *             if an {@link Attribute} or a {@link Value} has an
+	 *             unsupported type
+	 */
+	public void write(Model model) throws IOException {
+		Collection<?> attributes = model.getAttributes();
+		int size = attributes.size();
+		long[] entries = new long[size];
+		Object[] values = new Object[size];
+		int index = 0;
+		for (Object attribute : attributes) {
+			Integer id = terms.get(attribute);
+			if (id == null) {
+				dictionaryLength += checkType(attribute);
+				id = termList.size();
+				terms.put(attribute, id);
+				termList.add(attribute);
+			} else {
+				// known attribute
+			}
+			// sort by id while remembering the original index
+			entries[index] = (long) id << 32 | index;
+			values[index] = model.getValueFor(attribute);
+			index++;
+		}
+		Arrays.sort(entries);
+
+		record.reset();
+		record.writeInt(size);
+		int tableStart = record.length;
+		record.skip(size * 8);
+		for (int i = 0; i < size; i++) {
+			int id = (int) (entries[i] >>> 32);
+			int valueOffset = record.length;
+			record.writeValue(values[(int) entries[i]]);
+			record.putInt(tableStart + i * 8, id);
+			record.putInt(tableStart + i * 8 + 4, valueOffset);
+		}
+
+		// the dictionary, the index and the trailer follow the models
+		long length = position + record.length + dictionaryLength + 8L
+				* (count + 1) + TRAILER_SIZE;
+		if (length > maxLength) {
+			throw new IOException("The archive would exceed " + maxLength
+					+ " bytes with " + model);
+		} else {
+			// still small enough
+		}
+		if (count == offsets.length) {
+			offsets = Arrays.copyOf(offsets, count * 2);
+		} else {
+			// enough space
+		}
+		offsets[count++] = position;
+		output.write(record.bytes, 0, record.length);
+		position += record.length;
+	}
+
+	private static int checkType(Object value) {
+		Record record = new Record();
+		record.writeValue(value);
+		return record.length;
+	}
+
+	/**
+	 *
+	 * @return the number of {@link Model}s written
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Write the dictionary and the offsets of the {@link Model}s, then close
+	 * the file.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (isClosed) {
+			// already closed
+		} else {
+			isClosed = true;
+			try {
+				long dictionaryOffset = position;
+				record.reset();
+				record.writeInt(termList.size());
+				for (Object term : termList) {
+					record.writeValue(term);
+				}
+				output.write(record.bytes, 0, record.length);
+				long indexOffset = dictionaryOffset + record.length;
+				for (int i = 0; i < count; i++) {
+					output.writeLong(offsets[i]);
+				}
+				output.writeLong(dictionaryOffset);
+				output.writeLong(indexOffset);
+				output.writeInt(count);
+				output.write(Format.MAGIC);
+			} finally {
+				output.close();
+			}
+		}
+	}
+
+	/**
+	 * The bytes of a {@link Model} being encoded.
+	 */
+	private static class Record {
+		private byte[] bytes = new byte[256];
+		private int length = 0;
+
+		public void reset() {
+			length = 0;
+		}
+
+		private void ensureCapacity(int size) {
+			if (size > bytes.length) {
+				bytes = Arrays.copyOf(bytes, Math.max(size, bytes.length * 2));
+			} else {
+				// enough space
+			}
+		}
+
+		public void skip(int size) {
+			ensureCapacity(length + size);
+			length += size;
+		}
+
+		public void putInt(int offset, int value) {
+			bytes[offset] = (byte) (value >>> 24);
+			bytes[offset + 1] = (byte) (value >>> 16);
+			bytes[offset + 2] = (byte) (value >>> 8);
+			bytes[offset + 3] = (byte) value;
+		}
+
+		public void writeInt(int value) {
+			ensureCapacity(length + 4);
+			putInt(length, value);
+			length += 4;
+		}
+
+		public void writeLong(long value) {
+			writeInt((int) (value >>> 32));
+			writeInt((int) value);
+		}
+
+		public void writeByte(int value) {
+			ensureCapacity(length + 1);
+			bytes[length++] = (byte) value;
+		}
+
+		public void writeValue(Object value) {
+			if (value == null) {
+				writeByte(Format.NULL);
+			} else if (value instanceof Boolean) {
+				writeByte((Boolean) value ? Format.TRUE : Format.FALSE);
+			} else if (value instanceof Integer) {
+				writeByte(Format.INT);
+				writeInt((Integer) value);
+			} else if (value instanceof Long) {
+				writeByte(Format.LONG);
+				writeLong((Long) value);
+			} else if (value instanceof Float) {
+				writeByte(Format.FLOAT);
+				writeInt(Float.floatToIntBits((Float) value));
+			} else if (value instanceof Double) {
+				writeByte(Format.DOUBLE);
+				writeLong(Double.doubleToLongBits((Double) value));
+			} else if (value instanceof String) {
+				byte[] string = ((String) value)
+						.getBytes(StandardCharsets.UTF_8);
+				writeByte(Format.STRING);
+				writeInt(string.length);
+				ensureCapacity(length + string.length);
+				System.arraycopy(string, 0, bytes, length, string.length);
+				length += string.length;
+			} else {
+				throw new IllegalArgumentException("Unsupported type "
+						+ value.getClass().getName() + " for " + value);
+			}
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package org.conceptmanager.serialization;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.conceptmanager.modeling.Model;
+import org.conceptmanager.modeling.impl.StaticModel;
+
+/**
+ * A {@link ModelReader} reads the {@link Model}s written by a
+ * {@link ModelWriter}, one at a time, as {@link StaticModel}s.
+ *
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ *
+ */
+public class ModelReader extends BlockReader {
+
+	public ModelReader(InputStream input) throws IOException {
+		super(input, Format.MODELS);
+	}
+
+	/**
+	 *
+	 * @return the next {@link Model}, <code>null</code> if all of them have
+	 *         been read
+	 * @throws IOException
+	 *             if the stream cannot be read or is corrupted
+	 */
+	public StaticModel read() throws IOException {
+		if (nextRecord()) {
+			int size = readVarint();
+			Map<Object, Object> values = new HashMap<Object, Object>(
+					size * 4 / 3 + 1);
+			for (int i = 0; i < size; i++) {
+				Object attribute = readTerm();
+				values.put(attribute, readValue());
+			}
+			return new StaticModel(values);
+		} else {
+			return null;
+		}
+	}
+}
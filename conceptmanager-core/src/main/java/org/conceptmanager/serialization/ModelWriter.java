@@ -0,0 +1,59 @@
+package org.conceptmanager.serialization;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+
+import org.conceptmanager.modeling.Model;
+
+/**
+ * A {@link ModelWriter} writes {@link Model} snapshots in a compact binary
+ * format, which can be read back with a {@link ModelReader}. Each
+ * {@link Model} is written with its number of {@link Attribute}s, then each
+ * {@link Attribute} through the dictionary followed by its {@link Value}.
+ * Thus, an {@link Attribute} is written fully only once in the stream, and the
+ * {@link Model}s sharing the same {@link Attribute}s only store their
+ * {@link Value}s and a few bytes per {@link Attribute}.<br/>
+ * <br/>
+ * The {@link Attribute}s and {@link Value}s should be of one of the types
+ * supported by {@link BlockWriter#writeValue(Object)}.
+ *
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ *
+ */
+public class ModelWriter extends BlockWriter {
+
+	public ModelWriter(OutputStream output) throws IOException {
+		this(output, DEFAULT_BLOCK_SIZE);
+	}
+
+	public ModelWriter(OutputStream output, int blockSize) throws IOException {
+		super(output, Format.MODELS, blockSize);
+	}
+
+	/**
+	 *
+	 * @param model
+	 *            the {@link Model} to write
+	 * @throws IOException
+	 *             if the {@link Model} cannot be written
+	 * @throws IllegalArgumentException
+	 *             if an {@link Attribute} or a {@link Value} has an
+	 *             unsupported type
+	 */
+	public void write(Model model) throws IOException {
+		startRecord();
+		try {
+			Collection<?> attributes = model.getAttributes();
+			writeVarint(attributes.size());
+			for (Object attribute : attributes) {
+				writeTerm(attribute);
+				writeValue(model.getValueFor(attribute));
+			}
+		} catch (RuntimeException e) {
+			abortRecord();
+			throw e;
+		}
+		endRecord();
+	}
+}
@@ -0,0 +1,72 @@
+package org.conceptmanager.serialization;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A {@link WeightReader} reads the weights written by a {@link WeightWriter},
+ * one at a time.
+ *
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ *
+ */
+public class WeightReader extends BlockReader {
+
+	public WeightReader(InputStream input) throws IOException {
+		super(input, Format.WEIGHTS);
+	}
+
+	/**
+	 *
+	 * @return the next {@link Weight}, <code>null</code> if all of them have
+	 *         been read
+	 * @throws IOException
+	 *             if the stream cannot be read or is corrupted
+	 */
+	public Weight read() throws IOException {
+		if (nextRecord()) {
+			Object request = readTerm();
+			Object answer = readTerm();
+			return new Weight(request, answer, readDouble());
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * A {@link Weight} learned for a request-answer pair.
+	 *
+	 * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+	 *
+	 */
+	public static class Weight {
+		private final Object request;
+		private final Object answer;
+		private final double weight;
+
+		private Weight(Object request, Object answer, double weight) {
+			this.request = request;
+			this.answer = answer;
+			this.weight = weight;
+		}
+
+		@SuppressWarnings("unchecked")
+		public <Symbol> Symbol getRequest() {
+			return (Symbol) request;
+		}
+
+		@SuppressWarnings("unchecked")
+		public <Symbol> Symbol getAnswer() {
+			return (Symbol) answer;
+		}
+
+		public double getWeight() {
+			return weight;
+		}
+
+		@Override
+		public String toString() {
+			return request + " -> " + answer + ": " + weight;
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package org.conceptmanager.serialization;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.conceptmanager.symbol.SymbolManager;
+
+/**
+ * A {@link WeightWriter} writes the weights learned by a
+ * {@link SymbolManager} in a compact binary format, which can be read back
+ * with a {@link WeightReader}. Each weight relates a request {@link Symbol} to
+ * an answer {@link Symbol}, both written through the dictionary, so each
+ * {@link Symbol} is written fully only once in the stream.<br/>
+ * <br/>
+ * The {@link Symbol}s should be of one of the types supported by
+ * {@link BlockWriter#writeValue(Object)}.
+ *
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ *
+ */
+public class WeightWriter extends BlockWriter {
+
+	public WeightWriter(OutputStream output) throws IOException {
+		this(output, DEFAULT_BLOCK_SIZE);
+	}
+
+	public WeightWriter(OutputStream output, int blockSize) throws IOException {
+		super(output, Format.WEIGHTS, blockSize);
+	}
+
+	/**
+	 *
+	 * @param request
+	 *            the request {@link Symbol}
+	 * @param answer
+	 *            the answer {@link Symbol}
+	 * @param weight
+	 *            the weight learned for this request-answer pair
+	 * @throws IOException
+	 *             if the weight cannot be written
+	 * @throws IllegalArgumentException
+	 *             if a {@link Symbol} has an unsupported type
+	 */
+	public <Symbol> void write(Symbol request, Symbol answer, double weight)
+			throws IOException {
+		startRecord();
+		try {
+			writeTerm(request);
+			writeTerm(answer);
+			writeDouble(weight);
+		} catch (RuntimeException e) {
+			abortRecord();
+			throw e;
+		}
+		endRecord();
+	}
+}
@@ -0,0 +1,71 @@
+package org.conceptmanager.symbol;
+
+import java.util.Objects;
+
+/**
+ * An {@link Evidence} is a learning evidence, as provided to
+ * {@link SymbolManager#learn(Object, Object, Comparable)}: a request
+ * {@link Symbol}, the answer {@link Symbol} obtained and the {@link Judgment}
+ * of this answer. {@link Evidence}s allow to store or send the learning of a
+ * {@link SymbolManager} in order to replay it later or elsewhere.
+ * 
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ * 
+ * @param <Symbol>
+ * @param <Judgment>
+ */
+public final class Evidence<Symbol, Judgment extends Comparable<Judgment>> {
+
+	private final Symbol request;
+	private final Symbol answer;
+	private final Judgment judgment;
+
+	public Evidence(Symbol request, Symbol answer, Judgment judgment) {
+		this.request = request;
+		this.answer = answer;
+		this.judgment = judgment;
+	}
+
+	public Symbol getRequest() {
+		return request;
+	}
+
+	public Symbol getAnswer() {
+		return answer;
+	}
+
+	public Judgment getJudgment() {
+		return judgment;
+	}
+
+	/**
+	 * Provide this {@link Evidence} to a {@link SymbolManager}.
+	 */
+	public void learnBy(SymbolManager<Symbol, Judgment> manager) {
+		manager.learn(request, answer, judgment);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) {
+			return true;
+		} else if (obj instanceof Evidence) {
+			Evidence<?, ?> other = (Evidence<?, ?>) obj;
+			return Objects.equals(request, other.request)
+					&& Objects.equals(answer, other.answer)
+					&& Objects.equals(judgment, other.judgment);
+		} else {
+			return false;
+		}
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(request, answer, judgment);
+	}
+
+	@Override
+	public String toString() {
+		return request + " -> " + answer + ": " + judgment;
+	}
+}
@@ -0,0 +1,78 @@
+package org.conceptmanager.symbol;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A {@link ShardTransport} is the connection to a shard of a partitioned
+ * {@link SymbolManager}: a {@link SymbolManager} owning the request
+ * {@link Symbol}s of some buckets, possibly in another process. The requests
+ * are assigned to the buckets through {@link #getBucket(Object, int)}, which
+ * only depends on {@link Object#hashCode()}, so it gives the same result in
+ * every process for {@link Symbol}s like {@link String}s.
+ * 
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ * 
+ * @param <Symbol>
+ * @param <Judgment>
+ */
+public interface ShardTransport<Symbol, Judgment extends Comparable<Judgment>>
+		extends Closeable {
+
+	/**
+	 * 
+	 * @param request
+	 *            request's {@link Symbol}
+	 * @return answer's {@link Symbol}, as provided by
+	 *         {@link SymbolManager#request(Object)} on the shard
+	 * @throws IOException
+	 *             if the shard cannot be reached
+	 */
+	public Symbol request(Symbol request) throws IOException;
+
+	/**
+	 * 
+	 * @param evidences
+	 *            the {@link Evidence}s to learn, in order
+	 * @throws IOException
+	 *             if the shard cannot be reached
+	 * @throws IllegalArgumentException
+	 *             if an {@link Evidence} cannot be sent, in which case none
+	 *             is learned
+	 */
+	public void learn(List<Evidence<Symbol, Judgment>> evidences)
+			throws IOException;
+
+	/**
+	 * Remove from the shard the learning of the requests of some buckets, so
+	 * it can be given to another shard.
+	 * 
+	 * @param buckets
+	 *            the buckets to extract
+	 * @param bucketCount
+	 *            the total number of buckets
+	 * @return the {@link Evidence}s which, once learned, restore the learning
+	 *         of these buckets
+	 * @throws IOException
+	 *             if the shard cannot be reached
+	 */
+	public List<Evidence<Symbol, Judgment>> extract(
+			Collection<Integer> buckets, int bucketCount) throws IOException;
+
+	/**
+	 * 
+	 * @param symbol
+	 *            a request {@link Symbol}
+	 * @param bucketCount
+	 *            the total number of buckets
+	 * @return the bucket of the {@link Symbol}, between 0 and bucketCount - 1
+	 */
+	public static int getBucket(Object symbol, int bucketCount) {
+		int hash = symbol == null ? 0 : symbol.hashCode();
+		// spread the high bits, like HashMap
+		hash ^= hash >>> 16;
+		return Math.floorMod(hash * 0x9E3779B9, bucketCount);
+	}
+}
@@ -0,0 +1,81 @@
+package org.conceptmanager.symbol.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.conceptmanager.symbol.Evidence;
+import org.conceptmanager.symbol.ShardTransport;
+
+/**
+ * An {@link InProcessTransport} is a {@link ShardTransport} calling directly a
+ * {@link ShardWorker} of the same process. It stands in for a
+ * {@link SocketTransport} in tests, or when a single process is enough. The
+ * number of calls is counted, as they would be round trips with another
+ * process.
+ * 
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ * 
+ * @param <Symbol>
+ * @param <Judgment>
+ */
+public class InProcessTransport<Symbol, Judgment extends Comparable<Judgment>>
+		implements ShardTransport<Symbol, Judgment> {
+
+	private final ShardWorker<Symbol, Judgment> worker;
+	private long roundTrips = 0;
+	private boolean isClosed = false;
+
+	public InProcessTransport(ShardWorker<Symbol, Judgment> worker) {
+		if (worker == null) {
+			throw new NullPointerException("No worker has been provided.");
+		} else {
+			this.worker = worker;
+		}
+	}
+
+	public ShardWorker<Symbol, Judgment> getWorker() {
+		return worker;
+	}
+
+	@Override
+	public synchronized Symbol request(Symbol request) {
+		checkOpen();
+		return worker.request(request);
+	}
+
+	@Override
+	public synchronized void learn(List<Evidence<Symbol, Judgment>> evidences) {
+		checkOpen();
+		// copied, like it would be by a real transport
+		worker.learn(new ArrayList<Evidence<Symbol, Judgment>>(evidences));
+	}
+
+	@Override
+	public synchronized List<Evidence<Symbol, Judgment>> extract(
+			Collection<Integer> buckets, int bucketCount) {
+		checkOpen();
+		return worker.extract(buckets, bucketCount);
+	}
+
+	private void checkOpen() {
+		if (isClosed) {
+			throw new IllegalStateException("The transport is closed.");
+		} else {
+			roundTrips++;
+		}
+	}
+
+	/**
+	 * 
+	 * @return the number of calls made through this transport
+	 */
+	public synchronized long getRoundTrips() {
+		return roundTrips;
+	}
+
+	@Override
+	public synchronized void close() {
+		isClosed = true;
+	}
+}
@@ -0,0 +1,245 @@
+package org.conceptmanager.symbol.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.conceptmanager.serialization.MessageReader;
+import org.conceptmanager.serialization.MessageReader.Message;
+import org.conceptmanager.serialization.MessageWriter;
+import org.conceptmanager.symbol.Evidence;
+import org.conceptmanager.symbol.SymbolManager;
+
+/**
+ * A {@link ShardServer} serves a {@link ShardWorker} to the
+ * {@link SocketTransport}s of other processes. It only listens on the
+ * loopback interface, since the shards are meant to be worker processes of
+ * the same machine. Each connection is served by its own thread, with
+ * {@link MessageWriter}s and {@link MessageReader}s: a message per call, a
+ * message per reply.<br/>
+ * <br/>
+ * {@link #main(String[])} runs a worker process, as launched by
+ * {@link SocketTransport#launch(Class)}.
+ * 
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ * 
+ * @param <Symbol>
+ * @param <Judgment>
+ */
+public class ShardServer<Symbol, Judgment extends Comparable<Judgment>>
+		implements Closeable {
+
+	static final int REPLY = 0;
+	static final int REQUEST = 1;
+	static final int LEARN = 2;
+	static final int EXTRACT = 3;
+	static final int ERROR = 255;
+	/**
+	 * Prefix of the line telling the port of a worker process.
+	 */
+	static final String PORT = "PORT ";
+
+	private final ShardWorker<Symbol, Judgment> worker;
+	private final ServerSocket server;
+	private final Set<Socket> connections = Collections
+			.synchronizedSet(new HashSet<Socket>());
+
+	/**
+	 * 
+	 * @param worker
+	 *            the {@link ShardWorker} to serve
+	 * @param port
+	 *            the port to listen to, 0 for any free port
+	 * @throws IOException
+	 *             if the port cannot be listened to
+	 */
+	public ShardServer(ShardWorker<Symbol, Judgment> worker, int port)
+			throws IOException {
+		if (worker == null) {
+			throw new NullPointerException("No worker has been provided.");
+		} else {
+			this.worker = worker;
+			this.server = new ServerSocket(port, 50,
+					InetAddress.getLoopbackAddress());
+		}
+	}
+
+	/**
+	 * 
+	 * @return the port listened to
+	 */
+	public int getPort() {
+		return server.getLocalPort();
+	}
+
+	/**
+	 * Start accepting connections, in a daemon thread.
+	 */
+	public void start() {
+		Thread acceptor = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				while (!server.isClosed()) {
+					try {
+						final Socket socket = server.accept();
+						connections.add(socket);
+						Thread handler = new Thread(new Runnable() {
+
+							@Override
+							public void run() {
+								serve(socket);
+							}
+						}, "shard-connection-" + socket.getPort());
+						handler.setDaemon(true);
+						handler.start();
+					} catch (IOException e) {
+						// closed
+					}
+				}
+			}
+		}, "shard-server-" + getPort());
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	private void serve(Socket socket) {
+		try {
+			socket.setTcpNoDelay(true);
+			MessageWriter writer = new MessageWriter(new BufferedOutputStream(
+					socket.getOutputStream()));
+			MessageReader reader = new MessageReader(new BufferedInputStream(
+					socket.getInputStream()));
+			Message message;
+			while ((message = reader.read()) != null) {
+				List<Object> reply;
+				int operation;
+				try {
+					reply = dispatch(message);
+					operation = REPLY;
+				} catch (RuntimeException e) {
+					reply = Collections.<Object> singletonList(String
+							.valueOf(e));
+					operation = ERROR;
+				}
+				writer.write(operation, reply);
+			}
+		} catch (IOException e) {
+			// connection lost
+		} finally {
+			connections.remove(socket);
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// already closed
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<Object> dispatch(Message message) {
+		List<Object> values = message.getValues();
+		switch (message.getOperation()) {
+		case REQUEST:
+			return Collections.singletonList((Object) worker
+					.request((Symbol) values.get(0)));
+		case LEARN:
+			List<Evidence<Symbol, Judgment>> evidences = new ArrayList<Evidence<Symbol, Judgment>>(
+					values.size() / 3);
+			for (int i = 0; i + 2 < values.size(); i += 3) {
+				evidences.add(new Evidence<Symbol, Judgment>((Symbol) values
+						.get(i), (Symbol) values.get(i + 1), (Judgment) values
+						.get(i + 2)));
+			}
+			worker.learn(evidences);
+			return Collections.emptyList();
+		case EXTRACT:
+			int bucketCount = (Integer) values.get(0);
+			Collection<Integer> buckets = new ArrayList<Integer>();
+			for (Object bucket : values.subList(1, values.size())) {
+				buckets.add((Integer) bucket);
+			}
+			return flatten(worker.extract(buckets, bucketCount));
+		default:
+			throw new IllegalArgumentException("Unknown operation "
+					+ message.getOperation());
+		}
+	}
+
+	/**
+	 * 
+	 * @return the request, answer and judgment of each {@link Evidence}, in
+	 *         a single list
+	 */
+	static List<Object> flatten(List<? extends Evidence<?, ?>> evidences) {
+		List<Object> values = new ArrayList<Object>(evidences.size() * 3);
+		for (Evidence<?, ?> evidence : evidences) {
+			values.add(evidence.getRequest());
+			values.add(evidence.getAnswer());
+			values.add(evidence.getJudgment());
+		}
+		return values;
+	}
+
+	/**
+	 * Stop accepting connections and close the current ones.
+	 */
+	@Override
+	public void close() throws IOException {
+		server.close();
+		synchronized (connections) {
+			for (Socket socket : connections) {
+				socket.close();
+			}
+		}
+	}
+
+	/**
+	 * Run a worker process: the {@link SymbolManager} class given as first
+	 * argument, which should have a public constructor without argument, is
+	 * served on the port given as second argument, any free port by default.
+	 * The port is written on the standard output, and the process ends when
+	 * its standard input is closed, typically when its parent ends.
+	 */
+	public static void main(String[] args) throws Exception {
+		Class<?> managerClass = Class.forName(args[0]);
+		int port = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+		ShardServer<?, ?> server = create(managerClass, port);
+		server.start();
+		System.out.println(PORT + server.getPort());
+		System.out.flush();
+		while (System.in.read() >= 0) {
+			// wait for the end of the parent
+		}
+		server.close();
+	}
+
+	private static <Symbol, Judgment extends Comparable<Judgment>> ShardServer<Symbol, Judgment> create(
+			final Class<?> managerClass, int port) throws IOException {
+		ShardWorker<Symbol, Judgment> worker = new ShardWorker<Symbol, Judgment>(
+				new ShardWorker.ManagerFactory<Symbol, Judgment>() {
+
+					@SuppressWarnings("unchecked")
+					@Override
+					public SymbolManager<Symbol, Judgment> create() {
+						try {
+							return (SymbolManager<Symbol, Judgment>) managerClass
+									.getConstructor().newInstance();
+						} catch (ReflectiveOperationException e) {
+							throw new IllegalStateException(e);
+						}
+					}
+				});
+		return new ShardServer<Symbol, Judgment>(worker, port);
+	}
+}
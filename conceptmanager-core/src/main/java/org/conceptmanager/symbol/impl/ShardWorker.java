@@ -0,0 +1,126 @@
+package org.conceptmanager.symbol.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.conceptmanager.symbol.Evidence;
+import org.conceptmanager.symbol.ShardTransport;
+import org.conceptmanager.symbol.SymbolManager;
+
+/**
+ * A {@link ShardWorker} is the shard side of a {@link ShardTransport}: it
+ * runs a local {@link SymbolManager} on the requests owned by the shard.
+ * Because a {@link SymbolManager} cannot forget what it learned, the
+ * {@link ShardWorker} also keeps the last {@link Evidence} of each
+ * request-answer pair: when buckets are extracted, these {@link Evidence}s are
+ * returned and a new {@link SymbolManager} is built from the remaining ones.
+ * This compaction assumes that the last {@link Judgment} of a pair prevails,
+ * like in weight tables, a <code>null</code> {@link Judgment} preserving the
+ * previous one. These {@link Evidence}s are replayed in the order their pairs
+ * were last learned, so the rebuilt {@link SymbolManager} ends in the same
+ * state as if it had learned everything. Thus, the memory of a
+ * {@link ShardWorker} is bounded by the number of distinct request-answer
+ * pairs it owns, whatever the number of {@link Evidence}s learned: the pairs
+ * are only forgotten when their buckets are extracted, since a bound would
+ * lose learning that {@link #extract(Collection, int)} has to move.
+ * 
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ * 
+ * @param <Symbol>
+ * @param <Judgment>
+ */
+public class ShardWorker<Symbol, Judgment extends Comparable<Judgment>> {
+
+	/**
+	 * A {@link ManagerFactory} instantiates the local {@link SymbolManager}s
+	 * of a {@link ShardWorker}.
+	 * 
+	 * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+	 * 
+	 */
+	public static interface ManagerFactory<Symbol, Judgment extends Comparable<Judgment>> {
+		public SymbolManager<Symbol, Judgment> create();
+	}
+
+	private final ManagerFactory<Symbol, Judgment> factory;
+	private SymbolManager<Symbol, Judgment> manager;
+	/**
+	 * The last {@link Evidence} of each request-answer pair, in the order the
+	 * pairs were last learned.
+	 */
+	private final Map<List<Symbol>, Evidence<Symbol, Judgment>> evidences = new LinkedHashMap<List<Symbol>, Evidence<Symbol, Judgment>>();
+
+	public ShardWorker(ManagerFactory<Symbol, Judgment> factory) {
+		if (factory == null) {
+			throw new NullPointerException("No factory has been provided.");
+		} else {
+			this.factory = factory;
+			this.manager = factory.create();
+		}
+	}
+
+	public synchronized Symbol request(Symbol request) {
+		return manager.request(request);
+	}
+
+	public synchronized void learn(List<Evidence<Symbol, Judgment>> evidences) {
+		for (Evidence<Symbol, Judgment> evidence : evidences) {
+			List<Symbol> pair = Arrays.asList(evidence.getRequest(),
+					evidence.getAnswer());
+			if (evidence.getJudgment() == null
+					&& this.evidences.containsKey(pair)) {
+				// the previous judgment is preserved
+			} else {
+				// removed first to be replayed after the pairs learned before
+				this.evidences.remove(pair);
+				this.evidences.put(pair, evidence);
+			}
+			evidence.learnBy(manager);
+		}
+	}
+
+	/**
+	 * See {@link ShardTransport#extract(Collection, int)}.
+	 */
+	public synchronized List<Evidence<Symbol, Judgment>> extract(
+			Collection<Integer> buckets, int bucketCount) {
+		Set<Integer> extracted = new HashSet<Integer>(buckets);
+		List<Evidence<Symbol, Judgment>> result = new ArrayList<Evidence<Symbol, Judgment>>();
+		Iterator<Evidence<Symbol, Judgment>> iterator = evidences.values()
+				.iterator();
+		while (iterator.hasNext()) {
+			Evidence<Symbol, Judgment> evidence = iterator.next();
+			if (extracted.contains(ShardTransport.getBucket(
+					evidence.getRequest(), bucketCount))) {
+				result.add(evidence);
+				iterator.remove();
+			} else {
+				// kept here
+			}
+		}
+		if (result.isEmpty()) {
+			// nothing to forget
+		} else {
+			manager = factory.create();
+			for (Evidence<Symbol, Judgment> evidence : evidences.values()) {
+				evidence.learnBy(manager);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * 
+	 * @return the number of request-answer pairs learned
+	 */
+	public synchronized int size() {
+		return evidences.size();
+	}
+}
@@ -0,0 +1,500 @@
+package org.conceptmanager.symbol.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.conceptmanager.symbol.Evidence;
+import org.conceptmanager.symbol.ShardTransport;
+import org.conceptmanager.symbol.SymbolManager;
+
+/**
+ * A {@link ShardedSymbolManager} is a {@link SymbolManager} partitioned on
+ * several shards, typically worker processes reached through
+ * {@link SocketTransport}s, so no process has to hold the learning of all the
+ * requests. The request {@link Symbol}s are hashed into a fixed number of
+ * buckets (see {@link ShardTransport#getBucket(Object, int)}), and each bucket
+ * is owned by a shard: {@link #request(Object)} and
+ * {@link #learn(Object, Object, Comparable)} are routed to the shard owning
+ * the request.<br/>
+ * <br/>
+ * The learning is batched per shard: the {@link Evidence}s are sent once a
+ * shard has a full batch, or before a request is sent to this shard, so a
+ * request always sees what has been learned before it. {@link #flush()} sends
+ * all the batches.<br/>
+ * <br/>
+ * Shards can be added or removed while running: their buckets are
+ * redistributed evenly by {@link #rebalance()}, the learning of each moved
+ * bucket being extracted from its previous shard and learned by the new one.
+ * Since only buckets move, a shard added to n shards only receives about
+ * 1/(n+1) of the requests. If the learning of a bucket cannot be moved, it is
+ * learned back by its previous shard, which keeps owning the bucket. The
+ * learning of the moved buckets replaces the one the new shard may still have
+ * from such a failed move, so it is never learned twice.<br/>
+ * <br/>
+ * Each shard only learns the {@link Evidence}s of its own requests, so the
+ * sharding is transparent only for the {@link SymbolManager}s which answer a
+ * request based on the {@link Evidence}s of this request alone. A
+ * {@link SymbolManager} choosing its answers among all the {@link Symbol}s it
+ * knows, like the sample one learning judgments, would only choose among the
+ * {@link Symbol}s of its shard, and so answer differently.
+ *
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ *
+ * @param <Symbol>
+ * @param <Judgment>
+ */
+public class ShardedSymbolManager<Symbol, Judgment extends Comparable<Judgment>>
+		implements SymbolManager<Symbol, Judgment>, Closeable {
+
+	/**
+	 * Default number of buckets, which bounds the number of shards.
+	 */
+	public static final int DEFAULT_BUCKET_COUNT = 1024;
+	/**
+	 * Default number of {@link Evidence}s sent at once to a shard.
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 256;
+
+	private final int bucketCount;
+	private final int batchSize;
+	private final List<Shard> shards = new ArrayList<Shard>();
+	private final List<Shard> owners;
+	/**
+	 * Read-locked to route, write-locked to change the shards.
+	 */
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/**
+	 * Instantiate a {@link ShardedSymbolManager} with
+	 * {@link #DEFAULT_BUCKET_COUNT} buckets and batches of
+	 * {@link #DEFAULT_BATCH_SIZE} {@link Evidence}s.
+	 *
+	 * @param transports
+	 *            the {@link ShardTransport}s of the initial shards, which
+	 *            should not have learned anything yet
+	 */
+	public ShardedSymbolManager(
+			List<? extends ShardTransport<Symbol, Judgment>> transports) {
+		this(transports, DEFAULT_BUCKET_COUNT, DEFAULT_BATCH_SIZE);
+	}
+
+	/**
+	 *
+	 * @param transports
+	 *            the {@link ShardTransport}s of the initial shards, which
+	 *            should not have learned anything yet
+	 * @param bucketCount
+	 *            the number of buckets to distribute among the shards
+	 * @param batchSize
+	 *            the number of {@link Evidence}s sent at once to a shard, 1
+	 *            to send them immediately
+	 */
+	public ShardedSymbolManager(
+			List<? extends ShardTransport<Symbol, Judgment>> transports,
+			int bucketCount, int batchSize) {
+		if (transports.isEmpty()) {
+			throw new IllegalArgumentException("No shard has been provided.");
+		} else if (bucketCount < transports.size()) {
+			throw new IllegalArgumentException("Not enough buckets for "
+					+ transports.size() + " shards: " + bucketCount);
+		} else if (batchSize < 1) {
+			throw new IllegalArgumentException("Invalid batch size: "
+					+ batchSize);
+		} else {
+			this.bucketCount = bucketCount;
+			this.batchSize = batchSize;
+			this.owners = new ArrayList<Shard>(bucketCount);
+			for (ShardTransport<Symbol, Judgment> transport : transports) {
+				shards.add(new Shard(transport));
+			}
+			for (int bucket = 0; bucket < bucketCount; bucket++) {
+				owners.add(shards.get(bucket % shards.size()));
+			}
+		}
+	}
+
+	/**
+	 * @throws ShardException
+	 *             if the shard owning the request cannot be reached
+	 */
+	@Override
+	public Symbol request(Symbol request) {
+		lock.readLock().lock();
+		try {
+			Shard shard = getOwner(request);
+			synchronized (shard) {
+				shard.flush();
+				return shard.transport.request(request);
+			}
+		} catch (IOException e) {
+			throw new ShardException(e);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @throws ShardException
+	 *             if the batch of the shard owning the request is full and
+	 *             cannot be sent, in which case this {@link Evidence} is not
+	 *             kept, so learning it again does not duplicate it
+	 * @throws IllegalArgumentException
+	 *             if the transport rejects some {@link Evidence}s of the
+	 *             batch, which are dropped while the others are sent
+	 */
+	@Override
+	public void learn(Symbol request, Symbol answer, Judgment judgment) {
+		lock.readLock().lock();
+		try {
+			Shard shard = getOwner(request);
+			synchronized (shard) {
+				shard.pending.add(new Evidence<Symbol, Judgment>(request,
+						answer, judgment));
+				if (shard.pending.size() >= batchSize) {
+					try {
+						shard.flush();
+					} catch (IOException e) {
+						// the caller is told it failed, so may learn it again
+						shard.pending.remove(shard.pending.size() - 1);
+						throw e;
+					}
+				} else {
+					// wait for a full batch
+				}
+			}
+		} catch (IOException e) {
+			throw new ShardException(e);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Send the batches of all the shards.
+	 *
+	 * @throws ShardException
+	 *             if a shard cannot be reached
+	 */
+	public void flush() {
+		lock.readLock().lock();
+		try {
+			for (Shard shard : shards) {
+				synchronized (shard) {
+					shard.flush();
+				}
+			}
+		} catch (IOException e) {
+			throw new ShardException(e);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private Shard getOwner(Symbol request) {
+		return owners.get(ShardTransport.getBucket(request, bucketCount));
+	}
+
+	/**
+	 * Add a shard, which does not own any bucket until {@link #rebalance()}
+	 * is called.
+	 *
+	 * @param transport
+	 *            the {@link ShardTransport} of the new shard, which should
+	 *            not have learned anything yet
+	 */
+	public void addShard(ShardTransport<Symbol, Judgment> transport) {
+		lock.writeLock().lock();
+		try {
+			if (shards.size() == bucketCount) {
+				throw new IllegalStateException("Not enough buckets for "
+						+ (shards.size() + 1) + " shards: " + bucketCount);
+			} else {
+				shards.add(new Shard(transport));
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Remove a shard: its buckets, with their learning, are moved to the
+	 * other shards, then it is closed.
+	 *
+	 * @param transport
+	 *            the {@link ShardTransport} of the shard to remove
+	 * @throws ShardException
+	 *             if the learning cannot be moved
+	 */
+	public void removeShard(ShardTransport<Symbol, Judgment> transport) {
+		lock.writeLock().lock();
+		try {
+			Shard removed = null;
+			for (Shard shard : shards) {
+				if (shard.transport == transport) {
+					removed = shard;
+				} else {
+					// continue searching
+				}
+			}
+			if (removed == null) {
+				throw new IllegalArgumentException("Unknown shard: "
+						+ transport);
+			} else if (shards.size() == 1) {
+				throw new IllegalStateException("Cannot remove the last shard");
+			} else {
+				shards.remove(removed);
+				try {
+					rebalanceLocked();
+				} catch (IOException e) {
+					// keeps the buckets which could not be moved
+					shards.add(removed);
+					throw e;
+				}
+				removed.transport.close();
+			}
+		} catch (IOException e) {
+			throw new ShardException(e);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Distribute the buckets evenly among the shards. Only the buckets of the
+	 * shards owning too many of them, or of the removed shards, are moved.
+	 *
+	 * @return the number of buckets moved
+	 * @throws ShardException
+	 *             if the learning cannot be moved
+	 */
+	public int rebalance() {
+		lock.writeLock().lock();
+		try {
+			return rebalanceLocked();
+		} catch (IOException e) {
+			throw new ShardException(e);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private int rebalanceLocked() throws IOException {
+		// the first shards take the remainder
+		Map<Shard, Integer> quotas = new HashMap<Shard, Integer>();
+		for (int i = 0; i < shards.size(); i++) {
+			quotas.put(shards.get(i), bucketCount / shards.size()
+					+ (i < bucketCount % shards.size() ? 1 : 0));
+		}
+		List<Integer> released = new ArrayList<Integer>();
+		for (int bucket = 0; bucket < bucketCount; bucket++) {
+			Integer quota = quotas.get(owners.get(bucket));
+			if (quota == null || quota == 0) {
+				released.add(bucket);
+			} else {
+				quotas.put(owners.get(bucket), quota - 1);
+			}
+		}
+
+		// group the moves, so each pair of shards is called once
+		Map<Shard, Map<Shard, List<Integer>>> moves = new LinkedHashMap<Shard, Map<Shard, List<Integer>>>();
+		int index = 0;
+		for (Shard target : shards) {
+			for (int quota = quotas.get(target); quota > 0; quota--) {
+				int bucket = released.get(index++);
+				Map<Shard, List<Integer>> targets = moves.get(owners.get(bucket));
+				if (targets == null) {
+					targets = new LinkedHashMap<Shard, List<Integer>>();
+					moves.put(owners.get(bucket), targets);
+				} else {
+					// already moving buckets from this shard
+				}
+				List<Integer> buckets = targets.get(target);
+				if (buckets == null) {
+					buckets = new ArrayList<Integer>();
+					targets.put(target, buckets);
+				} else {
+					// already moving buckets to this shard
+				}
+				buckets.add(bucket);
+			}
+		}
+
+		for (Entry<Shard, Map<Shard, List<Integer>>> entry : moves.entrySet()) {
+			Shard source = entry.getKey();
+			source.flush();
+			for (Entry<Shard, List<Integer>> move : entry.getValue()
+					.entrySet()) {
+				Shard target = move.getKey();
+				List<Evidence<Symbol, Judgment>> evidences = source.transport
+						.extract(move.getValue(), bucketCount);
+				if (evidences.isEmpty()) {
+					// nothing learned yet
+				} else {
+					try {
+						target.flush();
+						// a previous failed move may have left some learning
+						target.transport.extract(move.getValue(), bucketCount);
+						target.transport.learn(evidences);
+					} catch (IOException e) {
+						// the buckets stay on the source, with their learning
+						try {
+							source.transport.learn(evidences);
+						} catch (IOException e2) {
+							e.addSuppressed(e2);
+						}
+						throw e;
+					}
+				}
+				for (int bucket : move.getValue()) {
+					owners.set(bucket, target);
+				}
+			}
+		}
+		return released.size();
+	}
+
+	/**
+	 *
+	 * @return the {@link ShardTransport}s of the current shards
+	 */
+	public List<ShardTransport<Symbol, Judgment>> getShards() {
+		lock.readLock().lock();
+		try {
+			List<ShardTransport<Symbol, Judgment>> transports = new ArrayList<ShardTransport<Symbol, Judgment>>();
+			for (Shard shard : shards) {
+				transports.add(shard.transport);
+			}
+			return Collections.unmodifiableList(transports);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 *
+	 * @param transport
+	 *            the {@link ShardTransport} of a shard
+	 * @return the number of buckets owned by the shard
+	 */
+	public int getBucketCount(ShardTransport<Symbol, Judgment> transport) {
+		lock.readLock().lock();
+		try {
+			int count = 0;
+			for (Shard owner : owners) {
+				if (owner.transport == transport) {
+					count++;
+				} else {
+					// other shard
+				}
+			}
+			return count;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Send the remaining batches, then close all the shards.
+	 */
+	@Override
+	public void close() throws IOException {
+		lock.writeLock().lock();
+		try {
+			IOException error = null;
+			for (Shard shard : shards) {
+				try {
+					try {
+						shard.flush();
+					} finally {
+						shard.transport.close();
+					}
+				} catch (IOException e) {
+					if (error == null) {
+						error = e;
+					} else {
+						error.addSuppressed(e);
+					}
+				}
+			}
+			if (error == null) {
+				// all closed
+			} else {
+				throw error;
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * A shard and its batch of {@link Evidence}s to send. The batch is
+	 * accessed while synchronized on the shard.
+	 */
+	private class Shard {
+		private final ShardTransport<Symbol, Judgment> transport;
+		private List<Evidence<Symbol, Judgment>> pending = new ArrayList<Evidence<Symbol, Judgment>>();
+
+		public Shard(ShardTransport<Symbol, Judgment> transport) {
+			if (transport == null) {
+				throw new NullPointerException(
+						"No transport has been provided.");
+			} else {
+				this.transport = transport;
+			}
+		}
+
+		public void flush() throws IOException {
+			if (pending.isEmpty()) {
+				// nothing to send
+			} else {
+				// kept if it cannot be sent, to retry later
+				try {
+					transport.learn(pending);
+				} catch (IllegalArgumentException e) {
+					// would be rejected at each retry
+					sendAcceptedOnly();
+					throw e;
+				}
+				pending = new ArrayList<Evidence<Symbol, Judgment>>();
+			}
+		}
+
+		/**
+		 * Send the pending {@link Evidence}s one by one, dropping the ones
+		 * rejected by the transport.
+		 */
+		private void sendAcceptedOnly() throws IOException {
+			while (!pending.isEmpty()) {
+				try {
+					transport.learn(pending.subList(0, 1));
+				} catch (IllegalArgumentException e) {
+					// dropped
+				}
+				pending.remove(0);
+			}
+		}
+	}
+
+	/**
+	 * A {@link ShardException} is thrown when a shard cannot be reached.
+	 *
+	 * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+	 *
+	 */
+	public static class ShardException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		public ShardException(IOException cause) {
+			super(cause.getMessage(), cause);
+		}
+	}
+}
@@ -0,0 +1,288 @@
+package org.conceptmanager.symbol.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.conceptmanager.serialization.MessageReader;
+import org.conceptmanager.serialization.MessageReader.Message;
+import org.conceptmanager.serialization.MessageWriter;
+import org.conceptmanager.symbol.Evidence;
+import org.conceptmanager.symbol.ShardTransport;
+import org.conceptmanager.symbol.SymbolManager;
+
+/**
+ * A {@link SocketTransport} is a {@link ShardTransport} connected to a
+ * {@link ShardServer} of the same machine through a loopback socket. Each
+ * call is a message and waits for its reply, so the calls of several threads
+ * are serialized: a {@link ShardedSymbolManager} batches the learning to
+ * limit these round trips.<br/>
+ * <br/>
+ * The {@link Symbol}s and {@link Judgment}s should be of one of the types
+ * supported by {@link org.conceptmanager.serialization.BlockWriter}, like
+ * {@link String}s and {@link Boolean}s.
+ * 
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ * 
+ * @param <Symbol>
+ * @param <Judgment>
+ */
+public class SocketTransport<Symbol, Judgment extends Comparable<Judgment>>
+		implements ShardTransport<Symbol, Judgment> {
+
+	/**
+	 * The default number of seconds {@link #launch(Class)} waits for the
+	 * worker process to start.
+	 */
+	public static final long START_TIMEOUT = 30;
+
+	private final Socket socket;
+	private final MessageWriter writer;
+	private final MessageReader reader;
+	private Process process = null;
+
+	/**
+	 * 
+	 * @param port
+	 *            the port of the {@link ShardServer}
+	 * @throws IOException
+	 *             if the {@link ShardServer} cannot be reached
+	 */
+	public SocketTransport(int port) throws IOException {
+		socket = new Socket(InetAddress.getLoopbackAddress(), port);
+		try {
+			socket.setTcpNoDelay(true);
+			writer = new MessageWriter(new BufferedOutputStream(
+					socket.getOutputStream()));
+			reader = new MessageReader(new BufferedInputStream(
+					socket.getInputStream()));
+		} catch (IOException e) {
+			socket.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Equivalent to {@link #launch(Class, OutputStream, long, TimeUnit)} with
+	 * the standard output of this process and a timeout of
+	 * {@value #START_TIMEOUT} seconds.
+	 * 
+	 * @param managerClass
+	 *            the {@link SymbolManager} to run in the worker process,
+	 *            which should have a public constructor without argument
+	 * @return the {@link SocketTransport} connected to the worker process
+	 * @throws IOException
+	 *             if the process cannot be launched or reached
+	 */
+	public static <Symbol, Judgment extends Comparable<Judgment>> SocketTransport<Symbol, Judgment> launch(
+			Class<? extends SymbolManager<?, ?>> managerClass)
+			throws IOException {
+		return launch(managerClass, System.out, START_TIMEOUT, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Launch a worker process running a {@link ShardServer} (see
+	 * {@link ShardServer#main(String[])}) with the class path of this process,
+	 * and connect to it. The process is stopped when the
+	 * {@link SocketTransport} is closed. Once the port is received, the
+	 * standard output of the process is forwarded to the given
+	 * {@link OutputStream} by a daemon thread, so a worker printing on it is
+	 * never blocked.
+	 * 
+	 * @param managerClass
+	 *            the {@link SymbolManager} to run in the worker process,
+	 *            which should have a public constructor without argument
+	 * @param output
+	 *            the {@link OutputStream} receiving the standard output of
+	 *            the process, written by another thread, the output being
+	 *            discarded if it cannot be written
+	 * @param timeout
+	 *            the maximal time to wait for the process to provide its port
+	 * @param unit
+	 *            the {@link TimeUnit} of the timeout
+	 * @return the {@link SocketTransport} connected to the worker process
+	 * @throws IOException
+	 *             if the process cannot be launched or reached, or if it does
+	 *             not start in time, in which case it is destroyed
+	 */
+	public static <Symbol, Judgment extends Comparable<Judgment>> SocketTransport<Symbol, Judgment> launch(
+			Class<? extends SymbolManager<?, ?>> managerClass,
+			final OutputStream output, long timeout, TimeUnit unit)
+			throws IOException {
+		if (output == null) {
+			throw new NullPointerException("No output has been provided.");
+		} else {
+			// output provided
+		}
+		String java = System.getProperty("java.home") + File.separator
+				+ "bin" + File.separator + "java";
+		ProcessBuilder builder = new ProcessBuilder(java, "-cp",
+				System.getProperty("java.class.path"),
+				ShardServer.class.getName(), managerClass.getName());
+		builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+		final Process process = builder.start();
+		final BlockingQueue<String> handshake = new ArrayBlockingQueue<String>(1);
+		Thread drainer = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				InputStream input = process.getInputStream();
+				try {
+					handshake.offer(readLine(input));
+					boolean isForwarded = true;
+					byte[] buffer = new byte[8192];
+					int length;
+					while ((length = input.read(buffer)) >= 0) {
+						if (isForwarded) {
+							try {
+								output.write(buffer, 0, length);
+								output.flush();
+							} catch (IOException e) {
+								// still drained, so the process is not blocked
+								isForwarded = false;
+							}
+						} else {
+							// discarded
+						}
+					}
+				} catch (IOException e) {
+					// process ended, the handshake being ignored if received
+					handshake.offer("");
+				}
+			}
+		}, "shard-output");
+		drainer.setDaemon(true);
+		drainer.start();
+		try {
+			String line;
+			try {
+				line = handshake.poll(timeout, unit);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException(
+						"Interrupted while waiting for the worker process");
+			}
+			if (line == null) {
+				throw new IOException("The worker process did not start within "
+						+ timeout + " " + unit);
+			} else if (!line.startsWith(ShardServer.PORT)) {
+				throw new IOException("The worker process did not start: "
+						+ line);
+			} else {
+				SocketTransport<Symbol, Judgment> transport = new SocketTransport<Symbol, Judgment>(
+						Integer.parseInt(line.substring(ShardServer.PORT
+								.length())));
+				transport.process = process;
+				return transport;
+			}
+		} catch (IOException | RuntimeException e) {
+			process.destroy();
+			throw e;
+		}
+	}
+
+	/**
+	 * Read a line without buffering, so the bytes which follow it remain in
+	 * the {@link InputStream}.
+	 */
+	private static String readLine(InputStream input) throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream();
+		int next;
+		while ((next = input.read()) >= 0 && next != '\n') {
+			if (next == '\r') {
+				// end of a Windows line
+			} else {
+				line.write(next);
+			}
+		}
+		return new String(line.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private synchronized List<Object> call(int operation, List<?> values)
+			throws IOException {
+		writer.write(operation, values);
+		Message reply = reader.read();
+		if (reply == null) {
+			throw new IOException("The connection has been closed by the shard");
+		} else if (reply.getOperation() == ShardServer.ERROR) {
+			throw new IOException("The shard failed: "
+					+ reply.getValues().get(0));
+		} else {
+			return reply.getValues();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public Symbol request(Symbol request) throws IOException {
+		return (Symbol) call(ShardServer.REQUEST,
+				Collections.singletonList(request)).get(0);
+	}
+
+	@Override
+	public void learn(List<Evidence<Symbol, Judgment>> evidences)
+			throws IOException {
+		call(ShardServer.LEARN, ShardServer.flatten(evidences));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public List<Evidence<Symbol, Judgment>> extract(
+			Collection<Integer> buckets, int bucketCount) throws IOException {
+		List<Object> values = new ArrayList<Object>(buckets.size() + 1);
+		values.add(bucketCount);
+		values.addAll(buckets);
+		List<Object> reply = call(ShardServer.EXTRACT, values);
+		List<Evidence<Symbol, Judgment>> evidences = new ArrayList<Evidence<Symbol, Judgment>>(
+				reply.size() / 3);
+		for (int i = 0; i + 2 < reply.size(); i += 3) {
+			evidences.add(new Evidence<Symbol, Judgment>((Symbol) reply
+					.get(i), (Symbol) reply.get(i + 1), (Judgment) reply
+					.get(i + 2)));
+		}
+		return evidences;
+	}
+
+	/**
+	 * Close the connection, and stop the worker process if it has been
+	 * launched by {@link #launch(Class)}.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			socket.close();
+		} finally {
+			if (process == null) {
+				// not owned
+			} else {
+				// closing its input tells the process to end
+				process.getOutputStream().close();
+				try {
+					if (!process.waitFor(5, TimeUnit.SECONDS)) {
+						process.destroy();
+					} else {
+						// ended properly
+					}
+				} catch (InterruptedException e) {
+					process.destroy();
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+	}
+}
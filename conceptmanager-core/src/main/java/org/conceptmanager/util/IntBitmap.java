@@ -0,0 +1,614 @@
+package org.conceptmanager.util;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An {@link IntBitmap} is a compressed set of non-negative <code>int</code>s,
+ * in the spirit of Roaring bitmaps. The values are grouped by their 16 high
+ * bits, and each group stores its 16 low bits in a container adapted to its
+ * density: a sorted array for sparse groups, a plain bitmap for dense ones.
+ * This keeps sparse sets small while intersections and unions remain fast,
+ * which makes it suitable for indexing purposes where many sets of identifiers
+ * have to be combined.
+ *
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ *
+ */
+public class IntBitmap implements Iterable<Integer> {
+
+	/**
+	 * Maximum number of values of an array container, beyond which a bitmap
+	 * container takes less memory.
+	 */
+	private static final int ARRAY_LIMIT = 4096;
+
+	private char[] keys;
+	private Container[] containers;
+	private int size;
+
+	public IntBitmap() {
+		this(new char[4], new Container[4], 0);
+	}
+
+	private IntBitmap(char[] keys, Container[] containers, int size) {
+		this.keys = keys;
+		this.containers = containers;
+		this.size = size;
+	}
+
+	/**
+	 *
+	 * @param values
+	 *            the values to add
+	 * @return a new {@link IntBitmap} containing these values
+	 */
+	public static IntBitmap of(int... values) {
+		IntBitmap bitmap = new IntBitmap();
+		for (int value : values) {
+			bitmap.add(value);
+		}
+		return bitmap;
+	}
+
+	/**
+	 *
+	 * @param value
+	 *            the value to add
+	 * @return <code>true</code> if the value was not already present
+	 */
+	public boolean add(int value) {
+		checkValue(value);
+		char key = (char) (value >>> 16);
+		int index = indexOf(key);
+		if (index < 0) {
+			index = -index - 1;
+			insert(index, key, new ArrayContainer());
+		} else {
+			// container already present
+		}
+		Container container = containers[index];
+		int before = container.cardinality();
+		containers[index] = container.add((char) value);
+		return containers[index].cardinality() > before;
+	}
+
+	/**
+	 *
+	 * @param value
+	 *            the value to remove
+	 * @return <code>true</code> if the value was present
+	 */
+	public boolean remove(int value) {
+		if (value < 0) {
+			return false;
+		} else {
+			int index = indexOf((char) (value >>> 16));
+			if (index < 0) {
+				return false;
+			} else {
+				Container container = containers[index];
+				int before = container.cardinality();
+				container = container.remove((char) value);
+				if (container.cardinality() == 0) {
+					System.arraycopy(keys, index + 1, keys, index, size - index
+							- 1);
+					System.arraycopy(containers, index + 1, containers, index,
+							size - index - 1);
+					size--;
+					containers[size] = null;
+				} else {
+					containers[index] = container;
+				}
+				return container.cardinality() < before;
+			}
+		}
+	}
+
+	/**
+	 * Add all the values of another {@link IntBitmap} to this one.
+	 *
+	 * @param other
+	 *            the {@link IntBitmap} providing the values to add
+	 */
+	public void addAll(IntBitmap other) {
+		for (int i = 0; i < other.size; i++) {
+			int index = indexOf(other.keys[i]);
+			if (index < 0) {
+				insert(-index - 1, other.keys[i], other.containers[i].copy());
+			} else {
+				containers[index] = containers[index].or(other.containers[i]);
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @param value
+	 *            the value to search for
+	 * @return <code>true</code> if the value is present
+	 */
+	public boolean contains(int value) {
+		if (value < 0) {
+			return false;
+		} else {
+			int index = indexOf((char) (value >>> 16));
+			return index >= 0 && containers[index].contains((char) value);
+		}
+	}
+
+	/**
+	 *
+	 * @return the number of values
+	 */
+	public int cardinality() {
+		int cardinality = 0;
+		for (int i = 0; i < size; i++) {
+			cardinality += containers[i].cardinality();
+		}
+		return cardinality;
+	}
+
+	/**
+	 *
+	 * @return <code>true</code> if there is no value
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 *
+	 * @return the values, in increasing order
+	 */
+	public int[] toArray() {
+		int[] values = new int[cardinality()];
+		int offset = 0;
+		for (int i = 0; i < size; i++) {
+			offset = containers[i].fill(keys[i] << 16, values, offset);
+		}
+		return values;
+	}
+
+	/**
+	 *
+	 * @return a copy of this {@link IntBitmap}
+	 */
+	public IntBitmap copy() {
+		Container[] copies = new Container[containers.length];
+		for (int i = 0; i < size; i++) {
+			copies[i] = containers[i].copy();
+		}
+		return new IntBitmap(Arrays.copyOf(keys, keys.length), copies, size);
+	}
+
+	/**
+	 *
+	 * @param a
+	 *            a first {@link IntBitmap}
+	 * @param b
+	 *            a second {@link IntBitmap}
+	 * @return a new {@link IntBitmap} with the values present in both
+	 */
+	public static IntBitmap and(IntBitmap a, IntBitmap b) {
+		int capacity = Math.max(1, Math.min(a.size, b.size));
+		IntBitmap result = new IntBitmap(new char[capacity],
+				new Container[capacity], 0);
+		int i = 0;
+		int j = 0;
+		while (i < a.size && j < b.size) {
+			if (a.keys[i] < b.keys[j]) {
+				i++;
+			} else if (a.keys[i] > b.keys[j]) {
+				j++;
+			} else {
+				Container container = a.containers[i].and(b.containers[j]);
+				if (container.cardinality() > 0) {
+					result.insert(result.size, a.keys[i], container);
+				} else {
+					// nothing in common
+				}
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 *
+	 * @param a
+	 *            a first {@link IntBitmap}
+	 * @param b
+	 *            a second {@link IntBitmap}
+	 * @return a new {@link IntBitmap} with the values present in any of them
+	 */
+	public static IntBitmap or(IntBitmap a, IntBitmap b) {
+		int capacity = Math.max(1, a.size + b.size);
+		IntBitmap result = new IntBitmap(new char[capacity],
+				new Container[capacity], 0);
+		int i = 0;
+		int j = 0;
+		while (i < a.size || j < b.size) {
+			if (j == b.size || i < a.size && a.keys[i] < b.keys[j]) {
+				result.insert(result.size, a.keys[i], a.containers[i].copy());
+				i++;
+			} else if (i == a.size || a.keys[i] > b.keys[j]) {
+				result.insert(result.size, b.keys[j], b.containers[j].copy());
+				j++;
+			} else {
+				result.insert(result.size, a.keys[i],
+						a.containers[i].or(b.containers[j]));
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public Iterator<Integer> iterator() {
+		final int[] values = toArray();
+		return new Iterator<Integer>() {
+
+			private int index = 0;
+
+			@Override
+			public boolean hasNext() {
+				return index < values.length;
+			}
+
+			@Override
+			public Integer next() {
+				if (hasNext()) {
+					return values[index++];
+				} else {
+					throw new NoSuchElementException();
+				}
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj instanceof IntBitmap) {
+			return Arrays.equals(toArray(), ((IntBitmap) obj).toArray());
+		} else {
+			return false;
+		}
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(toArray());
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(toArray());
+	}
+
+	private void checkValue(int value) {
+		if (value < 0) {
+			throw new IllegalArgumentException("Negative value: " + value);
+		} else {
+			// OK
+		}
+	}
+
+	private int indexOf(char key) {
+		return Arrays.binarySearch(keys, 0, size, key);
+	}
+
+	private void insert(int index, char key, Container container) {
+		if (size == keys.length) {
+			keys = Arrays.copyOf(keys, size * 2);
+			containers = Arrays.copyOf(containers, size * 2);
+		} else {
+			// enough space
+		}
+		System.arraycopy(keys, index, keys, index + 1, size - index);
+		System.arraycopy(containers, index, containers, index + 1, size
+				- index);
+		keys[index] = key;
+		containers[index] = container;
+		size++;
+	}
+
+	/**
+	 * A {@link Container} stores the 16 low bits of the values sharing the
+	 * same 16 high bits. Modifications return the {@link Container} to use
+	 * afterwards, which may be a different kind of {@link Container}.
+	 */
+	private static abstract class Container {
+		public abstract Container add(char value);
+
+		public abstract Container remove(char value);
+
+		public abstract boolean contains(char value);
+
+		public abstract int cardinality();
+
+		public abstract Container and(Container other);
+
+		public abstract Container or(Container other);
+
+		public abstract Container copy();
+
+		/**
+		 * Write the values of this {@link Container}, combined with the given
+		 * high bits, starting at the given offset.
+		 *
+		 * @return the offset following the last value written
+		 */
+		public abstract int fill(int high, int[] values, int offset);
+	}
+
+	private static class ArrayContainer extends Container {
+		private char[] values;
+		private int cardinality;
+
+		public ArrayContainer() {
+			this(new char[4], 0);
+		}
+
+		public ArrayContainer(char[] values, int cardinality) {
+			this.values = values;
+			this.cardinality = cardinality;
+		}
+
+		@Override
+		public Container add(char value) {
+			int index = Arrays.binarySearch(values, 0, cardinality, value);
+			if (index >= 0) {
+				return this;
+			} else if (cardinality == ARRAY_LIMIT) {
+				return toBitmap().add(value);
+			} else {
+				index = -index - 1;
+				if (cardinality == values.length) {
+					values = Arrays.copyOf(values,
+							Math.min(ARRAY_LIMIT, Math.max(4, cardinality * 2)));
+				} else {
+					// enough space
+				}
+				System.arraycopy(values, index, values, index + 1, cardinality
+						- index);
+				values[index] = value;
+				cardinality++;
+				return this;
+			}
+		}
+
+		@Override
+		public Container remove(char value) {
+			int index = Arrays.binarySearch(values, 0, cardinality, value);
+			if (index >= 0) {
+				System.arraycopy(values, index + 1, values, index, cardinality
+						- index - 1);
+				cardinality--;
+			} else {
+				// not present
+			}
+			return this;
+		}
+
+		@Override
+		public boolean contains(char value) {
+			return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+		}
+
+		@Override
+		public int cardinality() {
+			return cardinality;
+		}
+
+		@Override
+		public Container and(Container other) {
+			char[] result = new char[Math.min(cardinality, other.cardinality())];
+			int count = 0;
+			if (other instanceof ArrayContainer) {
+				ArrayContainer array = (ArrayContainer) other;
+				int i = 0;
+				int j = 0;
+				while (i < cardinality && j < array.cardinality) {
+					if (values[i] < array.values[j]) {
+						i++;
+					} else if (values[i] > array.values[j]) {
+						j++;
+					} else {
+						result[count++] = values[i];
+						i++;
+						j++;
+					}
+				}
+			} else {
+				for (int i = 0; i < cardinality; i++) {
+					if (other.contains(values[i])) {
+						result[count++] = values[i];
+					} else {
+						// not in common
+					}
+				}
+			}
+			return new ArrayContainer(result, count);
+		}
+
+		@Override
+		public Container or(Container other) {
+			if (other instanceof ArrayContainer) {
+				ArrayContainer array = (ArrayContainer) other;
+				char[] result = new char[cardinality + array.cardinality];
+				int count = 0;
+				int i = 0;
+				int j = 0;
+				while (i < cardinality || j < array.cardinality) {
+					if (j == array.cardinality || i < cardinality
+							&& values[i] < array.values[j]) {
+						result[count++] = values[i++];
+					} else if (i == cardinality || values[i] > array.values[j]) {
+						result[count++] = array.values[j++];
+					} else {
+						result[count++] = values[i];
+						i++;
+						j++;
+					}
+				}
+				Container container = new ArrayContainer(result, count);
+				return count > ARRAY_LIMIT ? ((ArrayContainer) container)
+						.toBitmap() : container;
+			} else {
+				return other.or(this);
+			}
+		}
+
+		@Override
+		public Container copy() {
+			return new ArrayContainer(Arrays.copyOf(values, values.length),
+					cardinality);
+		}
+
+		@Override
+		public int fill(int high, int[] values, int offset) {
+			for (int i = 0; i < cardinality; i++) {
+				values[offset++] = high | this.values[i];
+			}
+			return offset;
+		}
+
+		private BitmapContainer toBitmap() {
+			BitmapContainer bitmap = new BitmapContainer();
+			for (int i = 0; i < cardinality; i++) {
+				bitmap.add(values[i]);
+			}
+			return bitmap;
+		}
+	}
+
+	private static class BitmapContainer extends Container {
+		private final long[] words;
+		private int cardinality;
+
+		public BitmapContainer() {
+			this(new long[1024], 0);
+		}
+
+		public BitmapContainer(long[] words, int cardinality) {
+			this.words = words;
+			this.cardinality = cardinality;
+		}
+
+		@Override
+		public Container add(char value) {
+			long before = words[value >>> 6];
+			long after = before | 1L << value;
+			if (before != after) {
+				words[value >>> 6] = after;
+				cardinality++;
+			} else {
+				// already present
+			}
+			return this;
+		}
+
+		@Override
+		public Container remove(char value) {
+			long before = words[value >>> 6];
+			long after = before & ~(1L << value);
+			if (before != after) {
+				words[value >>> 6] = after;
+				cardinality--;
+				return cardinality <= ARRAY_LIMIT ? toArrayContainer() : this;
+			} else {
+				return this;
+			}
+		}
+
+		@Override
+		public boolean contains(char value) {
+			return (words[value >>> 6] & 1L << value) != 0;
+		}
+
+		@Override
+		public int cardinality() {
+			return cardinality;
+		}
+
+		@Override
+		public Container and(Container other) {
+			if (other instanceof BitmapContainer) {
+				long[] result = new long[words.length];
+				long[] others = ((BitmapContainer) other).words;
+				int count = 0;
+				for (int i = 0; i < result.length; i++) {
+					result[i] = words[i] & others[i];
+					count += Long.bitCount(result[i]);
+				}
+				BitmapContainer container = new BitmapContainer(result, count);
+				return count <= ARRAY_LIMIT ? container.toArrayContainer()
+						: container;
+			} else {
+				return other.and(this);
+			}
+		}
+
+		@Override
+		public Container or(Container other) {
+			BitmapContainer result = (BitmapContainer) copy();
+			if (other instanceof BitmapContainer) {
+				long[] others = ((BitmapContainer) other).words;
+				int count = 0;
+				for (int i = 0; i < result.words.length; i++) {
+					result.words[i] |= others[i];
+					count += Long.bitCount(result.words[i]);
+				}
+				result.cardinality = count;
+			} else {
+				ArrayContainer array = (ArrayContainer) other;
+				for (int i = 0; i < array.cardinality; i++) {
+					result.add(array.values[i]);
+				}
+			}
+			return result;
+		}
+
+		@Override
+		public Container copy() {
+			return new BitmapContainer(Arrays.copyOf(words, words.length),
+					cardinality);
+		}
+
+		@Override
+		public int fill(int high, int[] values, int offset) {
+			for (int i = 0; i < words.length; i++) {
+				long word = words[i];
+				while (word != 0) {
+					values[offset++] = high | i << 6
+							| Long.numberOfTrailingZeros(word);
+					word &= word - 1;
+				}
+			}
+			return offset;
+		}
+
+		private ArrayContainer toArrayContainer() {
+			char[] values = new char[cardinality];
+			int offset = 0;
+			for (int i = 0; i < words.length; i++) {
+				long word = words[i];
+				while (word != 0) {
+					values[offset++] = (char) (i << 6 | Long
+							.numberOfTrailingZeros(word));
+					word &= word - 1;
+				}
+			}
+			return new ArrayContainer(values, cardinality);
+		}
+	}
+}
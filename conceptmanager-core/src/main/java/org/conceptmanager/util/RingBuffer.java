@@ -0,0 +1,172 @@
+package org.conceptmanager.util;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A {@link RingBuffer} is a bounded queue which can be used concurrently by
+ * several producers and consumers without locking. Its capacity is fixed at
+ * instantiation (rounded up to a power of 2): when it is full,
+ * {@link #offer(Object)} fails immediately rather than waiting, and the
+ * rejected elements are counted (see {@link #getRejected()}). Thus, a slow
+ * consumer cannot block the producers, which is relevant for streaming data
+ * like sensor readings.<br/>
+ * <br/>
+ * Each cell has a sequence number telling whether it is ready to be written or
+ * read, so producers and consumers only compete on their respective counters.
+ *
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ *
+ * @param <Element>
+ */
+public class RingBuffer<Element> {
+
+	private final int mask;
+	private final AtomicReferenceArray<Element> elements;
+	private final AtomicLongArray sequences;
+	private final AtomicLong head = new AtomicLong();
+	private final AtomicLong tail = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+
+	/**
+	 *
+	 * @param capacity
+	 *            the minimum number of elements the {@link RingBuffer} can
+	 *            store
+	 */
+	public RingBuffer(int capacity) {
+		if (capacity < 1 || capacity > 1 << 30) {
+			throw new IllegalArgumentException("Invalid capacity: " + capacity);
+		} else {
+			int size = Integer.highestOneBit(capacity);
+			size = size < capacity ? size << 1 : size;
+			this.mask = size - 1;
+			this.elements = new AtomicReferenceArray<Element>(size);
+			this.sequences = new AtomicLongArray(size);
+			for (int i = 0; i < size; i++) {
+				sequences.set(i, i);
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @return the maximum number of elements stored
+	 */
+	public int capacity() {
+		return mask + 1;
+	}
+
+	/**
+	 *
+	 * @param element
+	 *            the element to add
+	 * @return <code>true</code> if the element has been added,
+	 *         <code>false</code> if the {@link RingBuffer} is full
+	 */
+	public boolean offer(Element element) {
+		if (element == null) {
+			throw new NullPointerException("Null elements are not supported.");
+		} else {
+			while (true) {
+				long position = tail.get();
+				int index = (int) position & mask;
+				long difference = sequences.get(index) - position;
+				if (difference == 0) {
+					if (tail.compareAndSet(position, position + 1)) {
+						elements.lazySet(index, element);
+						sequences.set(index, position + 1);
+						return true;
+					} else {
+						// another producer took it, retry
+					}
+				} else if (difference < 0) {
+					rejected.incrementAndGet();
+					return false;
+				} else {
+					// tail moved meanwhile, retry
+				}
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @return the oldest element, <code>null</code> if the {@link RingBuffer}
+	 *         is empty
+	 */
+	public Element poll() {
+		while (true) {
+			long position = head.get();
+			int index = (int) position & mask;
+			long difference = sequences.get(index) - (position + 1);
+			if (difference == 0) {
+				if (head.compareAndSet(position, position + 1)) {
+					Element element = elements.get(index);
+					elements.lazySet(index, null);
+					sequences.set(index, position + mask + 1);
+					return element;
+				} else {
+					// another consumer took it, retry
+				}
+			} else if (difference < 0) {
+				return null;
+			} else {
+				// head moved meanwhile, retry
+			}
+		}
+	}
+
+	/**
+	 * Move the available elements to a {@link Collection}, so they can be
+	 * processed as a batch.
+	 *
+	 * @param collection
+	 *            the {@link Collection} to fill
+	 * @param max
+	 *            the maximum number of elements to move
+	 * @return the number of elements moved
+	 */
+	public int drainTo(Collection<? super Element> collection, int max) {
+		int count = 0;
+		while (count < max) {
+			Element element = poll();
+			if (element == null) {
+				break;
+			} else {
+				collection.add(element);
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 *
+	 * @return the number of elements currently stored, which may be outdated
+	 *         if the {@link RingBuffer} is used concurrently
+	 */
+	public int size() {
+		long size = tail.get() - head.get();
+		return (int) Math.max(0, Math.min(size, capacity()));
+	}
+
+	/**
+	 *
+	 * @return <code>true</code> if no element is currently stored
+	 */
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 *
+	 * @return the number of elements rejected because the {@link RingBuffer}
+	 *         was full
+	 */
+	public long getRejected() {
+		return rejected.get();
+	}
+}
@@ -0,0 +1,581 @@
+package org.conceptmanager.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+/**
+ * A {@link SymbolDictionary} interns symbols, concepts or any other immutable
+ * object, by assigning them dense <code>int</code> ids: the first object
+ * interned has the id 0, the next one 1, and so on. Structures indexed by
+ * these ids, like arrays or {@link IntBitmap}s, can then replace the maps of
+ * objects, so the objects are hashed and compared once, when they are
+ * interned, rather than in each map they go through. The objects can be
+ * retrieved from their ids through {@link #get(int)}.<br/>
+ * <br/>
+ * The lookups ({@link #getId(Object)}, {@link #get(int)}, ...) do not lock
+ * and can be run concurrently with the interning of new objects, which only
+ * locks the part of the dictionary where the new object is inserted.<br/>
+ * <br/>
+ * With the UTF-8 arena enabled, the {@link String}s are not kept as
+ * {@link String}s: their UTF-8 encoding is appended to shared blocks of bytes,
+ * which takes about half the memory of a {@link String} for ASCII text. These
+ * encodings can be obtained without building a {@link String} through
+ * {@link #getUtf8(int, byte[], int)}, and encoded symbols, like the ones read
+ * from a stream, can be looked up directly through
+ * {@link #getId(byte[], int, int)}. {@link #get(int)} then decodes a new
+ * {@link String} at each call, so it should be avoided on hot paths.
+ *
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ *
+ */
+public class SymbolDictionary {
+
+	/**
+	 * The objects are stored in chunks of increasing sizes: the chunk k stores
+	 * <code>FIRST_CHUNK << k</code> objects, so a small dictionary stays small
+	 * while a large one needs only a few chunks.
+	 */
+	private static final int FIRST_CHUNK_BITS = 4;
+	private static final int FIRST_CHUNK = 1 << FIRST_CHUNK_BITS;
+	private static final int MAX_ID = Integer.MAX_VALUE - FIRST_CHUNK;
+	private static final int BLOCK_SIZE = 64 * 1024;
+	private static final int MAX_BLOCKS = 1 << 14;
+
+	private final ConcurrentHashMap<Object, Integer> ids = new ConcurrentHashMap<Object, Integer>();
+	private final AtomicReferenceArray<AtomicReferenceArray<Object>> symbols = new AtomicReferenceArray<AtomicReferenceArray<Object>>(
+			32 - FIRST_CHUNK_BITS);
+	private final AtomicInteger size = new AtomicInteger();
+	private final boolean useArena;
+	private final AtomicReferenceArray<byte[]> blocks;
+	/**
+	 * The position of the next encoding in the arena: the index of the block
+	 * in the 32 high bits, the offset in the block in the 32 low bits.
+	 */
+	private final AtomicLong cursor = new AtomicLong();
+	private final Function<Object, Integer> assigner = new Function<Object, Integer>() {
+
+		@Override
+		public Integer apply(Object key) {
+			return assign(key);
+		}
+	};
+
+	/**
+	 * Instantiate a {@link SymbolDictionary} without UTF-8 arena.
+	 */
+	public SymbolDictionary() {
+		this(false);
+	}
+
+	/**
+	 *
+	 * @param useArena
+	 *            <code>true</code> to store the {@link String}s in a UTF-8
+	 *            arena
+	 */
+	public SymbolDictionary(boolean useArena) {
+		this.useArena = useArena;
+		if (useArena) {
+			blocks = new AtomicReferenceArray<byte[]>(MAX_BLOCKS);
+			blocks.set(0, new byte[BLOCK_SIZE]);
+		} else {
+			blocks = null;
+		}
+	}
+
+	/**
+	 *
+	 * @return <code>true</code> if the {@link String}s are stored in a UTF-8
+	 *         arena
+	 */
+	public boolean isUsingArena() {
+		return useArena;
+	}
+
+	/**
+	 *
+	 * @param symbol
+	 *            the object to intern
+	 * @return the id of the object, assigned now if it was not known
+	 */
+	public int intern(Object symbol) {
+		if (symbol == null) {
+			throw new NullPointerException("No symbol has been provided.");
+		} else {
+			Object key = toKey(symbol);
+			Integer id = ids.get(key);
+			return id != null ? id : ids.computeIfAbsent(key, assigner);
+		}
+	}
+
+	/**
+	 *
+	 * @param symbol
+	 *            the object to look up
+	 * @return the id of the object, -1 if it has not been interned
+	 */
+	public int getId(Object symbol) {
+		if (symbol == null) {
+			return -1;
+		} else {
+			Integer id = ids.get(toKey(symbol));
+			return id == null ? -1 : id;
+		}
+	}
+
+	/**
+	 * Intern a {@link String} given its UTF-8 encoding. With the arena, no
+	 * {@link String} is built.
+	 *
+	 * @param bytes
+	 *            the array containing the encoding
+	 * @param offset
+	 *            the start of the encoding in the array
+	 * @param length
+	 *            the number of bytes of the encoding
+	 * @return the id of the {@link String}, assigned now if it was not known
+	 */
+	public int intern(byte[] bytes, int offset, int length) {
+		Object key = toKey(bytes, offset, length);
+		Integer id = ids.get(key);
+		return id != null ? id : ids.computeIfAbsent(key, assigner);
+	}
+
+	/**
+	 * Look up a {@link String} given its UTF-8 encoding. With the arena, no
+	 * {@link String} is built.
+	 *
+	 * @param bytes
+	 *            the array containing the encoding
+	 * @param offset
+	 *            the start of the encoding in the array
+	 * @param length
+	 *            the number of bytes of the encoding
+	 * @return the id of the {@link String}, -1 if it has not been interned
+	 */
+	public int getId(byte[] bytes, int offset, int length) {
+		Integer id = ids.get(toKey(bytes, offset, length));
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 *
+	 * @param id
+	 *            the id of an object interned
+	 * @return the object interned, a new but equal {@link String} for the
+	 *         {@link String}s stored in the arena
+	 */
+	@SuppressWarnings("unchecked")
+	public <Symbol> Symbol get(int id) {
+		Object symbol = getEntry(id);
+		if (symbol instanceof Utf8Key) {
+			return (Symbol) symbol.toString();
+		} else {
+			return (Symbol) symbol;
+		}
+	}
+
+	/**
+	 *
+	 * @param id
+	 *            the id of an object interned
+	 * @return the length of the UTF-8 encoding of the {@link String}, -1 if
+	 *         this id is not a {@link String} stored in the arena
+	 */
+	public int getUtf8Length(int id) {
+		Object symbol = getEntry(id);
+		return symbol instanceof Utf8Key ? ((Utf8Key) symbol).length : -1;
+	}
+
+	/**
+	 * Copy the UTF-8 encoding of a {@link String} stored in the arena.
+	 *
+	 * @param id
+	 *            the id of the {@link String}
+	 * @param destination
+	 *            the array to copy the encoding to, which should have
+	 *            {@link #getUtf8Length(int)} bytes available
+	 * @param offset
+	 *            the position of the encoding in the array
+	 * @return the number of bytes copied
+	 * @throws IllegalArgumentException
+	 *             if this id is not a {@link String} stored in the arena
+	 */
+	public int getUtf8(int id, byte[] destination, int offset) {
+		Object symbol = getEntry(id);
+		if (symbol instanceof Utf8Key) {
+			Utf8Key key = (Utf8Key) symbol;
+			System.arraycopy(key.bytes, key.offset, destination, offset,
+					key.length);
+			return key.length;
+		} else {
+			throw new IllegalArgumentException("The symbol " + id
+					+ " is not stored in the arena: " + symbol);
+		}
+	}
+
+	/**
+	 *
+	 * @return the number of objects interned, which is also the next id to
+	 *         assign
+	 */
+	public int size() {
+		return size.get();
+	}
+
+	/**
+	 *
+	 * @return the number of bytes used by the arena, including the unused
+	 *         ends of its full blocks, 0 without arena
+	 */
+	public long getArenaSize() {
+		if (useArena) {
+			long position = cursor.get();
+			int block = (int) (position >>> 32);
+			long used = (int) position;
+			for (int i = 0; i < block; i++) {
+				used += blocks.get(i).length;
+			}
+			return used;
+		} else {
+			return 0;
+		}
+	}
+
+	private static int getChunk(int id) {
+		return 31 - Integer.numberOfLeadingZeros(id + FIRST_CHUNK)
+				- FIRST_CHUNK_BITS;
+	}
+
+	private static int getIndexInChunk(int id, int chunk) {
+		return id + FIRST_CHUNK - (FIRST_CHUNK << chunk);
+	}
+
+	private Object getEntry(int id) {
+		Object symbol;
+		if (id < 0 || id > MAX_ID) {
+			symbol = null;
+		} else {
+			int index = getChunk(id);
+			AtomicReferenceArray<Object> chunk = symbols.get(index);
+			symbol = chunk == null ? null : chunk.get(getIndexInChunk(id,
+					index));
+		}
+		if (symbol == null) {
+			throw new IndexOutOfBoundsException("Unknown id " + id);
+		} else {
+			return symbol;
+		}
+	}
+
+	private Object toKey(Object symbol) {
+		if (useArena && symbol instanceof String) {
+			Utf8Key key = Utf8Key.of((String) symbol);
+			return key == null ? symbol : key;
+		} else {
+			return symbol;
+		}
+	}
+
+	private Object toKey(byte[] bytes, int offset, int length) {
+		if (offset < 0 || length < 0 || offset + length > bytes.length) {
+			throw new IndexOutOfBoundsException("Invalid range [" + offset
+					+ ";" + (offset + length) + "[ for " + bytes.length
+					+ " bytes");
+		} else if (useArena) {
+			Utf8Key key = Utf8Key.of(bytes, offset, length);
+			if (key != null) {
+				return key;
+			} else {
+				// malformed, decoded with replacements like the String
+				return toKey(new String(bytes, offset, length,
+						StandardCharsets.UTF_8));
+			}
+		} else {
+			return new String(bytes, offset, length, StandardCharsets.UTF_8);
+		}
+	}
+
+	/**
+	 * Assign the next id to a new key. Called once per key, while the
+	 * {@link ConcurrentHashMap} locks its bin.
+	 */
+	private Integer assign(Object key) {
+		int id = size.getAndIncrement();
+		if (id < 0 || id > MAX_ID) {
+			size.decrementAndGet();
+			throw new IllegalStateException("No more id available");
+		} else if (key instanceof Utf8Key) {
+			store((Utf8Key) key);
+		} else {
+			// kept as is
+		}
+		int index = getChunk(id);
+		AtomicReferenceArray<Object> chunk = symbols.get(index);
+		if (chunk == null) {
+			symbols.compareAndSet(index, null,
+					new AtomicReferenceArray<Object>(FIRST_CHUNK << index));
+			chunk = symbols.get(index);
+		} else {
+			// existing chunk
+		}
+		chunk.set(getIndexInChunk(id, index), key);
+		return id;
+	}
+
+	/**
+	 * Copy the encoding of a {@link Utf8Key} into the arena, so it does not
+	 * retain its source anymore.
+	 */
+	private void store(Utf8Key key) {
+		byte[] encoding;
+		int offset;
+		if (key.string != null) {
+			encoding = key.string.getBytes(StandardCharsets.UTF_8);
+			offset = 0;
+		} else {
+			encoding = key.bytes;
+			offset = key.offset;
+		}
+		long position = reserve(key.length);
+		byte[] block = blocks.get((int) (position >>> 32));
+		System.arraycopy(encoding, offset, block, (int) position, key.length);
+		key.attach(block, (int) position);
+	}
+
+	/**
+	 * Reserve space in the arena without locking: the cursor is moved
+	 * atomically, and a new block is installed when the current one is full.
+	 *
+	 * @return the position reserved, like {@link #cursor}
+	 */
+	private long reserve(int length) {
+		while (true) {
+			long position = cursor.get();
+			int index = (int) (position >>> 32);
+			int offset = (int) position;
+			if (offset + length <= blocks.get(index).length) {
+				if (cursor.compareAndSet(position, position + length)) {
+					return position;
+				} else {
+					// concurrent reservation, retry
+				}
+			} else if (index + 1 == MAX_BLOCKS) {
+				throw new IllegalStateException("The arena is full");
+			} else {
+				byte[] next = blocks.get(index + 1);
+				if (next == null) {
+					blocks.compareAndSet(index + 1, null,
+							new byte[Math.max(BLOCK_SIZE, length)]);
+					next = blocks.get(index + 1);
+				} else {
+					// installed by another thread
+				}
+				long start = (long) (index + 1) << 32;
+				if (next.length < length) {
+					// too small for this encoding, let the next block take it
+					cursor.compareAndSet(position, start + next.length);
+				} else if (cursor.compareAndSet(position, start + length)) {
+					return start;
+				} else {
+					// concurrent reservation, retry
+				}
+			}
+		}
+	}
+
+	/**
+	 * The key of a {@link String} in the arena. Its hash and its equality are
+	 * computed on the code points, so the same key can be computed from a
+	 * {@link String} or from its UTF-8 encoding without conversion. A key is
+	 * built from its source for each lookup, and once stored in the
+	 * dictionary, its source is replaced by its encoding in the arena.
+	 */
+	private static class Utf8Key {
+		private final int hash;
+		private final int length;
+		private String string;
+		private byte[] bytes;
+		private int offset;
+
+		private Utf8Key(int hash, int length, String string, byte[] bytes,
+				int offset) {
+			this.hash = hash;
+			this.length = length;
+			this.string = string;
+			this.bytes = bytes;
+			this.offset = offset;
+		}
+
+		/**
+		 *
+		 * @return the key of the {@link String}, <code>null</code> if it
+		 *         cannot be encoded in UTF-8 because of unpaired surrogates
+		 */
+		public static Utf8Key of(String string) {
+			int hash = 0;
+			int length = 0;
+			for (int i = 0; i < string.length();) {
+				int codePoint = string.codePointAt(i);
+				if (codePoint >= Character.MIN_SURROGATE
+						&& codePoint <= Character.MAX_SURROGATE) {
+					return null;
+				} else {
+					hash = 31 * hash + codePoint;
+					length += codePoint < 0x80 ? 1 : codePoint < 0x800 ? 2
+							: codePoint < 0x10000 ? 3 : 4;
+					i += Character.charCount(codePoint);
+				}
+			}
+			return new Utf8Key(hash, length, string, null, 0);
+		}
+
+		/**
+		 *
+		 * @return the key of the encoding, <code>null</code> if it is not
+		 *         valid UTF-8
+		 */
+		public static Utf8Key of(byte[] bytes, int offset, int length) {
+			int hash = 0;
+			int end = offset + length;
+			int position = offset;
+			while (position < end) {
+				int codePoint = decode(bytes, position, end);
+				if (codePoint < 0) {
+					return null;
+				} else {
+					hash = 31 * hash + codePoint;
+					position += codeLength(bytes[position]);
+				}
+			}
+			return new Utf8Key(hash, length, null, bytes, offset);
+		}
+
+		private static int codeLength(byte first) {
+			return first >= 0 ? 1 : (first & 0xE0) == 0xC0 ? 2
+					: (first & 0xF0) == 0xE0 ? 3 : 4;
+		}
+
+		/**
+		 *
+		 * @return the code point encoded at this position, -1 if it is not
+		 *         valid
+		 */
+		private static int decode(byte[] bytes, int position, int end) {
+			int first = bytes[position];
+			if (first >= 0) {
+				return first;
+			} else {
+				int length;
+				int codePoint;
+				int min;
+				if ((first & 0xE0) == 0xC0) {
+					length = 2;
+					codePoint = first & 0x1F;
+					min = 0x80;
+				} else if ((first & 0xF0) == 0xE0) {
+					length = 3;
+					codePoint = first & 0x0F;
+					min = 0x800;
+				} else if ((first & 0xF8) == 0xF0) {
+					length = 4;
+					codePoint = first & 0x07;
+					min = 0x10000;
+				} else {
+					return -1;
+				}
+				if (position + length > end) {
+					return -1;
+				} else {
+					for (int i = 1; i < length; i++) {
+						int next = bytes[position + i];
+						if ((next & 0xC0) != 0x80) {
+							return -1;
+						} else {
+							codePoint = codePoint << 6 | next & 0x3F;
+						}
+					}
+					if (codePoint < min
+							|| codePoint > Character.MAX_CODE_POINT
+							|| codePoint >= Character.MIN_SURROGATE
+							&& codePoint <= Character.MAX_SURROGATE) {
+						return -1;
+					} else {
+						return codePoint;
+					}
+				}
+			}
+		}
+
+		public void attach(byte[] block, int offset) {
+			this.bytes = block;
+			this.offset = offset;
+			this.string = null;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this) {
+				return true;
+			} else if (obj instanceof Utf8Key) {
+				Utf8Key other = (Utf8Key) obj;
+				if (hash != other.hash || length != other.length) {
+					return false;
+				} else if (string != null && other.string != null) {
+					return string.equals(other.string);
+				} else if (string != null) {
+					return other.matches(string);
+				} else if (other.string != null) {
+					return matches(other.string);
+				} else {
+					for (int i = 0; i < length; i++) {
+						if (bytes[offset + i] != other.bytes[other.offset + i]) {
+							return false;
+						} else {
+							// same byte
+						}
+					}
+					return true;
+				}
+			} else {
+				return false;
+			}
+		}
+
+		/**
+		 *
+		 * @return <code>true</code> if the encoding of this key corresponds
+		 *         to the {@link String}
+		 */
+		private boolean matches(String string) {
+			int position = offset;
+			int end = offset + length;
+			for (int i = 0; i < string.length();) {
+				int codePoint = string.codePointAt(i);
+				if (position >= end
+						|| decode(bytes, position, end) != codePoint) {
+					return false;
+				} else {
+					position += codeLength(bytes[position]);
+					i += Character.charCount(codePoint);
+				}
+			}
+			return position == end;
+		}
+
+		@Override
+		public String toString() {
+			return string != null ? string : new String(bytes, offset, length,
+					StandardCharsets.UTF_8);
+		}
+	}
+}
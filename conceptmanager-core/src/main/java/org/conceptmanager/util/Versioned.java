@@ -0,0 +1,19 @@
+package org.conceptmanager.util;
+
+/**
+ * A {@link Versioned} element provides a version which increases each time
+ * the element changes. Thus, one can know that the element did not change by
+ * comparing its current version to a previous one, without having to compare
+ * its content.
+ * 
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ * 
+ */
+public interface Versioned {
+
+	/**
+	 * 
+	 * @return the current version, which never decreases
+	 */
+	public long getVersion();
+}
@@ -0,0 +1,101 @@
+package org.conceptmanager.abstraction.impl;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import org.conceptmanager.evaluation.impl.ManualEvaluator;
+import org.conceptmanager.modeling.Model;
+import org.conceptmanager.modeling.impl.DynamicModel;
+import org.conceptmanager.modeling.impl.StaticModel;
+import org.junit.Test;
+
+public class BatchAbstractorTest {
+
+	private List<Model> createModels(int count) {
+		List<Model> models = new ArrayList<Model>();
+		for (int i = 0; i < count; i++) {
+			Map<String, Object> values = new HashMap<String, Object>();
+			values.put("A", i);
+			values.put("B", -i);
+			models.add(new StaticModel(values));
+		}
+		return models;
+	}
+
+	@Test
+	public void testLazyIterable() {
+		final int[] calls = { 0 };
+		BatchAbstractor<DynamicModel> batch = new BatchAbstractor<DynamicModel>(
+				new FilteringAbstractor(Arrays.asList("A")) {
+					@Override
+					public DynamicModel abstracts(Model model) {
+						calls[0]++;
+						return super.abstracts(model);
+					}
+				});
+		Iterable<DynamicModel> abstractions = batch
+				.abstractsAll(createModels(10));
+		assertEquals(0, calls[0]);
+
+		Iterator<DynamicModel> iterator = abstractions.iterator();
+		assertEquals((Object) 0, iterator.next().getValueFor("A"));
+		assertEquals(1, calls[0]);
+		assertEquals((Object) 1, iterator.next().getValueFor("A"));
+		assertEquals(2, calls[0]);
+	}
+
+	@Test
+	public void testStream() {
+		BatchAbstractor<DynamicModel> batch = new BatchAbstractor<DynamicModel>(
+				new FilteringAbstractor(Arrays.asList("B")));
+		List<DynamicModel> abstractions = batch.abstractsAll(
+				createModels(1000).parallelStream()).collect(
+				Collectors.<DynamicModel> toList());
+		assertEquals(1000, abstractions.size());
+		for (int i = 0; i < 1000; i++) {
+			assertEquals((Object) (-i), abstractions.get(i).getValueFor("B"));
+		}
+	}
+
+	@Test
+	public void testForkJoin() {
+		BatchAbstractor<DynamicModel> batch = new BatchAbstractor<DynamicModel>(
+				new FilteringAbstractor(Arrays.asList("A")));
+		List<Model> models = createModels(5000);
+		List<DynamicModel> abstractions = batch.abstractsAll(models,
+				ForkJoinPool.commonPool());
+		assertEquals(5000, abstractions.size());
+		for (int i = 0; i < 5000; i++) {
+			assertEquals(1, abstractions.get(i).getAttributes().size());
+			assertEquals((Object) i, abstractions.get(i).getValueFor("A"));
+		}
+	}
+
+	@Test
+	public void testMaterializing() {
+		ManualEvaluator<String, Object> evaluator = new ManualEvaluator<String, Object>(
+				"A");
+		evaluator.setValue(1);
+		DynamicModel model = new DynamicModel(null);
+		model.addEvaluator(evaluator);
+
+		BatchAbstractor<StaticModel> batch = BatchAbstractor
+				.materializing(new FilteringAbstractor(Arrays.asList("A", "B")));
+		List<StaticModel> abstractions = batch.abstractsAll(
+				Arrays.asList(model, model), ForkJoinPool.commonPool());
+		evaluator.setValue(2);
+		for (StaticModel abstraction : abstractions) {
+			assertEquals(2, abstraction.getAttributes().size());
+			assertEquals((Object) 1, abstraction.getValueFor("A"));
+			assertEquals(null, abstraction.getValueFor("B"));
+		}
+	}
+}
@@ -0,0 +1,109 @@
+package org.conceptmanager.abstraction.impl;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Callable;
+
+import org.conceptmanager.abstraction.Abstractor;
+import org.conceptmanager.modeling.Model;
+import org.conceptmanager.modeling.impl.StaticModel;
+import org.junit.Test;
+
+public class DeduplicatingAbstractorTest {
+
+	private Model createModel(Object a, Object b) {
+		Map<String, Object> values = new HashMap<String, Object>();
+		values.put("A", a);
+		values.put("B", b);
+		return new StaticModel(values);
+	}
+
+	@Test
+	public void testSharedInstances() {
+		DeduplicatingAbstractor abstractor = new DeduplicatingAbstractor(
+				new FilteringAbstractor(Arrays.asList("A")));
+		Model abstraction1 = abstractor.abstracts(createModel(1, 1));
+		Model abstraction2 = abstractor.abstracts(createModel(1, 2));
+		Model abstraction3 = abstractor.abstracts(createModel(2, 1));
+		Model abstraction4 = abstractor.abstracts(createModel(null, 1));
+
+		assertSame(abstraction1, abstraction2);
+		assertNotSame(abstraction1, abstraction3);
+		assertEquals(3, abstractor.size());
+		assertEquals(1, abstraction1.getAttributes().size());
+		assertEquals((Object) 1, abstraction1.getValueFor("A"));
+		assertEquals((Object) 2, abstraction3.getValueFor("A"));
+		assertEquals(null, abstraction4.getValueFor("A"));
+
+		assertEquals(2, abstractor.getCount(abstraction1));
+		assertEquals(1, abstractor.getCount(abstraction3));
+		assertEquals(1, abstractor.getCount(abstraction4));
+		assertEquals(2, abstractor.getCount(new FilteringAbstractor(Arrays
+				.asList("A")).abstracts(createModel(1, 3))));
+		assertEquals(0, abstractor.getCount(createModel(1, 1)));
+		assertEquals((Long) 2L, abstractor.getCounts().get(abstraction1));
+
+		abstractor.clear();
+		assertEquals(0, abstractor.size());
+		assertNotSame(abstraction1, abstractor.abstracts(createModel(1, 1)));
+	}
+
+	@Test
+	public void testGenericAbstractor() {
+		DeduplicatingAbstractor abstractor = new DeduplicatingAbstractor(
+				new Abstractor<Model>() {
+
+					@Override
+					public Model abstracts(Model model) {
+						return model;
+					}
+				});
+		Model abstraction1 = abstractor.abstracts(createModel(1, 2));
+		Model abstraction2 = abstractor.abstracts(createModel(1, 2));
+		Model abstraction3 = abstractor.abstracts(createModel(2, 1));
+		assertSame(abstraction1, abstraction2);
+		assertNotSame(abstraction1, abstraction3);
+		assertEquals(2, abstraction1.getAttributes().size());
+		assertEquals((Object) 2, abstraction1.getValueFor("B"));
+		assertEquals(2, abstractor.getCount(abstraction1));
+	}
+
+	@Test
+	public void testConcurrentCounts() throws Exception {
+		final DeduplicatingAbstractor abstractor = new DeduplicatingAbstractor(
+				new FilteringAbstractor(Arrays.asList("A")));
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for (int thread = 0; thread < 4; thread++) {
+				futures.add(executor.submit(new Callable<Object>() {
+
+					@Override
+					public Object call() {
+						for (int i = 0; i < 1000; i++) {
+							abstractor.abstracts(createModel(i % 10, i));
+						}
+						return null;
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(10, abstractor.size());
+		for (Long count : abstractor.getCounts().values()) {
+			assertEquals((Long) 400L, count);
+		}
+	}
+}
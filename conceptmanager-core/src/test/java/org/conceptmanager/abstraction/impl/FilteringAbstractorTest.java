@@ -2,9 +2,14 @@ package org.conceptmanager.abstraction.impl;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 
 import org.conceptmanager.evaluation.impl.ManualEvaluator;
+import org.conceptmanager.modeling.Model;
+import org.conceptmanager.modeling.ObservableModel;
 import org.conceptmanager.modeling.impl.DynamicModel;
 import org.junit.Test;
 
@@ -81,32 +86,89 @@ public class FilteringAbstractorTest {
 		assertEquals(null, abstraction.getValueFor("B"));
 
 		evaluatorA.setValue(123);
-		assertEquals(123, abstraction.getValueFor("A"));
+		assertEquals((Object) 123, abstraction.getValueFor("A"));
 		assertEquals(null, abstraction.getValueFor("B"));
 
 		model.addEvaluator(evaluatorB);
-		assertEquals(123, abstraction.getValueFor("A"));
+		assertEquals((Object) 123, abstraction.getValueFor("A"));
 		assertEquals(null, abstraction.getValueFor("B"));
 
 		evaluatorB.setValue("test");
-		assertEquals(123, abstraction.getValueFor("A"));
+		assertEquals((Object) 123, abstraction.getValueFor("A"));
 		assertEquals("test", abstraction.getValueFor("B"));
 
 		model.addEvaluator(evaluatorC);
-		assertEquals(123, abstraction.getValueFor("A"));
+		assertEquals((Object) 123, abstraction.getValueFor("A"));
 		assertEquals("test", abstraction.getValueFor("B"));
 
 		evaluatorA.setValue(321);
-		assertEquals(321, abstraction.getValueFor("A"));
+		assertEquals((Object) 321, abstraction.getValueFor("A"));
 		assertEquals("test", abstraction.getValueFor("B"));
 
 		evaluatorB.setValue("value");
-		assertEquals(321, abstraction.getValueFor("A"));
+		assertEquals((Object) 321, abstraction.getValueFor("A"));
 		assertEquals("value", abstraction.getValueFor("B"));
 
 		evaluatorC.setValue(new Object());
-		assertEquals(321, abstraction.getValueFor("A"));
+		assertEquals((Object) 321, abstraction.getValueFor("A"));
 		assertEquals("value", abstraction.getValueFor("B"));
 	}
 
+	@Test
+	public void testIndependentAbstractions() {
+		ManualEvaluator<String, Object> evaluatorA = new ManualEvaluator<String, Object>(
+				"A");
+		FilteringAbstractor abstractor = new FilteringAbstractor(Arrays.asList(
+				"A", "B"));
+
+		DynamicModel model = new DynamicModel(null);
+		model.addEvaluator(evaluatorA);
+		evaluatorA.setValue(1);
+		DynamicModel abstraction1 = abstractor.abstracts(model);
+		DynamicModel abstraction2 = abstractor.abstracts(model);
+		assertSame(abstraction1.getEvaluatorFor("A"),
+				abstraction2.getEvaluatorFor("A"));
+
+		abstraction1.removeEvaluatorFor("B");
+		abstraction1.setEvaluatorFor("C", evaluatorA);
+		assertEquals(2, abstraction1.getAttributes().size());
+		assertTrue(abstraction1.getAttributes().contains("A"));
+		assertTrue(abstraction1.getAttributes().contains("C"));
+		assertEquals((Object) 1, abstraction1.getValueFor("C"));
+
+		assertEquals(2, abstraction2.getAttributes().size());
+		assertTrue(abstraction2.getAttributes().contains("A"));
+		assertTrue(abstraction2.getAttributes().contains("B"));
+		assertEquals(2, abstractor.abstracts(model).getAttributes().size());
+		assertEquals((Object) 1, abstraction2.getValueFor("A"));
+	}
+
+	@Test
+	public void testPropagation() {
+		ManualEvaluator<String, Object> evaluatorA = new ManualEvaluator<String, Object>(
+				"A");
+		ManualEvaluator<String, Object> evaluatorC = new ManualEvaluator<String, Object>(
+				"C");
+		DynamicModel model = new DynamicModel(null);
+		model.addEvaluator(evaluatorA);
+		model.addEvaluator(evaluatorC);
+		DynamicModel abstraction = new FilteringAbstractor(Arrays.asList("A",
+				"B")).abstracts(model);
+		final List<Collection<?>> changes = new ArrayList<Collection<?>>();
+		abstraction.addListener(new ObservableModel.Listener() {
+
+			@Override
+			public void modelChanged(Model model, Collection<?> attributes) {
+				changes.add(new ArrayList<Object>(attributes));
+			}
+		});
+
+		evaluatorA.setValue(1);
+		assertEquals(Arrays.asList(Arrays.asList("A")), changes);
+
+		// not retained, so not propagated
+		evaluatorC.setValue(2);
+		assertEquals(1, changes.size());
+	}
+
 }
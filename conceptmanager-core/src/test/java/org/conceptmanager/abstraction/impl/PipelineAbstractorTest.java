@@ -0,0 +1,119 @@
+package org.conceptmanager.abstraction.impl;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.conceptmanager.abstraction.Abstractor;
+import org.conceptmanager.abstraction.Projection;
+import org.conceptmanager.evaluation.impl.ManualEvaluator;
+import org.conceptmanager.modeling.Model;
+import org.conceptmanager.modeling.Model.UnknownAttributeException;
+import org.conceptmanager.modeling.impl.DynamicModel;
+import org.conceptmanager.modeling.impl.StaticModel;
+import org.junit.Test;
+
+public class PipelineAbstractorTest {
+
+	@Test
+	public void testCompiledEquivalence() {
+		ManualEvaluator<String, Object> evaluatorA = new ManualEvaluator<String, Object>(
+				"A");
+		ManualEvaluator<String, Object> evaluatorB = new ManualEvaluator<String, Object>(
+				"B");
+		ManualEvaluator<String, Object> evaluatorC = new ManualEvaluator<String, Object>(
+				"C");
+		DynamicModel model = new DynamicModel(null);
+		model.addEvaluator(evaluatorA);
+		model.addEvaluator(evaluatorB);
+		model.addEvaluator(evaluatorC);
+
+		PipelineAbstractor pipeline = new PipelineAbstractor(
+				new FilteringAbstractor(Arrays.asList("A", "B", "C")),
+				new FilteringAbstractor(Arrays.asList("A", "B")),
+				new FilteringAbstractor(Arrays.asList("B", "C")));
+		PipelineAbstractor compiled = pipeline.compile();
+		assertEquals(1, compiled.getStages().size());
+
+		Model nested = pipeline.abstracts(model);
+		Model flat = compiled.abstracts(model);
+		assertEquals(new HashSet<Object>(Arrays.asList("B", "C")),
+				new HashSet<Object>(flat.getAttributes()));
+		assertEquals(new HashSet<Object>(nested.getAttributes()),
+				new HashSet<Object>(flat.getAttributes()));
+
+		evaluatorA.setValue(1);
+		evaluatorB.setValue(2);
+		evaluatorC.setValue(3);
+		assertEquals((Object) 2, flat.getValueFor("B"));
+		assertEquals((Object) nested.getValueFor("B"),
+				(Object) flat.getValueFor("B"));
+		// C is removed by the second filter, so it is unknown
+		assertEquals(null, flat.getValueFor("C"));
+		assertEquals((Object) nested.getValueFor("C"),
+				(Object) flat.getValueFor("C"));
+
+		evaluatorB.setValue(4);
+		assertEquals((Object) 4, flat.getValueFor("B"));
+
+		try {
+			flat.getValueFor("A");
+			fail("No exception thrown");
+		} catch (UnknownAttributeException e) {
+		}
+		assertTrue(flat.tryGetValueFor("A").isAbsent());
+	}
+
+	@Test
+	public void testOtherAbstractorsKept() {
+		Abstractor<Model> snapshot = new Abstractor<Model>() {
+
+			@Override
+			public Model abstracts(Model model) {
+				return new StaticModel(model);
+			}
+		};
+		PipelineAbstractor pipeline = new PipelineAbstractor(
+				new FilteringAbstractor(Arrays.asList("A", "B")),
+				new FilteringAbstractor(Arrays.asList("A")), snapshot,
+				new FilteringAbstractor(Arrays.asList("A", "C")));
+		PipelineAbstractor compiled = pipeline.compile();
+		assertEquals(3, compiled.getStages().size());
+		assertTrue(compiled.getStages().get(0) instanceof ProjectionAbstractor);
+		assertSame(snapshot, compiled.getStages().get(1));
+		assertTrue(compiled.getStages().get(2) instanceof ProjectionAbstractor);
+
+		Map<String, Object> values = new HashMap<String, Object>();
+		values.put("A", 1);
+		values.put("B", 2);
+		Model abstraction = compiled.abstracts(new StaticModel(values));
+		assertEquals((Object) 1, abstraction.getValueFor("A"));
+		assertEquals(null, abstraction.getValueFor("C"));
+	}
+
+	@Test
+	public void testRenaming() {
+		Map<String, String> sources = new HashMap<String, String>();
+		sources.put("X", "A");
+		sources.put("Y", "B");
+		Map<String, String> sources2 = new HashMap<String, String>();
+		sources2.put("Z", "Y");
+		sources2.put("W", "V");
+		Projection projection = Projection.rename(sources).then(
+				Projection.rename(sources2));
+		assertTrue(projection.hasSource("Z"));
+		assertEquals("B", projection.getSource("Z"));
+		assertFalse(projection.hasSource("W"));
+
+		Map<String, Object> values = new HashMap<String, Object>();
+		values.put("A", 1);
+		values.put("B", 2);
+		Model abstraction = new PipelineAbstractor(new ProjectionAbstractor(
+				projection)).abstracts(new StaticModel(values));
+		assertEquals((Object) 2, abstraction.getValueFor("Z"));
+		assertEquals(null, abstraction.getValueFor("W"));
+	}
+}
@@ -0,0 +1,155 @@
+package org.conceptmanager.action.impl;
+
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.conceptmanager.action.Actuator;
+import org.conceptmanager.action.impl.ActuationDispatcher.DispatcherMetrics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ActuationDispatcherTest {
+
+	private ScheduledExecutorService executor;
+
+	@Before
+	public void setUp() {
+		executor = Executors.newScheduledThreadPool(4);
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	private static class BlockingActuator implements Actuator {
+		private final CountDownLatch release = new CountDownLatch(1);
+		private final CountDownLatch started = new CountDownLatch(1);
+
+		@Override
+		public void acts() {
+			started.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private static class RecordingActuator implements Actuator {
+		private final String name;
+		private final List<String> record;
+		private final CountDownLatch done;
+
+		public RecordingActuator(String name, List<String> record,
+				CountDownLatch done) {
+			this.name = name;
+			this.record = record;
+			this.done = done;
+		}
+
+		@Override
+		public void acts() {
+			record.add(name);
+			done.countDown();
+		}
+	}
+
+	@Test
+	public void testPriorityAndCoalescing() throws InterruptedException {
+		ActuationDispatcher dispatcher = new ActuationDispatcher(executor, 1);
+		BlockingActuator blocker = new BlockingActuator();
+		dispatcher.trigger(blocker, 0);
+		assertTrue(blocker.started.await(1, TimeUnit.SECONDS));
+
+		List<String> record = Collections
+				.synchronizedList(new LinkedList<String>());
+		CountDownLatch done = new CountDownLatch(3);
+		RecordingActuator low = new RecordingActuator("low", record, done);
+		RecordingActuator middle = new RecordingActuator("middle", record,
+				done);
+		RecordingActuator high = new RecordingActuator("high", record, done);
+		assertTrue(dispatcher.trigger(low, 1));
+		assertTrue(dispatcher.trigger(middle, 5));
+		assertTrue(dispatcher.trigger(high, 3));
+		assertFalse(dispatcher.trigger(high, 10));
+		assertFalse(dispatcher.trigger(low, 0));
+		assertEquals(3, dispatcher.getQueueDepth());
+
+		blocker.release.countDown();
+		assertTrue(done.await(1, TimeUnit.SECONDS));
+		assertEquals("[high, middle, low]", record.toString());
+
+		Thread.sleep(20);
+		DispatcherMetrics metrics = dispatcher.getMetrics();
+		assertEquals(0, metrics.getQueueDepth());
+		assertEquals(4, metrics.getExecuted());
+		assertEquals(2, metrics.getCoalesced());
+		assertEquals(0, metrics.getFailures());
+		assertTrue(metrics.getMaxWait(TimeUnit.NANOSECONDS) > 0);
+		assertTrue(metrics.getMaxExecution(TimeUnit.NANOSECONDS) >= metrics
+				.getMeanExecution(TimeUnit.NANOSECONDS));
+	}
+
+	@Test
+	public void testSlowActuatorDoesNotBlockOthers()
+			throws InterruptedException {
+		ActuationDispatcher dispatcher = new ActuationDispatcher(executor, 2);
+		BlockingActuator blocker = new BlockingActuator();
+		dispatcher.trigger(blocker, 0);
+		assertTrue(blocker.started.await(1, TimeUnit.SECONDS));
+		// the same actuator waits for its current run
+		assertTrue(dispatcher.trigger(blocker, 0));
+
+		List<String> record = Collections
+				.synchronizedList(new LinkedList<String>());
+		CountDownLatch done = new CountDownLatch(1);
+		dispatcher.trigger(new RecordingActuator("fast", record, done), 0);
+		assertTrue(done.await(1, TimeUnit.SECONDS));
+		assertEquals(1, dispatcher.getQueueDepth());
+		blocker.release.countDown();
+	}
+
+	@Test
+	public void testRateLimitAndFailures() throws InterruptedException {
+		ActuationDispatcher dispatcher = new ActuationDispatcher(executor, 2);
+		final AtomicInteger counter = new AtomicInteger();
+		Actuator limited = new Actuator() {
+
+			@Override
+			public void acts() {
+				counter.incrementAndGet();
+			}
+		};
+		dispatcher.setRateLimit(limited, 100, TimeUnit.MILLISECONDS);
+		dispatcher.trigger(limited, 0);
+		Thread.sleep(20);
+		assertEquals(1, counter.get());
+		dispatcher.trigger(limited, 0);
+		Thread.sleep(20);
+		assertEquals(1, counter.get());
+		assertEquals(1, dispatcher.getQueueDepth());
+		Thread.sleep(150);
+		assertEquals(2, counter.get());
+
+		dispatcher.trigger(new Actuator() {
+
+			@Override
+			public void acts() {
+				throw new IllegalStateException("broken");
+			}
+		}, 0);
+		Thread.sleep(20);
+		assertEquals(1, dispatcher.getMetrics().getFailures());
+	}
+}
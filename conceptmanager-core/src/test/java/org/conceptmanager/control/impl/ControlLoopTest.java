@@ -0,0 +1,268 @@
+package org.conceptmanager.control.impl;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.conceptmanager.abstraction.impl.FilteringAbstractor;
+import org.conceptmanager.action.Actuator;
+import org.conceptmanager.action.impl.ActuationDispatcher;
+import org.conceptmanager.control.impl.ControlLoop.LoopMetrics;
+import org.conceptmanager.control.impl.ControlLoop.Policy;
+import org.conceptmanager.control.impl.ControlLoop.Stage;
+import org.conceptmanager.evaluation.Evaluator;
+import org.conceptmanager.evaluation.impl.ManualEvaluator;
+import org.conceptmanager.modeling.Model;
+import org.conceptmanager.modeling.impl.CachedModel;
+import org.conceptmanager.modeling.impl.ChangeBatcher;
+import org.conceptmanager.modeling.impl.DynamicModel;
+import org.conceptmanager.sensing.Sensor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ControlLoopTest {
+
+	private ScheduledExecutorService scheduler;
+	private ActuationDispatcher dispatcher;
+
+	@Before
+	public void setUp() {
+		scheduler = Executors.newScheduledThreadPool(2);
+		dispatcher = new ActuationDispatcher(scheduler, 1);
+	}
+
+	@After
+	public void tearDown() {
+		scheduler.shutdownNow();
+	}
+
+	private Sensor<Integer> createSensor(final AtomicInteger value,
+			final long delay) {
+		return new Sensor<Integer>() {
+
+			@Override
+			public Integer sense() {
+				if (delay > 0) {
+					try {
+						Thread.sleep(delay);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				} else {
+					// immediate
+				}
+				return value.get();
+			}
+		};
+	}
+
+	@Test
+	public void testStages() throws InterruptedException {
+		ControlLoop loop = new ControlLoop(scheduler, dispatcher, 1,
+				TimeUnit.SECONDS);
+		AtomicInteger temperature = new AtomicInteger(20);
+		loop.addSensor("temperature", createSensor(temperature, 0));
+		loop.addSensor("humidity", createSensor(new AtomicInteger(50), 0));
+		loop.addEvaluator(new Evaluator<String, Boolean>() {
+
+			@Override
+			public String getAttribute() {
+				return "hot";
+			}
+
+			@Override
+			public Boolean evaluates(Object object) {
+				Integer value = ((Model) object).getValueFor("temperature");
+				return value > 25;
+			}
+		});
+		loop.addAbstractor(new FilteringAbstractor(Arrays.asList("hot")));
+		final CountDownLatch cooled = new CountDownLatch(1);
+		final Actuator cooler = new Actuator() {
+
+			@Override
+			public void acts() {
+				cooled.countDown();
+			}
+		};
+		loop.addPolicy(new Policy() {
+
+			@Override
+			public void decide(Model model, List<Model> abstractions,
+					ActuationDispatcher dispatcher) {
+				if (abstractions.get(0).<String, Boolean> getValueFor("hot")) {
+					dispatcher.trigger(cooler, 0);
+				} else {
+					// nothing to do
+				}
+			}
+		});
+		assertNull(loop.getModel());
+
+		loop.tick();
+		Model model = loop.getModel();
+		assertEquals(3, model.getAttributes().size());
+		assertEquals((Object) 20, model.getValueFor("temperature"));
+		assertEquals(false, model.getValueFor("hot"));
+		assertEquals(1, cooled.getCount());
+
+		temperature.set(30);
+		loop.tick();
+		assertEquals(true, loop.getModel().getValueFor("hot"));
+		assertTrue(cooled.await(1, TimeUnit.SECONDS));
+
+		LoopMetrics metrics = loop.getMetrics();
+		assertEquals(2, metrics.getTicks());
+		assertEquals(0, metrics.getSkipped());
+		assertEquals(0, metrics.getAbandoned());
+		for (Stage stage : Stage.values()) {
+			assertEquals(0, metrics.getOverruns(stage));
+			assertTrue(metrics.getMaxDuration(stage, TimeUnit.NANOSECONDS) > 0);
+		}
+	}
+
+	@Test
+	public void testBudgetOverrun() {
+		ControlLoop loop = new ControlLoop(scheduler, dispatcher, 1,
+				TimeUnit.SECONDS);
+		loop.addSensor("slow", createSensor(new AtomicInteger(), 20));
+		loop.setBudget(Stage.SENSE, 5, TimeUnit.MILLISECONDS);
+		loop.setBudget(Stage.MODEL, 1, TimeUnit.SECONDS);
+		loop.tick();
+		loop.tick();
+		LoopMetrics metrics = loop.getMetrics();
+		assertEquals(2, metrics.getOverruns(Stage.SENSE));
+		assertEquals(0, metrics.getOverruns(Stage.MODEL));
+		assertTrue(metrics.getMeanDuration(Stage.SENSE, TimeUnit.MILLISECONDS) >= 20);
+	}
+
+	@Test
+	public void testSkippedAndAbandonedTicks() throws InterruptedException {
+		ControlLoop loop = new ControlLoop(scheduler, dispatcher, 10,
+				TimeUnit.MILLISECONDS);
+		final Sensor<Integer> slow = createSensor(new AtomicInteger(), 25);
+		final CountDownLatch sensed = new CountDownLatch(3);
+		loop.addSensor("slow", new Sensor<Integer>() {
+
+			@Override
+			public Integer sense() {
+				Integer value = slow.sense();
+				sensed.countDown();
+				return value;
+			}
+		});
+		loop.start();
+		assertTrue(sensed.await(5, TimeUnit.SECONDS));
+		loop.stop();
+		LoopMetrics metrics = loop.getMetrics();
+		assertTrue(metrics.getTicks() >= 3);
+		assertTrue(metrics.getSkipped() > 0);
+		assertEquals(metrics.getTicks(), metrics.getAbandoned());
+		assertNull(loop.getModel());
+	}
+
+	@Test
+	public void testFailuresDoNotStopTheLoop() throws InterruptedException {
+		ControlLoop loop = new ControlLoop(scheduler, dispatcher, 10,
+				TimeUnit.MILLISECONDS);
+		loop.addSensor("broken", new Sensor<Integer>() {
+
+			@Override
+			public Integer sense() {
+				throw new IllegalStateException("broken sensor");
+			}
+		});
+		loop.addSensor("temperature", createSensor(new AtomicInteger(20), 0));
+		loop.addEvaluator(new Evaluator<String, Boolean>() {
+
+			@Override
+			public String getAttribute() {
+				return "broken";
+			}
+
+			@Override
+			public Boolean evaluates(Object object) {
+				throw new IllegalStateException("broken evaluator");
+			}
+		});
+		loop.addEvaluator(new Evaluator<String, Boolean>() {
+
+			@Override
+			public String getAttribute() {
+				return "hot";
+			}
+
+			@Override
+			public Boolean evaluates(Object object) {
+				Integer value = ((Model) object).getValueFor("temperature");
+				return value > 25;
+			}
+		});
+		loop.addPolicy(new Policy() {
+
+			@Override
+			public void decide(Model model, List<Model> abstractions,
+					ActuationDispatcher dispatcher) {
+				throw new IllegalStateException("broken policy");
+			}
+		});
+		final CountDownLatch decided = new CountDownLatch(3);
+		loop.addPolicy(new Policy() {
+
+			@Override
+			public void decide(Model model, List<Model> abstractions,
+					ActuationDispatcher dispatcher) {
+				decided.countDown();
+			}
+		});
+		ChangeBatcher batcher = new ChangeBatcher() {
+			@Override
+			public int flush() {
+				throw new IllegalStateException("broken batcher");
+			}
+		};
+		loop.addBatcher(batcher);
+
+		loop.start();
+		assertTrue(decided.await(5, TimeUnit.SECONDS));
+		loop.stop();
+		LoopMetrics metrics = loop.getMetrics();
+		assertEquals(metrics.getTicks(), metrics.getFailures(Stage.SENSE));
+		assertTrue(metrics.getFailures(Stage.MODEL) >= 3);
+		assertEquals(0, metrics.getFailures(Stage.ABSTRACT));
+		assertTrue(metrics.getFailures(Stage.ACT) >= 3);
+		assertEquals(metrics.getTicks(), metrics.getFlushFailures());
+		Model model = loop.getModel();
+		assertNull(model.getValueFor("broken"));
+		assertEquals(false, model.getValueFor("hot"));
+	}
+
+	@Test
+	public void testBatchersFlushedEachTick() {
+		ControlLoop loop = new ControlLoop(scheduler, dispatcher, 1,
+				TimeUnit.SECONDS);
+		ManualEvaluator<String, Object> evaluator = new ManualEvaluator<String, Object>(
+				"A");
+		DynamicModel model = new DynamicModel(null);
+		model.addEvaluator(evaluator);
+		CachedModel cache = new CachedModel(model);
+		ChangeBatcher batcher = new ChangeBatcher();
+		batcher.addListener(cache);
+		model.addListener(batcher);
+		loop.addBatcher(batcher);
+
+		evaluator.setValue(1);
+		evaluator.setValue(2);
+		assertNull(cache.getValueFor("A"));
+		loop.tick();
+		assertEquals(2, (Object) cache.getValueFor("A"));
+		assertEquals(1, cache.getRefreshCount());
+	}
+}
@@ -0,0 +1,100 @@
+package org.conceptmanager.evaluation.impl;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.conceptmanager.evaluation.Evaluator;
+import org.conceptmanager.evaluation.Evaluator.CannotEvaluateException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AsyncEvaluatorTest {
+
+	private ExecutorService executor;
+
+	@Before
+	public void setUp() {
+		executor = Executors.newCachedThreadPool();
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testValue() throws Exception {
+		ManualEvaluator<String, Object> manual = new ManualEvaluator<String, Object>(
+				"A");
+		AsyncEvaluator<String, Object> evaluator = new AsyncEvaluator<String, Object>(
+				manual, executor, 1, TimeUnit.SECONDS);
+		assertEquals("A", evaluator.getAttribute());
+
+		manual.setValue(123);
+		assertEquals(123, evaluator.evaluates(null));
+		assertEquals(123, evaluator.evaluatesAsync(null).get());
+
+		manual.setEvaluationImpossible(true);
+		try {
+			evaluator.evaluates(null);
+			fail("Exception not thrown.");
+		} catch (CannotEvaluateException e) {
+		}
+		try {
+			evaluator.evaluatesAsync(null).get();
+			fail("Exception not thrown.");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof CannotEvaluateException);
+		}
+	}
+
+	@Test
+	public void testDeadline() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		AsyncEvaluator<String, Object> evaluator = new AsyncEvaluator<String, Object>(
+				new Evaluator<String, Object>() {
+
+					@Override
+					public String getAttribute() {
+						return "slow";
+					}
+
+					@Override
+					public Object evaluates(Object object)
+							throws CannotEvaluateException {
+						try {
+							release.await();
+						} catch (InterruptedException e) {
+							throw new CannotEvaluateException(getAttribute(),
+									object, e);
+						}
+						return "late";
+					}
+				}, executor, 50, TimeUnit.MILLISECONDS);
+
+		try {
+			long start = System.nanoTime();
+			try {
+				evaluator.evaluates(null);
+				fail("Exception not thrown.");
+			} catch (CannotEvaluateException e) {
+			}
+			assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+
+			CompletableFuture<Object> future = evaluator.evaluatesAsync(null, 5,
+					TimeUnit.SECONDS);
+			release.countDown();
+			assertEquals("late", future.get());
+		} finally {
+			release.countDown();
+		}
+	}
+
+}
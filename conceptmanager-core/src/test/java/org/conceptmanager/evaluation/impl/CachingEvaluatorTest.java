@@ -0,0 +1,59 @@
+package org.conceptmanager.evaluation.impl;
+
+import static org.junit.Assert.*;
+
+import org.conceptmanager.evaluation.Evaluator;
+import org.conceptmanager.sensing.Sensor;
+import org.conceptmanager.sensing.impl.ChangeDetectingSensor;
+import org.junit.Test;
+
+public class CachingEvaluatorTest {
+
+	@Test
+	public void testCache() throws Exception {
+		final int[] sensed = { 0 };
+		final int[] evaluations = { 0 };
+		final ChangeDetectingSensor<Integer> sensor = new ChangeDetectingSensor<Integer>(
+				new Sensor<Integer>() {
+
+					@Override
+					public Integer sense() {
+						return sensed[0];
+					}
+				});
+		Evaluator<String, Integer> evaluator = new Evaluator<String, Integer>() {
+
+			@Override
+			public String getAttribute() {
+				return "A";
+			}
+
+			@Override
+			public Integer evaluates(Object object) {
+				evaluations[0]++;
+				return sensor.getPublished() * 2;
+			}
+		};
+		CachingEvaluator<String, Integer> caching = new CachingEvaluator<String, Integer>(
+				evaluator, sensor);
+		assertEquals("A", caching.getAttribute());
+
+		Object object = new Object();
+		sensor.sense();
+		assertEquals((Integer) 0, caching.evaluates(object));
+		assertEquals((Integer) 0, caching.evaluates(object));
+		assertEquals(1, evaluations[0]);
+
+		sensor.sense();
+		assertEquals((Integer) 0, caching.evaluates(object));
+		assertEquals(1, evaluations[0]);
+
+		sensed[0] = 3;
+		sensor.sense();
+		assertEquals((Integer) 6, caching.evaluates(object));
+		assertEquals(2, evaluations[0]);
+
+		assertEquals((Integer) 6, caching.evaluates(new Object()));
+		assertEquals(3, evaluations[0]);
+	}
+}
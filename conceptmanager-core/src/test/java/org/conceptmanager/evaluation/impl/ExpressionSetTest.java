@@ -0,0 +1,168 @@
+package org.conceptmanager.evaluation.impl;
+
+import static org.conceptmanager.evaluation.Expression.*;
+import static org.junit.Assert.*;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.conceptmanager.evaluation.Evaluator;
+import org.conceptmanager.evaluation.Evaluator.CannotEvaluateException;
+import org.conceptmanager.evaluation.Expression;
+import org.conceptmanager.evaluation.Outcome;
+import org.conceptmanager.evaluation.impl.ExpressionSet.Cycle;
+import org.conceptmanager.modeling.Model;
+import org.conceptmanager.modeling.impl.DynamicModel;
+import org.junit.Test;
+
+public class ExpressionSetTest {
+
+	/**
+	 * A {@link Model} counting how many times each {@link Attribute} is read.
+	 */
+	private static class CountingModel implements Model {
+		private final Map<Object, Object> values = new HashMap<Object, Object>();
+		private final Map<Object, Integer> reads = new HashMap<Object, Integer>();
+
+		public void set(Object attribute, Object value) {
+			values.put(attribute, value);
+		}
+
+		public int getReads(Object attribute) {
+			Integer count = reads.get(attribute);
+			return count == null ? 0 : count;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public <Attribute> Collection<? extends Attribute> getAttributes() {
+			return (Collection<? extends Attribute>) values.keySet();
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public <Attribute, Value> Value getValueFor(Attribute attribute) {
+			if (values.containsKey(attribute)) {
+				reads.put(attribute, getReads(attribute) + 1);
+				return (Value) values.get(attribute);
+			} else {
+				throw new UnknownAttributeException(attribute);
+			}
+		}
+	}
+
+	@Test
+	public void testOperators() throws CannotEvaluateException {
+		Map<String, Expression> definitions = new LinkedHashMap<String, Expression>();
+		definitions.put("sum", add(attribute("a"), attribute("b")));
+		definitions.put("difference", subtract(attribute("a"), attribute("b")));
+		definitions.put("product", multiply(attribute("a"), constant(2.5)));
+		definitions.put("ratio", divide(attribute("a"), attribute("b")));
+		definitions.put("opposite", negate(attribute("a")));
+		definitions.put("smaller", lessThan(attribute("a"), attribute("b")));
+		definitions.put("greater", greaterThan(attribute("a"), attribute("b")));
+		definitions.put("same", equal(attribute("b"), constant(2.0)));
+		definitions.put("both",
+				and(attribute("greater"), not(attribute("smaller"))));
+		definitions.put("any", or(attribute("smaller"), attribute("same")));
+		definitions.put("unknown", add(attribute("a"), attribute("c")));
+		ExpressionSet set = new ExpressionSet(definitions);
+
+		CountingModel source = new CountingModel();
+		source.set("a", 5L);
+		source.set("b", 2);
+		source.set("c", null);
+		DynamicModel model = new DynamicModel(source, set.getEvaluators());
+		assertEquals((Object) 7L, model.getValueFor("sum"));
+		assertEquals((Object) 3L, model.getValueFor("difference"));
+		assertEquals((Object) 12.5, model.getValueFor("product"));
+		assertEquals((Object) 2.5, model.getValueFor("ratio"));
+		assertEquals((Object) (-5L), model.getValueFor("opposite"));
+		assertEquals(false, model.getValueFor("smaller"));
+		assertEquals(true, model.getValueFor("greater"));
+		assertEquals(true, model.getValueFor("same"));
+		assertEquals(true, model.getValueFor("both"));
+		assertEquals(true, model.getValueFor("any"));
+		assertNull(model.getValueFor("unknown"));
+	}
+
+	@Test
+	public void testSharedSubexpressions() {
+		Expression load = divide(attribute("used"), attribute("total"));
+		Map<String, Expression> definitions = new LinkedHashMap<String, Expression>();
+		definitions.put("load", load);
+		definitions.put("high", greaterThan(load, constant(0.8)));
+		definitions.put("low", lessThan(attribute("load"), constant(0.2)));
+		ExpressionSet set = new ExpressionSet(definitions);
+		assertTrue(set.getSharedExpressions().contains(load));
+		assertFalse(set.getSharedExpressions().contains(constant(0.8)));
+
+		CountingModel source = new CountingModel();
+		source.set("used", 9);
+		source.set("total", 10);
+		DynamicModel model = new DynamicModel(source, set.getEvaluators());
+		Cycle cycle = set.openCycle();
+		try {
+			assertEquals(true, model.getValueFor("high"));
+			assertEquals(false, model.getValueFor("low"));
+			assertEquals((Object) 0.9, model.getValueFor("load"));
+			assertEquals(1, source.getReads("used"));
+			assertEquals(1, source.getReads("total"));
+		} finally {
+			cycle.close();
+		}
+
+		// without cycle, each evaluation reads the source again
+		source.set("used", 1);
+		assertEquals(false, model.getValueFor("high"));
+		assertEquals(true, model.getValueFor("low"));
+		assertEquals(3, source.getReads("used"));
+	}
+
+	@Test
+	public void testSharedWithinEvaluation() {
+		Expression load = divide(attribute("used"), attribute("total"));
+		Map<String, Expression> definitions = new LinkedHashMap<String, Expression>();
+		definitions.put("square", multiply(load, load));
+		ExpressionSet set = new ExpressionSet(definitions);
+		Evaluator<String, Object> square = set.getEvaluatorFor("square");
+
+		CountingModel source = new CountingModel();
+		source.set("used", 1);
+		source.set("total", 2);
+		assertEquals(0.25, square.tryEvaluates(source).getValue());
+		assertEquals(1, source.getReads("used"));
+
+		source.set("used", 2);
+		assertEquals(1.0, square.tryEvaluates(source).getValue());
+		assertEquals(2, source.getReads("used"));
+	}
+
+	@Test
+	public void testFailures() {
+		Map<String, Expression> definitions = new LinkedHashMap<String, Expression>();
+		definitions.put("sum", add(attribute("a"), attribute("b")));
+		definitions.put("negation", not(attribute("a")));
+		ExpressionSet set = new ExpressionSet(definitions);
+		Evaluator<String, Object> sum = set.getEvaluatorFor("sum");
+		Evaluator<String, Object> negation = set.getEvaluatorFor("negation");
+
+		CountingModel source = new CountingModel();
+		source.set("a", 1);
+		Outcome<Object> outcome = sum.tryEvaluates(source);
+		assertTrue(outcome.isFailed());
+		outcome = negation.tryEvaluates(source);
+		assertTrue(outcome.isFailed());
+		outcome = sum.tryEvaluates("not a model");
+		assertTrue(outcome.isFailed());
+
+		definitions.put("a", add(attribute("sum"), constant(1)));
+		try {
+			new ExpressionSet(definitions);
+			fail("Exception not thrown.");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+}
@@ -2,7 +2,13 @@ package org.conceptmanager.evaluation.impl;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import org.conceptmanager.evaluation.Evaluator;
 import org.conceptmanager.evaluation.Evaluator.CannotEvaluateException;
+import org.conceptmanager.evaluation.ObservableEvaluator;
+import org.conceptmanager.evaluation.Outcome;
 import org.junit.Test;
 
 public class ManualEvaluatorTest {
@@ -44,6 +50,30 @@ public class ManualEvaluatorTest {
 		}
 	}
 
+	@Test
+	public void testOutcomeReused() {
+		ManualEvaluator<Object, Object> evaluator = new ManualEvaluator<Object, Object>(
+				null);
+		evaluator.setValue(123);
+		Outcome<Object> outcome = evaluator.tryEvaluates(null);
+		assertEquals(123, outcome.getValue());
+		assertSame(outcome, evaluator.tryEvaluates("other"));
+
+		evaluator.setValue(456);
+		assertEquals(456, evaluator.tryEvaluates(null).getValue());
+	}
+
+	@Test
+	public void testExceptionIsCheap() {
+		Object object = new StringBuilder("evaluated");
+		CannotEvaluateException exception = new CannotEvaluateException(
+				"attribute", object, "reason");
+		assertEquals(0, exception.getStackTrace().length);
+		assertEquals("We cannot evaluate attribute on a "
+				+ StringBuilder.class.getName() + ": reason",
+				exception.getMessage());
+	}
+
 	@Test
 	public void testValue() throws CannotEvaluateException {
 		ManualEvaluator<Object, Object> evaluator = new ManualEvaluator<Object, Object>(
@@ -64,4 +94,57 @@ public class ManualEvaluatorTest {
 		assertEquals(value, evaluator.evaluates(null));
 	}
 
+	@Test
+	public void testOutcome() {
+		ManualEvaluator<Object, Object> evaluator = new ManualEvaluator<Object, Object>(
+				null);
+		Outcome<Object> outcome = evaluator.tryEvaluates(null);
+		assertTrue(outcome.isValue());
+		assertNull(outcome.getValue());
+
+		evaluator.setValue(123);
+		outcome = evaluator.tryEvaluates(null);
+		assertTrue(outcome.isValue());
+		assertEquals(123, outcome.getValue());
+
+		evaluator.setEvaluationImpossible(true);
+		outcome = evaluator.tryEvaluates(null);
+		assertTrue(outcome.isFailed());
+		assertNull(outcome.getValue());
+		assertNotNull(outcome.getReason());
+		assertSame(outcome, evaluator.tryEvaluates(null));
+	}
+
+	@Test
+	public void testListeners() {
+		ManualEvaluator<Object, Object> evaluator = new ManualEvaluator<Object, Object>(
+				null);
+		final List<Evaluator<?, ?>> changes = new ArrayList<Evaluator<?, ?>>();
+		ObservableEvaluator.Listener listener = new ObservableEvaluator.Listener() {
+
+			@Override
+			public void evaluatorChanged(Evaluator<?, ?> evaluator) {
+				changes.add(evaluator);
+			}
+		};
+		evaluator.addListener(listener);
+		assertTrue(evaluator.getDependencies().isEmpty());
+
+		evaluator.setValue(123);
+		assertEquals(1, changes.size());
+		assertSame(evaluator, changes.get(0));
+
+		evaluator.setValue(123);
+		assertEquals(1, changes.size());
+
+		evaluator.setEvaluationImpossible(true);
+		assertEquals(2, changes.size());
+		evaluator.setEvaluationImpossible(true);
+		assertEquals(2, changes.size());
+
+		evaluator.removeListener(listener);
+		evaluator.setValue(456);
+		assertEquals(2, changes.size());
+	}
+
 }
@@ -0,0 +1,155 @@
+package org.conceptmanager.evaluation.impl;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.conceptmanager.sensing.Sensor;
+import org.conceptmanager.sensing.impl.SensorHistory;
+import org.junit.Test;
+
+public class WindowEvaluatorTest {
+
+	private static class ManualSensor implements Sensor<Double> {
+		private Double value;
+
+		@Override
+		public Double sense() {
+			return value;
+		}
+	}
+
+	@Test
+	public void testSumMeanMinMax() {
+		ManualSensor sensor = new ManualSensor();
+		SensorHistory history = new SensorHistory(sensor, 3);
+		WindowEvaluator<String> sum = WindowEvaluator.sum("sum", history);
+		WindowEvaluator<String> mean = WindowEvaluator.mean("mean", history);
+		WindowEvaluator<String> min = WindowEvaluator.min("min", history);
+		WindowEvaluator<String> max = WindowEvaluator.max("max", history);
+		assertEquals("sum", sum.getAttribute());
+		assertNull(sum.evaluates(null));
+		assertNull(max.evaluates(null));
+
+		assertFalse(history.record());
+		double[] values = { 5, 1, 3, 4, 2, 8, 0 };
+		double[][] expected = { { 5, 5, 5, 5 }, { 6, 3, 1, 5 },
+				{ 9, 3, 1, 5 }, { 8, 8 / 3.0, 1, 4 }, { 9, 3, 2, 4 },
+				{ 14, 14 / 3.0, 2, 8 }, { 10, 10 / 3.0, 0, 8 } };
+		for (int i = 0; i < values.length; i++) {
+			sensor.value = values[i];
+			assertTrue(history.record());
+			assertEquals(expected[i][0], sum.evaluates(null), 1e-9);
+			assertEquals(expected[i][1], mean.evaluates(null), 1e-9);
+			assertEquals(expected[i][2], min.evaluates(null), 0);
+			assertEquals(expected[i][3], max.evaluates(null), 0);
+		}
+		assertArrayEquals(new double[] { 2, 8, 0 }, history.toArray(), 0);
+
+		// a late evaluator considers the current window
+		WindowEvaluator<String> late = WindowEvaluator.max("late", history);
+		assertEquals(8, late.evaluates(null), 0);
+		late.detach();
+		sensor.value = 100.0;
+		history.record();
+		assertEquals(8, late.evaluates(null), 0);
+		assertEquals(100, max.evaluates(null), 0);
+	}
+
+	@Test
+	public void testAge() throws InterruptedException {
+		SensorHistory history = new SensorHistory(new ManualSensor(), 10, 1,
+				java.util.concurrent.TimeUnit.SECONDS);
+		WindowEvaluator<String> sum = WindowEvaluator.sum("sum", history);
+		long now = System.nanoTime();
+		history.add(1, now - 5000000000L);
+		history.add(2, now - 500000000L);
+		history.add(3, now);
+		assertEquals(2, history.size());
+		assertEquals(5, sum.evaluates(null), 0);
+		history.expire(now + 600000000L);
+		assertEquals(1, history.size());
+		assertEquals(3, sum.evaluates(null), 0);
+		assertEquals(now, history.getTime(0));
+	}
+
+	@Test
+	public void testPercentile() {
+		SensorHistory history = new SensorHistory(new ManualSensor(), 1000);
+		WindowEvaluator<String> median = WindowEvaluator.percentile("p50",
+				history, 0.5, 0.01);
+		WindowEvaluator<String> p90 = WindowEvaluator.percentile("p90",
+				history, 0.9, 0.01);
+		Random random = new Random(0);
+		for (int i = 0; i < 5000; i++) {
+			double value = random.nextGaussian() * 100;
+			history.add(value, 0);
+		}
+		double[] window = history.toArray();
+		Arrays.sort(window);
+		double exactMedian = window[(int) (0.5 * (window.length - 1))];
+		double exactP90 = window[(int) (0.9 * (window.length - 1))];
+		assertEquals(exactMedian, median.evaluates(null),
+				Math.abs(exactMedian) * 0.01 + 1e-9);
+		assertEquals(exactP90, p90.evaluates(null), Math.abs(exactP90) * 0.01);
+
+		SensorHistory zeros = new SensorHistory(new ManualSensor(), 3);
+		WindowEvaluator<String> zeroMedian = WindowEvaluator.percentile("p50",
+				zeros, 0.5, 0.01);
+		zeros.add(-1, 0);
+		zeros.add(0, 0);
+		zeros.add(1, 0);
+		assertEquals(0, zeroMedian.evaluates(null), 0);
+	}
+
+	@Test
+	public void testPercentileOfNonFiniteValues() {
+		SensorHistory history = new SensorHistory(new ManualSensor(), 5);
+		WindowEvaluator<String> min = WindowEvaluator.percentile("p0",
+				history, 0, 0.01);
+		WindowEvaluator<String> median = WindowEvaluator.percentile("p50",
+				history, 0.5, 0.01);
+		WindowEvaluator<String> p75 = WindowEvaluator.percentile("p75",
+				history, 0.75, 0.01);
+		WindowEvaluator<String> max = WindowEvaluator.percentile("p100",
+				history, 1, 0.01);
+		history.add(Double.NEGATIVE_INFINITY, 0);
+		history.add(1, 0);
+		history.add(2, 0);
+		history.add(Double.POSITIVE_INFINITY, 0);
+		history.add(Double.NaN, 0);
+		assertTrue(min.evaluates(null) < -1e300);
+		assertEquals(2, median.evaluates(null), 0.02);
+		assertTrue(p75.evaluates(null) > 1e300);
+		assertTrue(Double.isNaN(max.evaluates(null)));
+
+		for (int i = 0; i < 5; i++) {
+			history.add(10, 0);
+		}
+		assertEquals(10, min.evaluates(null), 0.1);
+		assertEquals(10, max.evaluates(null), 0.1);
+	}
+
+	@Test
+	public void testSumOfNonFiniteValues() {
+		SensorHistory history = new SensorHistory(new ManualSensor(), 3);
+		WindowEvaluator<String> sum = WindowEvaluator.sum("sum", history);
+		WindowEvaluator<String> mean = WindowEvaluator.mean("mean", history);
+		history.add(1, 0);
+		history.add(Double.POSITIVE_INFINITY, 0);
+		history.add(2, 0);
+		assertEquals(Double.POSITIVE_INFINITY, sum.evaluates(null), 0);
+		assertEquals(Double.POSITIVE_INFINITY, mean.evaluates(null), 0);
+		history.add(Double.NEGATIVE_INFINITY, 0);
+		assertTrue(Double.isNaN(sum.evaluates(null)));
+		history.add(Double.NaN, 0);
+		assertTrue(Double.isNaN(mean.evaluates(null)));
+
+		history.add(3, 0);
+		history.add(4, 0);
+		history.add(5, 0);
+		assertEquals(12, sum.evaluates(null), 0);
+		assertEquals(4, mean.evaluates(null), 0);
+	}
+}
@@ -0,0 +1,97 @@
+package org.conceptmanager.modeling;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.conceptmanager.evaluation.impl.ManualEvaluator;
+import org.conceptmanager.modeling.impl.DynamicModel;
+import org.conceptmanager.modeling.impl.StaticModel;
+import org.junit.Test;
+
+public class ModelDiffTest {
+
+	private static StaticModel createModel(Object... attributesAndValues) {
+		Map<Object, Object> values = new HashMap<Object, Object>();
+		for (int i = 0; i < attributesAndValues.length; i += 2) {
+			values.put(attributesAndValues[i], attributesAndValues[i + 1]);
+		}
+		return new StaticModel(values);
+	}
+
+	@Test
+	public void testBetween() {
+		StaticModel from = createModel("a", 1, "b", 2, "c", null, "d", 4);
+		StaticModel to = createModel("a", 1, "b", 3, "c", 5, "e", null);
+		ModelDiff diff = ModelDiff.between(from, to);
+		Map<Object, Object> changed = new HashMap<Object, Object>();
+		changed.put("b", 3);
+		changed.put("c", 5);
+		assertEquals(changed, diff.getChanged());
+		assertEquals(new HashSet<Object>(Arrays.asList("e")), diff
+				.getAdded().keySet());
+		assertEquals(new HashSet<Object>(Arrays.asList("d")),
+				diff.getRemoved());
+		assertEquals(4, diff.size());
+
+		assertTrue(ModelDiff.between(from, from).isEmpty());
+		assertEquals(4, ModelDiff.between(null, from).getAdded().size());
+	}
+
+	@Test
+	public void testFailedAttributes() {
+		ManualEvaluator<String, Object> evaluator = new ManualEvaluator<String, Object>(
+				"a");
+		evaluator.setEvaluationImpossible(true);
+		DynamicModel failing = new DynamicModel(null);
+		failing.addEvaluator(evaluator);
+		StaticModel model = createModel("a", 1);
+		for (Model[] pair : new Model[][] { { model, failing },
+				{ failing, model }, { null, failing } }) {
+			try {
+				ModelDiff.between(pair[0], pair[1]);
+				fail("No exception thrown");
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void testApply() {
+		StaticModel from = createModel("a", 1, "b", 2, "d", 4);
+		StaticModel to = createModel("a", 1, "b", 3, "e", 5);
+		ModelDiff diff = ModelDiff.between(from, to);
+
+		Model result = diff.applyTo(from);
+		assertEquals(ModelDiff.between(to, result), ModelDiff.between(to, to));
+		assertTrue(ModelDiff.between(to, result).isEmpty());
+
+		Map<Object, Object> cache = new HashMap<Object, Object>();
+		cache.put("a", 1);
+		cache.put("b", 2);
+		cache.put("d", 4);
+		diff.applyTo(cache);
+		Map<Object, Object> expected = new HashMap<Object, Object>();
+		expected.put("a", 1);
+		expected.put("b", 3);
+		expected.put("e", 5);
+		assertEquals(expected, cache);
+	}
+
+	@Test
+	public void testThen() {
+		StaticModel first = createModel("a", 1, "b", 2, "c", 3);
+		StaticModel second = createModel("a", 10, "c", 3, "d", 4);
+		StaticModel third = createModel("a", 10, "b", 20, "c", 30);
+		ModelDiff composed = ModelDiff.between(first, second).then(
+				ModelDiff.between(second, third));
+		assertTrue(ModelDiff.between(third, composed.applyTo(first))
+				.isEmpty());
+		assertTrue(composed.getRemoved().isEmpty());
+		assertTrue(composed.getAdded().isEmpty());
+	}
+}
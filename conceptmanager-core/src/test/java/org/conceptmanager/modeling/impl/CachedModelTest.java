@@ -0,0 +1,102 @@
+package org.conceptmanager.modeling.impl;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.conceptmanager.evaluation.impl.ManualEvaluator;
+import org.conceptmanager.modeling.Model;
+import org.conceptmanager.modeling.ObservableModel;
+import org.junit.Test;
+
+public class CachedModelTest {
+
+	@Test
+	public void testRefresh() {
+		ManualEvaluator<String, Object> evaluatorA = new ManualEvaluator<String, Object>(
+				"A");
+		ManualEvaluator<String, Object> evaluatorB = new ManualEvaluator<String, Object>(
+				"B");
+		evaluatorA.setValue(1);
+		evaluatorB.setValue(2);
+		DynamicModel model = new DynamicModel(null);
+		model.addEvaluator(evaluatorA);
+		model.addEvaluator(evaluatorB);
+		CachedModel cache = new CachedModel(model);
+		model.addListener(cache);
+		assertSame(model, cache.getSource());
+		assertEquals(1, (Object) cache.getValueFor("A"));
+		assertEquals(2, (Object) cache.getValueFor("B"));
+
+		evaluatorA.setValue(3);
+		assertEquals(3, (Object) cache.getValueFor("A"));
+		assertEquals(1, cache.getRefreshCount());
+
+		model.removeEvaluator(evaluatorB);
+		assertTrue(cache.tryGetValueFor("B").isAbsent());
+		assertEquals(Arrays.asList("A"), new ArrayList<Object>(
+				cache.getAttributes()));
+
+		model.setEvaluatorFor("C", evaluatorA);
+		assertEquals(3, (Object) cache.getValueFor("C"));
+
+		evaluatorA.setEvaluationImpossible(true);
+		assertFalse(cache.tryGetValueFor("A").isAbsent());
+		assertNull(cache.tryGetValueFor("A").getValue());
+		assertNull(cache.getValueFor("C"));
+	}
+
+	@Test
+	public void testFailures() {
+		ManualEvaluator<String, Object> evaluator = new ManualEvaluator<String, Object>(
+				"A");
+		evaluator.setEvaluationImpossible(true);
+		DynamicModel model = new DynamicModel(null);
+		model.addEvaluator(evaluator);
+
+		// failed when cached
+		CachedModel cache = new CachedModel(model);
+		model.addListener(cache);
+		assertTrue(cache.tryGetValueFor("A").isFailed());
+		assertNull(cache.getValueFor("A"));
+
+		evaluator.setEvaluationImpossible(false);
+		evaluator.setValue(1);
+		assertTrue(cache.tryGetValueFor("A").isValue());
+		assertEquals(1, (Object) cache.getValueFor("A"));
+
+		// failed when refreshed
+		evaluator.setEvaluationImpossible(true);
+		assertTrue(cache.tryGetValueFor("A").isFailed());
+		assertNull(cache.getValueFor("A"));
+	}
+
+	@Test
+	public void testChainedListeners() {
+		ManualEvaluator<String, Object> evaluator = new ManualEvaluator<String, Object>(
+				"A");
+		DynamicModel model = new DynamicModel(null);
+		model.addEvaluator(evaluator);
+		CachedModel cache = new CachedModel(model);
+		model.addListener(cache);
+		final List<Collection<?>> changes = new ArrayList<Collection<?>>();
+		cache.addListener(new ObservableModel.Listener() {
+
+			@Override
+			public void modelChanged(Model model, Collection<?> attributes) {
+				changes.add(new ArrayList<Object>(attributes));
+			}
+		});
+
+		evaluator.setValue(1);
+		assertEquals(Arrays.asList(Arrays.asList("A")), changes);
+
+		// changes of other models are ignored
+		cache.modelChanged(new DynamicModel(null), Arrays.asList("A"));
+		assertEquals(1, changes.size());
+	}
+
+}
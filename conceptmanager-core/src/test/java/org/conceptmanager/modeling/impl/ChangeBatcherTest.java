@@ -0,0 +1,98 @@
+package org.conceptmanager.modeling.impl;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+
+import org.conceptmanager.modeling.Model;
+import org.conceptmanager.modeling.ObservableModel;
+import org.junit.Test;
+
+public class ChangeBatcherTest {
+
+	@Test
+	public void testCoalescing() {
+		ChangeBatcher batcher = new ChangeBatcher();
+		final List<Model> models = new ArrayList<Model>();
+		final List<Collection<?>> changes = new ArrayList<Collection<?>>();
+		batcher.addListener(new ObservableModel.Listener() {
+
+			@Override
+			public void modelChanged(Model model, Collection<?> attributes) {
+				models.add(model);
+				changes.add(new HashSet<Object>(attributes));
+			}
+		});
+		Model model1 = new DynamicModel(null);
+		Model model2 = new DynamicModel(null);
+
+		batcher.modelChanged(model1, Arrays.asList("A"));
+		batcher.modelChanged(model2, Arrays.asList("C"));
+		batcher.modelChanged(model1, Arrays.asList("B", "A"));
+		assertTrue(changes.isEmpty());
+		assertEquals(2, batcher.getPendingCount());
+
+		assertEquals(2, batcher.flush());
+		assertEquals(Arrays.asList(model1, model2), models);
+		assertEquals(Arrays.asList(new HashSet<Object>(Arrays.asList("A", "B")),
+				new HashSet<Object>(Arrays.asList("C"))), changes);
+		assertEquals(0, batcher.getPendingCount());
+		assertEquals(3, batcher.getReceivedCount());
+		assertEquals(2, batcher.getDeliveredCount());
+
+		assertEquals(0, batcher.flush());
+		assertEquals(2, changes.size());
+	}
+
+	@Test
+	public void testModelsIdentifiedByIdentity() {
+		ChangeBatcher batcher = new ChangeBatcher();
+		final List<Model> models = new ArrayList<Model>();
+		batcher.addListener(new ObservableModel.Listener() {
+
+			@Override
+			public void modelChanged(Model model, Collection<?> attributes) {
+				models.add(model);
+			}
+		});
+		final int[] hash = { 0 };
+		Model model1 = new DynamicModel(null) {
+			@Override
+			public boolean equals(Object object) {
+				return object instanceof DynamicModel;
+			}
+
+			@Override
+			public int hashCode() {
+				return hash[0];
+			}
+		};
+		Model model2 = new DynamicModel(null) {
+			@Override
+			public boolean equals(Object object) {
+				return object instanceof DynamicModel;
+			}
+
+			@Override
+			public int hashCode() {
+				return 0;
+			}
+		};
+		assertEquals(model1, model2);
+
+		batcher.modelChanged(model1, Arrays.asList("A"));
+		batcher.modelChanged(model2, Arrays.asList("B"));
+		hash[0] = 123;
+		batcher.modelChanged(model1, Arrays.asList("C"));
+		assertEquals(2, batcher.getPendingCount());
+
+		assertEquals(2, batcher.flush());
+		assertEquals(2, models.size());
+		assertSame(model1, models.get(0));
+		assertSame(model2, models.get(1));
+	}
+}
@@ -0,0 +1,94 @@
+package org.conceptmanager.modeling.impl;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.conceptmanager.evaluation.impl.ManualEvaluator;
+import org.conceptmanager.modeling.Model.UnknownAttributeException;
+import org.junit.Test;
+
+public class CompactModelTest {
+
+	@Test
+	public void testInstanceOnTheFly() {
+		Map<String, Object> attributes = new HashMap<String, Object>();
+		attributes.put("null", null);
+		attributes.put("boolean", true);
+		attributes.put("int", 123);
+		attributes.put("string", "Value");
+		attributes.put("object", new Object());
+
+		CompactModel model = new CompactModel(attributes);
+		assertTrue(model.getAttributes().containsAll(attributes.keySet()));
+		assertTrue(attributes.keySet().containsAll(model.getAttributes()));
+		for (Object attribute : model.getAttributes()) {
+			assertEquals(attributes.get(attribute),
+					model.getValueFor(attribute));
+		}
+	}
+
+	@Test
+	public void testInstanceSnapshot() {
+		ManualEvaluator<Object, Object> evaluatorA = new ManualEvaluator<Object, Object>(
+				"A");
+		ManualEvaluator<Object, Object> evaluatorB = new ManualEvaluator<Object, Object>(
+				"B");
+		evaluatorA.setValue(123);
+		evaluatorB.setValue("value");
+		DynamicModel model = new DynamicModel(null);
+		model.addEvaluator(evaluatorA);
+		model.addEvaluator(evaluatorB);
+
+		CompactModel snapshot = new CompactModel(model);
+		assertTrue(snapshot.getAttributes().containsAll(model.getAttributes()));
+		assertTrue(model.getAttributes().containsAll(snapshot.getAttributes()));
+
+		evaluatorA.setValue(456);
+		assertEquals((Object) 456, model.getValueFor("A"));
+		assertEquals((Object) 123, snapshot.getValueFor("A"));
+		assertEquals("value", snapshot.getValueFor("B"));
+	}
+
+	@Test
+	public void testSharedSchema() {
+		Map<String, Object> attributes1 = new HashMap<String, Object>();
+		attributes1.put("A", 1);
+		attributes1.put("B", 2);
+		Map<String, Object> attributes2 = new HashMap<String, Object>();
+		attributes2.put("B", 3);
+		attributes2.put("A", 4);
+
+		CompactModel model1 = new CompactModel(attributes1);
+		CompactModel model2 = new CompactModel(attributes2);
+		assertSame(model1.getSchema(), model2.getSchema());
+		assertEquals((Object) 1, model1.getValueFor("A"));
+		assertEquals((Object) 4, model2.getValueFor("A"));
+
+		AttributeSchema schema = model1.getSchema();
+		assertSame(schema, AttributeSchema.intern(Arrays.asList("B", "A")));
+		assertNotSame(schema, new AttributeSchema(Arrays.asList("A", "B")));
+		assertEquals((Object) 2, model1.getValueAt(schema.getSlot("B")));
+	}
+
+	@Test
+	public void testUnknownAttribute() {
+		AttributeSchema schema = new AttributeSchema(Arrays.asList("A", "B"));
+		CompactModel model = new CompactModel(schema, 1, 2);
+		assertEquals(-1, schema.getSlot("C"));
+		try {
+			model.getValueFor("C");
+			fail("Exception not thrown.");
+		} catch (UnknownAttributeException e) {
+		}
+
+		try {
+			new CompactModel(schema, 1);
+			fail("Exception not thrown.");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+}
@@ -0,0 +1,125 @@
+package org.conceptmanager.modeling.impl;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.conceptmanager.evaluation.Evaluator;
+import org.conceptmanager.evaluation.impl.ManualEvaluator;
+import org.conceptmanager.modeling.Model.UnknownAttributeException;
+import org.junit.Test;
+
+public class ConcurrentDynamicModelTest {
+
+	@Test
+	public void testEvaluators() {
+		ManualEvaluator<Object, Object> evaluatorA = new ManualEvaluator<Object, Object>(
+				"A");
+		ManualEvaluator<Object, Object> evaluatorB = new ManualEvaluator<Object, Object>(
+				"B");
+		evaluatorA.setValue(123);
+		evaluatorB.setValue("test");
+
+		ConcurrentDynamicModel model = new ConcurrentDynamicModel(null);
+		model.addEvaluator(evaluatorA);
+		model.setEvaluatorFor("B", evaluatorB);
+		model.setEvaluatorFor("B2", evaluatorB);
+		assertEquals(3, model.getAttributes().size());
+		assertSame(evaluatorA, model.getEvaluatorFor("A"));
+		assertEquals((Object) 123, model.getValueFor("A"));
+		assertEquals("test", model.getValueFor("B2"));
+
+		try {
+			model.addEvaluator(new ManualEvaluator<Object, Object>("A"));
+			fail("Exception not thrown.");
+		} catch (IllegalArgumentException e) {
+		}
+
+		model.removeEvaluator(evaluatorB);
+		assertEquals(1, model.getAttributes().size());
+		assertNull(model.getEvaluatorFor("B"));
+		assertNull(model.getEvaluatorFor("B2"));
+
+		model.removeEvaluatorFor("A");
+		assertEquals(0, model.getAttributes().size());
+		try {
+			model.getValueFor("A");
+			fail("Exception not thrown.");
+		} catch (UnknownAttributeException e) {
+		}
+	}
+
+	@Test
+	public void testInstanceWithEvaluators() {
+		ManualEvaluator<Object, Object> evaluatorA = new ManualEvaluator<Object, Object>(
+				"A");
+		ManualEvaluator<Object, Object> evaluatorB = new ManualEvaluator<Object, Object>(
+				"B");
+		@SuppressWarnings("unchecked")
+		Collection<Evaluator<Object, Object>> evaluators = Arrays.asList(
+				evaluatorA, evaluatorB);
+		ConcurrentDynamicModel model = new ConcurrentDynamicModel(null,
+				evaluators);
+		assertEquals(2, model.getAttributes().size());
+		assertSame(evaluatorA, model.getEvaluatorFor("A"));
+		assertSame(evaluatorB, model.getEvaluatorFor("B"));
+	}
+
+	@Test
+	public void testSnapshotAttributes() {
+		ConcurrentDynamicModel model = new ConcurrentDynamicModel(null);
+		model.setEvaluatorFor("A", new ManualEvaluator<Object, Object>("A"));
+		Collection<?> attributes = model.getAttributes();
+		model.setEvaluatorFor("B", new ManualEvaluator<Object, Object>("B"));
+		assertEquals(1, attributes.size());
+		assertEquals(2, model.getAttributes().size());
+	}
+
+	@Test
+	public void testConcurrentReadsAndWrites() throws InterruptedException {
+		final ConcurrentDynamicModel model = new ConcurrentDynamicModel(null);
+		final ManualEvaluator<Object, Object> evaluator = new ManualEvaluator<Object, Object>(
+				null);
+		evaluator.setValue(1);
+		model.setEvaluatorFor(-1, evaluator);
+
+		final AtomicBoolean running = new AtomicBoolean(true);
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		Thread reader = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					while (running.get()) {
+						for (Object attribute : model.getAttributes()) {
+							model.getEvaluatorFor(attribute);
+						}
+						assertEquals((Object) 1, model.getValueFor(-1));
+					}
+				} catch (Throwable e) {
+					failure.set(e);
+				}
+			}
+		});
+		reader.start();
+		for (int i = 0; i < 2000; i++) {
+			model.setEvaluatorFor(i, evaluator);
+			if (i % 2 == 0) {
+				model.removeEvaluatorFor(i);
+			} else {
+				// keep it
+			}
+		}
+		running.set(false);
+		reader.join();
+		assertNull(failure.get());
+		assertEquals(1001, model.getAttributes().size());
+
+		model.removeEvaluator(evaluator);
+		assertEquals(0, model.getAttributes().size());
+	}
+
+}
@@ -0,0 +1,217 @@
+package org.conceptmanager.modeling.impl;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.conceptmanager.evaluation.Evaluator;
+import org.conceptmanager.evaluation.impl.ManualEvaluator;
+import org.conceptmanager.modeling.impl.ConcurrentSnapshotter.CannotSnapshotException;
+import org.conceptmanager.modeling.impl.ConcurrentSnapshotter.FailurePolicy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConcurrentSnapshotterTest {
+
+	private ExecutorService executor;
+
+	@Before
+	public void setUp() {
+		executor = Executors.newFixedThreadPool(4);
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testSnapshotEqualsSequentialSnapshot() {
+		ManualEvaluator<Object, Object> evaluatorA = new ManualEvaluator<Object, Object>(
+				"A");
+		ManualEvaluator<Object, Object> evaluatorB = new ManualEvaluator<Object, Object>(
+				"B");
+		evaluatorA.setValue(123);
+		evaluatorB.setValue("test");
+		DynamicModel model = new DynamicModel(null);
+		model.setEvaluatorFor("A", evaluatorA);
+		model.setEvaluatorFor("B", evaluatorB);
+
+		ConcurrentSnapshotter snapshotter = new ConcurrentSnapshotter(
+				executor, 1, TimeUnit.SECONDS, FailurePolicy.ABORT);
+		StaticModel snapshot = snapshotter.snapshot(model);
+		StaticModel reference = new StaticModel(model);
+		assertTrue(snapshot.getAttributes().containsAll(
+				reference.getAttributes()));
+		assertTrue(reference.getAttributes().containsAll(
+				snapshot.getAttributes()));
+		for (Object attribute : reference.getAttributes()) {
+			assertEquals((Object) reference.getValueFor(attribute),
+					snapshot.getValueFor(attribute));
+		}
+
+		evaluatorA.setValue(321);
+		assertEquals((Object) 123, snapshot.getValueFor("A"));
+	}
+
+	@Test
+	public void testBatchSnapshots() {
+		ManualEvaluator<Object, Object> evaluator = new ManualEvaluator<Object, Object>(
+				"A");
+		DynamicModel model1 = new DynamicModel(null);
+		model1.setEvaluatorFor("A", evaluator);
+		DynamicModel model2 = new DynamicModel(null);
+		model2.setEvaluatorFor("B", evaluator);
+
+		evaluator.setValue(1);
+		ConcurrentSnapshotter snapshotter = new ConcurrentSnapshotter(
+				executor, 1, TimeUnit.SECONDS, FailurePolicy.ABORT);
+		List<StaticModel> snapshots = snapshotter.snapshots(Arrays.asList(
+				model1, model2));
+		assertEquals(2, snapshots.size());
+		assertEquals((Object) 1, snapshots.get(0).getValueFor("A"));
+		assertFalse(snapshots.get(0).getAttributes().contains("B"));
+		assertEquals((Object) 1, snapshots.get(1).getValueFor("B"));
+		assertFalse(snapshots.get(1).getAttributes().contains("A"));
+	}
+
+	@Test
+	public void testTimeoutCountedFromStart() {
+		DynamicModel model = new DynamicModel(null);
+		model.setEvaluatorFor("sleeping", new Evaluator<Object, Object>() {
+
+			@Override
+			public Object getAttribute() {
+				return "sleeping";
+			}
+
+			@Override
+			public Object evaluates(Object object)
+					throws CannotEvaluateException {
+				try {
+					Thread.sleep(50);
+				} catch (InterruptedException e) {
+					throw new CannotEvaluateException(getAttribute(), object, e);
+				}
+				return "done";
+			}
+		});
+
+		// the last models wait longer than the timeout for a thread
+		ExecutorService single = Executors.newSingleThreadExecutor();
+		try {
+			List<StaticModel> snapshots = new ConcurrentSnapshotter(single,
+					1, TimeUnit.SECONDS, FailurePolicy.ABORT)
+					.snapshots(Collections.nCopies(30, model));
+			for (StaticModel snapshot : snapshots) {
+				assertEquals("done", snapshot.getValueFor("sleeping"));
+			}
+		} finally {
+			single.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testFailurePolicies() {
+		DynamicModel model = new DynamicModel(null);
+		model.setEvaluatorFor("A", new ManualEvaluator<Object, Object>("A"));
+		model.setEvaluatorFor("slow", new Evaluator<Object, Object>() {
+
+			@Override
+			public Object getAttribute() {
+				return "slow";
+			}
+
+			@Override
+			public Object evaluates(Object object)
+					throws CannotEvaluateException {
+				try {
+					Thread.sleep(10000);
+				} catch (InterruptedException e) {
+					throw new CannotEvaluateException(getAttribute(), object, e);
+				}
+				return "too late";
+			}
+		});
+
+		{
+			StaticModel snapshot = new ConcurrentSnapshotter(executor, 50,
+					TimeUnit.MILLISECONDS, FailurePolicy.UNKNOWN_VALUE)
+					.snapshot(model);
+			assertTrue(snapshot.getAttributes().contains("A"));
+			assertTrue(snapshot.getAttributes().contains("slow"));
+			assertNull(snapshot.getValueFor("slow"));
+		}
+
+		{
+			StaticModel snapshot = new ConcurrentSnapshotter(executor, 50,
+					TimeUnit.MILLISECONDS, FailurePolicy.IGNORE_ATTRIBUTE)
+					.snapshot(model);
+			assertTrue(snapshot.getAttributes().contains("A"));
+			assertFalse(snapshot.getAttributes().contains("slow"));
+		}
+
+		try {
+			new ConcurrentSnapshotter(executor, 50, TimeUnit.MILLISECONDS,
+					FailurePolicy.ABORT).snapshot(model);
+			fail("Exception not thrown.");
+		} catch (CannotSnapshotException e) {
+		}
+	}
+
+	@Test
+	public void testDroppedEvaluationsFail() throws Exception {
+		ManualEvaluator<Object, Object> evaluator = new ManualEvaluator<Object, Object>(
+				"A");
+		evaluator.setValue(1);
+		final DynamicModel model = new DynamicModel(null);
+		model.setEvaluatorFor("A", evaluator);
+
+		// the evaluation is queued behind a blocking task, then dropped
+		ExecutorService single = Executors.newSingleThreadExecutor();
+		final CountDownLatch blocking = new CountDownLatch(1);
+		single.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				blocking.countDown();
+				try {
+					Thread.sleep(60000);
+				} catch (InterruptedException e) {
+					// stopped by the shutdown
+				}
+			}
+		});
+		assertTrue(blocking.await(5, TimeUnit.SECONDS));
+		final ConcurrentSnapshotter snapshotter = new ConcurrentSnapshotter(
+				single, 1, TimeUnit.MINUTES, FailurePolicy.IGNORE_ATTRIBUTE);
+		ExecutorService caller = Executors.newSingleThreadExecutor();
+		try {
+			Future<StaticModel> snapshot = caller
+					.submit(new Callable<StaticModel>() {
+
+						@Override
+						public StaticModel call() {
+							return snapshotter.snapshot(model);
+						}
+					});
+			Thread.sleep(100);
+			single.shutdownNow();
+			StaticModel result = snapshot.get(5, TimeUnit.SECONDS);
+			assertFalse(result.getAttributes().contains("A"));
+		} finally {
+			single.shutdownNow();
+			caller.shutdownNow();
+		}
+	}
+
+}
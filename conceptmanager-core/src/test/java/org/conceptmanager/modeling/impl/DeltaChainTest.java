@@ -0,0 +1,65 @@
+package org.conceptmanager.modeling.impl;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.conceptmanager.modeling.ModelDiff;
+import org.junit.Test;
+
+public class DeltaChainTest {
+
+	private static StaticModel createSnapshot(int index) {
+		Map<Object, Object> values = new HashMap<Object, Object>();
+		values.put("id", "sensor");
+		values.put("tick", index);
+		values.put("level", index / 4);
+		if (index % 5 == 0) {
+			values.put("alarm", true);
+		} else {
+			// no alarm
+		}
+		return new StaticModel(values);
+	}
+
+	@Test
+	public void testRebuild() {
+		DeltaChain chain = new DeltaChain(8);
+		for (int i = 0; i < 50; i++) {
+			ModelDiff delta = chain.append(createSnapshot(i));
+			if (i > 0) {
+				assertFalse(delta.getChanged().containsKey("id"));
+			} else {
+				assertEquals(4, delta.getAdded().size());
+			}
+		}
+		assertEquals(50, chain.size());
+		assertEquals(7, chain.getKeyframeCount());
+		for (int i = 0; i < 50; i++) {
+			assertTrue(ModelDiff.between(createSnapshot(i), chain.get(i))
+					.isEmpty());
+		}
+		try {
+			chain.get(50);
+			fail("Exception not thrown.");
+		} catch (IndexOutOfBoundsException e) {
+		}
+	}
+
+	@Test
+	public void testIncrementalCache() {
+		DeltaChain chain = new DeltaChain(4);
+		for (int i = 0; i < 20; i++) {
+			chain.append(createSnapshot(i));
+		}
+		Map<Object, Object> cache = new HashMap<Object, Object>();
+		chain.applyDeltas(-1, 6, cache);
+		assertTrue(ModelDiff.between(createSnapshot(6), new StaticModel(cache))
+				.isEmpty());
+		chain.applyDeltas(6, 15, cache);
+		assertTrue(ModelDiff.between(createSnapshot(15),
+				new StaticModel(cache)).isEmpty());
+		assertEquals(1, chain.getDelta(2).size());
+	}
+}
@@ -0,0 +1,279 @@
+package org.conceptmanager.modeling.impl;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.conceptmanager.evaluation.Evaluator;
+import org.conceptmanager.evaluation.impl.ManualEvaluator;
+import org.conceptmanager.modeling.Model;
+import org.conceptmanager.modeling.Model.UnknownAttributeException;
+import org.junit.Test;
+
+public class DependencyModelTest {
+
+	private final Map<String, AtomicInteger> calls = new ConcurrentHashMap<String, AtomicInteger>();
+
+	private int calls(String attribute) {
+		AtomicInteger counter = calls.get(attribute);
+		return counter == null ? 0 : counter.get();
+	}
+
+	private void count(String attribute) {
+		calls.putIfAbsent(attribute, new AtomicInteger());
+		calls.get(attribute).incrementAndGet();
+	}
+
+	/**
+	 * Sum of the dependencies.
+	 */
+	private Evaluator<String, Integer> sum(final String attribute,
+			final String... dependencies) {
+		return new Evaluator<String, Integer>() {
+
+			@Override
+			public String getAttribute() {
+				return attribute;
+			}
+
+			@Override
+			public Integer evaluates(Object object) {
+				count(attribute);
+				int sum = 0;
+				for (String dependency : dependencies) {
+					sum += ((Model) object).<String, Integer> getValueFor(dependency);
+				}
+				return sum;
+			}
+		};
+	}
+
+	private Evaluator<String, Integer> source(final String attribute,
+			final AtomicInteger value) {
+		return new Evaluator<String, Integer>() {
+
+			@Override
+			public String getAttribute() {
+				return attribute;
+			}
+
+			@Override
+			public Integer evaluates(Object object) {
+				count(attribute);
+				return value.get();
+			}
+		};
+	}
+
+	@Test
+	public void testSharedInputsAndIncrementalRecompute() {
+		AtomicInteger a = new AtomicInteger(1);
+		AtomicInteger b = new AtomicInteger(10);
+		DependencyModel model = new DependencyModel(null);
+		model.addEvaluator(source("A", a));
+		model.addEvaluator(source("B", b));
+		model.addDerivedEvaluator(sum("AA", "A", "A"), Arrays.asList("A"));
+		model.addDerivedEvaluator(sum("AB", "A", "B"), Arrays.asList("A", "B"));
+		model.addDerivedEvaluator(sum("TOTAL", "AA", "AB"),
+				Arrays.asList("AA", "AB"));
+		assertEquals(new HashSet<Object>(Arrays.asList("AA", "AB")),
+				model.getDependencies("TOTAL"));
+
+		assertEquals((Object) 13, model.getValueFor("TOTAL"));
+		assertEquals(1, calls("A"));
+		assertEquals(1, calls("B"));
+		assertEquals(1, calls("TOTAL"));
+		assertEquals((Object) 13, model.getValueFor("TOTAL"));
+		assertEquals(1, calls("TOTAL"));
+
+		b.set(20);
+		model.invalidate("B");
+		assertFalse(model.isInvalid("A"));
+		assertFalse(model.isInvalid("AA"));
+		assertTrue(model.isInvalid("AB"));
+		assertTrue(model.isInvalid("TOTAL"));
+		assertEquals((Object) 23, model.getValueFor("TOTAL"));
+		assertEquals(1, calls("A"));
+		assertEquals(1, calls("AA"));
+		assertEquals(2, calls("B"));
+		assertEquals(2, calls("AB"));
+		assertEquals(2, calls("TOTAL"));
+	}
+
+	@Test
+	public void testInvalidDeclarations() {
+		DependencyModel model = new DependencyModel(null);
+		model.addEvaluator(new ManualEvaluator<String, Object>("A"));
+		try {
+			model.addEvaluator(new ManualEvaluator<String, Object>("A"));
+			fail("No exception thrown");
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			model.addDerivedEvaluator(sum("C", "B"), Arrays.asList("B"));
+			fail("No exception thrown");
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			model.addDerivedEvaluator(sum("C"),
+					Collections.<String> emptyList());
+			fail("No exception thrown");
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			model.getValueFor("B");
+			fail("No exception thrown");
+		} catch (UnknownAttributeException e) {
+		}
+		assertTrue(model.tryGetValueFor("B").isAbsent());
+	}
+
+	@Test
+	public void testParallelRefresh() throws InterruptedException {
+		// two independent slow attributes evaluated concurrently
+		final CountDownLatch both = new CountDownLatch(2);
+		DependencyModel model = new DependencyModel(null);
+		for (final String attribute : Arrays.asList("X", "Y")) {
+			model.addEvaluator(new Evaluator<String, Integer>() {
+
+				@Override
+				public String getAttribute() {
+					return attribute;
+				}
+
+				@Override
+				public Integer evaluates(Object object)
+						throws CannotEvaluateException {
+					count(attribute);
+					both.countDown();
+					try {
+						if (!both.await(1, TimeUnit.SECONDS)) {
+							throw new CannotEvaluateException(attribute,
+									object, "not concurrent");
+						} else {
+							return 1;
+						}
+					} catch (InterruptedException e) {
+						throw new CannotEvaluateException(attribute, object, e);
+					}
+				}
+			});
+		}
+		model.addDerivedEvaluator(sum("XY", "X", "Y"), Arrays.asList("X", "Y"));
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			model.refresh(executor);
+		} finally {
+			executor.shutdown();
+		}
+		assertFalse(model.isInvalid("XY"));
+		assertEquals((Object) 2, model.getValueFor("XY"));
+		assertEquals(1, calls("X"));
+		assertEquals(1, calls("Y"));
+		assertEquals(1, calls("XY"));
+	}
+
+	/**
+	 * Copy of the dependency, waiting for the release once started.
+	 */
+	private Evaluator<String, Integer> blocking(final String attribute,
+			final String dependency, final CountDownLatch started,
+			final CountDownLatch release) {
+		return new Evaluator<String, Integer>() {
+
+			@Override
+			public String getAttribute() {
+				return attribute;
+			}
+
+			@Override
+			public Integer evaluates(Object object)
+					throws CannotEvaluateException {
+				count(attribute);
+				Integer value = ((Model) object).getValueFor(dependency);
+				started.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					throw new CannotEvaluateException(attribute, object, e);
+				}
+				return value;
+			}
+		};
+	}
+
+	private Thread request(final DependencyModel model, final String attribute,
+			final Map<Thread, Object> results) {
+		Thread thread = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				results.put(Thread.currentThread(),
+						model.getValueFor(attribute));
+			}
+		});
+		thread.start();
+		return thread;
+	}
+
+	@Test
+	public void testConcurrentRequestsEvaluateOnce()
+			throws InterruptedException {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		DependencyModel model = new DependencyModel(null);
+		model.addEvaluator(source("A", new AtomicInteger(1)));
+		model.addDerivedEvaluator(blocking("B", "A", started, release),
+				Arrays.asList("A"));
+
+		Map<Thread, Object> results = new ConcurrentHashMap<Thread, Object>();
+		Thread first = request(model, "B", results);
+		assertTrue(started.await(1, TimeUnit.SECONDS));
+		Thread second = request(model, "B", results);
+		while (second.getState() != Thread.State.BLOCKED) {
+			Thread.sleep(1);
+		}
+		release.countDown();
+		first.join();
+		second.join();
+		assertEquals(1, results.get(first));
+		assertEquals(1, results.get(second));
+		assertEquals(1, calls("B"));
+	}
+
+	@Test
+	public void testInvalidationDuringEvaluation() throws InterruptedException {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger a = new AtomicInteger(1);
+		DependencyModel model = new DependencyModel(null);
+		model.addEvaluator(source("A", a));
+		model.addDerivedEvaluator(blocking("B", "A", started, release),
+				Arrays.asList("A"));
+
+		Map<Thread, Object> results = new ConcurrentHashMap<Thread, Object>();
+		Thread thread = request(model, "B", results);
+		assertTrue(started.await(1, TimeUnit.SECONDS));
+		a.set(2);
+		model.invalidate("A");
+		release.countDown();
+		thread.join();
+
+		// the evaluation started before the invalidation is not kept
+		assertEquals(1, results.get(thread));
+		assertTrue(model.isInvalid("B"));
+		assertEquals((Object) 2, model.getValueFor("B"));
+		assertFalse(model.isInvalid("B"));
+		assertEquals(2, calls("B"));
+	}
+}
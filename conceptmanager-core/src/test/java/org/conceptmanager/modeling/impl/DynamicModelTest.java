@@ -2,13 +2,28 @@ package org.conceptmanager.modeling.impl;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
+import org.conceptmanager.evaluation.DoubleResultColumn;
 import org.conceptmanager.evaluation.Evaluator;
+import org.conceptmanager.evaluation.LongResultColumn;
+import org.conceptmanager.evaluation.Outcome;
+import org.conceptmanager.evaluation.ResultColumn;
 import org.conceptmanager.evaluation.impl.ManualEvaluator;
+import org.conceptmanager.modeling.Model;
+import org.conceptmanager.modeling.Model.UnknownAttributeException;
+import org.conceptmanager.modeling.ObservableModel;
 import org.junit.Test;
 
 public class DynamicModelTest {
@@ -65,9 +80,9 @@ public class DynamicModelTest {
 		evaluatorA.setValue(123);
 		evaluatorB.setValue(321);
 		evaluatorC.setValue(0);
-		assertEquals(123, model.getValueFor("A"));
-		assertEquals(321, model.getValueFor("B"));
-		assertEquals(0, model.getValueFor("C"));
+		assertEquals((Object) 123, model.getValueFor("A"));
+		assertEquals((Object) 321, model.getValueFor("B"));
+		assertEquals((Object) 0, model.getValueFor("C"));
 
 		evaluatorA.setValue("test");
 		evaluatorB.setValue(null);
@@ -78,6 +93,22 @@ public class DynamicModelTest {
 		assertEquals(value, model.getValueFor("C"));
 	}
 
+	@Test
+	public void testOutcomes() {
+		ManualEvaluator<Object, Object> evaluator = new ManualEvaluator<Object, Object>(
+				null);
+		DynamicModel model = new DynamicModel(null);
+		model.setEvaluatorFor("A", evaluator);
+
+		evaluator.setValue(123);
+		assertEquals(123, model.tryGetValueFor("A").getValue());
+		assertTrue(model.tryGetValueFor("B").isAbsent());
+
+		evaluator.setEvaluationImpossible(true);
+		assertTrue(model.tryGetValueFor("A").isFailed());
+		assertNull(model.getValueFor("A"));
+	}
+
 	@Test
 	public void testObject() {
 		Object object = new Object();
@@ -263,6 +294,290 @@ public class DynamicModelTest {
 				model.getEvaluatorFor(evaluatorC.getAttribute()));
 	}
 
+	@Test
+	public void testValuesFor() {
+		ManualEvaluator<Object, Object> evaluatorA = new ManualEvaluator<Object, Object>(
+				null);
+		ManualEvaluator<Object, Object> evaluatorB = new ManualEvaluator<Object, Object>(
+				null);
+		final CountDownLatch release = new CountDownLatch(1);
+		Evaluator<Object, Object> evaluatorC = new Evaluator<Object, Object>() {
+
+			@Override
+			public Object getAttribute() {
+				return null;
+			}
+
+			@Override
+			public Object evaluates(Object object)
+					throws CannotEvaluateException {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					throw new CannotEvaluateException(getAttribute(), object, e);
+				}
+				return "late";
+			}
+		};
+
+		DynamicModel model = new DynamicModel(null);
+		model.setEvaluatorFor("A", evaluatorA);
+		model.setEvaluatorFor("B", evaluatorB);
+		model.setEvaluatorFor("C", evaluatorC);
+		evaluatorA.setValue(123);
+		evaluatorB.setEvaluationImpossible(true);
+
+		Map<String, Object> values = model.getValuesFor(Arrays.asList("A",
+				"B"));
+		assertEquals(2, values.size());
+		assertEquals(123, values.get("A"));
+		assertEquals(null, values.get("B"));
+
+		ExecutorService executor = Executors.newCachedThreadPool();
+		try {
+			values = model.getValuesFor(Arrays.asList("A", "B", "C"),
+					executor, 100, TimeUnit.MILLISECONDS);
+			assertEquals(3, values.size());
+			assertEquals(123, values.get("A"));
+			assertEquals(null, values.get("B"));
+			assertEquals(null, values.get("C"));
+
+			release.countDown();
+			values = model.getValuesFor(Arrays.asList("C"), executor, 5,
+					TimeUnit.SECONDS);
+			assertEquals("late", values.get("C"));
+		} finally {
+			release.countDown();
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testValuesForInterruptsLateEvaluations()
+			throws InterruptedException {
+		final CountDownLatch interrupted = new CountDownLatch(1);
+		Evaluator<Object, Object> slow = new Evaluator<Object, Object>() {
+
+			@Override
+			public Object getAttribute() {
+				return "slow";
+			}
+
+			@Override
+			public Object evaluates(Object object)
+					throws CannotEvaluateException {
+				try {
+					Thread.sleep(60000);
+				} catch (InterruptedException e) {
+					interrupted.countDown();
+				}
+				return "late";
+			}
+		};
+		DynamicModel model = new DynamicModel(null);
+		model.addEvaluator(slow);
+
+		ExecutorService executor = Executors.newCachedThreadPool();
+		try {
+			Map<String, Object> values = model.getValuesFor(
+					Arrays.asList("slow"), executor, 50,
+					TimeUnit.MILLISECONDS);
+			assertNull(values.get("slow"));
+			assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testValuesForPropagatesUnexpectedFailures() {
+		Evaluator<Object, Object> broken = new Evaluator<Object, Object>() {
+
+			@Override
+			public Object getAttribute() {
+				return "broken";
+			}
+
+			@Override
+			public Object evaluates(Object object)
+					throws CannotEvaluateException {
+				throw new IllegalStateException("bug");
+			}
+		};
+		ManualEvaluator<Object, Object> impossible = new ManualEvaluator<Object, Object>(
+				"impossible");
+		impossible.setEvaluationImpossible(true);
+		DynamicModel model = new DynamicModel(null);
+		model.addEvaluator(broken);
+		model.addEvaluator(impossible);
+
+		ExecutorService executor = Executors.newCachedThreadPool();
+		try {
+			Map<String, Object> values = model.getValuesFor(
+					Arrays.asList("impossible"), executor, 5, TimeUnit.SECONDS);
+			assertTrue(values.containsKey("impossible"));
+			assertNull(values.get("impossible"));
+			try {
+				model.getValuesFor(Arrays.asList("impossible", "broken"),
+						executor, 5, TimeUnit.SECONDS);
+				fail("Exception not thrown.");
+			} catch (CompletionException e) {
+				assertTrue(e.getCause() instanceof IllegalStateException);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testListeners() {
+		ManualEvaluator<String, Object> evaluatorA = new ManualEvaluator<String, Object>(
+				"A");
+		ManualEvaluator<String, Object> evaluatorB = new ManualEvaluator<String, Object>(
+				"B");
+		DynamicModel model = new DynamicModel(null);
+		model.addEvaluator(evaluatorA);
+		model.addEvaluator(evaluatorB);
+		final List<Collection<?>> changes = new ArrayList<Collection<?>>();
+		ObservableModel.Listener listener = new ObservableModel.Listener() {
+
+			@Override
+			public void modelChanged(Model model, Collection<?> attributes) {
+				changes.add(new HashSet<Object>(attributes));
+			}
+		};
+
+		evaluatorA.setValue(1);
+		model.addListener(listener);
+		assertTrue(changes.isEmpty());
+
+		evaluatorA.setValue(2);
+		assertEquals(Arrays.asList(new HashSet<Object>(Arrays.asList("A"))),
+				changes);
+
+		changes.clear();
+		model.setEvaluatorFor("C", evaluatorB);
+		evaluatorB.setValue(3);
+		assertEquals(Arrays.asList(new HashSet<Object>(Arrays.asList("C")),
+				new HashSet<Object>(Arrays.asList("B", "C"))), changes);
+
+		changes.clear();
+		model.removeEvaluator(evaluatorA);
+		evaluatorA.setValue(4);
+		assertEquals(Arrays.asList(new HashSet<Object>(Arrays.asList("A"))),
+				changes);
+
+		changes.clear();
+		model.removeListener(listener);
+		evaluatorB.setValue(5);
+		model.removeEvaluatorFor("B");
+		assertTrue(changes.isEmpty());
+	}
+
+	@Test
+	public void testObjectListeners() {
+		ManualEvaluator<String, Object> evaluator = new ManualEvaluator<String, Object>(
+				"A");
+		DynamicModel source = new DynamicModel(null);
+		source.addEvaluator(evaluator);
+		DynamicModel model = new DynamicModel(source);
+		model.setEvaluatorFor("B", generateFakeEvaluator());
+		final List<Collection<?>> changes = new ArrayList<Collection<?>>();
+		ObservableModel.Listener listener = new ObservableModel.Listener() {
+
+			@Override
+			public void modelChanged(Model model, Collection<?> attributes) {
+				changes.add(new HashSet<Object>(attributes));
+			}
+		};
+		model.addListener(listener);
+
+		// a plain evaluator may depend on any attribute of the object
+		evaluator.setValue(1);
+		assertEquals(Arrays.asList(new HashSet<Object>(Arrays.asList("B"))),
+				changes);
+
+		changes.clear();
+		model.removeListener(listener);
+		evaluator.setValue(2);
+		assertTrue(changes.isEmpty());
+	}
+
+	@Test
+	public void testColumns() {
+		final int[] batches = { 0 };
+		Evaluator<String, Object> length = new Evaluator<String, Object>() {
+
+			@Override
+			public String getAttribute() {
+				return "length";
+			}
+
+			@Override
+			public Object evaluates(Object object)
+					throws CannotEvaluateException {
+				if (object == null) {
+					throw new CannotEvaluateException(getAttribute(), object);
+				} else {
+					return object.toString().length();
+				}
+			}
+
+			@Override
+			public void evaluatesAll(List<?> objects,
+					ResultColumn<? super Object> column) {
+				batches[0]++;
+				Evaluator.super.evaluatesAll(objects, column);
+			}
+		};
+		List<DynamicModel> models = new ArrayList<DynamicModel>();
+		for (String object : Arrays.asList("a", "abc", null, "ab")) {
+			DynamicModel model = new DynamicModel(object);
+			model.addEvaluator(length);
+			models.add(model);
+		}
+
+		ResultColumn<Object> column = DynamicModel.getColumnFor(models,
+				"length");
+		assertEquals(1, batches[0]);
+		assertEquals(4, column.size());
+		assertEquals(1, column.getValue(0));
+		assertEquals(3, column.getValue(1));
+		assertTrue(column.isFailed(2));
+		assertEquals(2, column.getValue(3));
+
+		DoubleResultColumn doubles = DynamicModel.getDoubleColumnFor(models,
+				"length");
+		assertEquals(3.0, doubles.getDouble(1), 0);
+		assertTrue(doubles.isFailed(2));
+		LongResultColumn longs = DynamicModel.getLongColumnFor(models,
+				"length");
+		assertEquals(2L, longs.getLong(3));
+		assertFalse(longs.isFailed(0));
+		longs.set(0, Outcome.of(0x1p63));
+		assertTrue(longs.isFailed(0));
+		longs.set(0, Outcome.of(2.5));
+		assertTrue(longs.isFailed(0));
+		longs.set(0, Outcome.of(-0x1p63));
+		assertEquals(Long.MIN_VALUE, longs.getLong(0));
+
+		ManualEvaluator<String, Object> manual = new ManualEvaluator<String, Object>(
+				"length");
+		manual.setValue(10);
+		models.get(3).setEvaluatorFor("length", manual);
+		column = DynamicModel.getColumnFor(models, "length");
+		assertEquals(1, batches[0]);
+		assertEquals(3, column.getValue(1));
+		assertEquals(10, column.getValue(3));
+
+		models.add(new DynamicModel("none"));
+		try {
+			DynamicModel.getColumnFor(models, "length");
+			fail("Exception not thrown.");
+		} catch (UnknownAttributeException e) {
+		}
+	}
+
 	private final Random rand = new Random();
 	private final Collection<Object> generatedAttributes = new HashSet<Object>();
 
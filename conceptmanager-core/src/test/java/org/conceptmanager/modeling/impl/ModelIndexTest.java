@@ -0,0 +1,125 @@
+package org.conceptmanager.modeling.impl;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.conceptmanager.evaluation.impl.ManualEvaluator;
+import org.conceptmanager.modeling.Model;
+import org.conceptmanager.modeling.impl.ModelIndex.IndexType;
+import org.conceptmanager.util.IntBitmap;
+import org.junit.Test;
+
+public class ModelIndexTest {
+
+	private static final AttributeSchema SCHEMA = new AttributeSchema(
+			Arrays.asList("color", "size"));
+
+	@Test
+	public void testEquality() {
+		ModelIndex index = new ModelIndex();
+		index.createIndex("color", IndexType.HASH);
+		Model red1 = new CompactModel(SCHEMA, "red", 1);
+		Model red2 = new CompactModel(SCHEMA, "red", 2);
+		Model blue = new CompactModel(SCHEMA, "blue", 3);
+		int id1 = index.insert(red1);
+		int id2 = index.insert(red2);
+		int id3 = index.insert(blue);
+		assertEquals(3, index.size());
+		assertSame(blue, index.getModel(id3));
+
+		assertEquals(IntBitmap.of(id1, id2), index.selectEqual("color", "red"));
+		assertEquals(IntBitmap.of(id3), index.selectEqual("color", "blue"));
+		assertTrue(index.selectEqual("color", "green").isEmpty());
+		assertEquals(Arrays.asList(red1, red2),
+				index.getModels(index.selectEqual("color", "red")));
+
+		assertTrue(index.remove(red1));
+		assertFalse(index.remove(red1));
+		assertEquals(IntBitmap.of(id2), index.selectEqual("color", "red"));
+		assertEquals(2, index.size());
+	}
+
+	@Test
+	public void testRange() {
+		ModelIndex index = new ModelIndex();
+		for (int i = 0; i < 10; i++) {
+			index.insert(new CompactModel(SCHEMA, "red", i));
+		}
+		index.insert(new CompactModel(SCHEMA, "red", null));
+		index.createIndex("size", IndexType.SORTED);
+
+		List<Model> models = index.getModels(index.selectBetween("size", 3,
+				true, 6, false));
+		assertEquals(3, models.size());
+		for (Model model : models) {
+			int size = model.getValueFor("size");
+			assertTrue(size >= 3 && size < 6);
+		}
+		assertEquals(10, index.selectBetween("size", null, true, null, true)
+				.cardinality());
+		assertEquals(2, index.selectBetween("size", 8, true, null, true)
+				.cardinality());
+
+		ModelIndex hashIndex = new ModelIndex();
+		hashIndex.createIndex("size", IndexType.HASH);
+		for (int i = 0; i < 10; i++) {
+			hashIndex.insert(new CompactModel(SCHEMA, "red", i));
+		}
+		assertEquals(3, hashIndex.selectBetween("size", 3, true, 6, false)
+				.cardinality());
+	}
+
+	@Test
+	public void testConjunction() {
+		ModelIndex index = new ModelIndex();
+		index.createIndex("color", IndexType.HASH);
+		index.createIndex("size", IndexType.SORTED);
+		String[] colors = { "red", "green", "blue" };
+		for (int i = 0; i < 3000; i++) {
+			index.insert(new CompactModel(SCHEMA, colors[i % 3], i % 10));
+		}
+
+		Map<String, Object> query = new HashMap<String, Object>();
+		query.put("color", "green");
+		query.put("size", 4);
+		List<Model> models = index.getModels(index.selectAll(query));
+		assertEquals(100, models.size());
+		for (Model model : models) {
+			assertEquals("green", model.getValueFor("color"));
+			assertEquals((Object) 4, model.getValueFor("size"));
+		}
+
+		query.put("color", "yellow");
+		assertTrue(index.selectAll(query).isEmpty());
+	}
+
+	@Test
+	public void testUpdate() {
+		ManualEvaluator<String, Object> evaluator = new ManualEvaluator<String, Object>(
+				"color");
+		DynamicModel model = new DynamicModel(null);
+		model.addEvaluator(evaluator);
+		evaluator.setValue("red");
+
+		ModelIndex index = new ModelIndex();
+		index.createIndex("color", IndexType.HASH);
+		int id = index.insert(model);
+		assertEquals(IntBitmap.of(id), index.selectEqual("color", "red"));
+
+		evaluator.setValue("blue");
+		assertEquals(IntBitmap.of(id), index.selectEqual("color", "red"));
+		assertEquals(id, index.update(model));
+		assertTrue(index.selectEqual("color", "red").isEmpty());
+		assertEquals(IntBitmap.of(id), index.selectEqual("color", "blue"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnindexedAttribute() {
+		new ModelIndex().selectEqual("color", "red");
+	}
+
+}
@@ -0,0 +1,326 @@
+package org.conceptmanager.modeling.impl;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.conceptmanager.evaluation.DoubleResultColumn;
+import org.conceptmanager.evaluation.Evaluator;
+import org.conceptmanager.evaluation.LongResultColumn;
+import org.conceptmanager.evaluation.impl.ManualEvaluator;
+import org.conceptmanager.modeling.Model;
+import org.conceptmanager.modeling.Model.UnknownAttributeException;
+import org.conceptmanager.modeling.impl.ModelTable.ColumnType;
+import org.conceptmanager.modeling.impl.ModelTable.ValueFilter;
+import org.junit.Test;
+
+public class ModelTableTest {
+
+	private static final AttributeSchema SCHEMA = new AttributeSchema(
+			Arrays.asList("color", "size", "weight"));
+
+	private static ModelTable createTable(int rows) {
+		Map<String, ColumnType> types = new HashMap<String, ColumnType>();
+		types.put("size", ColumnType.LONG);
+		types.put("weight", ColumnType.DOUBLE);
+		ModelTable table = new ModelTable(SCHEMA, types);
+		String[] colors = { "red", "green", "blue", null };
+		for (int i = 0; i < rows; i++) {
+			table.add(new CompactModel(SCHEMA, colors[i % 4], i % 3 == 0 ? null
+					: (long) i, i * 0.5));
+		}
+		return table;
+	}
+
+	@Test
+	public void testRows() {
+		ModelTable table = createTable(100);
+		assertEquals(100, table.size());
+		Model row = table.getRow(5);
+		assertTrue(row.getAttributes().containsAll(SCHEMA.getAttributes()));
+		assertTrue(SCHEMA.getAttributes().containsAll(row.getAttributes()));
+		assertEquals("green", row.getValueFor("color"));
+		assertEquals((Object) 5L, row.getValueFor("size"));
+		assertEquals((Object) 2.5, row.getValueFor("weight"));
+
+		row = table.getRow(3);
+		assertNull(row.getValueFor("color"));
+		assertNull(row.getValueFor("size"));
+
+		try {
+			row.getValueFor("unknown");
+			fail("Exception not thrown.");
+		} catch (UnknownAttributeException e) {
+		}
+	}
+
+	@Test
+	public void testAddAllDynamicModels() {
+		Map<String, ColumnType> types = new HashMap<String, ColumnType>();
+		types.put("size", ColumnType.LONG);
+		types.put("weight", ColumnType.DOUBLE);
+		ModelTable table = new ModelTable(SCHEMA, types);
+		ManualEvaluator<String, Object> color = new ManualEvaluator<String, Object>(
+				"color");
+		color.setValue("red");
+		ManualEvaluator<String, Object> size = new ManualEvaluator<String, Object>(
+				"size");
+		size.setEvaluationImpossible(true);
+		ManualEvaluator<String, Object> weight = new ManualEvaluator<String, Object>(
+				"weight");
+		weight.setValue(1.5);
+		List<Model> models = new ArrayList<Model>();
+		for (int i = 0; i < 100; i++) {
+			DynamicModel model = new DynamicModel(i);
+			model.addEvaluator(color);
+			model.addEvaluator(size);
+			model.addEvaluator(weight);
+			models.add(model);
+		}
+		table.addAll(models);
+
+		assertEquals(100, table.size());
+		Model row = table.getRow(42);
+		assertEquals("red", row.getValueFor("color"));
+		assertNull(row.getValueFor("size"));
+		assertEquals((Object) 1.5, row.getValueFor("weight"));
+	}
+
+	@Test
+	public void testAddAllDynamicNumbersInBatch() {
+		Map<String, ColumnType> types = new HashMap<String, ColumnType>();
+		types.put("size", ColumnType.LONG);
+		types.put("weight", ColumnType.DOUBLE);
+		ModelTable table = new ModelTable(SCHEMA, types);
+		final int[] batches = { 0, 0 };
+		ManualEvaluator<String, Object> color = new ManualEvaluator<String, Object>(
+				"color");
+		Evaluator<String, Object> size = new Evaluator<String, Object>() {
+
+			@Override
+			public String getAttribute() {
+				return "size";
+			}
+
+			@Override
+			public Object evaluates(Object object)
+					throws CannotEvaluateException {
+				int index = (Integer) object;
+				if (index == 7) {
+					throw new CannotEvaluateException(getAttribute(), object);
+				} else if (index == 13) {
+					return 2.5;
+				} else {
+					return index % 3 == 0 ? null : index;
+				}
+			}
+
+			@Override
+			public void evaluatesAllAsLongs(List<?> objects,
+					LongResultColumn column) {
+				batches[0]++;
+				Evaluator.super.evaluatesAllAsLongs(objects, column);
+			}
+		};
+		Evaluator<String, Object> weight = new Evaluator<String, Object>() {
+
+			@Override
+			public String getAttribute() {
+				return "weight";
+			}
+
+			@Override
+			public Object evaluates(Object object)
+					throws CannotEvaluateException {
+				return (Integer) object * 0.5;
+			}
+
+			@Override
+			public void evaluatesAllAsDoubles(List<?> objects,
+					DoubleResultColumn column) {
+				batches[1]++;
+				Evaluator.super.evaluatesAllAsDoubles(objects, column);
+			}
+		};
+		List<Model> models = new ArrayList<Model>();
+		for (int i = 0; i < 10; i++) {
+			DynamicModel model = new DynamicModel(i);
+			model.addEvaluator(color);
+			model.addEvaluator(size);
+			model.addEvaluator(weight);
+			models.add(model);
+		}
+		table.addAll(models);
+
+		assertEquals(1, batches[0]);
+		assertEquals(1, batches[1]);
+		assertEquals(10, table.size());
+		assertEquals((Object) 4L, table.getRow(4).getValueFor("size"));
+		assertNull(table.getRow(6).getValueFor("size"));
+		assertNull(table.getRow(7).getValueFor("size"));
+		assertEquals((Object) 2.5, table.getRow(5).getValueFor("weight"));
+		assertEquals(Arrays.asList(1, 2, 4, 5), toList(table.selectBetween(
+				"size", 1, 5)));
+
+		models.clear();
+		for (int i = 10; i < 15; i++) {
+			DynamicModel model = new DynamicModel(i);
+			model.addEvaluator(color);
+			model.addEvaluator(size);
+			model.addEvaluator(weight);
+			models.add(model);
+		}
+		try {
+			table.addAll(models);
+			fail("Exception not thrown.");
+		} catch (IllegalArgumentException e) {
+		}
+		assertEquals(10, table.size());
+	}
+
+	@Test
+	public void testAddAllIteratesOnce() {
+		Map<String, ColumnType> types = new HashMap<String, ColumnType>();
+		types.put("size", ColumnType.LONG);
+		types.put("weight", ColumnType.DOUBLE);
+		ModelTable table = new ModelTable(SCHEMA, types);
+		ManualEvaluator<String, Object> color = new ManualEvaluator<String, Object>(
+				"color");
+		color.setValue("red");
+		ManualEvaluator<String, Object> size = new ManualEvaluator<String, Object>(
+				"size");
+		size.setValue(3L);
+		ManualEvaluator<String, Object> weight = new ManualEvaluator<String, Object>(
+				"weight");
+		weight.setValue(1.5);
+		final List<Model> models = new ArrayList<Model>();
+		for (int i = 0; i < 10; i++) {
+			if (i % 4 == 3) {
+				models.add(new CompactModel(SCHEMA, "blue", (long) i, 0.5));
+			} else {
+				DynamicModel model = new DynamicModel(i);
+				model.addEvaluator(color);
+				model.addEvaluator(size);
+				model.addEvaluator(weight);
+				models.add(model);
+			}
+		}
+		table.addAll(new Iterable<Model>() {
+			private boolean isIterated = false;
+
+			@Override
+			public Iterator<Model> iterator() {
+				if (isIterated) {
+					throw new IllegalStateException("Already iterated");
+				} else {
+					isIterated = true;
+					return models.iterator();
+				}
+			}
+		});
+
+		assertEquals(10, table.size());
+		for (int i = 0; i < 10; i++) {
+			Model row = table.getRow(i);
+			if (i % 4 == 3) {
+				assertEquals("blue", row.getValueFor("color"));
+				assertEquals((Object) (long) i, row.getValueFor("size"));
+				assertEquals((Object) 0.5, row.getValueFor("weight"));
+			} else {
+				assertEquals("red", row.getValueFor("color"));
+				assertEquals((Object) 3L, row.getValueFor("size"));
+				assertEquals((Object) 1.5, row.getValueFor("weight"));
+			}
+		}
+	}
+
+	@Test
+	public void testLongColumnRejectsDecimals() {
+		ModelTable table = createTable(10);
+		table.add(new CompactModel(SCHEMA, "red", 4.0, 1.0));
+		assertEquals(11, table.size());
+		assertEquals((Object) 4L, table.getRow(10).getValueFor("size"));
+
+		try {
+			table.add(new CompactModel(SCHEMA, "red", 2.5, 1.0));
+			fail("Exception not thrown.");
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			table.add(new CompactModel(SCHEMA, "red", 0x1p63, 1.0));
+			fail("Exception not thrown.");
+		} catch (IllegalArgumentException e) {
+		}
+		assertEquals(11, table.size());
+		table.add(new CompactModel(SCHEMA, "red", -0x1p63, 1.0));
+		assertEquals((Object) Long.MIN_VALUE, table.getRow(11).getValueFor(
+				"size"));
+	}
+
+	@Test
+	public void testSelections() {
+		ModelTable table = createTable(100);
+
+		BitSet red = table.selectEqual("color", "red");
+		assertEquals(25, red.cardinality());
+		for (Model row : table.getRows(red)) {
+			assertEquals("red", row.getValueFor("color"));
+		}
+
+		BitSet unknown = table.selectEqual("color", null);
+		assertEquals(25, unknown.cardinality());
+
+		BitSet sizes = table.selectBetween("size", 10, 20);
+		assertEquals(Arrays.asList(10, 11, 13, 14, 16, 17, 19, 20),
+				toList(sizes));
+
+		BitSet weights = table.selectBetween("weight", 1, 2);
+		assertEquals(Arrays.asList(2, 3, 4), toList(weights));
+
+		BitSet even = table.select("size", new ValueFilter() {
+
+			@Override
+			public boolean accepts(Object value) {
+				return value != null && ((Long) value) % 2 == 0;
+			}
+		});
+		for (int row = 0; row < table.size(); row++) {
+			Long size = table.getValueFor(row, "size");
+			assertEquals(size != null && size % 2 == 0, even.get(row));
+		}
+	}
+
+	@Test
+	public void testParallelSelections() {
+		ModelTable table = createTable(300000);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			assertEquals(table.selectEqual("color", "blue"),
+					table.selectEqual("color", "blue", executor));
+			assertEquals(table.selectBetween("size", 1000, 200000),
+					table.selectBetween("size", 1000, 200000, executor));
+			assertEquals(table.selectBetween("weight", 1000, 200000),
+					table.selectBetween("weight", 1000, 200000, executor));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static List<Integer> toList(BitSet selection) {
+		List<Integer> rows = new ArrayList<Integer>();
+		for (int row = selection.nextSetBit(0); row >= 0; row = selection
+				.nextSetBit(row + 1)) {
+			rows.add(row);
+		}
+		return rows;
+	}
+
+}
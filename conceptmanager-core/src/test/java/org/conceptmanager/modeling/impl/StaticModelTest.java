@@ -62,7 +62,7 @@ public class StaticModelTest {
 		assertTrue(snapshot.getAttributes().containsAll(model.getAttributes()));
 		assertTrue(model.getAttributes().containsAll(snapshot.getAttributes()));
 		for (Object attribute : snapshot.getAttributes()) {
-			assertEquals(model.getValueFor(attribute),
+			assertEquals((Object) model.getValueFor(attribute),
 					snapshot.getValueFor(attribute));
 		}
 
@@ -82,9 +82,9 @@ public class StaticModelTest {
 		model.setEvaluatorFor("C", model.getEvaluatorFor("B"));
 		model.removeEvaluatorFor("B");
 
-		assertEquals(456, model.getValueFor("A"));
+		assertEquals((Object) 456, model.getValueFor("A"));
 		assertEquals("value", model.getValueFor("C"));
-		assertEquals(123, snapshot.getValueFor("A"));
+		assertEquals((Object) 123, snapshot.getValueFor("A"));
 		assertEquals("value", snapshot.getValueFor("B"));
 	}
 
@@ -0,0 +1,94 @@
+package org.conceptmanager.sensing.impl;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.conceptmanager.sensing.Sensor;
+import org.junit.Test;
+
+public class ChangeDetectingSensorTest {
+
+	private static class ManualSensor<Value> implements Sensor<Value> {
+		private Value value;
+
+		@Override
+		public Value sense() {
+			return value;
+		}
+	}
+
+	@Test
+	public void testEquality() {
+		ManualSensor<String> sensor = new ManualSensor<String>();
+		ChangeDetectingSensor<String> detecting = new ChangeDetectingSensor<String>(
+				sensor);
+		assertEquals(0, detecting.getVersion());
+
+		sensor.value = "a";
+		assertEquals("a", detecting.sense());
+		long version = detecting.getVersion();
+		assertEquals(1, version);
+		assertEquals("a", detecting.sense());
+		assertFalse(detecting.hasChangedSince(version));
+
+		sensor.value = "b";
+		assertEquals("b", detecting.sense());
+		assertTrue(detecting.hasChangedSince(version));
+		assertEquals(2, detecting.getVersion());
+
+		sensor.value = null;
+		assertEquals(null, detecting.sense());
+		assertEquals(3, detecting.getVersion());
+		assertEquals(null, detecting.sense());
+		assertEquals(3, detecting.getVersion());
+	}
+
+	@Test
+	public void testDeadBand() {
+		ManualSensor<Double> sensor = new ManualSensor<Double>();
+		ChangeDetectingSensor<Double> detecting = new ChangeDetectingSensor<Double>(
+				sensor, ChangeDetectingSensor.deadBand(0.5));
+		sensor.value = 10.0;
+		assertEquals((Double) 10.0, detecting.sense());
+		sensor.value = 10.4;
+		assertEquals((Double) 10.0, detecting.sense());
+		sensor.value = 9.6;
+		assertEquals((Double) 10.0, detecting.sense());
+		assertEquals(1, detecting.getVersion());
+		sensor.value = 10.6;
+		assertEquals((Double) 10.6, detecting.sense());
+		assertEquals(2, detecting.getVersion());
+		// the band applies to the published value, not the last sensed one
+		sensor.value = 11.0;
+		assertEquals((Double) 10.6, detecting.sense());
+		sensor.value = 11.2;
+		assertEquals((Double) 11.2, detecting.sense());
+	}
+
+	@Test
+	public void testDebounce() throws InterruptedException {
+		ManualSensor<Integer> sensor = new ManualSensor<Integer>();
+		ChangeDetectingSensor<Integer> detecting = new ChangeDetectingSensor<Integer>(
+				sensor, ChangeDetectingSensor.<Integer> equality(), 50,
+				TimeUnit.MILLISECONDS);
+		sensor.value = 1;
+		assertEquals((Integer) 1, detecting.sense());
+
+		// glitch
+		sensor.value = 2;
+		assertEquals((Integer) 1, detecting.sense());
+		sensor.value = 1;
+		assertEquals((Integer) 1, detecting.sense());
+		Thread.sleep(60);
+		sensor.value = 2;
+		assertEquals((Integer) 1, detecting.sense());
+		assertEquals(1, detecting.getVersion());
+
+		// lasting change
+		Thread.sleep(60);
+		assertEquals((Integer) 2, detecting.sense());
+		assertEquals(2, detecting.getVersion());
+		assertEquals((Integer) 2, detecting.getPublished());
+	}
+}
@@ -0,0 +1,169 @@
+package org.conceptmanager.sensing.impl;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.conceptmanager.sensing.Reading;
+import org.conceptmanager.sensing.Sensor;
+import org.conceptmanager.sensing.impl.SensingRuntime.SensorMetrics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SensingRuntimeTest {
+
+	private ScheduledExecutorService scheduler;
+	private ExecutorService executor;
+
+	@Before
+	public void setUp() {
+		scheduler = Executors.newSingleThreadScheduledExecutor();
+		executor = Executors.newCachedThreadPool();
+	}
+
+	@After
+	public void tearDown() {
+		scheduler.shutdownNow();
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testReadings() throws InterruptedException {
+		SensingRuntime runtime = new SensingRuntime(scheduler, executor, 1024);
+		final AtomicInteger counter = new AtomicInteger();
+		Sensor<Integer> sensor = new Sensor<Integer>() {
+
+			@Override
+			public Integer sense() {
+				return counter.incrementAndGet();
+			}
+		};
+		runtime.register(sensor, 5, TimeUnit.MILLISECONDS);
+		try {
+			runtime.register(sensor, 5, TimeUnit.MILLISECONDS);
+			fail("No exception thrown");
+		} catch (IllegalArgumentException e) {
+		}
+		Thread.sleep(100);
+		runtime.stop();
+		Thread.sleep(20);
+		assertTrue(runtime.getSensors().isEmpty());
+
+		List<Reading<?>> readings = new ArrayList<Reading<?>>();
+		runtime.drainTo(readings, Integer.MAX_VALUE);
+		assertTrue(readings.size() > 1);
+		for (int i = 0; i < readings.size(); i++) {
+			Reading<?> reading = readings.get(i);
+			assertSame(sensor, reading.getSensor());
+			assertEquals(i + 1, reading.getValue());
+			if (i > 0) {
+				assertTrue(reading.getTime() >= readings.get(i - 1).getTime());
+			} else {
+				// first reading
+			}
+		}
+	}
+
+	@Test
+	public void testSlowSensorDoesNotBlockOthers() throws InterruptedException {
+		SensingRuntime runtime = new SensingRuntime(scheduler, executor, 1024);
+		final CountDownLatch release = new CountDownLatch(1);
+		Sensor<String> slow = new Sensor<String>() {
+
+			@Override
+			public String sense() {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return "slow";
+			}
+		};
+		Sensor<String> fast = new Sensor<String>() {
+
+			@Override
+			public String sense() {
+				return "fast";
+			}
+		};
+		runtime.register(slow, 5, TimeUnit.MILLISECONDS);
+		runtime.register(fast, 5, TimeUnit.MILLISECONDS);
+		Thread.sleep(100);
+
+		SensorMetrics slowMetrics = runtime.getMetrics(slow);
+		SensorMetrics fastMetrics = runtime.getMetrics(fast);
+		assertEquals(0, slowMetrics.getReadings());
+		assertTrue(slowMetrics.getOverruns() > 0);
+		assertTrue(fastMetrics.getReadings() > 1);
+		assertTrue(fastMetrics.getMaxLag(TimeUnit.NANOSECONDS) >= fastMetrics
+				.getLastLag(TimeUnit.NANOSECONDS));
+
+		release.countDown();
+		runtime.stop();
+	}
+
+	@Test
+	public void testFullBufferAndFailures() throws InterruptedException {
+		SensingRuntime runtime = new SensingRuntime(scheduler, executor, 2);
+		Sensor<String> sensor = new Sensor<String>() {
+
+			@Override
+			public String sense() {
+				return "value";
+			}
+		};
+		Sensor<String> broken = new Sensor<String>() {
+
+			@Override
+			public String sense() {
+				throw new IllegalStateException("broken");
+			}
+		};
+		runtime.register(sensor, 2, TimeUnit.MILLISECONDS);
+		runtime.register(broken, 2, TimeUnit.MILLISECONDS);
+		Thread.sleep(50);
+		SensorMetrics metrics = runtime.getMetrics(sensor);
+		assertEquals(2, metrics.getReadings());
+		assertTrue(metrics.getRejected() > 0);
+		assertTrue(runtime.getMetrics(broken).getFailures() > 0);
+		assertEquals(0, runtime.getMetrics(broken).getReadings());
+		runtime.stop();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <E extends Throwable> void throwUnchecked(Throwable e)
+			throws E {
+		throw (E) e;
+	}
+
+	@Test
+	public void testCheckedFailures() throws InterruptedException {
+		SensingRuntime runtime = new SensingRuntime(scheduler, executor, 2);
+		final CountDownLatch sensed = new CountDownLatch(2);
+		Sensor<String> broken = new Sensor<String>() {
+
+			@Override
+			public String sense() {
+				sensed.countDown();
+				SensingRuntimeTest.<RuntimeException> throwUnchecked(new IOException(
+						"broken"));
+				return null;
+			}
+		};
+		runtime.register(broken, 2, TimeUnit.MILLISECONDS);
+		// the polling goes on after a failure
+		assertTrue(sensed.await(1, TimeUnit.SECONDS));
+		assertTrue(runtime.getMetrics(broken).getFailures() > 0);
+		runtime.stop();
+	}
+}
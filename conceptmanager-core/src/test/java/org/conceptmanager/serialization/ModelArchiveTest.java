@@ -0,0 +1,139 @@
+package org.conceptmanager.serialization;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.conceptmanager.modeling.Model;
+import org.conceptmanager.modeling.Model.UnknownAttributeException;
+import org.conceptmanager.modeling.impl.StaticModel;
+import org.conceptmanager.serialization.BlockReader.CorruptedStreamException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ModelArchiveTest {
+
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("archive", ".bin");
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	private static StaticModel createModel(int index) {
+		Map<Object, Object> values = new HashMap<Object, Object>();
+		values.put("index", index);
+		values.put("time", 1000000000000L + index);
+		values.put("load", index * 0.25);
+		values.put("ratio", (float) index / 3);
+		values.put("even", index % 2 == 0);
+		values.put("unknown", null);
+		if (index % 3 == 0) {
+			values.put("name", "model é" + index);
+		} else {
+			// not all the models have a name
+		}
+		return new StaticModel(values);
+	}
+
+	private void write(int count) throws IOException {
+		ModelArchiveWriter writer = new ModelArchiveWriter(file);
+		for (int i = 0; i < count; i++) {
+			writer.write(createModel(i));
+		}
+		assertEquals(count, writer.size());
+		writer.close();
+	}
+
+	@Test
+	public void testRandomAccess() throws IOException {
+		write(1000);
+		ModelArchive archive = new ModelArchive(file);
+		assertEquals(1000, archive.size());
+		assertEquals(7, archive.getAttributes().size());
+		for (int i : new int[] { 999, 0, 501, 3 }) {
+			Model expected = createModel(i);
+			Model actual = archive.get(i);
+			assertEquals(new HashSet<Object>(expected.getAttributes()),
+					new HashSet<Object>(actual.getAttributes()));
+			for (Object attribute : expected.getAttributes()) {
+				assertEquals((Object) expected.getValueFor(attribute),
+						(Object) actual.getValueFor(attribute));
+			}
+		}
+
+		Model model = archive.get(1);
+		assertTrue(model.tryGetValueFor("name").isAbsent());
+		assertTrue(model.tryGetValueFor("other").isAbsent());
+		assertNull(model.tryGetValueFor("unknown").getValue());
+		try {
+			model.getValueFor("name");
+			fail("Exception not thrown.");
+		} catch (UnknownAttributeException e) {
+		}
+		try {
+			archive.get(1000);
+			fail("Exception not thrown.");
+		} catch (IndexOutOfBoundsException e) {
+		}
+		archive.close();
+	}
+
+	@Test
+	public void testEmptyArchive() throws IOException {
+		write(0);
+		ModelArchive archive = new ModelArchive(file);
+		assertEquals(0, archive.size());
+		assertTrue(archive.getAttributes().isEmpty());
+		archive.close();
+	}
+
+	@Test
+	public void testArchiveTooLarge() throws IOException {
+		ModelArchiveWriter writer = new ModelArchiveWriter(file, 10000);
+		int count = 0;
+		try {
+			while (count < 10000) {
+				writer.write(createModel(count));
+				count++;
+			}
+			fail("Exception not thrown.");
+		} catch (IOException e) {
+		} finally {
+			writer.close();
+		}
+		assertTrue(count > 0);
+		assertEquals(count, writer.size());
+		assertTrue(file.length() <= 10000);
+
+		ModelArchive archive = new ModelArchive(file);
+		assertEquals(count, archive.size());
+		assertEquals((Object) (count - 1),
+				archive.get(count - 1).getValueFor("index"));
+		archive.close();
+	}
+
+	@Test
+	public void testCorruptedArchive() throws IOException {
+		write(10);
+		RandomAccessFile access = new RandomAccessFile(file, "rw");
+		access.setLength(access.length() - 1);
+		access.close();
+		try {
+			new ModelArchive(file).close();
+			fail("Exception not thrown.");
+		} catch (CorruptedStreamException e) {
+		}
+	}
+}
@@ -0,0 +1,149 @@
+package org.conceptmanager.serialization;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.conceptmanager.modeling.Model;
+import org.conceptmanager.modeling.impl.StaticModel;
+import org.conceptmanager.serialization.BlockReader.CorruptedStreamException;
+import org.junit.Test;
+
+public class ModelWriterTest {
+
+	private static StaticModel createModel(int index) {
+		Map<Object, Object> values = new HashMap<Object, Object>();
+		values.put("index", index);
+		values.put("time", 1000000000000L + index);
+		values.put("load", index * 0.25);
+		values.put("ratio", (float) index / 3);
+		values.put("name", "model é" + index);
+		values.put("even", index % 2 == 0);
+		values.put("unknown", null);
+		values.put(42, -index);
+		return new StaticModel(values);
+	}
+
+	private static byte[] write(int count, int blockSize) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ModelWriter writer = new ModelWriter(bytes, blockSize);
+		for (int i = 0; i < count; i++) {
+			writer.write(createModel(i));
+		}
+		assertEquals(count == 0 ? 0 : 8, writer.getDictionarySize());
+		writer.close();
+		return bytes.toByteArray();
+	}
+
+	private static void assertSameModels(Model expected, Model actual) {
+		assertEquals(new HashSet<Object>(expected.getAttributes()),
+				new HashSet<Object>(actual.getAttributes()));
+		for (Object attribute : expected.getAttributes()) {
+			assertEquals((Object) expected.getValueFor(attribute),
+					(Object) actual.getValueFor(attribute));
+		}
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		for (int blockSize : Arrays.asList(1, 100, BlockWriter.DEFAULT_BLOCK_SIZE)) {
+			byte[] bytes = write(1000, blockSize);
+			ModelReader reader = new ModelReader(new ByteArrayInputStream(
+					bytes));
+			for (int i = 0; i < 1000; i++) {
+				assertSameModels(createModel(i), reader.read());
+			}
+			assertNull(reader.read());
+			assertNull(reader.read());
+			assertEquals(8, reader.getDictionarySize());
+			reader.close();
+		}
+	}
+
+	@Test
+	public void testEmptyStream() throws IOException {
+		ModelReader reader = new ModelReader(new ByteArrayInputStream(write(0,
+				100)));
+		assertNull(reader.read());
+	}
+
+	@Test
+	public void testUnsupportedValue() throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		ModelWriter writer = new ModelWriter(output);
+		Map<Object, Object> values = new LinkedHashMap<Object, Object>();
+		values.put("new", 1);
+		values.put("list", Arrays.asList(1, 2));
+		try {
+			writer.write(new StaticModel(values));
+			fail("Exception not thrown.");
+		} catch (IllegalArgumentException e) {
+		}
+
+		// the rejected model does not corrupt the stream
+		values.remove("list");
+		StaticModel model = new StaticModel(values);
+		writer.write(model);
+		writer.write(model);
+		writer.close();
+		ModelReader reader = new ModelReader(new ByteArrayInputStream(
+				output.toByteArray()));
+		assertSameModels(model, reader.read());
+		assertSameModels(model, reader.read());
+		assertNull(reader.read());
+		assertEquals(1, reader.getDictionarySize());
+	}
+
+	@Test
+	public void testCorruptedStreams() throws IOException {
+		byte[] bytes = write(100, 100);
+
+		byte[] corrupted = Arrays.copyOf(bytes, bytes.length);
+		corrupted[bytes.length / 2] ^= 1;
+		try {
+			ModelReader reader = new ModelReader(new ByteArrayInputStream(
+					corrupted));
+			while (reader.read() != null) {
+			}
+			fail("Exception not thrown.");
+		} catch (CorruptedStreamException e) {
+		}
+
+		byte[] truncated = Arrays.copyOf(bytes, bytes.length - 3);
+		try {
+			ModelReader reader = new ModelReader(new ByteArrayInputStream(
+					truncated));
+			while (reader.read() != null) {
+			}
+			fail("Exception not thrown.");
+		} catch (CorruptedStreamException e) {
+		}
+
+		try {
+			new WeightReader(new ByteArrayInputStream(bytes));
+			fail("Exception not thrown.");
+		} catch (CorruptedStreamException e) {
+		}
+
+		// negative and oversized block lengths
+		for (byte last : new byte[] { 0x0F, 0x07 }) {
+			byte[] invalidLength = Arrays.copyOf(bytes, 11);
+			Arrays.fill(invalidLength, 6, 10, (byte) 0xFF);
+			invalidLength[10] = last;
+			try {
+				ModelReader reader = new ModelReader(new ByteArrayInputStream(
+						invalidLength));
+				reader.read();
+				fail("Exception not thrown.");
+			} catch (CorruptedStreamException e) {
+			}
+		}
+	}
+}
@@ -0,0 +1,42 @@
+package org.conceptmanager.serialization;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.conceptmanager.serialization.WeightReader.Weight;
+import org.junit.Test;
+
+public class WeightWriterTest {
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		String[] symbols = { "A", "B", "C", "a", "b", "c" };
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		WeightWriter writer = new WeightWriter(bytes, 64);
+		for (String request : symbols) {
+			for (String answer : symbols) {
+				writer.write(request, answer,
+						request.equalsIgnoreCase(answer) ? 1.0 : -1.0);
+			}
+		}
+		writer.close();
+		assertEquals(symbols.length, writer.getDictionarySize());
+
+		WeightReader reader = new WeightReader(new ByteArrayInputStream(
+				bytes.toByteArray()));
+		for (String request : symbols) {
+			for (String answer : symbols) {
+				Weight weight = reader.read();
+				assertEquals(request, weight.getRequest());
+				assertEquals(answer, weight.getAnswer());
+				assertEquals(request.equalsIgnoreCase(answer) ? 1.0 : -1.0,
+						weight.getWeight(), 0);
+			}
+		}
+		assertNull(reader.read());
+		reader.close();
+	}
+}
@@ -0,0 +1,554 @@
+package org.conceptmanager.symbol.impl;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.conceptmanager.symbol.Evidence;
+import org.conceptmanager.symbol.ShardTransport;
+import org.conceptmanager.symbol.SymbolManager;
+import org.conceptmanager.symbol.impl.ShardedSymbolManager.ShardException;
+import org.junit.Test;
+
+public class ShardedSymbolManagerTest {
+
+	/**
+	 * Answers the last answer judged correct for a request.
+	 */
+	public static class LastCorrectManager implements
+			SymbolManager<String, Boolean> {
+		private final Map<String, String> answers = new HashMap<String, String>();
+
+		@Override
+		public String request(String request) {
+			return answers.get(request);
+		}
+
+		@Override
+		public void learn(String request, String answer, Boolean judgment) {
+			if (judgment != null && judgment) {
+				answers.put(request, answer);
+			} else if (judgment != null && answer.equals(answers.get(request))) {
+				answers.remove(request);
+			} else {
+				// nothing learned
+			}
+		}
+	}
+
+	public static class PrintingManager extends LastCorrectManager {
+		@Override
+		public String request(String request) {
+			// more than a pipe can buffer
+			for (int i = 0; i < 1000; i++) {
+				System.out.println("Printing manager requested: " + request);
+			}
+			return super.request(request);
+		}
+	}
+
+	public static class SlowManager extends LastCorrectManager {
+		static {
+			try {
+				Thread.sleep(60000);
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static final Evidence<String, Boolean> UNSUPPORTED = new Evidence(
+			"r", new Object(), true);
+
+	private static InProcessTransport<String, Boolean> createShard() {
+		return new InProcessTransport<String, Boolean>(
+				new ShardWorker<String, Boolean>(
+						new ShardWorker.ManagerFactory<String, Boolean>() {
+
+							@Override
+							public SymbolManager<String, Boolean> create() {
+								return new LastCorrectManager();
+							}
+						}));
+	}
+
+	@Test
+	public void testRouting() {
+		List<InProcessTransport<String, Boolean>> shards = Arrays.asList(
+				createShard(), createShard(), createShard());
+		ShardedSymbolManager<String, Boolean> manager = new ShardedSymbolManager<String, Boolean>(
+				shards, 16, 1);
+		for (int i = 0; i < 100; i++) {
+			manager.learn("q" + i, "a" + i, true);
+		}
+		for (int i = 0; i < 100; i++) {
+			assertEquals("a" + i, manager.request("q" + i));
+		}
+		int total = 0;
+		for (InProcessTransport<String, Boolean> shard : shards) {
+			int size = shard.getWorker().size();
+			assertTrue(size > 0);
+			total += size;
+			assertTrue(manager.getBucketCount(shard) >= 5);
+		}
+		assertEquals(100, total);
+		for (int i = 0; i < 100; i++) {
+			int bucket = ShardTransport.getBucket("q" + i, 16);
+			assertTrue(bucket >= 0 && bucket < 16);
+		}
+	}
+
+	@Test
+	public void testBatching() {
+		InProcessTransport<String, Boolean> shard = createShard();
+		ShardedSymbolManager<String, Boolean> manager = new ShardedSymbolManager<String, Boolean>(
+				Arrays.asList(shard), 4, 10);
+		for (int i = 0; i < 25; i++) {
+			manager.learn("q" + i, "a", true);
+		}
+		assertEquals(2, shard.getRoundTrips());
+		assertEquals(20, shard.getWorker().size());
+
+		// the pending evidences are sent before the request
+		assertEquals("a", manager.request("q24"));
+		assertEquals(4, shard.getRoundTrips());
+		assertEquals(25, shard.getWorker().size());
+
+		manager.learn("q0", "b", true);
+		manager.flush();
+		assertEquals(5, shard.getRoundTrips());
+		manager.flush();
+		assertEquals(5, shard.getRoundTrips());
+	}
+
+	@Test
+	public void testRebalancing() throws IOException {
+		InProcessTransport<String, Boolean> first = createShard();
+		ShardedSymbolManager<String, Boolean> manager = new ShardedSymbolManager<String, Boolean>(
+				Arrays.asList(first), 64, 8);
+		for (int i = 0; i < 200; i++) {
+			manager.learn("q" + i, "a" + i, true);
+			manager.learn("q" + i, "b" + i, false);
+		}
+		manager.learn("q0", "a0", false);
+
+		InProcessTransport<String, Boolean> second = createShard();
+		manager.addShard(second);
+		assertEquals(0, manager.getBucketCount(second));
+		assertEquals(32, manager.rebalance());
+		assertEquals(32, manager.getBucketCount(first));
+		assertEquals(32, manager.getBucketCount(second));
+		assertEquals(0, manager.rebalance());
+		assertTrue(second.getWorker().size() > 0);
+		assertEquals(400, first.getWorker().size()
+				+ second.getWorker().size());
+		assertNull(manager.request("q0"));
+		for (int i = 1; i < 200; i++) {
+			assertEquals("a" + i, manager.request("q" + i));
+		}
+
+		InProcessTransport<String, Boolean> third = createShard();
+		manager.addShard(third);
+		assertEquals(21, manager.rebalance());
+		assertEquals(22, manager.getBucketCount(first));
+		assertEquals(21, manager.getBucketCount(second));
+		assertEquals(21, manager.getBucketCount(third));
+
+		manager.removeShard(first);
+		assertEquals(Arrays.asList(second, third), manager.getShards());
+		assertEquals(32, manager.getBucketCount(second));
+		assertEquals(32, manager.getBucketCount(third));
+		assertEquals(400, second.getWorker().size()
+				+ third.getWorker().size());
+		for (int i = 1; i < 200; i++) {
+			assertEquals("a" + i, manager.request("q" + i));
+		}
+		try {
+			first.request("q1");
+			fail("No exception thrown.");
+		} catch (IllegalStateException e) {
+		}
+		manager.close();
+	}
+
+	@Test
+	public void testRejectedEvidenceDropped() {
+		final InProcessTransport<String, Boolean> shard = createShard();
+		ShardTransport<String, Boolean> rejecting = new ShardTransport<String, Boolean>() {
+
+			@Override
+			public String request(String request) {
+				return shard.request(request);
+			}
+
+			@Override
+			public void learn(List<Evidence<String, Boolean>> evidences) {
+				for (Evidence<String, Boolean> evidence : evidences) {
+					if (evidence.getAnswer().equals("bad")) {
+						throw new IllegalArgumentException("Unsupported");
+					} else {
+						// supported
+					}
+				}
+				shard.learn(evidences);
+			}
+
+			@Override
+			public List<Evidence<String, Boolean>> extract(
+					Collection<Integer> buckets, int bucketCount) {
+				return shard.extract(buckets, bucketCount);
+			}
+
+			@Override
+			public void close() {
+				shard.close();
+			}
+		};
+		ShardedSymbolManager<String, Boolean> manager = new ShardedSymbolManager<String, Boolean>(
+				Arrays.<ShardTransport<String, Boolean>> asList(rejecting), 4,
+				3);
+		manager.learn("q", "a", true);
+		manager.learn("r", "bad", true);
+		try {
+			manager.learn("s", "c", true);
+			fail("No exception thrown");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		assertEquals(2, shard.getWorker().size());
+
+		// the rejected evidence is not retried
+		manager.learn("t", "d", true);
+		manager.flush();
+		assertEquals(3, shard.getWorker().size());
+		assertEquals("c", manager.request("s"));
+	}
+
+	@Test
+	public void testFailedMoveKeepsLearning() {
+		List<InProcessTransport<String, Boolean>> shards = Arrays.asList(
+				createShard(), createShard());
+		ShardedSymbolManager<String, Boolean> manager = new ShardedSymbolManager<String, Boolean>(
+				shards, 16, 1);
+		for (int i = 0; i < 100; i++) {
+			manager.learn("q" + i, "a" + i, true);
+		}
+		ShardTransport<String, Boolean> unreachable = new ShardTransport<String, Boolean>() {
+
+			@Override
+			public String request(String request) throws IOException {
+				throw new IOException("unreachable");
+			}
+
+			@Override
+			public void learn(List<Evidence<String, Boolean>> evidences)
+					throws IOException {
+				throw new IOException("unreachable");
+			}
+
+			@Override
+			public List<Evidence<String, Boolean>> extract(
+					Collection<Integer> buckets, int bucketCount)
+					throws IOException {
+				throw new IOException("unreachable");
+			}
+
+			@Override
+			public void close() {
+				// nothing to close
+			}
+		};
+		manager.addShard(unreachable);
+		try {
+			manager.rebalance();
+			fail("No exception thrown");
+		} catch (ShardException e) {
+			// expected
+		}
+		assertEquals(0, manager.getBucketCount(unreachable));
+		int total = 0;
+		for (InProcessTransport<String, Boolean> shard : shards) {
+			total += shard.getWorker().size();
+		}
+		assertEquals(100, total);
+		for (int i = 0; i < 100; i++) {
+			assertEquals("a" + i, manager.request("q" + i));
+		}
+	}
+
+	@Test
+	public void testRetriedMoveLearnsOnce() {
+		InProcessTransport<String, Boolean> source = createShard();
+		ShardedSymbolManager<String, Boolean> manager = new ShardedSymbolManager<String, Boolean>(
+				Arrays.asList(source), 16, 1);
+		for (int i = 0; i < 100; i++) {
+			manager.learn("q" + i, "a" + i, true);
+		}
+		final List<int[]> counts = new ArrayList<int[]>();
+		final InProcessTransport<String, Boolean> target = new InProcessTransport<String, Boolean>(
+				new ShardWorker<String, Boolean>(
+						new ShardWorker.ManagerFactory<String, Boolean>() {
+
+							@Override
+							public SymbolManager<String, Boolean> create() {
+								final int[] count = { 0 };
+								counts.add(count);
+								return new LastCorrectManager() {
+									@Override
+									public void learn(String request,
+											String answer, Boolean judgment) {
+										count[0]++;
+										super.learn(request, answer, judgment);
+									}
+								};
+							}
+						}));
+		// the first learning is applied, but its reply is lost
+		ShardTransport<String, Boolean> lossy = new ShardTransport<String, Boolean>() {
+			private boolean isLost = true;
+
+			@Override
+			public String request(String request) {
+				return target.request(request);
+			}
+
+			@Override
+			public void learn(List<Evidence<String, Boolean>> evidences)
+					throws IOException {
+				target.learn(evidences);
+				if (isLost) {
+					isLost = false;
+					throw new IOException("reply lost");
+				} else {
+					// replied
+				}
+			}
+
+			@Override
+			public List<Evidence<String, Boolean>> extract(
+					Collection<Integer> buckets, int bucketCount) {
+				return target.extract(buckets, bucketCount);
+			}
+
+			@Override
+			public void close() {
+				target.close();
+			}
+		};
+		manager.addShard(lossy);
+		try {
+			manager.rebalance();
+			fail("No exception thrown");
+		} catch (ShardException e) {
+			// expected
+		}
+		assertEquals(0, manager.getBucketCount(lossy));
+		assertEquals(100, source.getWorker().size());
+
+		manager.rebalance();
+		assertEquals(8, manager.getBucketCount(lossy));
+		int moved = target.getWorker().size();
+		assertEquals(100, moved + source.getWorker().size());
+		assertEquals(moved, counts.get(counts.size() - 1)[0]);
+		for (int i = 0; i < 100; i++) {
+			assertEquals("a" + i, manager.request("q" + i));
+		}
+	}
+
+	@Test
+	public void testFailedLearnIsNotKept() {
+		final InProcessTransport<String, Boolean> shard = createShard();
+		final int[] learned = { 0 };
+		ShardTransport<String, Boolean> failing = new ShardTransport<String, Boolean>() {
+			private int failures = 1;
+
+			@Override
+			public String request(String request) {
+				return shard.request(request);
+			}
+
+			@Override
+			public void learn(List<Evidence<String, Boolean>> evidences)
+					throws IOException {
+				if (failures > 0) {
+					failures--;
+					throw new IOException("unreachable");
+				} else {
+					learned[0] += evidences.size();
+					shard.learn(evidences);
+				}
+			}
+
+			@Override
+			public List<Evidence<String, Boolean>> extract(
+					Collection<Integer> buckets, int bucketCount) {
+				return shard.extract(buckets, bucketCount);
+			}
+
+			@Override
+			public void close() {
+				shard.close();
+			}
+		};
+		ShardedSymbolManager<String, Boolean> manager = new ShardedSymbolManager<String, Boolean>(
+				Arrays.asList(failing), 4, 1);
+		try {
+			manager.learn("q", "a", true);
+			fail("No exception thrown");
+		} catch (ShardException e) {
+			// expected
+		}
+		manager.learn("q", "a", true);
+		assertEquals(1, learned[0]);
+		assertEquals("a", manager.request("q"));
+	}
+
+	@Test
+	public void testWorkerExtraction() {
+		ShardWorker<String, Boolean> worker = createShard().getWorker();
+		List<Evidence<String, Boolean>> evidences = new ArrayList<Evidence<String, Boolean>>();
+		evidences.add(new Evidence<String, Boolean>("q", "a", true));
+		evidences.add(new Evidence<String, Boolean>("q", "a", null));
+		evidences.add(new Evidence<String, Boolean>("r", "b", true));
+		worker.learn(evidences);
+		assertEquals(2, worker.size());
+
+		int bucket = ShardTransport.getBucket("q", 8);
+		assertEquals(Arrays.asList(new Evidence<String, Boolean>("q", "a",
+				true)), worker.extract(Arrays.asList(bucket), 8));
+		assertNull(worker.request("q"));
+		assertEquals(1, worker.size());
+
+		evidences.clear();
+		evidences.add(new Evidence<String, Boolean>("q", "a1", true));
+		evidences.add(new Evidence<String, Boolean>("q", "a2", true));
+		evidences.add(new Evidence<String, Boolean>("q", "a1", true));
+		worker.learn(evidences);
+		assertEquals("a1", worker.request("q"));
+		ShardWorker<String, Boolean> rebuilt = createShard().getWorker();
+		rebuilt.learn(worker.extract(Arrays.asList(bucket), 8));
+		assertEquals("a1", rebuilt.request("q"));
+	}
+
+	@Test
+	public void testSocketTransport() throws IOException {
+		ShardWorker<String, Boolean> worker = createShard().getWorker();
+		ShardServer<String, Boolean> server = new ShardServer<String, Boolean>(
+				worker, 0);
+		server.start();
+		SocketTransport<String, Boolean> transport = new SocketTransport<String, Boolean>(
+				server.getPort());
+		try {
+			transport.learn(Arrays.asList(new Evidence<String, Boolean>("q",
+					"a", true), new Evidence<String, Boolean>("r", "b", null)));
+			assertEquals("a", transport.request("q"));
+			assertNull(transport.request("r"));
+			assertEquals(2, worker.size());
+			List<Evidence<String, Boolean>> extracted = transport.extract(
+					Arrays.asList(ShardTransport.getBucket("q", 4)), 4);
+			assertTrue(extracted.contains(new Evidence<String, Boolean>("q",
+					"a", true)));
+			assertNull(transport.request("q"));
+
+			// a rejected evidence does not corrupt the connection
+			try {
+				transport.learn(Arrays.asList(new Evidence<String, Boolean>(
+						"q", "a", true), UNSUPPORTED));
+				fail("No exception thrown");
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+			transport.learn(Arrays.asList(new Evidence<String, Boolean>("q",
+					"b", true)));
+			assertEquals("b", transport.request("q"));
+		} finally {
+			transport.close();
+			server.close();
+		}
+	}
+
+	@Test
+	public void testWorkerProcesses() throws IOException {
+		List<SocketTransport<String, Boolean>> shards = new ArrayList<SocketTransport<String, Boolean>>();
+		shards.add(SocketTransport.<String, Boolean> launch(LastCorrectManager.class));
+		shards.add(SocketTransport.<String, Boolean> launch(LastCorrectManager.class));
+		ShardedSymbolManager<String, Boolean> manager = new ShardedSymbolManager<String, Boolean>(
+				shards, 32, 16);
+		try {
+			for (int i = 0; i < 100; i++) {
+				manager.learn("q" + i, "a" + i, true);
+			}
+			for (int i = 0; i < 100; i++) {
+				assertEquals("a" + i, manager.request("q" + i));
+			}
+			manager.removeShard(shards.get(0));
+			for (int i = 0; i < 100; i++) {
+				assertEquals("a" + i, manager.request("q" + i));
+			}
+			try {
+				shards.get(0).request("q0");
+				fail("No exception thrown.");
+			} catch (IOException e) {
+			}
+		} finally {
+			manager.close();
+		}
+		try {
+			manager.request("q0");
+			fail("No exception thrown.");
+		} catch (ShardException e) {
+		}
+	}
+
+	@Test
+	public void testPrintingWorkerProcess() throws IOException {
+		final AtomicLong printed = new AtomicLong();
+		OutputStream discarded = new OutputStream() {
+
+			@Override
+			public void write(int b) {
+				printed.incrementAndGet();
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) {
+				printed.addAndGet(len);
+			}
+		};
+		SocketTransport<String, Boolean> shard = SocketTransport
+				.<String, Boolean> launch(PrintingManager.class, discarded,
+						SocketTransport.START_TIMEOUT, TimeUnit.SECONDS);
+		try {
+			shard.learn(Arrays.asList(new Evidence<String, Boolean>("q",
+					"a", true)));
+			for (int i = 0; i < 10; i++) {
+				assertEquals("a", shard.request("q"));
+			}
+		} finally {
+			shard.close();
+		}
+		assertTrue(printed.get() > 0);
+	}
+
+	@Test
+	public void testWorkerProcessStartTimeout() {
+		long start = System.currentTimeMillis();
+		try {
+			SocketTransport.<String, Boolean> launch(SlowManager.class,
+					System.out, 500, TimeUnit.MILLISECONDS);
+			fail("No exception thrown.");
+		} catch (IOException e) {
+		}
+		assertTrue(System.currentTimeMillis() - start < 30000);
+	}
+}
@@ -0,0 +1,96 @@
+package org.conceptmanager.util;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+public class IntBitmapTest {
+
+	@Test
+	public void testAddRemoveContains() {
+		IntBitmap bitmap = new IntBitmap();
+		assertTrue(bitmap.isEmpty());
+		assertTrue(bitmap.add(3));
+		assertFalse(bitmap.add(3));
+		assertTrue(bitmap.add(70000));
+		assertTrue(bitmap.contains(3));
+		assertTrue(bitmap.contains(70000));
+		assertFalse(bitmap.contains(4));
+		assertEquals(2, bitmap.cardinality());
+
+		assertTrue(bitmap.remove(3));
+		assertFalse(bitmap.remove(3));
+		assertFalse(bitmap.contains(3));
+		assertArrayEquals(new int[] { 70000 }, bitmap.toArray());
+
+		assertTrue(bitmap.remove(70000));
+		assertTrue(bitmap.isEmpty());
+	}
+
+	@Test
+	public void testAgainstReference() {
+		Random random = new Random(0);
+		IntBitmap bitmap = new IntBitmap();
+		TreeSet<Integer> reference = new TreeSet<Integer>();
+		for (int i = 0; i < 50000; i++) {
+			// dense values in the first groups, sparse ones beyond
+			int value = random.nextBoolean() ? random.nextInt(20000) : random
+					.nextInt(10000000);
+			if (random.nextInt(4) == 0) {
+				assertEquals(reference.remove(value), bitmap.remove(value));
+			} else {
+				assertEquals(reference.add(value), bitmap.add(value));
+			}
+		}
+		assertEquals(reference.size(), bitmap.cardinality());
+		int index = 0;
+		int[] values = bitmap.toArray();
+		for (int value : reference) {
+			assertEquals(value, values[index++]);
+		}
+	}
+
+	@Test
+	public void testAndOr() {
+		Random random = new Random(0);
+		IntBitmap a = new IntBitmap();
+		IntBitmap b = new IntBitmap();
+		TreeSet<Integer> setA = new TreeSet<Integer>();
+		TreeSet<Integer> setB = new TreeSet<Integer>();
+		for (int i = 0; i < 30000; i++) {
+			int value = random.nextInt(200000);
+			a.add(value);
+			setA.add(value);
+			value = random.nextInt(100000);
+			b.add(value);
+			setB.add(value);
+		}
+
+		TreeSet<Integer> intersection = new TreeSet<Integer>(setA);
+		intersection.retainAll(setB);
+		assertEquals(toBitmap(intersection), IntBitmap.and(a, b));
+		assertEquals(toBitmap(intersection), IntBitmap.and(b, a));
+
+		TreeSet<Integer> union = new TreeSet<Integer>(setA);
+		union.addAll(setB);
+		assertEquals(toBitmap(union), IntBitmap.or(a, b));
+		assertEquals(toBitmap(union), IntBitmap.or(b, a));
+
+		IntBitmap copy = a.copy();
+		copy.addAll(b);
+		assertEquals(toBitmap(union), copy);
+		assertEquals(toBitmap(setA), a);
+	}
+
+	private static IntBitmap toBitmap(Iterable<Integer> values) {
+		IntBitmap bitmap = new IntBitmap();
+		for (int value : values) {
+			bitmap.add(value);
+		}
+		return bitmap;
+	}
+
+}
@@ -0,0 +1,97 @@
+package org.conceptmanager.util;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class RingBufferTest {
+
+	@Test
+	public void testCapacity() {
+		assertEquals(1, new RingBuffer<Object>(1).capacity());
+		assertEquals(8, new RingBuffer<Object>(5).capacity());
+		assertEquals(8, new RingBuffer<Object>(8).capacity());
+	}
+
+	@Test
+	public void testOfferPoll() {
+		RingBuffer<Integer> buffer = new RingBuffer<Integer>(4);
+		assertTrue(buffer.isEmpty());
+		assertNull(buffer.poll());
+		for (int i = 0; i < 4; i++) {
+			assertTrue(buffer.offer(i));
+		}
+		assertFalse(buffer.offer(4));
+		assertEquals(1, buffer.getRejected());
+		assertEquals(4, buffer.size());
+
+		assertEquals((Integer) 0, buffer.poll());
+		assertTrue(buffer.offer(5));
+		List<Integer> batch = new ArrayList<Integer>();
+		assertEquals(3, buffer.drainTo(batch, 3));
+		assertEquals("[1, 2, 3]", batch.toString());
+		assertEquals((Integer) 5, buffer.poll());
+		assertTrue(buffer.isEmpty());
+	}
+
+	@Test
+	public void testConcurrentProducersConsumers() throws Exception {
+		final RingBuffer<Integer> buffer = new RingBuffer<Integer>(64);
+		final Set<Integer> consumed = ConcurrentHashMap.newKeySet();
+		final AtomicInteger done = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for (int producer = 0; producer < 2; producer++) {
+				final int offset = producer * 10000;
+				futures.add(executor.submit(new Callable<Object>() {
+
+					@Override
+					public Object call() {
+						for (int i = 0; i < 10000; i++) {
+							while (!buffer.offer(offset + i)) {
+								Thread.yield();
+							}
+						}
+						done.incrementAndGet();
+						return null;
+					}
+				}));
+			}
+			for (int consumer = 0; consumer < 2; consumer++) {
+				futures.add(executor.submit(new Callable<Object>() {
+
+					@Override
+					public Object call() {
+						while (done.get() < 2 || !buffer.isEmpty()) {
+							Integer value = buffer.poll();
+							if (value != null) {
+								assertTrue(consumed.add(value));
+							} else {
+								Thread.yield();
+							}
+						}
+						return null;
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(20000, new HashSet<Integer>(consumed).size());
+	}
+}
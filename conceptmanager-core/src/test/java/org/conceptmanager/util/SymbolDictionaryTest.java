@@ -0,0 +1,147 @@
+package org.conceptmanager.util;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class SymbolDictionaryTest {
+
+	@Test
+	public void testDenseIds() {
+		SymbolDictionary dictionary = new SymbolDictionary();
+		assertEquals(0, dictionary.intern("a"));
+		assertEquals(1, dictionary.intern(42));
+		assertEquals(0, dictionary.intern("a"));
+		assertEquals(2, dictionary.intern("b"));
+		assertEquals(3, dictionary.size());
+
+		assertEquals(1, dictionary.getId(42));
+		assertEquals(-1, dictionary.getId("c"));
+		assertEquals(-1, dictionary.getId(null));
+		assertEquals("a", dictionary.get(0));
+		assertEquals(42, (Object) dictionary.get(1));
+		assertEquals(2, dictionary.getId("b".getBytes(StandardCharsets.UTF_8),
+				0, 1));
+		assertEquals(-1, dictionary.getUtf8Length(0));
+		assertEquals(0, dictionary.getArenaSize());
+		try {
+			dictionary.get(3);
+			fail("No exception thrown.");
+		} catch (IndexOutOfBoundsException e) {
+		}
+	}
+
+	@Test
+	public void testManyIds() {
+		SymbolDictionary dictionary = new SymbolDictionary();
+		for (int i = 0; i < 10000; i++) {
+			assertEquals(i, dictionary.intern("symbol" + i));
+		}
+		for (int i = 0; i < 10000; i++) {
+			assertEquals("symbol" + i, dictionary.get(i));
+			assertEquals(i, dictionary.getId("symbol" + i));
+		}
+	}
+
+	@Test
+	public void testArena() {
+		SymbolDictionary dictionary = new SymbolDictionary(true);
+		assertTrue(dictionary.isUsingArena());
+		String[] strings = { "", "abc", "é€", "😀 smile", "\uD800" };
+		for (int i = 0; i < strings.length; i++) {
+			assertEquals(i, dictionary.intern(strings[i]));
+		}
+		assertEquals(5, dictionary.intern(7L));
+		for (int i = 0; i < strings.length; i++) {
+			assertEquals(i, dictionary.intern(strings[i]));
+			assertEquals(strings[i], dictionary.get(i));
+		}
+		assertEquals(7L, (Object) dictionary.get(5));
+
+		byte[] encoding = "xx😀 smile".getBytes(StandardCharsets.UTF_8);
+		assertEquals(3, dictionary.getId(encoding, 2, encoding.length - 2));
+		assertEquals(-1, dictionary.getId(encoding, 0, encoding.length));
+		assertEquals(6, dictionary.intern(encoding, 0, encoding.length));
+		assertEquals("xx😀 smile", dictionary.get(6));
+		assertEquals(6, dictionary.getId("xx😀 smile"));
+
+		assertEquals(5, dictionary.getUtf8Length(2));
+		byte[] copy = new byte[6];
+		assertEquals(5, dictionary.getUtf8(2, copy, 1));
+		assertEquals("é€", new String(copy, 1, 5, StandardCharsets.UTF_8));
+		// unpaired surrogates cannot be encoded, so they are kept as is
+		assertEquals(-1, dictionary.getUtf8Length(4));
+		assertTrue(dictionary.getArenaSize() > 0);
+
+		byte[] malformed = { 'a', (byte) 0xC3 };
+		int id = dictionary.intern(malformed, 0, 2);
+		assertEquals("a�", dictionary.get(id));
+		assertEquals(id, dictionary.getId("a�"));
+	}
+
+	@Test
+	public void testLargeArena() {
+		SymbolDictionary dictionary = new SymbolDictionary(true);
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < 100000; i++) {
+			builder.append((char) ('a' + i % 26));
+		}
+		String large = builder.toString();
+		for (int i = 0; i < 20000; i++) {
+			assertEquals(i, dictionary.intern("symbol" + i));
+		}
+		assertEquals(20000, dictionary.intern(large));
+		assertEquals(20001, dictionary.intern("after"));
+		assertEquals(large, dictionary.get(20000));
+		for (int i = 0; i < 20000; i++) {
+			assertEquals("symbol" + i, dictionary.get(i));
+		}
+		assertEquals("after", dictionary.get(20001));
+	}
+
+	@Test
+	public void testConcurrentInterning() throws Exception {
+		final SymbolDictionary dictionary = new SymbolDictionary(true);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<int[]>> futures = new ArrayList<Future<int[]>>();
+			for (int t = 0; t < 4; t++) {
+				futures.add(executor.submit(new Callable<int[]>() {
+
+					@Override
+					public int[] call() {
+						int[] ids = new int[5000];
+						for (int i = 0; i < ids.length; i++) {
+							ids[i] = dictionary.intern("symbol" + i);
+						}
+						return ids;
+					}
+				}));
+			}
+			int[] reference = futures.get(0).get();
+			for (Future<int[]> future : futures) {
+				assertArrayEquals(reference, future.get());
+			}
+			assertEquals(5000, dictionary.size());
+			Set<Integer> ids = new HashSet<Integer>();
+			for (int i = 0; i < reference.length; i++) {
+				ids.add(reference[i]);
+				assertEquals("symbol" + i, dictionary.get(reference[i]));
+			}
+			assertEquals(5000, ids.size());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+}
@@ -1,11 +1,17 @@
 package org.conceptmanager.sampleJudgementLearning;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
+import java.util.Map.Entry;
 
+import org.conceptmanager.serialization.WeightReader;
+import org.conceptmanager.serialization.WeightReader.Weight;
+import org.conceptmanager.serialization.WeightWriter;
 import org.conceptmanager.symbol.SymbolManager;
+import org.conceptmanager.util.SymbolDictionary;
 
 /**
  * This {@link Manager} is a simple {@link SymbolManager} which learns the
@@ -13,7 +19,9 @@ import org.conceptmanager.symbol.SymbolManager;
  * {@link #learn(String, String, Boolean)}). Their relations are directed and
  * represented by a weight: 1 if it is a good request-answer pair, -1 if it is
  * not, 0 otherwise. The answers to any request are provided depending on the
- * learned weights.
+ * learned weights. The symbols are interned in a {@link SymbolDictionary}, so
+ * the weights are indexed by their ids and a request only hashes its own
+ * symbol.
  * 
  * @author Matthieu Vergne <matthieu.vergne@gmail.com>
  * 
@@ -23,11 +31,11 @@ public class Manager implements SymbolManager<String, Boolean> {
 	/**
 	 * The symbols known.
 	 */
-	Set<String> symbols = new HashSet<String>();
+	SymbolDictionary symbols = new SymbolDictionary(true);
 	/**
-	 * The request-answer weights.
+	 * The request-answer weights, by symbol id.
 	 */
-	Map<String, Map<String, Double>> weights = new HashMap<String, Map<String, Double>>();
+	Map<Integer, Map<Integer, Double>> weights = new HashMap<Integer, Map<Integer, Double>>();
 
 	/**
 	 * The known symbols are browsed and one of the symbols with the highest
@@ -35,18 +43,20 @@ public class Manager implements SymbolManager<String, Boolean> {
 	 */
 	@Override
 	public String request(String request) {
-		String selectedAnswer = null;
+		Map<Integer, Double> answers = weights.get(symbols.getId(request));
+		int selectedAnswer = -1;
 		double selectedWeight = 0;
-		for (String answer : symbols) {
-			double weight = retrieveWeightFor(request, answer);
-			if (selectedAnswer == null || weight > selectedWeight) {
+		for (int answer = 0; answer < symbols.size(); answer++) {
+			Double weight = answers == null ? null : answers.get(answer);
+			double value = weight == null ? 0 : weight;
+			if (selectedAnswer == -1 || value > selectedWeight) {
 				selectedAnswer = answer;
-				selectedWeight = weight;
+				selectedWeight = value;
 			} else {
 				continue;
 			}
 		}
-		return selectedAnswer;
+		return selectedAnswer == -1 ? null : symbols.<String> get(selectedAnswer);
 	}
 
 	/**
@@ -56,35 +66,84 @@ public class Manager implements SymbolManager<String, Boolean> {
 	 */
 	@Override
 	public void learn(String request, String answer, Boolean judgment) {
-		symbols.add(request);
-		symbols.add(answer);
-
-		Map<String, Double> answers = weights.get(request);
-		if (answers == null) {
-			answers = new HashMap<String, Double>();
-			weights.put(request, answers);
+		int requestId = symbols.intern(request);
+		if (answer == null) {
+			// no answer to weigh, but the request is now a known symbol
 		} else {
-			// keep current value
+			int answerId = symbols.intern(answer);
+			Map<Integer, Double> answers = retrieveAnswersFor(requestId);
+			Double weight = answers.get(answerId);
+			answers.put(answerId, judgment == null ? weight == null ? 0.0
+					: weight : judgment ? 1.0 : -1.0);
 		}
-		double weight = retrieveWeightFor(request, answer);
-		answers.put(answer, judgment == null ? weight : judgment ? 1.0 : -1.0);
 	}
 
 	/**
+	 * Save the weights learned, so they can be restored through
+	 * {@link #load(InputStream)}.
 	 * 
-	 * @param request
-	 *            the request
-	 * @param answer
-	 *            the answer
-	 * @return the weight learned, 0 if no information
+	 * @param output
+	 *            the {@link OutputStream} to write the weights to, closed at
+	 *            the end
+	 * @throws IOException
+	 *             if the weights cannot be written
+	 */
+	public void save(OutputStream output) throws IOException {
+		WeightWriter writer = new WeightWriter(output);
+		try {
+			for (Entry<Integer, Map<Integer, Double>> request : weights
+					.entrySet()) {
+				String requestSymbol = symbols.get(request.getKey());
+				for (Entry<Integer, Double> answer : request.getValue()
+						.entrySet()) {
+					writer.write(requestSymbol,
+							symbols.<String> get(answer.getKey()),
+							answer.getValue());
+				}
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Restore the weights saved through {@link #save(OutputStream)}, as if
+	 * they were learned again.
+	 * 
+	 * @param input
+	 *            the {@link InputStream} to read the weights from, closed at
+	 *            the end
+	 * @throws IOException
+	 *             if the weights cannot be read
 	 */
-	private double retrieveWeightFor(String request, String answer) {
-		Double weight;
+	public void load(InputStream input) throws IOException {
+		WeightReader reader = new WeightReader(input);
 		try {
-			weight = weights.get(request).get(answer);
-		} catch (NullPointerException e) {
-			weight = null;
+			Weight weight;
+			while ((weight = reader.read()) != null) {
+				int request = symbols.intern(weight.getRequest());
+				int answer = symbols.intern(weight.getAnswer());
+				retrieveAnswersFor(request).put(answer, weight.getWeight());
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * 
+	 * @param request
+	 *            the id of the request
+	 * @return the weights of the answers to this request, created if needed
+	 */
+	private Map<Integer, Double> retrieveAnswersFor(int request) {
+		Map<Integer, Double> answers = weights.get(request);
+		if (answers == null) {
+			answers = new HashMap<Integer, Double>();
+			weights.put(request, answers);
+		} else {
+			// already known request
 		}
-		return weight == null ? 0 : weight;
+		return answers;
 	}
 }
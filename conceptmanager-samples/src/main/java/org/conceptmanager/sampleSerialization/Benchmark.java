@@ -0,0 +1,127 @@
+package org.conceptmanager.sampleSerialization;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.conceptmanager.modeling.Model;
+import org.conceptmanager.modeling.impl.StaticModel;
+import org.conceptmanager.serialization.ModelReader;
+import org.conceptmanager.serialization.ModelWriter;
+
+/**
+ * This sample measures the throughput of the binary format of
+ * {@link ModelWriter} and {@link ModelReader} by streaming many
+ * {@link StaticModel}s to a file and reading them back. As a baseline, the
+ * same {@link Model}s are streamed with Java serialization, each one as a
+ * {@link HashMap} of its {@link Attribute}s and {@link Value}s since
+ * {@link StaticModel} is not serializable. The number of {@link Model}s can be
+ * given as argument.
+ * 
+ * @author Matthieu Vergne <matthieu.vergne@gmail.com>
+ * 
+ */
+public class Benchmark {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	public static void main(String[] args) throws Exception {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		File file = File.createTempFile("models", ".bin");
+		file.deleteOnExit();
+		// first round to warm up, second round to measure
+		for (int round = 0; round < 2; round++) {
+			System.out.println(round == 0 ? "WARM UP" : "MEASURE");
+			measureBinary(file, count);
+			measureBaseline(file, count);
+		}
+		file.delete();
+	}
+
+	private static StaticModel createModel(int index) {
+		Map<Object, Object> values = new HashMap<Object, Object>();
+		values.put("id", index);
+		values.put("timestamp", 1400000000000L + index * 10L);
+		values.put("temperature", 20 + (index % 100) * 0.1);
+		values.put("humidity", 50 + index % 30);
+		values.put("room", "room " + index % 16);
+		values.put("occupied", index % 3 == 0);
+		return new StaticModel(values);
+	}
+
+	private static void measureBinary(File file, int count) throws IOException {
+		long start = System.nanoTime();
+		ModelWriter writer = new ModelWriter(new BufferedOutputStream(
+				new FileOutputStream(file), BUFFER_SIZE));
+		for (int i = 0; i < count; i++) {
+			writer.write(createModel(i));
+		}
+		writer.close();
+		long written = System.nanoTime();
+
+		ModelReader reader = new ModelReader(new BufferedInputStream(
+				new FileInputStream(file), BUFFER_SIZE));
+		int read = 0;
+		while (reader.read() != null) {
+			read++;
+		}
+		reader.close();
+		long end = System.nanoTime();
+		report("binary", count, read, file.length(), written - start, end
+				- written);
+	}
+
+	private static void measureBaseline(File file, int count)
+			throws IOException, ClassNotFoundException {
+		long start = System.nanoTime();
+		ObjectOutputStream output = new ObjectOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file),
+						BUFFER_SIZE));
+		for (int i = 0; i < count; i++) {
+			Model model = createModel(i);
+			HashMap<Object, Object> values = new HashMap<Object, Object>();
+			for (Object attribute : model.getAttributes()) {
+				values.put(attribute, model.getValueFor(attribute));
+			}
+			output.writeObject(values);
+			// otherwise all the maps are kept for back references
+			output.reset();
+		}
+		output.writeObject(null);
+		output.close();
+		long written = System.nanoTime();
+
+		ObjectInputStream input = new ObjectInputStream(
+				new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+		int read = 0;
+		while (input.readObject() != null) {
+			read++;
+		}
+		input.close();
+		long end = System.nanoTime();
+		report("java serialization", count, read, file.length(), written
+				- start, end - written);
+	}
+
+	private static void report(String format, int count, int read, long size,
+			long writing, long reading) {
+		if (read != count) {
+			throw new IllegalStateException("Read " + read + " models instead of "
+					+ count);
+		} else {
+			System.out.println(String.format(
+					"%s: %d bytes (%.1f per model), write %.0f models/s "
+							+ "(%.1f MB/s), read %.0f models/s (%.1f MB/s)",
+					format, size, (double) size / count, count * 1e9
+							/ writing, size * 1e3 / writing, count * 1e9
+							/ reading, size * 1e3 / reading));
+		}
+	}
+}